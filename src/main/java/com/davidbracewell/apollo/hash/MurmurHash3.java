@@ -0,0 +1,59 @@
+package com.davidbracewell.apollo.hash;
+
+import lombok.NonNull;
+
+/**
+ * <p>Implementation of the 32-bit x86 variant of MurmurHash3 over the UTF-16 code units of a character sequence. The
+ * result equals the reference MurmurHash3_x86_32 of the sequence's UTF-16LE encoding, not of its UTF-8 (or ASCII)
+ * bytes, so published test vectors for byte strings do not apply directly.</p>
+ *
+ * @author David B. Bracewell
+ */
+public final class MurmurHash3 {
+   private static final int C1 = 0xcc9e2d51;
+   private static final int C2 = 0x1b873593;
+
+   private MurmurHash3() {
+      throw new IllegalAccessError();
+   }
+
+   private static int fmix(int h1, int length) {
+      h1 ^= length;
+      h1 ^= h1 >>> 16;
+      h1 *= 0x85ebca6b;
+      h1 ^= h1 >>> 13;
+      h1 *= 0xc2b2ae35;
+      h1 ^= h1 >>> 16;
+      return h1;
+   }
+
+   /**
+    * Calculates the 32-bit hash of the given character sequence.
+    *
+    * @param data the character sequence to hash
+    * @param seed the seed of the hash
+    * @return the hash value
+    */
+   public static int hash32(@NonNull CharSequence data, int seed) {
+      int h1 = seed;
+      int length = data.length();
+      for (int i = 1; i < length; i += 2) {
+         int k1 = data.charAt(i - 1) | (data.charAt(i) << 16);
+         h1 ^= mixK1(k1);
+         h1 = Integer.rotateLeft(h1, 13);
+         h1 = h1 * 5 + 0xe6546b64;
+      }
+      if ((length & 1) == 1) {
+         h1 ^= mixK1(data.charAt(length - 1));
+      }
+      return fmix(h1, 2 * length);
+   }
+
+   private static int mixK1(int k1) {
+      k1 *= C1;
+      k1 = Integer.rotateLeft(k1, 15);
+      k1 *= C2;
+      return k1;
+   }
+
+}//END OF MurmurHash3
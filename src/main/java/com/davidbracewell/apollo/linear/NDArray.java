@@ -1160,6 +1160,20 @@ public abstract class NDArray implements Serializable, Copyable<NDArray> {
     */
    public abstract NDArray mmul(NDArray other);
 
+   /**
+    * Adds the product of the first NDArray and the transpose of the second NDArray to this NDArray in-place, i.e.
+    * <code>this += a * b<sup>T</sup></code>, which is how gradients of the form <code>delta * input<sup>T</sup></code>
+    * are accumulated. Dense NDArrays of the same type accumulate the product without allocating the transpose or the
+    * product.
+    *
+    * @param a the left-hand NDArray
+    * @param b the NDArray whose transpose is the right-hand side
+    * @return this NDArray
+    */
+   public NDArray addiMmulT(@NonNull NDArray a, @NonNull NDArray b) {
+      return addi(a.mmul(b.T()));
+   }
+
    /**
     * Multiplies a scalar value to each element in the NDArray
     *
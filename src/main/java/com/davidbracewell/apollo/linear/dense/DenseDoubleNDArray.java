@@ -8,6 +8,7 @@ import com.davidbracewell.guava.common.base.Preconditions;
 import lombok.NonNull;
 import org.jblas.DoubleMatrix;
 import org.jblas.FloatMatrix;
+import org.jblas.NativeBlas;
 import org.jblas.ranges.IntervalRange;
 
 import java.util.Arrays;
@@ -225,6 +226,24 @@ public class DenseDoubleNDArray extends NDArray {
       return new DenseDoubleNDArray(storage.mmul(other.toDoubleMatrix()));
    }
 
+   @Override
+   public NDArray addiMmulT(@NonNull NDArray a, @NonNull NDArray b) {
+      if (!(a instanceof DenseDoubleNDArray) || !(b instanceof DenseDoubleNDArray)) {
+         return super.addiMmulT(a, b);
+      }
+      DoubleMatrix left = a.toDoubleMatrix();
+      DoubleMatrix right = b.toDoubleMatrix();
+      Preconditions.checkArgument(left.columns == right.columns
+                                     && storage.rows == left.rows
+                                     && storage.columns == right.rows,
+                                  "Dimension mismatch");
+      NativeBlas.dgemm('N', 'T', left.rows, right.rows, left.columns,
+                       1.0, left.data, 0, Math.max(1, left.rows),
+                       right.data, 0, Math.max(1, right.rows),
+                       1.0, storage.data, 0, Math.max(1, storage.rows));
+      return this;
+   }
+
    @Override
    public NDArray mul(double scalar) {
       return new DenseDoubleNDArray(storage.mul(scalar));
@@ -9,6 +9,7 @@ import lombok.NonNull;
 import org.jblas.DoubleMatrix;
 import org.jblas.FloatMatrix;
 import org.jblas.MatrixFunctions;
+import org.jblas.NativeBlas;
 import org.jblas.ranges.IntervalRange;
 
 import java.util.Arrays;
@@ -231,6 +232,24 @@ public class DenseFloatNDArray extends NDArray {
       return new DenseFloatNDArray(storage.mmul(other.toFloatMatrix()));
    }
 
+   @Override
+   public NDArray addiMmulT(@NonNull NDArray a, @NonNull NDArray b) {
+      if (!(a instanceof DenseFloatNDArray) || !(b instanceof DenseFloatNDArray)) {
+         return super.addiMmulT(a, b);
+      }
+      FloatMatrix left = a.toFloatMatrix();
+      FloatMatrix right = b.toFloatMatrix();
+      Preconditions.checkArgument(left.columns == right.columns
+                                     && storage.rows == left.rows
+                                     && storage.columns == right.rows,
+                                  "Dimension mismatch");
+      NativeBlas.sgemm('N', 'T', left.rows, right.rows, left.columns,
+                       1f, left.data, 0, Math.max(1, left.rows),
+                       right.data, 0, Math.max(1, right.rows),
+                       1f, storage.data, 0, Math.max(1, storage.rows));
+      return this;
+   }
+
    @Override
    public NDArray mul(double scalar) {
       return new DenseFloatNDArray(storage.mul((float) scalar));
@@ -29,12 +29,15 @@ import com.davidbracewell.apollo.ml.encoder.HashingEncoder;
 import com.davidbracewell.collection.counter.Counter;
 import com.davidbracewell.conversion.Cast;
 import com.davidbracewell.conversion.Val;
+import com.davidbracewell.guava.common.base.Preconditions;
 import com.davidbracewell.guava.common.collect.Sets;
 import com.davidbracewell.json.JsonReader;
 import com.davidbracewell.json.JsonTokenType;
 import com.davidbracewell.json.JsonWriter;
 import com.davidbracewell.tuple.Tuple2;
-import lombok.*;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -43,15 +46,23 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * <p>A container for a set of features, associated label, and weight.</p>
+ * <p>A container for a set of features, associated label, and weight. Features are stored compactly as parallel arrays
+ * of names and values, with the names typically being references interned via the {@link SymbolTable}. The
+ * <code>Feature</code> based methods, e.g. {@link #getFeatures()}, provide a view over the underlying arrays.</p>
  *
  * @author David B. Bracewell
  */
-@EqualsAndHashCode
-@ToString
 public class Instance implements Example, Serializable, Iterable<Feature> {
-   private static final long serialVersionUID = 1L;
-   private final ArrayList<Feature> features;
+   /**
+    * Version 2 stores the features as parallel arrays of names and values (version 1 stored a list of
+    * <code>Feature</code>s), so instances serialized with version 1 cannot be read and need to be recreated.
+    */
+   private static final long serialVersionUID = 2L;
+   private static final String[] EMPTY_NAMES = new String[0];
+   private static final double[] EMPTY_VALUES = new double[0];
+   private String[] names;
+   private double[] values;
+   private int size;
    private Object label;
    @Getter
    @Setter
@@ -73,8 +84,13 @@ public class Instance implements Example, Serializable, Iterable<Feature> {
     * @param label    the label
     */
    public Instance(@NonNull Collection<Feature> features, Object label) {
-      this.features = new ArrayList<>(features);
-      this.features.trimToSize();
+      this.names = new String[features.size()];
+      this.values = new double[features.size()];
+      for (Feature feature : features) {
+         this.names[size] = feature.getFeatureName();
+         this.values[size] = feature.getValue();
+         size++;
+      }
       setLabel(label);
    }
 
@@ -82,10 +98,19 @@ public class Instance implements Example, Serializable, Iterable<Feature> {
     * Instantiates a new Instance.
     */
    public Instance() {
-      this.features = new ArrayList<>();
+      this.names = EMPTY_NAMES;
+      this.values = EMPTY_VALUES;
       this.label = null;
    }
 
+   private Instance(String[] names, double[] values, Object label, double weight) {
+      this.names = names;
+      this.values = values;
+      this.size = names.length;
+      this.label = label;
+      this.weight = weight;
+   }
+
    /**
     * Convenience method for creating an instance from a collection of features.
     *
@@ -157,6 +182,31 @@ public class Instance implements Example, Serializable, Iterable<Feature> {
       return new Instance(features, label);
    }
 
+   /**
+    * Creates an instance from the given parallel arrays of feature names and values. The arrays are copied, so the
+    * caller is free to reuse them.
+    *
+    * @param featureNames  the feature names
+    * @param featureValues the feature values
+    * @param label         the label
+    * @param weight        the weight of the instance
+    * @return the instance
+    */
+   public static Instance create(@NonNull String[] featureNames,
+                                 @NonNull double[] featureValues,
+                                 Object label,
+                                 double weight
+                                ) {
+      Preconditions.checkArgument(featureNames.length == featureValues.length,
+                                  "Feature names and values must be the same length");
+      Instance instance = new Instance(Arrays.copyOf(featureNames, featureNames.length),
+                                       Arrays.copyOf(featureValues, featureValues.length),
+                                       null,
+                                       weight);
+      instance.setLabel(label);
+      return instance;
+   }
+
 //   /**
 //    * Convenience method for creating an instance from a vector. Feature names are string representations of the vector
 //    * indices.
@@ -176,38 +226,96 @@ public class Instance implements Example, Serializable, Iterable<Feature> {
       return Collections.singletonList(this);
    }
 
+   private void addFeature(int index, String name, double value) {
+      if (size == names.length) {
+         int newCapacity = Math.max(4, size + (size >> 1));
+         names = Arrays.copyOf(names, newCapacity);
+         values = Arrays.copyOf(values, newCapacity);
+      }
+      System.arraycopy(names, index, names, index + 1, size - index);
+      System.arraycopy(values, index, values, index + 1, size - index);
+      names[index] = name;
+      values[index] = value;
+      size++;
+   }
+
    @Override
    public Instance copy() {
-      return new Instance(features.stream().map(Feature::copy).collect(Collectors.toList()), label);
+      return new Instance(Arrays.copyOf(names, size), Arrays.copyOf(values, size), label, weight);
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+         return false;
+      }
+      Instance other = (Instance) o;
+      if (size != other.size || Double.compare(weight, other.weight) != 0 || !Objects.equals(label, other.label)) {
+         return false;
+      }
+      for (int i = 0; i < size; i++) {
+         if (!names[i].equals(other.names[i]) || Double.compare(values[i], other.values[i]) != 0) {
+            return false;
+         }
+      }
+      return true;
    }
 
    @Override
    public void fromJson(JsonReader reader) throws IOException {
       this.label = null;
-      this.features.clear();
+      this.names = EMPTY_NAMES;
+      this.values = EMPTY_VALUES;
+      this.size = 0;
       this.label = reader.nextKeyValue("label").cast();
       this.weight = reader.nextKeyValue("weight").asDoubleValue(1.0);
       reader.beginObject();
       while (reader.peek() != JsonTokenType.END_OBJECT) {
          Tuple2<String, Val> fv = reader.nextKeyValue();
-         this.features.add(Feature.real(fv.getKey(), fv.getValue().asDoubleValue()));
+         addFeature(size, fv.getKey(), fv.getValue().asDoubleValue());
       }
       reader.endObject();
-      this.features.trimToSize();
+      trimToSize();
    }
 
    @Override
    public Stream<String> getFeatureSpace() {
-      return features.stream().map(Feature::getFeatureName);
+      return Arrays.stream(names, 0, size);
+   }
+
+   /**
+    * Gets the name of the feature at the given index.
+    *
+    * @param index the index of the feature
+    * @return the feature name
+    */
+   public String getFeatureName(int index) {
+      Preconditions.checkElementIndex(index, size);
+      return names[index];
+   }
+
+   /**
+    * Gets the value of the feature at the given index.
+    *
+    * @param index the index of the feature
+    * @return the feature value
+    */
+   public double getFeatureValue(int index) {
+      Preconditions.checkElementIndex(index, size);
+      return values[index];
    }
 
    /**
-    * Gets the features of the instance.
+    * Gets the features of the instance. The returned list is a view over the instance's compact feature storage, which
+    * means modifications to the list are reflected in the instance.
     *
     * @return the features
     */
    public List<Feature> getFeatures() {
-      return features;
+      return new FeatureList();
    }
 
    /**
@@ -269,11 +377,12 @@ public class Instance implements Example, Serializable, Iterable<Feature> {
     * @return the value of the given feature or 0 if not in the instance
     */
    public double getValue(@NonNull String feature) {
-      return features.stream()
-                     .filter(f -> f.getFeatureName().equals(feature))
-                     .map(Feature::getValue)
-                     .findFirst()
-                     .orElse(0d);
+      for (int i = 0; i < size; i++) {
+         if (names[i].equals(feature)) {
+            return values[i];
+         }
+      }
+      return 0d;
    }
 
    /**
@@ -295,13 +404,24 @@ public class Instance implements Example, Serializable, Iterable<Feature> {
       return label != null;
    }
 
+   @Override
+   public int hashCode() {
+      int result = Objects.hashCode(label);
+      result = 31 * result + Double.hashCode(weight);
+      for (int i = 0; i < size; i++) {
+         result = 31 * result + names[i].hashCode();
+         result = 31 * result + Double.hashCode(values[i]);
+      }
+      return result;
+   }
+
    @Override
    public Instance intern(@NonNull Interner<String> interner) {
-      return Instance.create(features.stream()
-                                     .map(f -> Feature.real(interner.intern(f.getFeatureName()), f.getValue()))
-                                     .collect(Collectors.toList()),
-                             label
-                            );
+      String[] interned = new String[size];
+      for (int i = 0; i < size; i++) {
+         interned[i] = interner.intern(names[i]);
+      }
+      return new Instance(interned, Arrays.copyOf(values, size), label, weight);
    }
 
    /**
@@ -315,7 +435,16 @@ public class Instance implements Example, Serializable, Iterable<Feature> {
 
    @Override
    public Iterator<Feature> iterator() {
-      return this.features.iterator();
+      return getFeatures().iterator();
+   }
+
+   /**
+    * Gets the number of features in the instance.
+    *
+    * @return the number of features
+    */
+   public int numberOfFeatures() {
+      return size;
    }
 
    /**
@@ -324,7 +453,7 @@ public class Instance implements Example, Serializable, Iterable<Feature> {
     * @return the stream
     */
    public Stream<Feature> stream() {
-      return features.stream();
+      return getFeatures().stream();
    }
 
    @Override
@@ -334,56 +463,146 @@ public class Instance implements Example, Serializable, Iterable<Feature> {
       writer.property("label", label);
       writer.property("weight", weight);
       writer.beginObject("features");
-      for (Feature f : features) {
-         writer.property(f.getFeatureName(), f.getValue());
+      for (int i = 0; i < size; i++) {
+         writer.property(names[i], values[i]);
       }
       writer.endObject();
       if (inArray) writer.endObject();
    }
 
+   @Override
+   public String toString() {
+      return "Instance(features=" + getFeatures() + ", label=" + label + ", weight=" + weight + ")";
+   }
+
+   /**
+    * Trims the capacity of the underlying feature storage to the current number of features.
+    */
+   public void trimToSize() {
+      if (names.length != size) {
+         names = Arrays.copyOf(names, size);
+         values = Arrays.copyOf(values, size);
+      }
+   }
+
    /**
     * Converts the instance into a feature vector using the given encoder pair to map feature names and labels to double
-    * values
+    * values. The vector is sized to the number of features after encoding the instance, so vectors built while another
+    * thread grows the feature encoder (see {@link com.davidbracewell.apollo.ml.encoder.ConcurrentIndexEncoder}) can
+    * differ in length.
     *
     * @param encoderPair the encoder pair
     * @param factory     The factory to use to create vectors
     * @return the vector
     */
    public <T> NDArray toVector(@NonNull EncoderPair encoderPair, @NonNull NDArrayFactory factory) {
-      NDArray vector = factory.zeros(encoderPair.numberOfFeatures());
-      boolean isHash = encoderPair.getFeatureEncoder() instanceof HashingEncoder;
-      features.forEach(f -> {
-         int fi = (int) encoderPair.encodeFeature(f.getFeatureName());
-         if (fi != -1) {
-            if (isHash) {
-               vector.set(fi, 1.0);
-            } else {
-               vector.set(fi, f.getValue());
+      return toVector(encoderPair, factory, true);
+   }
+
+   /**
+    * Converts the instance into a feature vector using the given encoder pair to map feature names and labels to double
+    * values
+    *
+    * @param encoderPair the encoder pair
+    * @return the vector
+    */
+   public NDArray toVector(@NonNull EncoderPair encoderPair) {
+      return toVector(encoderPair, NDArrayFactory.SPARSE_DOUBLE);
+   }
+
+   /**
+    * Converts the instance into a feature vector only looking up the features and labels already known to the given
+    * encoder pair, i.e. nothing is added to encoders that are not frozen. Unknown features are dropped and unknown
+    * labels are encoded as <code>-1</code>. This is used for held-out data, e.g. validation sets, which are encoded
+    * while the model is being trained.
+    *
+    * @param encoderPair the encoder pair
+    * @return the vector
+    */
+   public NDArray toLookupVector(@NonNull EncoderPair encoderPair) {
+      return toVector(encoderPair, NDArrayFactory.SPARSE_DOUBLE, false);
+   }
+
+   private NDArray toVector(EncoderPair encoderPair, NDArrayFactory factory, boolean encode) {
+      NDArray vector;
+      if (encoderPair.getFeatureEncoder() instanceof HashingEncoder) {
+         vector = factory.zeros(encoderPair.numberOfFeatures());
+         Cast.<HashingEncoder>as(encoderPair.getFeatureEncoder()).encodeInto(names, values, size, vector);
+      } else {
+         //Encode before sizing the vector, as encoders that are not frozen may grow (concurrently) while encoding
+         int[] ids = new int[size];
+         for (int i = 0; i < size; i++) {
+            ids[i] = (int) (encode
+                               ? encoderPair.encodeFeature(names[i])
+                               : encoderPair.getFeatureEncoder().get(names[i]));
+         }
+         vector = factory.zeros(encoderPair.numberOfFeatures());
+         for (int i = 0; i < size; i++) {
+            if (ids[i] != -1) {
+               vector.set(ids[i], values[i]);
             }
          }
-      });
+      }
       if (label instanceof Iterable) {
-         NDArray lblVector = factory.zeros(encoderPair.getLabelEncoder().size());
+         List<Integer> labelIds = new ArrayList<>();
          for (Object lbl : Cast.<Iterable<Object>>as(label)) {
-            lblVector.set((int) encoderPair.encodeLabel(lbl), 1.0);
+            int li = (int) (encode ? encoderPair.encodeLabel(lbl) : encoderPair.getLabelEncoder().get(lbl));
+            if (li != -1) {
+               labelIds.add(li);
+            }
          }
+         NDArray lblVector = factory.zeros(encoderPair.getLabelEncoder().size());
+         labelIds.forEach(li -> lblVector.set(li, 1.0));
          vector.setLabel(lblVector);
       } else {
-         vector.setLabel(encoderPair.encodeLabel(label));
+         vector.setLabel(encode ? encoderPair.encodeLabel(label) : encoderPair.getLabelEncoder().get(label));
       }
       vector.setWeight(weight);
       return vector;
    }
 
    /**
-    * Converts the instance into a feature vector using the given encoder pair to map feature names and labels to double
-    * values
-    *
-    * @param encoderPair the encoder pair
-    * @return the vector
+    * List view of the instance's features backed by the name and value arrays.
     */
-   public NDArray toVector(@NonNull EncoderPair encoderPair) {
-      return toVector(encoderPair, NDArrayFactory.SPARSE_DOUBLE);
+   private class FeatureList extends AbstractList<Feature> implements RandomAccess {
+
+      @Override
+      public void add(int index, Feature feature) {
+         Preconditions.checkPositionIndex(index, size);
+         addFeature(index, feature.getFeatureName(), feature.getValue());
+         modCount++;
+      }
+
+      @Override
+      public Feature get(int index) {
+         Preconditions.checkElementIndex(index, size);
+         return Feature.real(names[index], values[index]);
+      }
+
+      @Override
+      public Feature remove(int index) {
+         Feature old = get(index);
+         int numMoved = size - index - 1;
+         System.arraycopy(names, index + 1, names, index, numMoved);
+         System.arraycopy(values, index + 1, values, index, numMoved);
+         size--;
+         names[size] = null;
+         modCount++;
+         return old;
+      }
+
+      @Override
+      public Feature set(int index, Feature feature) {
+         Feature old = get(index);
+         names[index] = feature.getFeatureName();
+         values[index] = feature.getValue();
+         return old;
+      }
+
+      @Override
+      public int size() {
+         return size;
+      }
    }
 
 }//END OF Instance
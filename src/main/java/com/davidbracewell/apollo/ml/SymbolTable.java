@@ -0,0 +1,38 @@
+package com.davidbracewell.apollo.ml;
+
+import com.davidbracewell.Interner;
+import lombok.NonNull;
+
+/**
+ * <p>Global table of interned symbols (e.g. feature names) shared across datasets and examples, so that each distinct
+ * name is stored once in memory regardless of how many examples reference it.</p>
+ *
+ * @author David B. Bracewell
+ */
+public final class SymbolTable {
+   private static final Interner<String> INTERNER = new Interner<>();
+
+   private SymbolTable() {
+      throw new IllegalAccessError();
+   }
+
+   /**
+    * Gets the interner backing the symbol table.
+    *
+    * @return the interner
+    */
+   public static Interner<String> getInterner() {
+      return INTERNER;
+   }
+
+   /**
+    * Interns the given symbol returning the canonical reference.
+    *
+    * @param symbol the symbol to intern
+    * @return the interned symbol
+    */
+   public static String intern(@NonNull String symbol) {
+      return INTERNER.intern(symbol);
+   }
+
+}//END OF SymbolTable
@@ -2,14 +2,23 @@ package com.davidbracewell.apollo.ml;
 
 import com.davidbracewell.apollo.ml.data.Dataset;
 import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
+import com.davidbracewell.guava.common.base.Preconditions;
+import com.davidbracewell.guava.common.base.Throwables;
 import lombok.NonNull;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
@@ -40,10 +49,72 @@ public class TrainTestSet<T extends Example> implements Iterable<TrainTestSplit<
       forEach(tTrainTest -> consumer.accept(tTrainTest.getTrain(), tTrainTest.getTest()));
    }
 
+   /**
+    * <p>Evaluates the set using an Evaluation produced by the given supplier. The splits are trained and evaluated
+    * concurrently on at most <code>parallelism</code> threads, each with its own learner from the learner supplier and
+    * its own evaluation, which are merged once all splits have finished.</p>
+    *
+    * @param <M>         the model type parameter
+    * @param <R>         the evaluation type parameter
+    * @param learners    supplies a new learner for each split
+    * @param supplier    supplies an evaluation metric.
+    * @param parallelism the maximum number of splits to train and evaluate at the same time
+    * @return the result of evaluation
+    */
+   public <M extends Model, R extends Evaluation<T, M>> R evaluate(@NonNull Supplier<? extends Learner<T, M>> learners,
+                                                                   @NonNull Supplier<R> supplier,
+                                                                   int parallelism
+                                                                  ) {
+      return evaluate(learners, supplier, parallelism, eval -> {
+      });
+   }
+
+   /**
+    * <p>Evaluates the set using an Evaluation produced by the given supplier. The splits are trained and evaluated
+    * concurrently on at most <code>parallelism</code> threads, each with its own learner and its own evaluation. The
+    * learners are requested from the learner supplier on the calling thread, one per split, and the evaluation of each
+    * split is merged on the calling thread in the order the splits were submitted, after which the given consumer is
+    * called with the merged (cumulative) evaluation.</p>
+    *
+    * @param <M>         the model type parameter
+    * @param <R>         the evaluation type parameter
+    * @param learners    supplies a new learner for each split
+    * @param supplier    supplies an evaluation metric.
+    * @param parallelism the maximum number of splits to train and evaluate at the same time
+    * @param onSplit     called with the cumulative evaluation after each split has been merged
+    * @return the result of evaluation
+    */
+   public <M extends Model, R extends Evaluation<T, M>> R evaluate(@NonNull Supplier<? extends Learner<T, M>> learners,
+                                                                   @NonNull Supplier<R> supplier,
+                                                                   int parallelism,
+                                                                   @NonNull Consumer<R> onSplit
+                                                                  ) {
+      Preconditions.checkArgument(parallelism > 0, "Parallelism must be > 0");
+      R eval = supplier.get();
+      ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, splits.size())));
+      try {
+         List<Future<R>> futures = new ArrayList<>(splits.size());
+         for (TrainTestSplit<T> split : splits) {
+            Learner<T, M> learner = learners.get();
+            futures.add(executor.submit(() -> split.evaluate(learner, supplier)));
+         }
+         for (Future<R> future : futures) {
+            eval.merge(future.get());
+            onSplit.accept(eval);
+         }
+      } catch (InterruptedException | ExecutionException e) {
+         throw Throwables.propagate(e);
+      } finally {
+         executor.shutdownNow();
+      }
+      return eval;
+   }
+
    /**
     * <p>Evaluates the set using an Evaluation produced by the given supplier. The process begins by resetting the
     * learner and the trains the learner using the training portion of the split. Once the model is built it is
-    * evaluated on the testing portion of the split.</p>
+    * evaluated on the testing portion of the split. As the learner is shared, the splits are evaluated sequentially,
+    * see {@link #evaluate(Supplier, Supplier, int)} to evaluate them concurrently.</p>
     *
     * @param <M>      the model type parameter
     * @param <R>      the evaluation type parameter
@@ -0,0 +1,20 @@
+package com.davidbracewell.apollo.ml;
+
+/**
+ * <p>Callback notified with the {@link TrainingMetrics} at the end of every training iteration. Listeners are called on
+ * the training thread, so they should return quickly and must not retain the metrics object, which is reused for the
+ * next iteration.</p>
+ *
+ * @author David B. Bracewell
+ */
+@FunctionalInterface
+public interface TrainingListener {
+
+   /**
+    * Called at the end of each training iteration.
+    *
+    * @param metrics the metrics for the iteration
+    */
+   void onIteration(TrainingMetrics metrics);
+
+}// END OF TrainingListener
@@ -0,0 +1,275 @@
+package com.davidbracewell.apollo.ml;
+
+import lombok.Getter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Runtime metrics for a single training iteration (epoch), passed to {@link TrainingListener}s. Records the number
+ * of examples processed, wall clock time, the time spent in each {@link Phase} of training, the bytes allocated during
+ * the iteration (when supported by the JVM) and the garbage collection time and count during the iteration. Phase
+ * times and example counts may be recorded concurrently by worker threads, in which case phase times are summed over
+ * the workers.</p>
+ *
+ * <p>Allocated bytes are measured per thread: the thread calling {@link #start(int)} and {@link #end(double)} is
+ * measured automatically, while worker threads report their own allocations using {@link #threadAllocatedBytes()} and
+ * {@link #recordAllocated(long)}, so that work done on threads that exit during the iteration is still counted.</p>
+ *
+ * <p>Metrics created as disabled (i.e. when there is no listener) record nothing: {@link #now()} returns
+ * <code>0</code> instead of reading the clock and all other methods return immediately, so that optimizers can
+ * unconditionally call them per batch.</p>
+ *
+ * @author David B. Bracewell
+ */
+public final class TrainingMetrics {
+   private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+   private final LongAdder examples = new LongAdder();
+   private final LongAdder workerAllocated = new LongAdder();
+   private final boolean enabled;
+   @Getter
+   private int iteration;
+   @Getter
+   private double loss;
+   @Getter
+   private long elapsedNanos;
+   @Getter
+   private long allocatedBytes;
+   @Getter
+   private long gcTimeMillis;
+   @Getter
+   private long gcCount;
+   private long startNanos;
+   private long startAllocated;
+   private long startGcTime;
+   private long startGcCount;
+
+   /**
+    * Instantiates new enabled Training metrics.
+    */
+   public TrainingMetrics() {
+      this(true);
+   }
+
+   /**
+    * Instantiates new Training metrics.
+    *
+    * @param enabled True if metrics should be recorded, False if all recording should be skipped
+    */
+   public TrainingMetrics(boolean enabled) {
+      this.enabled = enabled;
+      for (int i = 0; i < phaseNanos.length; i++) {
+         phaseNanos[i] = new LongAdder();
+      }
+   }
+
+   private static long currentThreadAllocatedBytes() {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+         com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+         if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+            return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Adds to the number of examples processed in the iteration.
+    *
+    * @param count the number of examples
+    */
+   public void addExamples(long count) {
+      if (enabled) {
+         examples.add(count);
+      }
+   }
+
+   /**
+    * Checks if the metrics are being recorded.
+    *
+    * @return True if enabled, False otherwise
+    */
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   /**
+    * Gets the current time for use as the start time of a phase (see {@link #record(Phase, long)}).
+    *
+    * @return the current time as given by {@link System#nanoTime()} or 0 when the metrics are disabled
+    */
+   public long now() {
+      return enabled ? System.nanoTime() : 0;
+   }
+
+   /**
+    * Records the bytes allocated by the current (worker) thread since the given value returned by {@link
+    * #threadAllocatedBytes()} on the same thread.
+    *
+    * @param startAllocated the bytes allocated by the current thread when the work started
+    */
+   public void recordAllocated(long startAllocated) {
+      if (enabled && startAllocated >= 0) {
+         long allocated = currentThreadAllocatedBytes();
+         if (allocated >= startAllocated) {
+            workerAllocated.add(allocated - startAllocated);
+         }
+      }
+   }
+
+   /**
+    * Gets the bytes allocated so far by the current thread, which worker threads pass to {@link #recordAllocated(long)}
+    * once their work is done.
+    *
+    * @return the bytes allocated by the current thread or -1 when disabled or not supported by the JVM
+    */
+   public long threadAllocatedBytes() {
+      return enabled ? currentThreadAllocatedBytes() : -1;
+   }
+
+   /**
+    * Ends the iteration.
+    *
+    * @param loss the loss (or other progress measure) of the iteration
+    */
+   public void end(double loss) {
+      if (!enabled) {
+         return;
+      }
+      this.loss = loss;
+      this.elapsedNanos = System.nanoTime() - startNanos;
+      long allocated = currentThreadAllocatedBytes();
+      this.allocatedBytes = allocated < 0 || startAllocated < 0
+                            ? -1
+                            : Math.max(0, allocated - startAllocated) + workerAllocated.sum();
+      long[] gc = gc();
+      this.gcTimeMillis = gc[0] - startGcTime;
+      this.gcCount = gc[1] - startGcCount;
+   }
+
+   private long[] gc() {
+      long[] gc = new long[2];
+      for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+         gc[0] += Math.max(0, bean.getCollectionTime());
+         gc[1] += Math.max(0, bean.getCollectionCount());
+      }
+      return gc;
+   }
+
+   /**
+    * Gets the number of examples processed in the iteration.
+    *
+    * @return the number of examples
+    */
+   public long getExamples() {
+      return examples.sum();
+   }
+
+   /**
+    * Gets the throughput of the iteration.
+    *
+    * @return the number of examples processed per second
+    */
+   public double getExamplesPerSecond() {
+      return elapsedNanos <= 0 ? 0 : getExamples() / (elapsedNanos / 1e9);
+   }
+
+   /**
+    * Gets the time spent in the given phase.
+    *
+    * @param phase the phase
+    * @return the time in nanoseconds
+    */
+   public long getPhaseNanos(Phase phase) {
+      return phaseNanos[phase.ordinal()].sum();
+   }
+
+   /**
+    * Records the time spent in the given phase since the given start time.
+    *
+    * @param phase     the phase
+    * @param startTime the start time of the phase as given by {@link #now()}
+    * @return the current time, which can be used as the start time of the next phase
+    */
+   public long record(Phase phase, long startTime) {
+      if (!enabled) {
+         return 0;
+      }
+      long now = System.nanoTime();
+      phaseNanos[phase.ordinal()].add(now - startTime);
+      return now;
+   }
+
+   /**
+    * Starts a new iteration, resetting all metrics.
+    *
+    * @param iteration the iteration
+    */
+   public void start(int iteration) {
+      if (!enabled) {
+         return;
+      }
+      this.iteration = iteration;
+      this.loss = 0;
+      this.elapsedNanos = 0;
+      this.allocatedBytes = 0;
+      this.gcTimeMillis = 0;
+      this.gcCount = 0;
+      for (LongAdder adder : phaseNanos) {
+         adder.reset();
+      }
+      examples.reset();
+      workerAllocated.reset();
+      long[] gc = gc();
+      this.startGcTime = gc[0];
+      this.startGcCount = gc[1];
+      this.startAllocated = currentThreadAllocatedBytes();
+      this.startNanos = System.nanoTime();
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder builder = new StringBuilder("TrainingMetrics{");
+      builder.append("iteration=").append(iteration + 1)
+             .append(", loss=").append(loss)
+             .append(", examples=").append(getExamples())
+             .append(String.format(", examplesPerSecond=%.1f", getExamplesPerSecond()));
+      for (Phase phase : Phase.values()) {
+         builder.append(", ").append(phase.name().toLowerCase()).append("Ms=")
+                .append(getPhaseNanos(phase) / 1_000_000);
+      }
+      return builder.append(", allocatedBytes=").append(allocatedBytes)
+                    .append(", gcTimeMs=").append(gcTimeMillis)
+                    .append(", gcCount=").append(gcCount)
+                    .append("}")
+                    .toString();
+   }
+
+   /**
+    * The phases of a training iteration. Learners whose cost function computes the forward pass and gradient together
+    * record the combined time as {@link #FORWARD}, and optimizers that fuse back propagation with the weight update
+    * record the combined time as {@link #BACKWARD}.
+    */
+   public enum Phase {
+      /**
+       * Assembling (or waiting on) batches of examples
+       */
+      BATCH,
+      /**
+       * Forward pass, i.e. making predictions and calculating the loss
+       */
+      FORWARD,
+      /**
+       * Backward pass, i.e. calculating gradients
+       */
+      BACKWARD,
+      /**
+       * Updating the model parameters
+       */
+      UPDATE
+   }
+
+}// END OF TrainingMetrics
@@ -2,16 +2,28 @@ package com.davidbracewell.apollo.ml.classification;
 
 import com.davidbracewell.apollo.ml.Instance;
 import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.DatasetType;
+import com.davidbracewell.apollo.ml.data.InMemoryDataset;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
 import com.davidbracewell.function.SerializableSupplier;
+import com.davidbracewell.guava.common.base.Throwables;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <p>Learner which takes random samples (with replacement) of the data to build a number of weaker models that each
- * vote in one ensemble model.</p>
+ * vote in one ensemble model. Samples are drawn as arrays of indices into the dataset, so that examples are shared
+ * rather than copied, and the bags are trained concurrently on at most <code>threads</code> threads.</p>
  *
  * @author David B. Bracewell
  */
@@ -25,6 +37,9 @@ public class BaggingLearner extends ClassifierLearner {
    @Getter
    @Setter
    private int bagSize;
+   @Getter
+   @Setter
+   private int threads = Runtime.getRuntime().availableProcessors();
 
    /**
     * Instantiates a new Bagging learner.
@@ -62,14 +77,50 @@ public class BaggingLearner extends ClassifierLearner {
       this.learnerSupplier = learnerSupplier;
    }
 
+   private static Dataset<Instance> inMemory(Dataset<Instance> dataset) {
+      if (dataset.getType() == DatasetType.InMemory) {
+         return dataset;
+      }
+      InMemoryDataset<Instance> copy = new InMemoryDataset<>(dataset.getFeatureEncoder().createNew(),
+                                                             dataset.getLabelEncoder().createNew(),
+                                                             new PreprocessorList<>(dataset.getPreprocessors()));
+      for (Instance instance : dataset) {
+         copy.add(instance);
+      }
+      return copy;
+   }
+
    @Override
    protected Classifier trainImpl(Dataset<Instance> dataset) {
       Ensemble model = new Ensemble(this);
-      dataset = dataset.shuffle();
-      model.models = new ArrayList<>(numberOfBags);
-      final int targetBagSize = (bagSize <= 0) ? dataset.size() : bagSize;
-      for (int i = 0; i < numberOfBags; i++) {
-         model.models.add(learnerSupplier.get().train(dataset.sample(true, targetBagSize)));
+      final int size = dataset.size();
+      final int targetBagSize = (bagSize <= 0) ? size : bagSize;
+      final long seed = new Random().nextLong();
+      //Selecting from a dataset that is not in memory collects it, so it is collected once rather than once per bag
+      final Dataset<Instance> data = inMemory(dataset);
+      ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, numberOfBags)));
+      try {
+         List<Future<Classifier>> futures = new ArrayList<>(numberOfBags);
+         for (int i = 0; i < numberOfBags; i++) {
+            final Random random = new Random(seed + i);
+            futures.add(executor.submit(() -> {
+               int[] indices = new int[targetBagSize];
+               for (int j = 0; j < indices.length; j++) {
+                  indices[j] = random.nextInt(size);
+               }
+               //Sorted indices keep the bag in dataset order for better memory locality
+               Arrays.sort(indices);
+               return learnerSupplier.get().train(data.select(indices));
+            }));
+         }
+         model.models = new ArrayList<>(numberOfBags);
+         for (Future<Classifier> future : futures) {
+            model.models.add(future.get());
+         }
+      } catch (InterruptedException | ExecutionException e) {
+         throw Throwables.propagate(e);
+      } finally {
+         executor.shutdownNow();
       }
       return model;
    }
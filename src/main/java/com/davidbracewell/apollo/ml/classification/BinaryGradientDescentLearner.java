@@ -2,6 +2,7 @@ package com.davidbracewell.apollo.ml.classification;
 
 import com.davidbracewell.apollo.linear.NDArrayFactory;
 import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.TrainingListener;
 import com.davidbracewell.apollo.ml.data.Dataset;
 import com.davidbracewell.apollo.ml.optimization.*;
 import com.davidbracewell.apollo.ml.optimization.activation.Activation;
@@ -32,6 +33,12 @@ public class BinaryGradientDescentLearner extends BinaryClassifierLearner implem
    private double tolerance = 1e-9;
    @Getter
    @Setter
+   private int threads = 1;
+   @Getter
+   @Setter
+   private boolean parameterServer = false;
+   @Getter
+   @Setter
    private int reportInterval = 10;
    @Getter
    @Setter
@@ -39,9 +46,28 @@ public class BinaryGradientDescentLearner extends BinaryClassifierLearner implem
    @Getter
    @Setter
    private Activation activation = new SignActivation();
+   /**
+    * The weight updater, where <code>null</code> uses a {@link SGDUpdater} or, when training with more than one thread,
+    * a {@link SparseSGDUpdater}.
+    */
+   @Getter
+   @Setter
+   private WeightUpdate weightUpdater = null;
+   @Getter
+   @Setter
+   private LBFGSOptimizer quasiNewtonOptimizer = null;
+   @Getter
+   @Setter
+   private TrainingListener trainingListener = null;
    @Getter
    @Setter
-   private WeightUpdate weightUpdater = SGDUpdater.builder().build();
+   private Dataset<Instance> validationSet = null;
+   @Getter
+   @Setter
+   private int validationInterval = 1;
+   @Getter
+   @Setter
+   private int patience = 5;
 
    @Override
    protected void resetLearnerParameters() {
@@ -75,14 +101,31 @@ public class BinaryGradientDescentLearner extends BinaryClassifierLearner implem
       }
    }
 
+   private WeightUpdate weightUpdater() {
+      if (weightUpdater != null) {
+         return weightUpdater;
+      }
+      //Parallel training only supports sparse updates
+      return threads > 1 ? SparseSGDUpdater.builder().momentum(0).build() : SGDUpdater.builder().build();
+   }
+
 
    public void setOptimizer(String optimizer) {
       switch (optimizer.toLowerCase()) {
          case "sgd":
-            this.weightUpdater = SGDUpdater.builder().build();
+            this.weightUpdater = null;
+            this.quasiNewtonOptimizer = null;
             break;
          case "adam":
             this.weightUpdater = AdamUpdater.builder().build();
+            this.quasiNewtonOptimizer = null;
+            break;
+         case "sparse_sgd":
+            this.weightUpdater = SparseSGDUpdater.builder().build();
+            this.quasiNewtonOptimizer = null;
+            break;
+         case "lbfgs":
+            this.quasiNewtonOptimizer = LBFGSOptimizer.builder().build();
             break;
          default:
             throw new IllegalArgumentException("Unknown optimizer " + optimizer);
@@ -95,15 +138,35 @@ public class BinaryGradientDescentLearner extends BinaryClassifierLearner implem
       model.weights = NDArrayFactory.DEFAULT().rand(1, model.numberOfFeatures());
       model.bias = NDArrayFactory.DEFAULT().scalar(0);
       model.activation = activation;
-      GradientDescentOptimizer optimizer = GradientDescentOptimizer.builder().batchSize(batchSize).build();
+      //Copy the quasi-Newton optimizer so that training does not modify the configured instance
+      Optimizer<LinearModelParameters> optimizer = quasiNewtonOptimizer != null
+                                                    ? quasiNewtonOptimizer.toBuilder()
+                                                                          .listener(trainingListener)
+                                                                          .build()
+                                                    : GradientDescentOptimizer.builder()
+                                                                              .batchSize(batchSize)
+                                                                              .threads(threads)
+                                                                              .parameterServer(parameterServer)
+                                                                              .listener(trainingListener)
+                                                                              .build();
+      GradientDescentCostFunction costFunction = new GradientDescentCostFunction(lossFunction, (int) trueLabel);
+      TerminationCriteria terminationCriteria = TerminationCriteria.create()
+                                                                   .maxIterations(maxIterations)
+                                                                   .historySize(3)
+                                                                   .tolerance(tolerance);
+      if (validationSet != null) {
+         terminationCriteria.earlyStopping(EarlyStopping.forLinearModel(encodeHeldOut(validationSet),
+                                                                        model.numberOfLabels(),
+                                                                        model.numberOfFeatures(),
+                                                                        costFunction)
+                                                        .interval(validationInterval)
+                                                        .patience(patience));
+      }
       optimizer.optimize(model,
                          dataset.vectorStream(true),
-                         new GradientDescentCostFunction(lossFunction, (int) trueLabel),
-                         TerminationCriteria.create()
-                                            .maxIterations(maxIterations)
-                                            .historySize(3)
-                                            .tolerance(tolerance),
-                         weightUpdater,
+                         costFunction,
+                         terminationCriteria,
+                         weightUpdater(),
                          reportInterval);
       return model;
    }
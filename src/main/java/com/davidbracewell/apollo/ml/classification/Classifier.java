@@ -28,15 +28,36 @@ import com.davidbracewell.apollo.ml.encoder.EncoderPair;
 import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
 import com.davidbracewell.collection.counter.Counter;
 import com.davidbracewell.collection.counter.MultiCounter;
+import com.davidbracewell.guava.common.collect.Iterators;
+import com.davidbracewell.guava.common.collect.Lists;
+import com.davidbracewell.stream.MStream;
+import com.davidbracewell.stream.StreamingContext;
 import lombok.Getter;
 import lombok.NonNull;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * Base class for classifiers that predicts the label, or class, for a set of features.
  *
  * @author David B. Bracewell
  */
 public abstract class Classifier implements Model {
+   /**
+    * The number of instances scored together by the batch classification methods.
+    */
+   public static final int CLASSIFICATION_BATCH_SIZE = 256;
+   /**
+    * The maximum number of values (features times vectors) of a batch scored as a single dense matrix.
+    */
+   protected static final int MAX_DENSE_BATCH_VALUES = 1 << 18;
    private static final long serialVersionUID = 1L;
    @Getter
    private final PreprocessorList<Instance> preprocessors;
@@ -62,6 +83,114 @@ public abstract class Classifier implements Model {
       return classify(preprocessors.apply(instance).toVector(encoderPair));
    }
 
+   /**
+    * Predicts the labels, or classes, of the given instances. Instances are preprocessed, encoded and scored in batches
+    * of {@link #CLASSIFICATION_BATCH_SIZE}.
+    *
+    * @param instances the instances whose class we want to predict
+    * @return the classification results in the same order as the instances
+    */
+   public List<Classification> classify(@NonNull List<Instance> instances) {
+      return classify(instances, false);
+   }
+
+   /**
+    * Predicts the labels, or classes, of the given instances. Instances are preprocessed, encoded and scored in batches
+    * of {@link #CLASSIFICATION_BATCH_SIZE}, with the batches optionally scored in parallel.
+    *
+    * @param instances the instances whose class we want to predict
+    * @param parallel  True if batches should be scored in parallel
+    * @return the classification results in the same order as the instances
+    */
+   public List<Classification> classify(@NonNull List<Instance> instances, boolean parallel) {
+      List<List<Instance>> batches = Lists.partition(instances, CLASSIFICATION_BATCH_SIZE);
+      Stream<List<Instance>> stream = parallel ? batches.parallelStream() : batches.stream();
+      return stream.flatMap(batch -> classifyBatch(batch).stream()).collect(Collectors.toList());
+   }
+
+   /**
+    * Predicts the labels, or classes, of the given stream of instances. The stream is lazily consumed in batches of
+    * {@link #CLASSIFICATION_BATCH_SIZE} instances which are scored together.
+    *
+    * @param instances the instances whose class we want to predict
+    * @return a local stream of classification results in the same order as the instances
+    */
+   public MStream<Classification> classify(@NonNull MStream<Instance> instances) {
+      Iterator<List<Instance>> batches = Iterators.partition(instances.iterator(), CLASSIFICATION_BATCH_SIZE);
+      return StreamingContext.local().stream(
+         StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false)
+                      .flatMap(batch -> classifyBatch(batch).stream()));
+   }
+
+   /**
+    * Predicts the labels, or classes, of a batch of instances by preprocessing and encoding them and scoring the
+    * vectors with {@link #classifyVectors(List)}.
+    *
+    * @param batch the batch of instances
+    * @return the classification results in the same order as the instances
+    */
+   protected List<Classification> classifyBatch(@NonNull List<Instance> batch) {
+      List<NDArray> vectors = new ArrayList<>(batch.size());
+      for (Instance instance : batch) {
+         vectors.add(preprocessors.apply(instance).toVector(encoderPair));
+      }
+      return classifyVectors(vectors);
+   }
+
+   /**
+    * Predicts the labels, or classes, of the given batch of vectors. Note, that all preprocessing must already be
+    * performed on the vectors. By default each vector is classified individually, models that can score a batch
+    * matrix at once should override this.
+    *
+    * @param vectors the vectors whose class we want to predict
+    * @return the classification results in the same order as the vectors
+    */
+   protected List<Classification> classifyVectors(@NonNull List<NDArray> vectors) {
+      List<Classification> results = new ArrayList<>(vectors.size());
+      for (NDArray vector : vectors) {
+         results.add(classify(vector));
+      }
+      return results;
+   }
+
+   /**
+    * Checks if the given batch of vectors is small enough to be scored as a single dense
+    * <code>numFeatures x numVectors</code> matrix, i.e. if it has at most {@link #MAX_DENSE_BATCH_VALUES} values.
+    * Larger batches, e.g. text with a large vocabulary, are cheaper to score a vector at a time over each vector's
+    * non-zero entries.
+    *
+    * @param vectors the batch of vectors
+    * @return True if the batch can be scored as a dense matrix, False if each vector should be scored individually
+    */
+   protected boolean isDenseBatch(@NonNull List<NDArray> vectors) {
+      return (long) numberOfFeatures() * vectors.size() <= MAX_DENSE_BATCH_VALUES;
+   }
+
+   /**
+    * Predicts the <code>k</code> best labels, or classes, of the given instance.
+    *
+    * @param instance the instance whose classes we want to predict
+    * @param k        the number of labels to return
+    * @return the top-k classification result
+    */
+   public TopKClassification topK(@NonNull Instance instance, int k) {
+      return topK(preprocessors.apply(instance).toVector(encoderPair), k);
+   }
+
+   /**
+    * Predicts the <code>k</code> best labels, or classes, of the given vector. Note, that all preprocessing must
+    * already be performed on the vector. By default the full distribution is calculated and the best labels selected
+    * from it with their confidences as scores, models that can avoid scoring every label should override this and
+    * mark raw scores as such (see {@link TopKClassification#isProbability()}).
+    *
+    * @param vector the vector whose classes we want to predict
+    * @param k      the number of labels to return
+    * @return the top-k classification result
+    */
+   public TopKClassification topK(@NonNull NDArray vector, int k) {
+      return TopKClassification.fromDistribution(classify(vector).distribution(), k, getLabelEncoder());
+   }
+
    /**
     * Predicts the label, or class, of the given vector. Note, that all preprocessing must already be performed on the
     * vector.
@@ -71,6 +200,24 @@ public abstract class Classifier implements Model {
     */
    public abstract Classification classify(NDArray vector);
 
+   /**
+    * Preprocesses and encodes an instance for updating the model, first adding its unknown features to the feature
+    * encoder while it holds fewer than <code>maxNumberOfFeatures</code> features.
+    *
+    * @param instance            the instance
+    * @param maxNumberOfFeatures the maximum number of features the encoder may grow to
+    * @return the encoded vector
+    */
+   protected NDArray encodeForUpdate(@NonNull Instance instance, int maxNumberOfFeatures) {
+      Instance processed = preprocessors.apply(instance);
+      if (maxNumberOfFeatures > encoderPair.numberOfFeatures()) {
+         for (int i = 0; i < processed.numberOfFeatures(); i++) {
+            encoderPair.getFeatureEncoder().grow(processed.getFeatureName(i), maxNumberOfFeatures);
+         }
+      }
+      return processed.toVector(encoderPair);
+   }
+
    /**
     * Convenience method for creating classification results.
     *
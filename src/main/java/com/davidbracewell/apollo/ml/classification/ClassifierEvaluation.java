@@ -30,10 +30,10 @@ import com.davidbracewell.collection.counter.HashMapMultiCounter;
 import com.davidbracewell.collection.counter.MultiCounter;
 import com.davidbracewell.conversion.Cast;
 import com.davidbracewell.guava.common.base.Preconditions;
+import com.davidbracewell.guava.common.collect.Lists;
 import com.davidbracewell.logging.Logger;
 import com.davidbracewell.string.StringUtils;
 import com.davidbracewell.string.TableFormatter;
-import com.davidbracewell.tuple.Tuple2;
 import lombok.NonNull;
 
 import java.io.PrintStream;
@@ -56,24 +56,53 @@ public class ClassifierEvaluation implements Evaluation<Instance, Classifier>, S
    private double total = 0;
 
    /**
-    * Cross validation classifier evaluation.
+    * Cross validation classifier evaluation, running the folds one at a time so that the learner supplier may return
+    * the same learner for every fold. See {@link #crossValidation(Dataset, Supplier, int, int)} to run the folds
+    * concurrently.
     *
     * @param dataset         the dataset
     * @param learnerSupplier the learner supplier
     * @param nFolds          the n folds
     * @return the classifier evaluation
     */
-   public static ClassifierEvaluation crossValidation(@NonNull Dataset<Instance> dataset, @NonNull Supplier<ClassifierLearner> learnerSupplier, int nFolds) {
-      ClassifierEvaluation evaluation = new ClassifierEvaluation();
+   public static ClassifierEvaluation crossValidation(@NonNull Dataset<Instance> dataset,
+                                                      @NonNull Supplier<ClassifierLearner> learnerSupplier,
+                                                      int nFolds
+                                                     ) {
+      return crossValidation(dataset, learnerSupplier, nFolds, 1);
+   }
+
+   /**
+    * Cross validation classifier evaluation, training and evaluating up to <code>parallelism</code> folds at the same
+    * time. Each fold uses its own learner from the supplier and its own evaluation, which are merged as the folds
+    * finish. When <code>parallelism</code> is greater than one the supplier must return a new learner on every call;
+    * an <code>IllegalStateException</code> is thrown if the same learner is returned for more than one fold.
+    *
+    * @param dataset         the dataset
+    * @param learnerSupplier the learner supplier
+    * @param nFolds          the n folds
+    * @param parallelism     the maximum number of folds to run concurrently
+    * @return the classifier evaluation
+    */
+   public static ClassifierEvaluation crossValidation(@NonNull Dataset<Instance> dataset,
+                                                      @NonNull Supplier<ClassifierLearner> learnerSupplier,
+                                                      int nFolds,
+                                                      int parallelism
+                                                     ) {
       AtomicInteger foldId = new AtomicInteger(0);
-      dataset.fold(nFolds).forEach((train, test) -> {
-         log.info("Running fold {0}", foldId.incrementAndGet());
-         Classifier model = learnerSupplier.get().train(train);
-         evaluation.evaluate(model, test);
-         log.info("Fold {0}: Cumulative Metrics(microP={1}, microR={2}, microF1={3})", foldId.get(),
-                  evaluation.microPrecision(),
-                  evaluation.microRecall(),
-                  evaluation.microF1());
+      Set<ClassifierLearner> learners = Collections.newSetFromMap(new IdentityHashMap<>());
+      ClassifierEvaluation evaluation = dataset.fold(nFolds).evaluate(() -> {
+         ClassifierLearner learner = learnerSupplier.get();
+         if (parallelism > 1 && !learners.add(learner)) {
+            throw new IllegalStateException("The learner supplier returned the same learner for more than one fold, "
+                                               + "which cannot be used with a parallelism greater than one");
+         }
+         return learner;
+      }, ClassifierEvaluation::new, parallelism, cumulative -> {
+         log.info("Fold {0}: Cumulative Metrics(microP={1}, microR={2}, microF1={3})", foldId.incrementAndGet(),
+                  cumulative.microPrecision(),
+                  cumulative.microRecall(),
+                  cumulative.microF1());
       });
       return evaluation;
    }
@@ -136,22 +165,57 @@ public class ClassifierEvaluation implements Evaluation<Instance, Classifier>, S
       total++;
    }
 
+   /**
+    * Evaluates the given model on the labeled instances of the given dataset. The dataset's stream is partitioned into
+    * batches of {@link Classifier#CLASSIFICATION_BATCH_SIZE} that are scored into partial evaluations inside the
+    * stream, in parallel for local streams and on the workers for distributed streams, and only the partial
+    * evaluations are merged into this one, so that the dataset does not need to fit in memory.
+    *
+    * @param model   the model to evaluate
+    * @param dataset the dataset to evaluate over
+    */
    @Override
    public void evaluate(@NonNull Classifier model, @NonNull Dataset<Instance> dataset) {
-      dataset.stream()
-             .filter(Instance::hasLabel)
-             .mapToPair(instance -> Tuple2.of(instance.getLabel().toString(), model.classify(instance).getResult()))
-             .forEachLocal(this::entry);
+      merge(dataset.stream()
+                   .filter(Instance::hasLabel)
+                   .partition(Classifier.CLASSIFICATION_BATCH_SIZE)
+                   .parallel()
+                   .map(batch -> evaluateBatch(model, Lists.newArrayList(batch)))
+                   .reduce((e1, e2) -> {
+                      e1.merge(e2);
+                      return e1;
+                   })
+                   .orElse(null));
    }
 
+   /**
+    * Evaluates the given model on the labeled instances of the given collection. The instances are classified in
+    * batches of {@link Classifier#CLASSIFICATION_BATCH_SIZE}, with the batches scored in parallel into partial
+    * evaluations that are merged into this one.
+    *
+    * @param model   the model to evaluate
+    * @param dataset the dataset to evaluate over
+    */
    @Override
    public void evaluate(@NonNull Classifier model, @NonNull Collection<Instance> dataset) {
-      dataset.forEach(instance ->
-                         entry(
-                            instance.getLabel().toString(),
-                            model.classify(instance).getResult()
-                              )
-                     );
+      List<Instance> instances = dataset.stream().filter(Instance::hasLabel).collect(Collectors.toList());
+      merge(Lists.partition(instances, Classifier.CLASSIFICATION_BATCH_SIZE)
+                 .parallelStream()
+                 .map(batch -> evaluateBatch(model, batch))
+                 .reduce((e1, e2) -> {
+                    e1.merge(e2);
+                    return e1;
+                 })
+                 .orElse(null));
+   }
+
+   private static ClassifierEvaluation evaluateBatch(Classifier model, List<Instance> batch) {
+      ClassifierEvaluation partial = new ClassifierEvaluation();
+      List<Classification> results = model.classify(batch);
+      for (int i = 0; i < batch.size(); i++) {
+         partial.entry(batch.get(i).getLabel().toString(), results.get(i).getResult());
+      }
+      return partial;
    }
 
    private double f1(double p, double r) {
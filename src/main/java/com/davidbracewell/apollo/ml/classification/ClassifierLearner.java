@@ -21,10 +21,16 @@
 
 package com.davidbracewell.apollo.ml.classification;
 
+import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.ml.Instance;
 import com.davidbracewell.apollo.ml.Learner;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.encoder.EncoderPair;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
 import com.davidbracewell.conversion.Cast;
+import lombok.NonNull;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -35,6 +41,40 @@ import java.util.Map;
 public abstract class ClassifierLearner extends Learner<Instance, Classifier> {
    private static final long serialVersionUID = 1L;
 
+   /**
+    * Encodes a held-out dataset, e.g. a validation set, into vectors using the preprocessors and encoders of the
+    * training data. Must be called during training. The held-out data only looks up the encoders, so that none of its
+    * features or labels become part of the model: unknown features are dropped and instances with an unknown (or no)
+    * label are skipped.
+    *
+    * @param dataset the held-out dataset
+    * @return the list of vectors
+    */
+   protected List<NDArray> encodeHeldOut(@NonNull Dataset<Instance> dataset) {
+      final PreprocessorList<Instance> preprocessors = getPreprocessors().getModelProcessors();
+      final EncoderPair encoderPair = getEncoderPair();
+      return dataset.stream()
+                    .flatMap(ii -> ii.asInstances().stream())
+                    .filter(ii -> hasKnownLabel(ii, encoderPair))
+                    .map(ii -> preprocessors.apply(ii).toLookupVector(encoderPair))
+                    .collect();
+   }
+
+   private static boolean hasKnownLabel(Instance instance, EncoderPair encoderPair) {
+      if (!instance.hasLabel()) {
+         return false;
+      }
+      if (instance.getLabel() instanceof Iterable) {
+         for (Object label : Cast.<Iterable<Object>>as(instance.getLabel())) {
+            if (encoderPair.getLabelEncoder().get(label) == -1) {
+               return false;
+            }
+         }
+         return true;
+      }
+      return encoderPair.getLabelEncoder().get(instance.getLabel()) != -1;
+   }
+
    @Override
    public ClassifierLearner setParameter(String name, Object value) {
       return Cast.as(super.setParameter(name, value));
@@ -0,0 +1,198 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.encoder.Encoder;
+import com.davidbracewell.apollo.ml.encoder.HashingEncoder;
+import com.davidbracewell.apollo.ml.optimization.activation.Activation;
+import com.davidbracewell.apollo.ml.optimization.activation.SoftmaxActivation;
+import com.davidbracewell.apollo.ml.preprocess.Preprocessor;
+import com.davidbracewell.apollo.ml.preprocess.transform.FeatureValueTransform;
+import com.davidbracewell.guava.common.base.Preconditions;
+import lombok.NonNull;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * <p>Inference-only form of a {@link LinearModel} created by {@link LinearModel#compile()}. The feature encoder and
+ * the model's preprocessors are fused into an open-addressing hash table from feature name to the feature's weight
+ * row and value function, so that scoring an instance is one hash probe and one row accumulation per feature into a
+ * thread-local buffer. No vectors, intermediate instances or {@link Classification} objects are created.</p>
+ *
+ * <p>Only models whose preprocessors are all {@link FeatureValueTransform}s and whose feature encoder can enumerate
+ * its features (i.e. not a {@link HashingEncoder}) can be compiled. Features of an instance are expected to be
+ * unique.</p>
+ *
+ * @author David B. Bracewell
+ */
+public final class CompiledLinearModel {
+   private final LinearModel model;
+   private final int numberOfRows;
+   private final int numberOfOutputs;
+   private final int mask;
+   private final String[] names;
+   private final double[] rows;
+   private final DoubleUnaryOperator[] valueFunctions;
+   private final double[] bias;
+   private final Activation activation;
+   private final ThreadLocal<double[]> buffer;
+
+   CompiledLinearModel(@NonNull LinearModel model) {
+      Encoder featureEncoder = model.getFeatureEncoder();
+      Preconditions.checkState(!(featureEncoder instanceof HashingEncoder),
+                               "Models using a hashing encoder cannot be compiled");
+      for (Preprocessor<Instance> preprocessor : model.getPreprocessors()) {
+         Preconditions.checkState(preprocessor instanceof FeatureValueTransform,
+                                  "Preprocessor cannot be compiled: " + preprocessor.describe());
+      }
+      this.model = model;
+      this.activation = model.getActivation();
+      //Binary models hold a single weight vector, which may be stored as either a row or a column
+      this.numberOfRows = model.isBinary() ? 1 : model.weights.numRows();
+      this.numberOfOutputs = model.isBinary() ? 2 : numberOfRows;
+      this.bias = model.isBinary() ? new double[]{model.bias.get(0)} : model.bias.toArray();
+
+      int numberOfFeatures = featureEncoder.size();
+      int capacity = Integer.highestOneBit(Math.max(2, numberOfFeatures * 2 - 1)) << 1;
+      this.mask = capacity - 1;
+      this.names = new String[capacity];
+      this.rows = new double[capacity * numberOfRows];
+      this.valueFunctions = new DoubleUnaryOperator[capacity];
+      for (int f = 0; f < numberOfFeatures; f++) {
+         String name = featureEncoder.decode(f).toString();
+         int slot = spread(name.hashCode()) & mask;
+         while (names[slot] != null) {
+            slot = (slot + 1) & mask;
+         }
+         names[slot] = name;
+         if (model.isBinary()) {
+            rows[slot] = model.weights.get(f);
+         } else {
+            for (int r = 0; r < numberOfRows; r++) {
+               rows[slot * numberOfRows + r] = model.weights.get(r, f);
+            }
+         }
+         DoubleUnaryOperator function = null;
+         for (Preprocessor<Instance> preprocessor : model.getPreprocessors()) {
+            DoubleUnaryOperator next = ((FeatureValueTransform) preprocessor).valueFunction(name);
+            if (next != null) {
+               function = function == null ? next : function.andThen(next);
+            }
+         }
+         valueFunctions[slot] = function;
+      }
+      this.buffer = ThreadLocal.withInitial(() -> new double[numberOfOutputs]);
+   }
+
+   private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+   }
+
+   private int slot(String name) {
+      int slot = spread(name.hashCode()) & mask;
+      while (names[slot] != null) {
+         if (names[slot].equals(name)) {
+            return slot;
+         }
+         slot = (slot + 1) & mask;
+      }
+      return -1;
+   }
+
+   /**
+    * Gets the model that was compiled.
+    *
+    * @return the linear model
+    */
+   public LinearModel getModel() {
+      return model;
+   }
+
+   /**
+    * Gets the label for the given output index.
+    *
+    * @param index the output index
+    * @return the label
+    */
+   public String getLabel(int index) {
+      return model.getLabelEncoder().decode(index).toString();
+   }
+
+   /**
+    * Predicts the index of the best label for the given (unprocessed) instance.
+    *
+    * @param instance the instance
+    * @return the index of the best label
+    */
+   public int predict(@NonNull Instance instance) {
+      double[] scores = score(instance);
+      int best = 0;
+      for (int i = 1; i < scores.length; i++) {
+         if (scores[i] > scores[best]) {
+            best = i;
+         }
+      }
+      return best;
+   }
+
+   /**
+    * Predicts the best label for the given (unprocessed) instance.
+    *
+    * @param instance the instance
+    * @return the best label
+    */
+   public String predictLabel(@NonNull Instance instance) {
+      return getLabel(predict(instance));
+   }
+
+   /**
+    * Scores the given (unprocessed) instance, producing the same distribution as {@link
+    * LinearModel#classify(Instance)}. The returned array is a thread-local buffer that is overwritten by the next call
+    * on the same thread, so it must be copied if it is to be kept.
+    *
+    * @param instance the instance
+    * @return the distribution over labels
+    */
+   public double[] score(@NonNull Instance instance) {
+      final double[] scores = buffer.get();
+      System.arraycopy(bias, 0, scores, 0, numberOfRows);
+      for (int i = 0; i < instance.numberOfFeatures(); i++) {
+         int slot = slot(instance.getFeatureName(i));
+         if (slot < 0) {
+            continue;
+         }
+         double value = instance.getFeatureValue(i);
+         if (valueFunctions[slot] != null) {
+            value = valueFunctions[slot].applyAsDouble(value);
+         }
+         final int offset = slot * numberOfRows;
+         for (int r = 0; r < numberOfRows; r++) {
+            scores[r] += rows[offset + r] * value;
+         }
+      }
+
+      if (model.isBinary()) {
+         scores[1] = activation.apply(scores[0]);
+         scores[0] = activation.isProbabilistic() ? 1d - scores[1] : -scores[1];
+      } else if (activation instanceof SoftmaxActivation) {
+         double max = Double.NEGATIVE_INFINITY;
+         for (int r = 0; r < numberOfRows; r++) {
+            max = Math.max(max, scores[r]);
+         }
+         double sum = 0;
+         for (int r = 0; r < numberOfRows; r++) {
+            scores[r] = FastMath.exp(scores[r] - max);
+            sum += scores[r];
+         }
+         for (int r = 0; r < numberOfRows; r++) {
+            scores[r] /= sum;
+         }
+      } else {
+         for (int r = 0; r < numberOfRows; r++) {
+            scores[r] = activation.apply(scores[r]);
+         }
+      }
+      return scores;
+   }
+
+}// END OF CompiledLinearModel
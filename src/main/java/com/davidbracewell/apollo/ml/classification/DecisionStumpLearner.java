@@ -21,20 +21,30 @@
 
 package com.davidbracewell.apollo.ml.classification;
 
+import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.ml.Instance;
 import com.davidbracewell.apollo.ml.data.Dataset;
-import com.davidbracewell.apollo.stat.measure.ContingencyTable;
+import com.davidbracewell.apollo.ml.tree.HistogramMatrix;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * <p>Learner for decision stumps, or Zero-1 Rules. Acts as weak learner for ensemble techniques like {@link
- * BaggingLearner}</p>
+ * BaggingLearner}. Feature values are discretized into at most <code>maxBins</code> bins using a {@link
+ * HistogramMatrix}, so that the best split for each feature is found from per-bin label counts. Features are searched
+ * in parallel.</p>
  *
  * @author David B. Bracewell
  */
 public class DecisionStumpLearner extends ClassifierLearner {
    private static final long serialVersionUID = 1L;
+   @Getter
+   @Setter
+   private int maxBins = 255;
 
    @Override
    public void resetLearnerParameters() {
@@ -44,66 +54,99 @@ public class DecisionStumpLearner extends ClassifierLearner {
    @Override
    protected Classifier trainImpl(Dataset<Instance> dataset) {
       DecisionStump stump = new DecisionStump(this);
+      final int numberOfLabels = stump.numberOfLabels();
 
-      int bestIndex = -1;
-      double bestSplit = 0;
-      double bestScore = Double.POSITIVE_INFINITY;
-      double[] bestLowerDistribution = new double[stump.numberOfLabels()];
-      double[] bestUpperDistribution = new double[stump.numberOfLabels()];
-      double[] totalLabelCounts = new double[stump.numberOfLabels()];
-
-      for (Instance instance : dataset) {
-         totalLabelCounts[(int) stump.encodeLabel(instance.getLabel())]++;
+      List<NDArray> vectors = dataset.asVectors().collect();
+      final int[] labels = new int[vectors.size()];
+      final double[] totalLabelCounts = new double[numberOfLabels];
+      for (int i = 0; i < labels.length; i++) {
+         labels[i] = (int) vectors.get(i).getLabelAsDouble();
+         totalLabelCounts[labels[i]]++;
       }
+      final HistogramMatrix matrix = new HistogramMatrix(vectors, stump.numberOfFeatures(), maxBins);
 
+      Split best = IntStream.range(0, stump.numberOfFeatures())
+                            .parallel()
+                            .mapToObj(feature -> bestSplit(matrix, feature, labels, totalLabelCounts))
+                            .filter(split -> split != null)
+                            .min(Comparator.comparingDouble((Split split) -> split.score)
+                                           .thenComparingInt(split -> split.feature))
+                            .orElse(null);
 
-      for (int featureID = 0; featureID < stump.numberOfFeatures(); featureID++) {
-         ContingencyTable counts = new ContingencyTable(2, stump.numberOfLabels());
-         for (int i = 0; i < totalLabelCounts.length; i++) {
-            counts.set(1, i, totalLabelCounts[i]);
-         }
-         final String featureName = stump.decodeFeature(featureID).toString();
-         List<Instance> sorted = dataset.stream()
-                                        .sorted(true, ii -> ii.getValue(featureName))
-                                        .collect();
-         for (int iid = 0; iid < sorted.size() - 1; iid++) {
-            Instance current = sorted.get(iid);
-            int currentLabel = (int) stump.encodeLabel(current.getLabel());
-            double currentFeatureValue = current.getValue(featureName);
-            counts.set(0, currentLabel, counts.get(0, currentLabel) + 1);
-            counts.set(1, currentLabel, counts.get(1, currentLabel) - 1);
-            Instance next = sorted.get(iid + 1);
-
-            if (bestIndex == -1) {
-               bestIndex = featureID;
-               bestSplit = currentFeatureValue;
-               for (int i = 0; i < stump.numberOfLabels(); i++) {
-                  bestLowerDistribution[i] = counts.get(0, i);
-                  bestUpperDistribution[i] = counts.get(1, i);
-               }
-            }
+      if (best == null) {
+         //No feature has more than one distinct value, so everything falls on the lower side
+         stump.featureId = 0;
+         stump.featureValue = Double.POSITIVE_INFINITY;
+         stump.lowerDecision = totalLabelCounts;
+         stump.upperDecision = new double[numberOfLabels];
+      } else {
+         stump.featureId = best.feature;
+         stump.featureValue = matrix.threshold(best.feature, best.bin);
+         stump.lowerDecision = best.lower;
+         stump.upperDecision = best.upper;
+      }
+      return stump;
+   }
 
-            if (currentFeatureValue < next.getValue(featureName)) {
-               double score = -Math.log(counts.rowSum(0)) - Math.log(counts.rowSum(1));
-               score = (score + Math.log(counts.getSum())) / (counts.getSum() + 2);
-               if (score < bestScore) {
-                  bestIndex = featureID;
-                  bestSplit = currentFeatureValue;
-                  bestScore = score;
-                  for (int i = 0; i < stump.numberOfLabels(); i++) {
-                     bestLowerDistribution[i] = counts.get(0, i);
-                     bestUpperDistribution[i] = counts.get(1, i);
-                  }
-               }
+   private Split bestSplit(HistogramMatrix matrix, int feature, int[] labels, double[] totalLabelCounts) {
+      int numberOfBins = matrix.numberOfBins(feature);
+      if (numberOfBins < 2) {
+         return null;
+      }
+      int numberOfLabels = totalLabelCounts.length;
+      double[][] histogram = new double[numberOfBins][numberOfLabels];
+      //Count the non-zero values, the rows whose value is zero fall in the zero bin
+      int[] rows = matrix.nonZeroRows(feature);
+      short[] bins = matrix.nonZeroBins(feature);
+      double[] zeroCounts = totalLabelCounts.clone();
+      for (int i = 0; i < rows.length; i++) {
+         histogram[bins[i]][labels[rows[i]]]++;
+         zeroCounts[labels[rows[i]]]--;
+      }
+      double[] zeroBin = histogram[matrix.zeroBin(feature)];
+      for (int i = 0; i < numberOfLabels; i++) {
+         zeroBin[i] += zeroCounts[i];
+      }
 
+      double total = labels.length;
+      double[] lower = new double[numberOfLabels];
+      double lowerSum = 0;
+      Split best = null;
+      for (int bin = 0; bin < numberOfBins - 1; bin++) {
+         for (int i = 0; i < numberOfLabels; i++) {
+            lower[i] += histogram[bin][i];
+            lowerSum += histogram[bin][i];
+         }
+         if (lowerSum == 0 || lowerSum == total) {
+            continue;
+         }
+         double score = -Math.log(lowerSum) - Math.log(total - lowerSum);
+         score = (score + Math.log(total)) / (total + 2);
+         if (best == null || score < best.score) {
+            double[] upper = new double[numberOfLabels];
+            for (int i = 0; i < numberOfLabels; i++) {
+               upper[i] = totalLabelCounts[i] - lower[i];
             }
+            best = new Split(feature, bin, score, lower.clone(), upper);
          }
       }
+      return best;
+   }
 
-      stump.featureId = bestIndex;
-      stump.featureValue = bestSplit;
-      stump.lowerDecision = bestLowerDistribution;
-      stump.upperDecision = bestUpperDistribution;
-      return stump;
+   private static class Split {
+      final int feature;
+      final int bin;
+      final double score;
+      final double[] lower;
+      final double[] upper;
+
+      Split(int feature, int bin, double score, double[] lower, double[] upper) {
+         this.feature = feature;
+         this.bin = bin;
+         this.score = score;
+         this.lower = lower;
+         this.upper = upper;
+      }
    }
+
 }//END OF DecisionStumpLearner
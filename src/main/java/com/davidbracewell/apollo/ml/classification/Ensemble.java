@@ -6,14 +6,22 @@ import com.davidbracewell.collection.counter.Counter;
 import com.davidbracewell.collection.counter.Counters;
 import lombok.NonNull;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * A classifier made up of multiple "weak" classifiers that are combined using a majority vote strategy.
+ * A classifier made up of multiple "weak" classifiers that are combined using a majority vote strategy. Ensembles with
+ * at least {@link #PARALLEL_THRESHOLD} members evaluate the members in parallel.
  *
  * @author David B. Bracewell
  */
 public class Ensemble extends Classifier {
+   /**
+    * The minimum number of members for which the members are evaluated in parallel
+    */
+   public static final int PARALLEL_THRESHOLD = 16;
    private static final long serialVersionUID = 1L;
    List<Classifier> models;
 
@@ -25,13 +33,43 @@ public class Ensemble extends Classifier {
    @Override
    public Classification classify(@NonNull Instance instance) {
       Counter<String> results = Counters.newCounter();
-      for (Classifier model : models) {
-         results.increment(model.classify(instance).getResult());
-      }
+      List<String> votes = members().map(model -> model.classify(instance).getResult())
+                                    .collect(Collectors.toList());
+      votes.forEach(results::increment);
       results.divideBySum();
       return createResult(results);
    }
 
+   @Override
+   protected List<Classification> classifyBatch(@NonNull List<Instance> batch) {
+      List<Counter<String>> votes = new ArrayList<>(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+         votes.add(Counters.newCounter());
+      }
+      List<List<Classification>> memberPredictions = members().map(model -> model.classify(batch))
+                                                              .collect(Collectors.toList());
+      for (List<Classification> predictions : memberPredictions) {
+         for (int i = 0; i < predictions.size(); i++) {
+            votes.get(i).increment(predictions.get(i).getResult());
+         }
+      }
+      List<Classification> results = new ArrayList<>(batch.size());
+      for (Counter<String> vote : votes) {
+         vote.divideBySum();
+         results.add(createResult(vote));
+      }
+      return results;
+   }
+
+   @Override
+   public TopKClassification topK(@NonNull Instance instance, int k) {
+      return TopKClassification.fromDistribution(classify(instance).distribution(), k, getLabelEncoder());
+   }
+
+   private Stream<Classifier> members() {
+      return models.size() >= PARALLEL_THRESHOLD ? models.parallelStream() : models.stream();
+   }
+
    @Override
    public Classification classify(NDArray vector) {
       throw new IllegalAccessError();
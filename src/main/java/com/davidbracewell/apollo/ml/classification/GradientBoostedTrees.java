@@ -0,0 +1,96 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.tree.RegressionTree;
+import com.davidbracewell.collection.counter.HashMapMultiCounter;
+import com.davidbracewell.collection.counter.MultiCounter;
+import lombok.NonNull;
+
+/**
+ * <p>Gradient boosted trees classifier. Binary problems use a single logistic output and multi-class problems use one
+ * output per label combined with a softmax. The score of each output is the sum of a base score and the values
+ * predicted by the output's {@link RegressionTree} from each boosting round.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class GradientBoostedTrees extends Classifier {
+   private static final long serialVersionUID = 1L;
+   /**
+    * The base score of each output
+    */
+   double[] baseScore;
+   /**
+    * The trees indexed by boosting round and output
+    */
+   RegressionTree[][] trees;
+
+   protected GradientBoostedTrees(ClassifierLearner learner) {
+      super(learner);
+   }
+
+   /**
+    * Converts raw output scores into a distribution over the labels.
+    *
+    * @param scores the raw scores (one per output)
+    * @return the distribution
+    */
+   static double[] distribution(double[] scores) {
+      if (scores.length == 1) {
+         double p = 1.0 / (1.0 + Math.exp(-scores[0]));
+         return new double[]{1.0 - p, p};
+      }
+      double max = Double.NEGATIVE_INFINITY;
+      for (double score : scores) {
+         max = Math.max(max, score);
+      }
+      double[] distribution = new double[scores.length];
+      double sum = 0;
+      for (int k = 0; k < scores.length; k++) {
+         distribution[k] = Math.exp(scores[k] - max);
+         sum += distribution[k];
+      }
+      for (int k = 0; k < scores.length; k++) {
+         distribution[k] /= sum;
+      }
+      return distribution;
+   }
+
+   @Override
+   public Classification classify(@NonNull NDArray vector) {
+      double[] scores = baseScore.clone();
+      for (RegressionTree[] round : trees) {
+         for (int k = 0; k < round.length; k++) {
+            scores[k] += round[k].predict(vector);
+         }
+      }
+      return createResult(distribution(scores));
+   }
+
+   @Override
+   public MultiCounter<String, String> getModelParameters() {
+      MultiCounter<String, String> weights = new HashMapMultiCounter<>();
+      for (int k = 0; k < baseScore.length; k++) {
+         double[] importance = new double[numberOfFeatures()];
+         for (RegressionTree[] round : trees) {
+            round[k].featureImportance(importance);
+         }
+         String label = baseScore.length == 1 ? "*" : getLabelEncoder().decode(k).toString();
+         for (int f = 0; f < importance.length; f++) {
+            if (importance[f] > 0) {
+               weights.set(decodeFeature(f).toString(), label, importance[f]);
+            }
+         }
+      }
+      return weights;
+   }
+
+   /**
+    * Gets the number of boosting rounds in the model.
+    *
+    * @return the number of rounds
+    */
+   public int numberOfRounds() {
+      return trees.length;
+   }
+
+}// END OF GradientBoostedTrees
@@ -0,0 +1,114 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.tree.HistogramMatrix;
+import com.davidbracewell.apollo.ml.tree.RegressionTree;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Learner for {@link GradientBoostedTrees} minimizing the log loss (binary) or cross-entropy (multi-class). The
+ * training data is binned once into a {@link HistogramMatrix}, after which each boosting round fits one {@link
+ * RegressionTree} per output to the gradients and hessians of the loss. The trees of the outputs of a round are built
+ * in parallel, as are the split searches over the features of each node.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class GradientBoostedTreesLearner extends ClassifierLearner {
+   private static final long serialVersionUID = 1L;
+   @Getter
+   @Setter
+   private int numberOfTrees = 100;
+   @Getter
+   @Setter
+   private double learningRate = 0.1;
+   @Getter
+   @Setter
+   private int maxDepth = 6;
+   @Getter
+   @Setter
+   private double minChildWeight = 1;
+   @Getter
+   @Setter
+   private double lambda = 1;
+   @Getter
+   @Setter
+   private int maxBins = 255;
+
+   @Override
+   public void resetLearnerParameters() {
+
+   }
+
+   @Override
+   protected Classifier trainImpl(Dataset<Instance> dataset) {
+      GradientBoostedTrees model = new GradientBoostedTrees(this);
+      final int numberOfOutputs = model.numberOfLabels() <= 2 ? 1 : model.numberOfLabels();
+
+      List<NDArray> vectors = dataset.asVectors().collect();
+      final int N = vectors.size();
+      final int[] labels = new int[N];
+      final double[] labelCounts = new double[Math.max(2, model.numberOfLabels())];
+      for (int i = 0; i < N; i++) {
+         labels[i] = (int) vectors.get(i).getLabelAsDouble();
+         labelCounts[labels[i]]++;
+      }
+      final HistogramMatrix matrix = new HistogramMatrix(vectors, model.numberOfFeatures(), maxBins);
+
+      model.baseScore = new double[numberOfOutputs];
+      if (numberOfOutputs == 1) {
+         double p = Math.min(Math.max(labelCounts[1] / N, 1e-6), 1 - 1e-6);
+         model.baseScore[0] = Math.log(p / (1 - p));
+      } else {
+         for (int k = 0; k < numberOfOutputs; k++) {
+            model.baseScore[k] = Math.log(Math.max(labelCounts[k] / N, 1e-6));
+         }
+      }
+
+      final double[][] scores = new double[numberOfOutputs][N];
+      final double[][] gradients = new double[numberOfOutputs][N];
+      final double[][] hessians = new double[numberOfOutputs][N];
+      for (int k = 0; k < numberOfOutputs; k++) {
+         for (int i = 0; i < N; i++) {
+            scores[k][i] = model.baseScore[k];
+         }
+      }
+
+      model.trees = new RegressionTree[numberOfTrees][];
+      double[] rowScores = new double[numberOfOutputs];
+      for (int round = 0; round < numberOfTrees; round++) {
+         for (int i = 0; i < N; i++) {
+            for (int k = 0; k < numberOfOutputs; k++) {
+               rowScores[k] = scores[k][i];
+            }
+            double[] p = GradientBoostedTrees.distribution(rowScores);
+            for (int k = 0; k < numberOfOutputs; k++) {
+               //Binary problems have a single output for the probability of label 1
+               int label = numberOfOutputs == 1 ? 1 : k;
+               double pk = p[label];
+               gradients[k][i] = pk - (labels[i] == label ? 1 : 0);
+               hessians[k][i] = Math.max(pk * (1 - pk), 1e-16);
+            }
+         }
+         RegressionTree[] trees = IntStream.range(0, numberOfOutputs)
+                                           .parallel()
+                                           .mapToObj(k -> RegressionTree.fit(matrix, gradients[k], hessians[k],
+                                                                             maxDepth, minChildWeight, lambda,
+                                                                             learningRate))
+                                           .toArray(RegressionTree[]::new);
+         model.trees[round] = trees;
+         IntStream.range(0, numberOfOutputs).parallel().forEach(k -> {
+            for (int i = 0; i < N; i++) {
+               scores[k][i] += trees[k].predict(matrix, i);
+            }
+         });
+      }
+      return model;
+   }
+
+}// END OF GradientBoostedTreesLearner
@@ -21,19 +21,20 @@
 
 package com.davidbracewell.apollo.ml.classification;
 
-import com.davidbracewell.apollo.linear.NDArray;
-import com.davidbracewell.apollo.linear.NDArrayFactory;
 import com.davidbracewell.apollo.ml.Instance;
 import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.encoder.EncoderPair;
 import de.bwaldvogel.liblinear.*;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 
-import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
- * A learner that uses LibLinear to train a logistic regression or SVM model
+ * A learner that uses LibLinear to train a logistic regression or SVM model. The LibLinear problem is built directly
+ * from the encoded feature ids of the instances, converting the instances in parallel.
  *
  * @author David B. Bracewell
  */
@@ -71,21 +72,22 @@ public class LibLinearLearner extends ClassifierLearner {
    @Override
    protected LibLinearModel trainImpl(Dataset<Instance> dataset) {
       LibLinearModel model = new LibLinearModel(this);
+      final EncoderPair encoderPair = dataset.getEncoderPair();
+      final List<Instance> instances = dataset.stream().collect();
 
-      Problem problem = new Problem();
-      problem.l = dataset.size();
+      final Problem problem = new Problem();
+      problem.l = instances.size();
       problem.x = new Feature[problem.l][];
       problem.y = new double[problem.l];
       problem.bias = bias ? 0 : -1;
 
-      int biasIndex = (bias ? model.numberOfFeatures() + 1 : -1);
+      final int biasIndex = (bias ? model.numberOfFeatures() + 1 : -1);
 
-      int index = 0;
-      for (Iterator<Instance> iitr = dataset.iterator(); iitr.hasNext(); index++) {
-         NDArray vector = iitr.next().toVector(dataset.getEncoderPair(), NDArrayFactory.SPARSE_DOUBLE);
-         problem.x[index] = LibLinearModel.toFeature(vector, biasIndex);
-         problem.y[index] = vector.getLabel();
-      }
+      IntStream.range(0, problem.l).parallel().forEach(i -> {
+         Instance instance = instances.get(i);
+         problem.x[i] = LibLinearModel.toFeature(instance, encoderPair, biasIndex);
+         problem.y[i] = encoderPair.encodeLabel(instance.getLabel());
+      });
       problem.n = model.numberOfFeatures() + 1;
 
       if (verbose) {
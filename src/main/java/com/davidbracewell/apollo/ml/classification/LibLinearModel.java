@@ -22,17 +22,25 @@
 package com.davidbracewell.apollo.ml.classification;
 
 import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.encoder.EncoderPair;
+import com.davidbracewell.apollo.ml.encoder.HashingEncoder;
 import com.davidbracewell.collection.counter.HashMapMultiCounter;
 import com.davidbracewell.collection.counter.MultiCounter;
 import de.bwaldvogel.liblinear.Feature;
 import de.bwaldvogel.liblinear.FeatureNode;
 import de.bwaldvogel.liblinear.Linear;
 import de.bwaldvogel.liblinear.Model;
+import lombok.NonNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 /**
- * A model trained using LibLinear
+ * A model trained using LibLinear. Instances are converted straight from their encoded feature ids into LibLinear
+ * feature arrays, without building an intermediate sparse vector, and predictions reuse per-thread feature nodes.
  *
  * @author David B. Bracewell
  */
@@ -40,6 +48,7 @@ public class LibLinearModel extends Classifier {
    private static final long serialVersionUID = 1L;
    protected Model model;
    protected int biasIndex = 0;
+   private static final ThreadLocal<NodeBuffer> NODE_BUFFER = ThreadLocal.withInitial(NodeBuffer::new);
 
    protected LibLinearModel(ClassifierLearner learner) {
       super(learner);
@@ -54,26 +63,133 @@ public class LibLinearModel extends Classifier {
     * @return the feature node array
     */
    public static Feature[] toFeature(NDArray vector, int biasIndex) {
-      int size = vector.size() + (biasIndex > 0 ? 1 : 0);
-      final Feature[] feature = new Feature[size];
+      return toFeature(vector, biasIndex, null);
+   }
+
+   private static Feature[] toFeature(NDArray vector, int biasIndex, NodeBuffer buffer) {
+      int nonZero = 0;
+      for (Iterator<NDArray.Entry> itr = vector.sparseIterator(); itr.hasNext(); ) {
+         if (itr.next().getValue() != 0) {
+            nonZero++;
+         }
+      }
+      final Feature[] feature = new Feature[nonZero + (biasIndex > 0 ? 1 : 0)];
       int index = 0;
-      for (Iterator<NDArray.Entry> itr = vector.sparseOrderedIterator(); itr.hasNext(); index++) {
+      for (Iterator<NDArray.Entry> itr = vector.sparseOrderedIterator(); itr.hasNext(); ) {
          NDArray.Entry entry = itr.next();
-         feature[index] = new FeatureNode(entry.getIndex() + 1, entry.getValue());
+         if (entry.getValue() != 0) {
+            feature[index] = node(buffer, index, entry.getIndex() + 1, entry.getValue());
+            index++;
+         }
       }
       if (biasIndex > 0) {
-         feature[size - 1] = new FeatureNode(biasIndex, 1.0);
+         feature[index] = node(buffer, index, biasIndex, 1.0);
       }
       return feature;
    }
 
+   /**
+    * Converts an instance into an array of LibLinear feature nodes ordered by feature index, giving the same features
+    * as converting {@link Instance#toVector(EncoderPair)}. Feature ids are taken directly from the encoder, without
+    * building an intermediate sparse vector, keeping the last value of duplicate features. Hashing encoders may map a
+    * feature to several (signed) buckets, so for them the instance is hashed into a vector using
+    * {@link HashingEncoder#encodeInto(String[], double[], int, NDArray)}, which also records any collision statistics.
+    *
+    * @param instance    the instance to convert
+    * @param encoderPair the encoder pair used to encode the features
+    * @param biasIndex   the index of the bias variable (<0 for no bias)
+    * @return the feature node array
+    */
+   public static Feature[] toFeature(@NonNull Instance instance, @NonNull EncoderPair encoderPair, int biasIndex) {
+      return toFeature(instance, encoderPair, biasIndex, null);
+   }
+
+   private static Feature[] toFeature(Instance instance, EncoderPair encoderPair, int biasIndex, NodeBuffer buffer) {
+      if (encoderPair.getFeatureEncoder() instanceof HashingEncoder) {
+         return toFeature(instance.toVector(encoderPair), biasIndex, buffer);
+      }
+      //Sort the (feature id, position) pairs packed into longs to avoid boxing
+      long[] keys = new long[instance.numberOfFeatures()];
+      int n = 0;
+      for (int i = 0; i < instance.numberOfFeatures(); i++) {
+         int fi = (int) encoderPair.encodeFeature(instance.getFeatureName(i));
+         if (fi >= 0) {
+            keys[n++] = ((long) fi << 32) | i;
+         }
+      }
+      Arrays.sort(keys, 0, n);
+
+      int[] indices = new int[n];
+      double[] values = new double[n];
+      int size = 0;
+      for (int k = 0; k < n; k++) {
+         int fi = (int) (keys[k] >>> 32);
+         double value = instance.getFeatureValue((int) keys[k]);
+         if (size > 0 && indices[size - 1] == fi) {
+            values[size - 1] = value;
+         } else {
+            indices[size] = fi;
+            values[size] = value;
+            size++;
+         }
+      }
+
+      int nonZero = 0;
+      for (int k = 0; k < size; k++) {
+         if (values[k] != 0) {
+            nonZero++;
+         }
+      }
+      final Feature[] feature = new Feature[nonZero + (biasIndex > 0 ? 1 : 0)];
+      int index = 0;
+      for (int k = 0; k < size; k++) {
+         if (values[k] != 0) {
+            feature[index] = node(buffer, index, indices[k] + 1, values[k]);
+            index++;
+         }
+      }
+      if (biasIndex > 0) {
+         feature[index] = node(buffer, index, biasIndex, 1.0);
+      }
+      return feature;
+   }
+
+   private static Feature node(NodeBuffer buffer, int position, int index, double value) {
+      if (buffer == null) {
+         return new FeatureNode(index, value);
+      }
+      MutableFeature node = buffer.get(position);
+      node.index = index;
+      node.value = value;
+      return node;
+   }
+
+   @Override
+   public Classification classify(@NonNull Instance instance) {
+      return classify(toFeature(getPreprocessors().apply(instance), getEncoderPair(), biasIndex, NODE_BUFFER.get()));
+   }
+
+   @Override
+   protected List<Classification> classifyBatch(@NonNull List<Instance> batch) {
+      NodeBuffer buffer = NODE_BUFFER.get();
+      List<Classification> results = new ArrayList<>(batch.size());
+      for (Instance instance : batch) {
+         results.add(classify(toFeature(getPreprocessors().apply(instance), getEncoderPair(), biasIndex, buffer)));
+      }
+      return results;
+   }
+
    @Override
    public Classification classify(NDArray vector) {
+      return classify(toFeature(vector, biasIndex, NODE_BUFFER.get()));
+   }
+
+   private Classification classify(Feature[] features) {
       double[] p = new double[numberOfLabels()];
       if (model.isProbabilityModel()) {
-         Linear.predictProbability(model, toFeature(vector, biasIndex), p);
+         Linear.predictProbability(model, features, p);
       } else {
-         Linear.predictValues(model, toFeature(vector, biasIndex), p);
+         Linear.predictValues(model, features, p);
       }
 
       //re-arrange the probabilities to match the target feature
@@ -109,4 +225,45 @@ public class LibLinearModel extends Classifier {
       return weights;
    }
 
+   /**
+    * Feature node whose index can be changed so that nodes can be reused across predictions.
+    */
+   private static final class MutableFeature implements Feature {
+      int index;
+      double value;
+
+      @Override
+      public int getIndex() {
+         return index;
+      }
+
+      @Override
+      public double getValue() {
+         return value;
+      }
+
+      @Override
+      public void setValue(double value) {
+         this.value = value;
+      }
+   }
+
+   /**
+    * Per-thread pool of feature nodes that grows to the largest instance seen.
+    */
+   private static final class NodeBuffer {
+      private MutableFeature[] nodes = new MutableFeature[0];
+
+      MutableFeature get(int position) {
+         if (position >= nodes.length) {
+            int start = nodes.length;
+            nodes = Arrays.copyOf(nodes, Math.max(position + 1, nodes.length * 2));
+            for (int i = start; i < nodes.length; i++) {
+               nodes[i] = new MutableFeature();
+            }
+         }
+         return nodes[position];
+      }
+   }
+
 }//END OF LibLinearModel
@@ -1,18 +1,43 @@
 package com.davidbracewell.apollo.ml.classification;
 
+import com.davidbracewell.apollo.linear.Axis;
 import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.Instance;
 import com.davidbracewell.apollo.ml.optimization.LinearModelParameters;
 import com.davidbracewell.apollo.ml.optimization.activation.Activation;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 /**
+ * <p>A linear classifier with one weight vector per label (or a single weight vector for binary problems). The model
+ * can be updated online: models with a probabilistic activation take a stochastic gradient step on the log loss and
+ * other models take a perceptron step.</p>
+ *
+ * <p>When feature growth is enabled, the weight table grows geometrically (up to the maximum number of features) so
+ * that adding features one at a time does not copy the full table on every update. The table's width is therefore its
+ * capacity, while {@link #numberOfFeatures()} is its logical width; the columns past the logical width are always zero.
+ * {@link #getWeights()} returns the weights trimmed to the logical width.</p>
+ *
  * @author David B. Bracewell
  */
-public class LinearModel extends Classifier implements LinearModelParameters {
+public class LinearModel extends Classifier implements LinearModelParameters, OnlineClassifier {
    private static final long serialVersionUID = 1L;
    public NDArray weights; //num Classes x num Features
    public NDArray bias; //numClasses x 1
    public Activation activation;
    private final boolean isBinary;
+   private transient volatile TopKIndex topKIndex;
+   @Getter
+   @Setter
+   private double learningRate = 0.1;
+   @Getter
+   @Setter
+   private int maxNumberOfFeatures = 0;
 
    public LinearModel(ClassifierLearner learner) {
       super(learner);
@@ -30,6 +55,8 @@ public class LinearModel extends Classifier implements LinearModelParameters {
       this.bias = model.bias.copy();
       this.activation = model.activation;
       this.isBinary = model.isBinary;
+      this.learningRate = model.learningRate;
+      this.maxNumberOfFeatures = model.maxNumberOfFeatures;
    }
 
    @Override
@@ -37,7 +64,7 @@ public class LinearModel extends Classifier implements LinearModelParameters {
       //vector is numFeatures x 1
       if (isBinary()) {
          double[] dist = new double[2];
-         dist[1] = activation.apply(weights.dot(vector) + bias.scalarValue());
+         dist[1] = activation.apply(binaryScore(vector) + bias.scalarValue());
          if (activation.isProbabilistic()) {
             dist[0] = 1d - dist[1];
          } else {
@@ -45,7 +72,179 @@ public class LinearModel extends Classifier implements LinearModelParameters {
          }
          return createResult(dist);
       }
-      return createResult(activation.apply(weights.mmul(vector).addi(bias)).toArray());
+      return createResult(activation.apply(scores(vector).addi(bias)).toArray());
+   }
+
+   @Override
+   protected List<Classification> classifyVectors(List<NDArray> vectors) {
+      if (capacity() != numberOfFeatures() || !isDenseBatch(vectors)) {
+         return super.classifyVectors(vectors);
+      }
+      //scores is numClasses x numVectors
+      NDArray scores = weights.mmul(weights.getFactory().hstack(vectors)).addi(bias, Axis.COlUMN);
+      List<Classification> results = new ArrayList<>(vectors.size());
+      if (isBinary()) {
+         for (int c = 0; c < scores.numCols(); c++) {
+            double[] dist = new double[2];
+            dist[1] = activation.apply(scores.get(0, c));
+            dist[0] = activation.isProbabilistic() ? 1d - dist[1] : -dist[1];
+            results.add(createResult(dist));
+         }
+         return results;
+      }
+      scores = activation.apply(scores);
+      for (int c = 0; c < scores.numCols(); c++) {
+         results.add(createResult(scores.getVector(c, Axis.COlUMN).toArray()));
+      }
+      return results;
+   }
+
+   @Override
+   public TopKClassification topK(NDArray vector, int k) {
+      if (isBinary()) {
+         return super.topK(vector, k);
+      }
+      TopKIndex index = topKIndex;
+      if (index == null) {
+         index = new TopKIndex(this);
+         topKIndex = index;
+      }
+      return index.search(vector, k, getLabelEncoder());
+   }
+
+   /**
+    * Compiles the model into an allocation-free inference form that fuses the feature encoder and preprocessors into
+    * a table of per-feature weight rows.
+    *
+    * @return the compiled model
+    * @throws IllegalStateException if the model's preprocessors or feature encoder cannot be compiled
+    */
+   public CompiledLinearModel compile() {
+      trimWeights();
+      return new CompiledLinearModel(this);
+   }
+
+   @Override
+   public void update(@NonNull Instance instance) {
+      if (!instance.hasLabel()) {
+         return;
+      }
+      NDArray vector = encodeForUpdate(instance, maxNumberOfFeatures);
+      growWeights();
+      final int label = (int) vector.getLabelAsDouble();
+      if (label < 0) {
+         return;
+      }
+
+      if (isBinary()) {
+         double z = binaryScore(vector) + bias.scalarValue();
+         final double step;
+         if (activation.isProbabilistic()) {
+            step = learningRate * (label - activation.apply(z));
+         } else {
+            double target = label == 1 ? 1 : -1;
+            step = target * z > 0 ? 0 : learningRate * target;
+         }
+         if (step != 0) {
+            vector.forEachSparse(entry -> weights.increment(entry.getIndex(), step * entry.getValue()));
+            bias.increment(0, step);
+         }
+      } else {
+         double[] output = activation.apply(scores(vector).addi(bias)).toArray();
+         double[] steps = new double[output.length];
+         if (activation.isProbabilistic()) {
+            for (int l = 0; l < output.length; l++) {
+               steps[l] = learningRate * ((l == label ? 1 : 0) - output[l]);
+            }
+         } else {
+            int predicted = 0;
+            for (int l = 1; l < output.length; l++) {
+               if (output[l] > output[predicted]) {
+                  predicted = l;
+               }
+            }
+            if (predicted != label) {
+               steps[label] = learningRate;
+               steps[predicted] = -learningRate;
+            }
+         }
+         for (int l = 0; l < steps.length; l++) {
+            if (steps[l] != 0) {
+               final int row = l;
+               final double step = steps[l];
+               vector.forEachSparse(entry -> weights.increment(row, entry.getIndex(), step * entry.getValue()));
+               bias.increment(l, step);
+            }
+         }
+      }
+      topKIndex = null;
+   }
+
+   private double binaryScore(NDArray vector) {
+      if (weights.length() == vector.length()) {
+         return weights.dot(vector);
+      }
+      //The weights have spare capacity from feature growth
+      double score = 0;
+      for (Iterator<NDArray.Entry> itr = vector.sparseIterator(); itr.hasNext(); ) {
+         NDArray.Entry entry = itr.next();
+         score += weights.get(entry.getIndex()) * entry.getValue();
+      }
+      return score;
+   }
+
+   private NDArray scores(NDArray vector) {
+      if (weights.numCols() == vector.length()) {
+         return weights.mmul(vector);
+      }
+      //The weights have spare capacity from feature growth
+      NDArray scores = bias.getFactory().zeros(weights.numRows(), 1);
+      for (Iterator<NDArray.Entry> itr = vector.sparseIterator(); itr.hasNext(); ) {
+         NDArray.Entry entry = itr.next();
+         for (int r = 0; r < weights.numRows(); r++) {
+            scores.increment(r, 0, weights.get(r, entry.getIndex()) * entry.getValue());
+         }
+      }
+      return scores;
+   }
+
+   private boolean isColumn() {
+      //Binary models may store their weight vector as a column
+      return isBinary() && weights.numCols() == 1 && weights.numRows() > 1;
+   }
+
+   private int capacity() {
+      return isColumn() ? weights.numRows() : weights.numCols();
+   }
+
+   private void growWeights() {
+      final int numberOfFeatures = numberOfFeatures();
+      final int current = capacity();
+      if (current >= numberOfFeatures) {
+         return;
+      }
+      resizeWeights(Math.max(numberOfFeatures, Math.min(current * 2, maxNumberOfFeatures)));
+   }
+
+   private void trimWeights() {
+      if (capacity() != numberOfFeatures()) {
+         resizeWeights(numberOfFeatures());
+      }
+   }
+
+   private void resizeWeights(int width) {
+      final int numberOfFeatures = Math.min(width, numberOfFeatures());
+      final boolean column = isColumn();
+      NDArray resized = column
+                        ? weights.getFactory().zeros(width, 1)
+                        : weights.getFactory().zeros(weights.numRows(), width);
+      weights.forEachSparse(entry -> {
+         if ((column ? entry.getI() : entry.getJ()) < numberOfFeatures) {
+            resized.set(entry.getI(), entry.getJ(), entry.getValue());
+         }
+      });
+      weights = resized;
+      topKIndex = null;
    }
 
    @Override
@@ -65,6 +264,7 @@ public class LinearModel extends Classifier implements LinearModelParameters {
 
    @Override
    public NDArray getWeights() {
+      trimWeights();
       return weights;
    }
 
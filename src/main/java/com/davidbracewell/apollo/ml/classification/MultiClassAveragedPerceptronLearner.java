@@ -0,0 +1,277 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.optimization.activation.Activation;
+import com.davidbracewell.collection.Collect;
+import com.davidbracewell.guava.common.base.Throwables;
+import com.davidbracewell.logging.Logger;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Trains a multi-class Averaged Perceptron model directly, instead of one binary perceptron per label. The weights
+ * of all labels are kept in a single label-major table with the bias of each label stored after the feature weights.
+ * Averaging is done lazily: every weight records the time of its last update so that its running total only needs
+ * to be brought up to date when it changes. The examples are encoded once into compact sparse arrays and each epoch
+ * makes a single pass over them.</p>
+ *
+ * <p>When <code>threads</code> is greater than one, epochs are run using iterative parameter mixing: the shuffled
+ * examples are split into one shard per thread, each shard is trained for one epoch starting from the current
+ * weights, and the resulting weights are averaged to form the starting point of the next epoch.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class MultiClassAveragedPerceptronLearner extends ClassifierLearner {
+   private static final long serialVersionUID = 1L;
+   private static Logger log = Logger.getLogger(MultiClassAveragedPerceptronLearner.class);
+   @Getter
+   @Setter
+   private int maxIterations = 100;
+   @Getter
+   @Setter
+   private double learningRate = 1.0;
+   @Getter
+   @Setter
+   private double tolerance = 1e-9;
+   @Getter
+   @Setter
+   private int threads = 1;
+   @Getter
+   @Setter
+   private long seed = 0;
+   @Getter
+   @Setter
+   private boolean verbose = false;
+
+   /**
+    * Instantiates a new Multi-class averaged perceptron learner.
+    */
+   public MultiClassAveragedPerceptronLearner() {
+
+   }
+
+   /**
+    * Instantiates a new Multi-class averaged perceptron learner.
+    *
+    * @param maxIterations the maximum number of iterations (default 100)
+    * @param learningRate  the learning rate to control how fast weights are changed (default 1.0)
+    * @param tolerance     the error tolerance used to determine if the algorithm has converged (default 1e-9)
+    */
+   public MultiClassAveragedPerceptronLearner(int maxIterations, double learningRate, double tolerance) {
+      this.maxIterations = maxIterations;
+      this.learningRate = learningRate;
+      this.tolerance = tolerance;
+   }
+
+   @Override
+   protected void resetLearnerParameters() {
+
+   }
+
+   @Override
+   protected Classifier trainImpl(Dataset<Instance> dataset) {
+      LinearModel model = new LinearModel(this);
+      final int numberOfLabels = Math.max(2, model.numberOfLabels());
+      final int numberOfFeatures = model.numberOfFeatures();
+
+      List<SparseExample> examples = new ArrayList<>();
+      for (NDArray vector : dataset.asVectors().collect()) {
+         examples.add(new SparseExample(vector));
+      }
+      final int numberOfShards = Math.max(1, Math.min(threads, examples.size()));
+
+      double[] weights = new double[numberOfLabels * (numberOfFeatures + 1)];
+      double[] averaged = new double[weights.length];
+      Random random = new Random(seed);
+      ExecutorService executor = numberOfShards > 1 ? Executors.newFixedThreadPool(numberOfShards) : null;
+      try {
+         double oldError = 0;
+         double oldOldError = 0;
+         int epochs = 0;
+         for (int iteration = 0; iteration < maxIterations; iteration++) {
+            Collections.shuffle(examples, random);
+            List<Shard> shards = new ArrayList<>(numberOfShards);
+            for (int s = 0; s < numberOfShards; s++) {
+               shards.add(new Shard(examples.subList(s * examples.size() / numberOfShards,
+                                                     (s + 1) * examples.size() / numberOfShards),
+                                    weights, numberOfLabels, numberOfFeatures));
+            }
+            if (executor == null) {
+               shards.get(0).call();
+            } else {
+               List<Future<Shard>> futures = new ArrayList<>(numberOfShards);
+               for (Shard shard : shards) {
+                  futures.add(executor.submit(shard));
+               }
+               for (Future<Shard> future : futures) {
+                  future.get();
+               }
+            }
+
+            //Mix the weights of the shards and accumulate the averaged weights of the epoch
+            double error = 0;
+            weights = new double[weights.length];
+            for (Shard shard : shards) {
+               error += shard.errors;
+               for (int i = 0; i < weights.length; i++) {
+                  weights[i] += shard.weights[i] / numberOfShards;
+                  averaged[i] += shard.averaged(i) / numberOfShards;
+               }
+            }
+            epochs++;
+
+            if (verbose) {
+               log.info("iteration={0} errorRate={1,number,0.00%}", iteration, (error / examples.size()));
+            }
+            if (error == 0) {
+               break;
+            }
+            error /= examples.size();
+            if (iteration > 2) {
+               if (Math.abs(error - oldError) < tolerance && Math.abs(error - oldOldError) < tolerance) {
+                  break;
+               }
+            }
+            oldOldError = oldError;
+            oldError = error;
+         }
+         for (int i = 0; i < averaged.length; i++) {
+            averaged[i] /= epochs;
+         }
+      } catch (InterruptedException | ExecutionException e) {
+         throw Throwables.propagate(e);
+      } finally {
+         if (executor != null) {
+            executor.shutdown();
+         }
+      }
+
+      final int biasOffset = numberOfLabels * numberOfFeatures;
+      model.activation = Activation.LINEAR;
+      if (model.isBinary()) {
+         //Binary models score with a single row, so collapse the two labels into their difference
+         model.weights = NDArrayFactory.DEFAULT().zeros(1, numberOfFeatures);
+         model.bias = NDArrayFactory.DEFAULT().zeros(1);
+         for (int f = 0; f < numberOfFeatures; f++) {
+            model.weights.set(0, f, averaged[numberOfFeatures + f] - averaged[f]);
+         }
+         model.bias.set(0, averaged[biasOffset + 1] - averaged[biasOffset]);
+      } else {
+         model.weights = NDArrayFactory.DEFAULT().zeros(numberOfLabels, numberOfFeatures);
+         model.bias = NDArrayFactory.DEFAULT().zeros(numberOfLabels);
+         for (int l = 0; l < numberOfLabels; l++) {
+            for (int f = 0; f < numberOfFeatures; f++) {
+               model.weights.set(l, f, averaged[l * numberOfFeatures + f]);
+            }
+            model.bias.set(l, averaged[biasOffset + l]);
+         }
+      }
+      return model;
+   }
+
+   private static class SparseExample {
+      final int label;
+      final int[] indices;
+      final double[] values;
+
+      SparseExample(NDArray vector) {
+         this.label = (int) vector.getLabelAsDouble();
+         int size = 0;
+         for (NDArray.Entry ignored : Collect.asIterable(vector.sparseIterator())) {
+            size++;
+         }
+         this.indices = new int[size];
+         this.values = new double[size];
+         int i = 0;
+         for (NDArray.Entry entry : Collect.asIterable(vector.sparseIterator())) {
+            indices[i] = entry.getIndex();
+            values[i] = entry.getValue();
+            i++;
+         }
+      }
+   }
+
+   private class Shard implements Callable<Shard> {
+      final List<SparseExample> examples;
+      final double[] weights;
+      final double[] totals;
+      final int[] stamps;
+      final int numberOfLabels;
+      final int numberOfFeatures;
+      int time = 0;
+      int errors = 0;
+
+      Shard(List<SparseExample> examples, double[] weights, int numberOfLabels, int numberOfFeatures) {
+         this.examples = examples;
+         this.weights = weights.clone();
+         this.totals = new double[weights.length];
+         this.stamps = new int[weights.length];
+         this.numberOfLabels = numberOfLabels;
+         this.numberOfFeatures = numberOfFeatures;
+      }
+
+      /**
+       * Gets the average of the given weight over the steps of the shard.
+       */
+      double averaged(int index) {
+         if (time == 0) {
+            return weights[index];
+         }
+         return (totals[index] + (time - stamps[index]) * weights[index]) / time;
+      }
+
+      @Override
+      public Shard call() {
+         final int biasOffset = numberOfLabels * numberOfFeatures;
+         for (SparseExample example : examples) {
+            time++;
+            int predicted = 0;
+            double best = Double.NEGATIVE_INFINITY;
+            for (int l = 0; l < numberOfLabels; l++) {
+               final int offset = l * numberOfFeatures;
+               double score = weights[biasOffset + l];
+               for (int j = 0; j < example.indices.length; j++) {
+                  score += weights[offset + example.indices[j]] * example.values[j];
+               }
+               if (score > best) {
+                  best = score;
+                  predicted = l;
+               }
+            }
+            if (predicted != example.label) {
+               errors++;
+               final int goldOffset = example.label * numberOfFeatures;
+               final int predictedOffset = predicted * numberOfFeatures;
+               for (int j = 0; j < example.indices.length; j++) {
+                  update(goldOffset + example.indices[j], learningRate * example.values[j]);
+                  update(predictedOffset + example.indices[j], -learningRate * example.values[j]);
+               }
+               update(biasOffset + example.label, learningRate);
+               update(biasOffset + predicted, -learningRate);
+            }
+         }
+         return this;
+      }
+
+      private void update(int index, double delta) {
+         //The weight held its current value from its last update until the step before this one
+         totals[index] += (time - 1 - stamps[index]) * weights[index];
+         stamps[index] = time - 1;
+         weights[index] += delta;
+      }
+   }
+
+}//END OF MultiClassAveragedPerceptronLearner
@@ -21,19 +21,32 @@
 
 package com.davidbracewell.apollo.ml.classification;
 
+import com.davidbracewell.apollo.linear.Axis;
 import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.linear.NDArrayFactory;
+import com.davidbracewell.apollo.ml.Instance;
 import com.davidbracewell.collection.counter.HashMapMultiCounter;
 import com.davidbracewell.collection.counter.MultiCounter;
+import com.davidbracewell.guava.common.base.Preconditions;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Naive Bayes model specifically designed for text classification problems
+ * Naive Bayes model specifically designed for text classification problems. The model keeps the counts it was estimated
+ * from, so that it can be updated incrementally with new instances.
  *
  * @author David B. Bracewell
  */
-public class NaiveBayes extends Classifier {
-   private static final long serialVersionUID = 1L;
+public class NaiveBayes extends Classifier implements OnlineClassifier {
+   /**
+    * Version 2 stores the conditionals as a flat label-major array (version 1 used a <code>double[][]</code>) and keeps
+    * the counts needed for updating, so models serialized with version 1 cannot be read and need to be retrained.
+    */
+   private static final long serialVersionUID = 2L;
    /**
     * The Model type.
     */
@@ -43,9 +56,33 @@ public class NaiveBayes extends Classifier {
     */
    protected double[] priors;
    /**
-    * The Conditionals.
+    * The log conditional probabilities stored label-major, i.e. the conditional of feature <code>f</code> for label
+    * <code>l</code> is at <code>l * numberOfFeatures() + f</code>.
+    */
+   protected double[] conditionals;
+   /**
+    * Bernoulli scoring tables (per label sum of absent-feature log probabilities and label-major present-minus-absent
+    * deltas) built lazily from the conditionals.
+    */
+   private transient volatile BernoulliTables bernoulliTables;
+   /**
+    * The weighted (converted) feature counts stored label-major like the conditionals, but with a row stride equal to
+    * the count capacity, which grows geometrically when features are added during updates and may exceed
+    * <code>numberOfFeatures()</code>.
+    */
+   private double[] featureCounts;
+   /**
+    * The total feature value per label.
     */
-   protected double[][] conditionals;
+   private double[] labelTotals;
+   /**
+    * The total instance weight per label.
+    */
+   private double[] priorCounts;
+   private double numberOfExamples;
+   @Getter
+   @Setter
+   private int maxNumberOfFeatures = 0;
 
    /**
     * Instantiates a new Naive bayes.
@@ -69,7 +106,200 @@ public class NaiveBayes extends Classifier {
 
    @Override
    public Classification classify(@NonNull NDArray instance) {
-      return createResult(modelType.distribution(instance, priors, conditionals));
+      return createResult(modelType.distribution(this, instance));
+   }
+
+   @Override
+   protected List<Classification> classifyVectors(@NonNull List<NDArray> vectors) {
+      if (!isDenseBatch(vectors)) {
+         return super.classifyVectors(vectors);
+      }
+      //scores is numVectors x numLabels
+      NDArray scores = modelType.scores(this, NDArrayFactory.DENSE_DOUBLE.hstack(vectors));
+      List<Classification> results = new ArrayList<>(vectors.size());
+      for (int r = 0; r < scores.numRows(); r++) {
+         double[] distribution = scores.getVector(r, Axis.ROW).toArray();
+         for (int i = 0; i < distribution.length; i++) {
+            distribution[i] = Math.exp(distribution[i]);
+         }
+         results.add(createResult(distribution));
+      }
+      return results;
+   }
+
+   /**
+    * Adds the given vector to the counts of the given label.
+    *
+    * @param vector     the vector
+    * @param labelIndex the label index
+    * @param weight     the weight of the instance
+    */
+   void accumulate(@NonNull NDArray vector, int labelIndex, double weight) {
+      final int stride = featureCounts.length / priorCounts.length;
+      numberOfExamples++;
+      priorCounts[labelIndex] += weight;
+      vector.forEachSparse(entry -> {
+         labelTotals[labelIndex] += entry.getValue();
+         featureCounts[labelIndex * stride + entry.getIndex()] += weight * modelType.convertValue(
+            entry.getValue());
+      });
+   }
+
+   /**
+    * Estimates the priors and conditionals from the counts.
+    */
+   void estimate() {
+      final int numberOfLabels = priorCounts.length;
+      final int stride = featureCounts.length / numberOfLabels;
+      final int numberOfFeatures = numberOfFeatures();
+      double V = numberOfFeatures;
+      double[] newConditionals = new double[numberOfLabels * numberOfFeatures];
+      double[] tmp = new double[numberOfLabels];
+      for (int featureIndex = 0; featureIndex < numberOfFeatures; featureIndex++) {
+         for (int labelIndex = 0; labelIndex < numberOfLabels; labelIndex++) {
+            tmp[labelIndex] = featureCounts[labelIndex * stride + featureIndex];
+         }
+         for (int labelIndex = 0; labelIndex < numberOfLabels; labelIndex++) {
+            int index = labelIndex * numberOfFeatures + featureIndex;
+            if (modelType == ModelType.Complementary) {
+               double nCi = 0;
+               double nC = 0;
+               for (int j = 0; j < numberOfLabels; j++) {
+                  if (j != labelIndex) {
+                     nCi += tmp[j];
+                     nC += labelTotals[j];
+                  }
+               }
+               newConditionals[index] = Math.log(modelType.normalize(nCi, priorCounts[labelIndex], nC, V));
+            } else {
+               newConditionals[index] = Math.log(modelType.normalize(tmp[labelIndex], priorCounts[labelIndex],
+                                                                     labelTotals[labelIndex], V));
+            }
+         }
+      }
+
+      this.conditionals = newConditionals;
+      this.priors = logPriors();
+      this.bernoulliTables = null;
+   }
+
+   /**
+    * Re-estimates the priors and the conditionals of the given label from the counts, which is all that changes when
+    * an instance of that label is added to the counts of a Bernoulli or Multinomial model without adding features.
+    * The Bernoulli tables, if built, are updated for the label rather than rebuilt.
+    *
+    * @param labelIndex the label index
+    */
+   private void estimateLabel(int labelIndex) {
+      final int stride = featureCounts.length / priorCounts.length;
+      final int numberOfFeatures = numberOfFeatures();
+      for (int f = 0, index = labelIndex * numberOfFeatures; f < numberOfFeatures; f++, index++) {
+         conditionals[index] = Math.log(modelType.normalize(featureCounts[labelIndex * stride + f],
+                                                            priorCounts[labelIndex],
+                                                            labelTotals[labelIndex],
+                                                            numberOfFeatures));
+      }
+      this.priors = logPriors();
+      BernoulliTables tables = bernoulliTables;
+      if (tables != null) {
+         tables.estimate(conditionals, labelIndex, numberOfFeatures);
+      }
+   }
+
+   private double[] logPriors() {
+      double[] logPriors = new double[priorCounts.length];
+      for (int i = 0; i < logPriors.length; i++) {
+         logPriors[i] = Math.log(priorCounts[i] / numberOfExamples);
+      }
+      return logPriors;
+   }
+
+   /**
+    * Creates empty counts sized to the current number of labels and features.
+    */
+   void initializeCounts() {
+      this.featureCounts = new double[numberOfLabels() * numberOfFeatures()];
+      this.labelTotals = new double[numberOfLabels()];
+      this.priorCounts = new double[numberOfLabels()];
+      this.numberOfExamples = 0;
+   }
+
+   @Override
+   public void partialFit(@NonNull Iterable<Instance> instances) {
+      Preconditions.checkState(featureCounts != null, "The model does not hold the counts needed for updating");
+      for (Instance instance : instances) {
+         if (instance.hasLabel()) {
+            NDArray vector = encodeForUpdate(instance, maxNumberOfFeatures);
+            growCounts();
+            int labelIndex = (int) vector.getLabelAsDouble();
+            if (labelIndex >= 0) {
+               accumulate(vector, labelIndex, instance.getWeight());
+            }
+         }
+      }
+      estimate();
+   }
+
+   /**
+    * Updates the model with the given instance. Only the priors and the conditionals of the instance's label are
+    * re-estimated, unless the update adds features or the model is Complementary (whose conditionals depend on the
+    * counts of every other label), in which case all conditionals are re-estimated. Use {@link #partialFit(Iterable)}
+    * to re-estimate once for a batch of instances.
+    *
+    * @param instance the labeled instance
+    */
+   @Override
+   public void update(@NonNull Instance instance) {
+      Preconditions.checkState(featureCounts != null, "The model does not hold the counts needed for updating");
+      if (!instance.hasLabel()) {
+         return;
+      }
+      final int numberOfFeatures = numberOfFeatures();
+      NDArray vector = encodeForUpdate(instance, maxNumberOfFeatures);
+      growCounts();
+      int labelIndex = (int) vector.getLabelAsDouble();
+      if (labelIndex >= 0) {
+         accumulate(vector, labelIndex, instance.getWeight());
+      }
+      if (numberOfFeatures() != numberOfFeatures || modelType == ModelType.Complementary) {
+         estimate();
+      } else if (labelIndex >= 0) {
+         estimateLabel(labelIndex);
+      }
+   }
+
+   private void growCounts() {
+      final int numberOfLabels = priorCounts.length;
+      final int capacity = featureCounts.length / numberOfLabels;
+      final int numberOfFeatures = numberOfFeatures();
+      if (numberOfFeatures > capacity) {
+         final int newCapacity = Math.max(numberOfFeatures, Math.min(capacity * 2, maxNumberOfFeatures));
+         double[] grown = new double[numberOfLabels * newCapacity];
+         for (int l = 0; l < numberOfLabels; l++) {
+            System.arraycopy(featureCounts, l * capacity, grown, l * newCapacity, capacity);
+         }
+         featureCounts = grown;
+      }
+   }
+
+   /**
+    * Gets the log conditional probability of the given feature for the given label.
+    *
+    * @param featureIndex the feature index
+    * @param labelIndex   the label index
+    * @return the log conditional probability
+    */
+   protected double conditional(int featureIndex, int labelIndex) {
+      return conditionals[labelIndex * numberOfFeatures() + featureIndex];
+   }
+
+   private BernoulliTables getBernoulliTables() {
+      BernoulliTables tables = bernoulliTables;
+      if (tables == null) {
+         tables = new BernoulliTables(conditionals, priors.length, numberOfFeatures());
+         bernoulliTables = tables;
+      }
+      return tables;
    }
 
    @Override
@@ -78,7 +308,7 @@ public class NaiveBayes extends Classifier {
       for (int fi = 0; fi < numberOfFeatures(); fi++) {
          String featureName = getFeatureEncoder().decode(fi).toString();
          for (int ci = 0; ci < numberOfLabels(); ci++) {
-            weights.set(featureName, getLabelEncoder().decode(ci).toString(), conditionals[fi][ci]);
+            weights.set(featureName, getLabelEncoder().decode(ci).toString(), conditional(fi, ci));
          }
       }
       return weights;
@@ -117,19 +347,38 @@ public class NaiveBayes extends Classifier {
          }
 
          @Override
-         double[] distribution(NDArray instance, double[] priors, double[][] conditionals) {
-            NDArray distribution = NDArrayFactory.wrap(priors);
-            for (int i = 0; i < priors.length; i++) {
-               for (int f = 0; f < conditionals.length; f++) {
-                  if (instance.get(f) != 0) {
-                     distribution.increment(i, Math.log(conditionals[f][i]));
-                  } else {
-                     distribution.increment(i, Math.log(1 - conditionals[f][i]));
+         double[] distribution(NaiveBayes model, NDArray instance) {
+            BernoulliTables tables = model.getBernoulliTables();
+            int numberOfFeatures = model.numberOfFeatures();
+            double[] distribution = new double[model.priors.length];
+            for (int i = 0; i < distribution.length; i++) {
+               distribution[i] = model.priors[i] + tables.absent[i];
+            }
+            instance.forEachSparse(entry -> {
+               if (entry.getValue() != 0) {
+                  for (int i = 0; i < distribution.length; i++) {
+                     distribution[i] += tables.delta[i * numberOfFeatures + entry.getIndex()];
                   }
                }
+            });
+            for (int i = 0; i < distribution.length; i++) {
+               distribution[i] = Math.exp(distribution[i]);
+            }
+            return distribution;
+         }
+
+         @Override
+         NDArray scores(NaiveBayes model, NDArray batch) {
+            BernoulliTables tables = model.getBernoulliTables();
+            double[] offset = new double[model.priors.length];
+            for (int i = 0; i < offset.length; i++) {
+               offset[i] = model.priors[i] + tables.absent[i];
             }
-            distribution.mapi(Math::exp);
-            return distribution.toArray();
+            NDArray delta = NDArrayFactory.wrap(model.numberOfFeatures(), offset.length, tables.delta);
+            return batch.T()
+                        .mapi(v -> v != 0 ? 1.0 : 0.0)
+                        .mmul(delta)
+                        .addi(NDArrayFactory.wrap(offset), Axis.ROW);
          }
       },
       /**
@@ -152,19 +401,37 @@ public class NaiveBayes extends Classifier {
        * Calculates a distribution of probabilities over the labels given a vector instance and the model priors and
        * conditionals.
        *
-       * @param instance     the instance to calculate the distribution for
-       * @param priors       the label priors
-       * @param conditionals the feature-label conditional probabilities
+       * @param model    the model whose priors and conditionals are used
+       * @param instance the instance to calculate the distribution for
        * @return the distribution as an array
        */
-      double[] distribution(NDArray instance, double[] priors, double[][] conditionals) {
-         NDArray distribution = NDArrayFactory.wrap(priors);
+      double[] distribution(NaiveBayes model, NDArray instance) {
+         int numberOfFeatures = model.numberOfFeatures();
+         double[] distribution = model.priors.clone();
          instance.forEachSparse(entry -> {
-            for (int i = 0; i < priors.length; i++) {
-               distribution.decrement(i, entry.getValue() * conditionals[entry.getIndex()][i]);
+            for (int i = 0; i < distribution.length; i++) {
+               distribution[i] -= entry.getValue() * model.conditionals[i * numberOfFeatures + entry.getIndex()];
             }
          });
-         return distribution.mapi(Math::exp).toArray();
+         for (int i = 0; i < distribution.length; i++) {
+            distribution[i] = Math.exp(distribution[i]);
+         }
+         return distribution;
+      }
+
+      /**
+       * Calculates the log scores of the labels for a batch of vectors with a single matrix multiplication.
+       *
+       * @param model the model whose priors and conditionals are used
+       * @param batch the batch of vectors (numFeatures x numVectors)
+       * @return the log scores (numVectors x numLabels)
+       */
+      NDArray scores(NaiveBayes model, NDArray batch) {
+         NDArray conditionals = NDArrayFactory.wrap(model.numberOfFeatures(), model.priors.length, model.conditionals);
+         return batch.T()
+                     .mmul(conditionals)
+                     .muli(-1)
+                     .addi(NDArrayFactory.wrap(model.priors), Axis.ROW);
       }
 
       /**
@@ -182,4 +449,30 @@ public class NaiveBayes extends Classifier {
       }
 
    }
+
+   /**
+    * Precomputed tables for Bernoulli scoring, so that the score of an instance only depends on its non-zero features.
+    */
+   private static class BernoulliTables {
+      final double[] absent;
+      final double[] delta;
+
+      BernoulliTables(double[] conditionals, int numberOfLabels, int numberOfFeatures) {
+         this.absent = new double[numberOfLabels];
+         this.delta = new double[conditionals.length];
+         for (int i = 0; i < numberOfLabels; i++) {
+            estimate(conditionals, i, numberOfFeatures);
+         }
+      }
+
+      void estimate(double[] conditionals, int labelIndex, int numberOfFeatures) {
+         absent[labelIndex] = 0;
+         for (int f = 0, index = labelIndex * numberOfFeatures; f < numberOfFeatures; f++, index++) {
+            double logAbsent = Math.log1p(-Math.exp(conditionals[index]));
+            absent[labelIndex] += logAbsent;
+            delta[index] = conditionals[index] - logAbsent;
+         }
+      }
+   }
+
 }//END OF NaiveBayes
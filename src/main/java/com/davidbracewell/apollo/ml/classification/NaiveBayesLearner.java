@@ -1,15 +1,11 @@
 package com.davidbracewell.apollo.ml.classification;
 
-import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.ml.Instance;
 import com.davidbracewell.apollo.ml.data.Dataset;
-import com.davidbracewell.collection.Collect;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 
-import java.util.Arrays;
-
 /**
  * <p>Trains three variations of Naive Bayes models specifically suited for text classification.</p>
  *
@@ -45,53 +41,14 @@ public class NaiveBayesLearner extends ClassifierLearner {
    @Override
    protected NaiveBayes trainImpl(Dataset<Instance> dataset) {
       NaiveBayes model = new NaiveBayes(this, modelType);
-      model.conditionals = new double[model.numberOfFeatures()][model.numberOfLabels()];
-      model.priors = new double[model.numberOfLabels()];
-      double[] labelCounts = new double[model.numberOfLabels()];
-
-      double N = 0;
+      model.initializeCounts();
       for (Instance instance : dataset) {
          if (instance.hasLabel()) {
-            N++;
             int ci = (int) model.encodeLabel(instance.getLabel());
-            model.priors[ci] += instance.getWeight();
-            NDArray vector = instance.toVector(dataset.getEncoderPair());
-            for (NDArray.Entry entry : Collect.asIterable(vector.sparseIterator())) {
-               labelCounts[ci] += entry.getValue();
-               model.conditionals[entry.getIndex()][ci] += instance.getWeight() * modelType.convertValue(
-                  entry.getValue());
-            }
+            model.accumulate(instance.toVector(dataset.getEncoderPair()), ci, instance.getWeight());
          }
       }
-
-      double V = model.numberOfFeatures();
-      for (int featureIndex = 0; featureIndex < model.conditionals.length; featureIndex++) {
-         double[] tmp = Arrays.copyOf(model.conditionals[featureIndex], model.conditionals[featureIndex].length);
-         for (int labelIndex = 0; labelIndex < model.priors.length; labelIndex++) {
-            if (modelType == NaiveBayes.ModelType.Complementary) {
-               double nCi = 0;
-               double nC = 0;
-               for (int j = 0; j < model.priors.length; j++) {
-                  if (j != labelIndex) {
-                     nCi += tmp[j];
-                     nC += labelCounts[j];
-                  }
-               }
-               model.conditionals[featureIndex][labelIndex] = Math.log(
-                  modelType.normalize(nCi, model.priors[labelIndex], nC, V));
-            } else {
-               model.conditionals[featureIndex][labelIndex] = Math.log(
-                  modelType.normalize(model.conditionals[featureIndex][labelIndex], model.priors[labelIndex],
-                                      labelCounts[labelIndex], V));
-            }
-         }
-
-      }
-
-      for (int i = 0; i < model.priors.length; i++) {
-         model.priors[i] = Math.log(model.priors[i] / N);
-      }
-
+      model.estimate();
       return model;
    }
 
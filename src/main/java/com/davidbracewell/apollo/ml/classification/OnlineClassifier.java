@@ -0,0 +1,53 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.Instance;
+import lombok.NonNull;
+
+/**
+ * <p>A classifier that can be updated incrementally with new labeled instances after training, e.g. to refresh a
+ * deployed model with new data without retraining on the full dataset. Instances are preprocessed with the model's
+ * (already fit) preprocessors. Instances whose label is unknown to the model are ignored. Features unknown to the model
+ * are ignored unless feature growth is enabled through {@link #setMaxNumberOfFeatures(int)}, in which case they are
+ * added to the (frozen) feature encoder until it holds the given number of features.</p>
+ *
+ * <p>Online models are single-writer: updates are not synchronized with each other or with classification, so a model
+ * must only be updated from one thread at a time and should not be used to classify while it is being updated. This
+ * includes the feature encoder, which is grown during updates without synchronizing its lookups.</p>
+ *
+ * @author David B. Bracewell
+ */
+public interface OnlineClassifier {
+
+   /**
+    * Gets the maximum number of features the model can grow to during updates.
+    *
+    * @return the maximum number of features (features are not added when less than or equal to the current number)
+    */
+   int getMaxNumberOfFeatures();
+
+   /**
+    * Updates the model with the given instances.
+    *
+    * @param instances the labeled instances
+    */
+   default void partialFit(@NonNull Iterable<Instance> instances) {
+      for (Instance instance : instances) {
+         update(instance);
+      }
+   }
+
+   /**
+    * Sets the maximum number of features the model can grow to during updates.
+    *
+    * @param maxNumberOfFeatures the maximum number of features
+    */
+   void setMaxNumberOfFeatures(int maxNumberOfFeatures);
+
+   /**
+    * Updates the model with the given instance.
+    *
+    * @param instance the labeled instance
+    */
+   void update(Instance instance);
+
+}// END OF OnlineClassifier
@@ -2,6 +2,7 @@ package com.davidbracewell.apollo.ml.classification;
 
 import com.davidbracewell.apollo.linear.NDArrayFactory;
 import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.TrainingListener;
 import com.davidbracewell.apollo.ml.data.Dataset;
 import com.davidbracewell.apollo.ml.optimization.*;
 import com.davidbracewell.apollo.ml.optimization.activation.Activation;
@@ -13,9 +14,19 @@ import lombok.Setter;
  * @author David B. Bracewell
  */
 public class SoftmaxLearner extends ClassifierLearner {
+   /**
+    * The weight updater, where <code>null</code> uses a {@link SGDUpdater} or, when training with more than one thread,
+    * a {@link SparseSGDUpdater}.
+    */
    @Getter
    @Setter
-   private WeightUpdate weightUpdater = SGDUpdater.builder().build();
+   private WeightUpdate weightUpdater = null;
+   @Getter
+   @Setter
+   private LBFGSOptimizer quasiNewtonOptimizer = null;
+   @Getter
+   @Setter
+   private TrainingListener trainingListener = null;
    @Getter
    @Setter
    private int maxIterations = 300;
@@ -27,10 +38,25 @@ public class SoftmaxLearner extends ClassifierLearner {
    private double tolerance = 1e-9;
    @Getter
    @Setter
+   private int threads = 1;
+   @Getter
+   @Setter
+   private boolean parameterServer = false;
+   @Getter
+   @Setter
    private int reportInterval = 10;
    @Getter
    @Setter
    private boolean cacheData = true;
+   @Getter
+   @Setter
+   private Dataset<Instance> validationSet = null;
+   @Getter
+   @Setter
+   private int validationInterval = 1;
+   @Getter
+   @Setter
+   private int patience = 5;
 
    @Override
    public void resetLearnerParameters() {
@@ -50,6 +76,14 @@ public class SoftmaxLearner extends ClassifierLearner {
       }
    }
 
+   private WeightUpdate weightUpdater() {
+      if (weightUpdater != null) {
+         return weightUpdater;
+      }
+      //Parallel training only supports sparse updates
+      return threads > 1 ? SparseSGDUpdater.builder().momentum(0).build() : SGDUpdater.builder().build();
+   }
+
    @Override
    protected Classifier trainImpl(Dataset<Instance> dataset) {
       int numL = dataset.getLabelEncoder().size();
@@ -57,18 +91,39 @@ public class SoftmaxLearner extends ClassifierLearner {
          numL = 1;
       }
       LinearModel model = new LinearModel(this);
-      GradientDescentOptimizer optimizer = GradientDescentOptimizer.builder().batchSize(batchSize).build();
+      //Copy the quasi-Newton optimizer so that training does not modify the configured instance
+      Optimizer<LinearModelParameters> optimizer = quasiNewtonOptimizer != null
+                                                    ? quasiNewtonOptimizer.toBuilder()
+                                                                          .listener(trainingListener)
+                                                                          .build()
+                                                    : GradientDescentOptimizer.builder()
+                                                                              .batchSize(batchSize)
+                                                                              .threads(threads)
+                                                                              .parameterServer(parameterServer)
+                                                                              .listener(trainingListener)
+                                                                              .build();
       model.weights = NDArrayFactory.DEFAULT().rand(numL, model.numberOfFeatures());
       model.bias = NDArrayFactory.DEFAULT().zeros(numL);
       model.activation = Activation.SOFTMAX;
+      GradientDescentCostFunction costFunction = new GradientDescentCostFunction(new CrossEntropyLoss(),
+                                                                                 numL > 1 ? -1 : 1);
+      TerminationCriteria terminationCriteria = TerminationCriteria.create()
+                                                                   .maxIterations(maxIterations)
+                                                                   .historySize(3)
+                                                                   .tolerance(tolerance);
+      if (validationSet != null) {
+         terminationCriteria.earlyStopping(EarlyStopping.forLinearModel(encodeHeldOut(validationSet),
+                                                                        model.numberOfLabels(),
+                                                                        model.numberOfFeatures(),
+                                                                        costFunction)
+                                                        .interval(validationInterval)
+                                                        .patience(patience));
+      }
       optimizer.optimize(model,
                          dataset.vectorStream(cacheData),
-                         new GradientDescentCostFunction(new CrossEntropyLoss(), numL > 1 ? -1 : 1),
-                         TerminationCriteria.create()
-                                            .maxIterations(maxIterations)
-                                            .historySize(3)
-                                            .tolerance(tolerance),
-                         weightUpdater,
+                         costFunction,
+                         terminationCriteria,
+                         weightUpdater(),
                          reportInterval);
       return model;
    }
@@ -0,0 +1,172 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.encoder.Encoder;
+import com.davidbracewell.collection.counter.Counter;
+import com.davidbracewell.collection.counter.Counters;
+import com.davidbracewell.guava.common.base.Preconditions;
+import lombok.NonNull;
+
+import java.io.Serializable;
+
+/**
+ * <p>Result of a classifier restricted to the <code>k</code> best labels, ordered from best to worst. Unlike {@link
+ * Classification} it does not hold a score for every label, so its size is independent of the size of the label
+ * set.</p>
+ *
+ * <p>Scores are either the confidences of the classifier's full distribution over the labels (see {@link
+ * Classification#distribution()}), which are probabilities for probabilistic models, or raw scores, e.g. the logits of
+ * a linear layer found with a {@link TopKIndex} without scoring every label. Raw scores rank the labels in the same
+ * order, but are not probabilities and cannot be compared across instances. {@link #isProbability()} tells which of the
+ * two a result holds.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class TopKClassification implements Serializable {
+   private static final long serialVersionUID = 1L;
+   private final int[] labels;
+   private final double[] scores;
+   private final boolean probability;
+   private final Encoder labelEncoder;
+
+   /**
+    * Instantiates a new Top-K classification.
+    *
+    * @param labels       the label indices ordered from best to worst
+    * @param scores       the scores of the labels
+    * @param probability  true if the scores are the confidences of the full distribution, false if they are raw scores
+    * @param labelEncoder the encoder for converting indexes into labels
+    */
+   public TopKClassification(@NonNull int[] labels,
+                             @NonNull double[] scores,
+                             boolean probability,
+                             @NonNull Encoder labelEncoder
+                            ) {
+      Preconditions.checkArgument(labels.length == scores.length, "Number of labels and scores must match");
+      this.labels = labels;
+      this.scores = scores;
+      this.probability = probability;
+      this.labelEncoder = labelEncoder;
+   }
+
+   /**
+    * Creates a Top-K classification from the full distribution over the labels, whose scores are confidences (see
+    * {@link #isProbability()}).
+    *
+    * @param distribution the distribution across the labels
+    * @param k            the number of labels to keep
+    * @param labelEncoder the encoder for converting indexes into labels
+    * @return the top-k classification
+    */
+   public static TopKClassification fromDistribution(@NonNull double[] distribution,
+                                                     int k,
+                                                     @NonNull Encoder labelEncoder
+                                                    ) {
+      Preconditions.checkArgument(k > 0, "k must be > 0");
+      TopKHeap heap = new TopKHeap(Math.min(k, distribution.length));
+      for (int i = 0; i < distribution.length; i++) {
+         heap.offer(i, distribution[i]);
+      }
+      return fromHeap(heap, true, labelEncoder);
+   }
+
+   static TopKClassification fromHeap(TopKHeap heap, boolean probability, Encoder labelEncoder) {
+      int[] labels = new int[heap.size()];
+      double[] scores = new double[heap.size()];
+      heap.drain(labels, scores);
+      return new TopKClassification(labels, scores, probability, labelEncoder);
+   }
+
+   /**
+    * Gets the result as a counter
+    *
+    * @return the counter of item (label) and value (score)
+    */
+   public Counter<String> asCounter() {
+      Counter<String> counter = Counters.newCounter();
+      for (int i = 0; i < labels.length; i++) {
+         counter.set(getLabel(i), scores[i]);
+      }
+      return counter;
+   }
+
+   /**
+    * Checks if the scores are the confidences of the classifier's full distribution over the labels (probabilities for
+    * probabilistic models) rather than raw scores.
+    *
+    * @return true if the scores are confidences, false if they are raw scores
+    */
+   public boolean isProbability() {
+      return probability;
+   }
+
+   /**
+    * Gets the score of the best label
+    *
+    * @return the score of the best label
+    */
+   public double getConfidence() {
+      return scores[0];
+   }
+
+   /**
+    * Gets the label index at the given rank
+    *
+    * @param rank the rank (0 is best)
+    * @return the label index
+    */
+   public int getLabelIndex(int rank) {
+      return labels[rank];
+   }
+
+   /**
+    * Gets the label at the given rank
+    *
+    * @param rank the rank (0 is best)
+    * @return the label
+    */
+   public String getLabel(int rank) {
+      Object lbl = labelEncoder.decode(labels[rank]);
+      return lbl == null ? null : lbl.toString();
+   }
+
+   /**
+    * Gets the String value of the best label
+    *
+    * @return the best label
+    */
+   public String getResult() {
+      return getLabel(0);
+   }
+
+   /**
+    * Gets the score of the label at the given rank
+    *
+    * @param rank the rank (0 is best)
+    * @return the score
+    */
+   public double getScore(int rank) {
+      return scores[rank];
+   }
+
+   /**
+    * The number of labels in the result
+    *
+    * @return the number of labels
+    */
+   public int size() {
+      return labels.length;
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder builder = new StringBuilder("[");
+      for (int i = 0; i < labels.length; i++) {
+         if (i > 0) {
+            builder.append(", ");
+         }
+         builder.append(getLabel(i)).append('=').append(scores[i]);
+      }
+      return builder.append(']').toString();
+   }
+
+}//END OF TopKClassification
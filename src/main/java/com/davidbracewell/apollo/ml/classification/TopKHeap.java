@@ -0,0 +1,105 @@
+package com.davidbracewell.apollo.ml.classification;
+
+/**
+ * <p>Bounded min-heap of label indices keyed by score used to select the <code>k</code> best labels.</p>
+ *
+ * @author David B. Bracewell
+ */
+final class TopKHeap {
+   private final int[] labels;
+   private final double[] scores;
+   private int size = 0;
+
+   /**
+    * Instantiates a new heap holding at most <code>k</code> labels.
+    *
+    * @param k the number of labels to keep
+    */
+   TopKHeap(int k) {
+      this.labels = new int[k];
+      this.scores = new double[k];
+   }
+
+   /**
+    * Offers the given label and score to the heap.
+    *
+    * @param label the label index
+    * @param score the score
+    */
+   void offer(int label, double score) {
+      if (size < labels.length) {
+         int i = size++;
+         while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= score) {
+               break;
+            }
+            labels[i] = labels[parent];
+            scores[i] = scores[parent];
+            i = parent;
+         }
+         labels[i] = label;
+         scores[i] = score;
+      } else if (score > scores[0]) {
+         siftDown(label, score, size);
+      }
+   }
+
+   private void siftDown(int label, double score, int n) {
+      int i = 0;
+      while (true) {
+         int child = 2 * i + 1;
+         if (child >= n) {
+            break;
+         }
+         if (child + 1 < n && scores[child + 1] < scores[child]) {
+            child++;
+         }
+         if (score <= scores[child]) {
+            break;
+         }
+         labels[i] = labels[child];
+         scores[i] = scores[child];
+         i = child;
+      }
+      labels[i] = label;
+      scores[i] = score;
+   }
+
+   /**
+    * Gets the worst kept score.
+    *
+    * @return the worst kept score or negative infinity if the heap is not full
+    */
+   double threshold() {
+      return size < labels.length ? Double.NEGATIVE_INFINITY : scores[0];
+   }
+
+   /**
+    * Empties the heap into arrays ordered by descending score.
+    *
+    * @param outLabels the array to write the labels to (length at least the heap size)
+    * @param outScores the array to write the scores to (length at least the heap size)
+    * @return the number of labels written
+    */
+   int drain(int[] outLabels, double[] outScores) {
+      int n = size;
+      for (int i = n - 1; i >= 0; i--) {
+         outLabels[i] = labels[0];
+         outScores[i] = scores[0];
+         siftDown(labels[i], scores[i], i);
+      }
+      size = 0;
+      return n;
+   }
+
+   /**
+    * Gets the number of labels in the heap.
+    *
+    * @return the size
+    */
+   int size() {
+      return size;
+   }
+
+}// END OF TopKHeap
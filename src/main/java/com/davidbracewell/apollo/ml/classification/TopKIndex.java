@@ -0,0 +1,157 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.encoder.Encoder;
+import com.davidbracewell.apollo.ml.optimization.LinearModelParameters;
+import com.davidbracewell.apollo.ml.optimization.activation.Activation;
+import com.davidbracewell.collection.Collect;
+import com.davidbracewell.guava.common.base.Preconditions;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Label-partitioned index over the weight vectors of a multi-class linear layer for exact top-k inference. Labels
+ * are grouped into about <code>sqrt(numberOfLabels)</code> blocks of labels whose largest weight is on the same or
+ * nearby features, and every block stores the per-feature maximum and minimum weight of its labels. For an input the
+ * index first calculates an upper bound on the score of every block, then scores the labels of the blocks in order of
+ * decreasing bound and stops as soon as the next bound cannot beat the <code>k</code>-th best score found so far.</p>
+ *
+ * <p>Scores are always the raw scores (logits) of the layer, i.e. before its activation, as normalizing them (e.g.
+ * for softmax) requires scoring every label, and results are marked as not being probabilities (see {@link
+ * TopKClassification#isProbability()}). The ranking matches that of the activated outputs for monotonically
+ * non-decreasing activations, which holds for all activations in {@link Activation}. The index keeps its own copy of
+ * the weights and must be rebuilt if they change.</p>
+ *
+ * @author David B. Bracewell
+ */
+public final class TopKIndex {
+   private final int numberOfFeatures;
+   private final int[][] blockLabels;
+   private final double[][] blockWeights;
+   private final double[] blockMax;
+   private final double[] blockMin;
+   private final double[] blockMaxBias;
+   private final double[] bias;
+
+   /**
+    * Instantiates a new Top-K index over the given (multi-class) parameters.
+    *
+    * @param parameters the linear parameters with one weight vector per label
+    */
+   public TopKIndex(@NonNull LinearModelParameters parameters) {
+      final NDArray weights = parameters.getWeights();
+      final int numberOfLabels = weights.numRows();
+      Preconditions.checkArgument(numberOfLabels > 1, "Top-k index requires one weight vector per label");
+      this.numberOfFeatures = weights.numCols();
+      this.bias = parameters.getBias().toArray();
+
+      //Order labels by the feature of their largest weight so that blocks group labels with similar strong features
+      final int[] strongest = new int[numberOfLabels];
+      IntStream.range(0, numberOfLabels).parallel().forEach(l -> {
+         int best = 0;
+         for (int f = 1; f < numberOfFeatures; f++) {
+            if (weights.get(l, f) > weights.get(l, best)) {
+               best = f;
+            }
+         }
+         strongest[l] = best;
+      });
+      Integer[] order = new Integer[numberOfLabels];
+      for (int l = 0; l < numberOfLabels; l++) {
+         order[l] = l;
+      }
+      Arrays.sort(order, Comparator.<Integer>comparingInt(l -> strongest[l]).thenComparingInt(l -> l));
+
+      final int blockSize = (int) Math.ceil(Math.sqrt(numberOfLabels));
+      final int numberOfBlocks = (numberOfLabels + blockSize - 1) / blockSize;
+      this.blockLabels = new int[numberOfBlocks][];
+      this.blockWeights = new double[numberOfBlocks][];
+      this.blockMax = new double[numberOfBlocks * numberOfFeatures];
+      this.blockMin = new double[numberOfBlocks * numberOfFeatures];
+      this.blockMaxBias = new double[numberOfBlocks];
+      IntStream.range(0, numberOfBlocks).parallel().forEach(b -> {
+         int start = b * blockSize;
+         int end = Math.min(numberOfLabels, start + blockSize);
+         int[] labels = new int[end - start];
+         double[] rows = new double[labels.length * numberOfFeatures];
+         Arrays.fill(blockMax, b * numberOfFeatures, (b + 1) * numberOfFeatures, Double.NEGATIVE_INFINITY);
+         Arrays.fill(blockMin, b * numberOfFeatures, (b + 1) * numberOfFeatures, Double.POSITIVE_INFINITY);
+         blockMaxBias[b] = Double.NEGATIVE_INFINITY;
+         for (int i = 0; i < labels.length; i++) {
+            labels[i] = order[start + i];
+            blockMaxBias[b] = Math.max(blockMaxBias[b], bias[labels[i]]);
+            for (int f = 0; f < numberOfFeatures; f++) {
+               double w = weights.get(labels[i], f);
+               rows[i * numberOfFeatures + f] = w;
+               blockMax[b * numberOfFeatures + f] = Math.max(blockMax[b * numberOfFeatures + f], w);
+               blockMin[b * numberOfFeatures + f] = Math.min(blockMin[b * numberOfFeatures + f], w);
+            }
+         }
+         blockLabels[b] = labels;
+         blockWeights[b] = rows;
+      });
+   }
+
+   /**
+    * Finds the <code>k</code> best labels for the given input.
+    *
+    * @param input        the input vector (numberOfFeatures x 1)
+    * @param k            the number of labels to return
+    * @param labelEncoder the encoder for converting indexes into labels
+    * @return the top-k classification with raw scores
+    */
+   public TopKClassification search(@NonNull NDArray input, int k, @NonNull Encoder labelEncoder) {
+      Preconditions.checkArgument(k > 0, "k must be > 0");
+      int n = 0;
+      for (NDArray.Entry ignored : Collect.asIterable(input.sparseIterator())) {
+         n++;
+      }
+      final int[] indices = new int[n];
+      final double[] values = new double[n];
+      n = 0;
+      for (NDArray.Entry entry : Collect.asIterable(input.sparseIterator())) {
+         indices[n] = entry.getIndex();
+         values[n] = entry.getValue();
+         n++;
+      }
+
+      final int numberOfBlocks = blockLabels.length;
+      final double[] bounds = new double[numberOfBlocks];
+      for (int b = 0; b < numberOfBlocks; b++) {
+         final int offset = b * numberOfFeatures;
+         double bound = blockMaxBias[b];
+         for (int j = 0; j < n; j++) {
+            bound += values[j] * (values[j] > 0 ? blockMax[offset + indices[j]] : blockMin[offset + indices[j]]);
+         }
+         bounds[b] = bound;
+      }
+      Integer[] order = new Integer[numberOfBlocks];
+      for (int b = 0; b < numberOfBlocks; b++) {
+         order[b] = b;
+      }
+      Arrays.sort(order, (b1, b2) -> Double.compare(bounds[b2], bounds[b1]));
+
+      TopKHeap heap = new TopKHeap(Math.min(k, bias.length));
+      for (int b : order) {
+         if (bounds[b] <= heap.threshold()) {
+            break;
+         }
+         final int[] labels = blockLabels[b];
+         final double[] rows = blockWeights[b];
+         for (int i = 0; i < labels.length; i++) {
+            final int offset = i * numberOfFeatures;
+            double score = bias[labels[i]];
+            for (int j = 0; j < n; j++) {
+               score += rows[offset + indices[j]] * values[j];
+            }
+            heap.offer(labels[i], score);
+         }
+      }
+
+      return TopKClassification.fromHeap(heap, false, labelEncoder);
+   }
+
+}// END OF TopKIndex
@@ -2,25 +2,46 @@ package com.davidbracewell.apollo.ml.classification.nn;
 
 import com.davidbracewell.apollo.linear.Axis;
 import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
+import com.davidbracewell.apollo.ml.TrainingListener;
+import com.davidbracewell.apollo.ml.TrainingMetrics;
+import com.davidbracewell.apollo.ml.TrainingMetrics.Phase;
 import com.davidbracewell.apollo.ml.optimization.*;
+import com.davidbracewell.conversion.Cast;
 import com.davidbracewell.function.SerializableSupplier;
 import com.davidbracewell.guava.common.base.Stopwatch;
+import com.davidbracewell.guava.common.base.Throwables;
 import com.davidbracewell.stream.MStream;
 import com.davidbracewell.tuple.Tuple2;
-import com.davidbracewell.tuple.Tuple3;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.val;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.Callable;
-
-import static com.davidbracewell.tuple.Tuples.$;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
+ * <p>Mini-batch backpropagation for feed forward networks. When <code>threads</code> is greater than one, training is
+ * synchronous data-parallel: each mini-batch is split into shards whose gradients are computed concurrently into
+ * worker local buffers, the buffers are combined with a tree all-reduce, and a single weight update is applied per
+ * layer. Every shard position has its own reusable batch buffer and gradient accumulators, so that shards are packed
+ * and backpropagated without allocating new batches or gradient arrays. Shards and the reduction order are fixed, so
+ * the summed gradients do not depend on thread scheduling. The examples are shuffled with <code>random</code> at the
+ * start of every epoch, in both the sequential and the parallel case, so that with the same random seed both see the
+ * same batches. Batches are packed using <code>factory</code>, which should match the factory of the network's
+ * parameters (see {@link Layer#convert(NDArrayFactory)}) so that no precision conversion is needed during
+ * training.</p>
+ *
+ * <p>Only the batch order is controlled by <code>random</code>. {@link Dropout} masks and the default weight
+ * initializers draw from the global random number generator, so two runs with the same seed only give the same model
+ * when the network has no dropout and both start from the same weights (e.g. copies of the same network).</p>
+ *
  * @author David B. Bracewell
  */
 public class Backprop implements Optimizer<FeedForwardNetwork> {
@@ -30,7 +51,16 @@ public class Backprop implements Optimizer<FeedForwardNetwork> {
    private int batchSize = 32;
    @Getter
    @Setter
-   private int threads = 4;
+   private int threads = 1;
+   @Getter
+   @Setter
+   private NDArrayFactory factory = NDArrayFactory.DEFAULT();
+   @Getter
+   @Setter
+   private TrainingListener listener;
+   @Getter
+   @Setter
+   private Random random = new Random();
 
    static float correct(NDArray predicted, NDArray gold) {
       int[] pMax = predicted.argMax(Axis.COlUMN);
@@ -61,129 +91,252 @@ public class Backprop implements Optimizer<FeedForwardNetwork> {
       BatchIterator data = new BatchIterator(stream.get().collect(),
                                              startingTheta.numberOfLabels(),
                                              startingTheta.numberOfFeatures());
+      data.setFactory(factory);
 
       WeightUpdate[] layerUpdates = new WeightUpdate[startingTheta.layers.size()];
       for (int i = 0; i < layerUpdates.length; i++) {
          layerUpdates[i] = weightUpdate.copy();
       }
-//
-//      ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+      if (threads > 1) {
+         optimizeParallel(startingTheta, data, costFunction, terminationCriteria, layerUpdates, reportInterval);
+      } else {
+         optimizeSequential(startingTheta, data, costFunction, terminationCriteria, layerUpdates, reportInterval);
+      }
+
+      for (int i = 0; i < layerUpdates.length; i++) {
+         if (startingTheta.layers.get(i) instanceof LinearModelParameters) {
+            layerUpdates[i].finish(Cast.as(startingTheta.layers.get(i)));
+         }
+      }
+      finish(terminationCriteria, startingTheta);
+   }
+
+   private void optimizeSequential(FeedForwardNetwork startingTheta,
+                                   BatchIterator data,
+                                   CostFunction<FeedForwardNetwork> costFunction,
+                                   TerminationCriteria terminationCriteria,
+                                   WeightUpdate[] layerUpdates,
+                                   int reportInterval
+                                  ) {
+      TrainingMetrics metrics = new TrainingMetrics(listener != null);
       for (int iteration = 0; iteration < terminationCriteria.maxIterations(); iteration++) {
+         metrics.start(iteration);
          loss = 0d;
-//         data.shuffle();
-//         List<Future<Tuple3<Double, Double, List<Layer>>>> futures = new ArrayList<>();
-//         for (Iterator<NDArray> itr = data.iterator(batchSize); itr.hasNext(); ) {
-//            layerUpdates = new WeightUpdate[startingTheta.layers.size()];
-//            for (int i = 0; i < layerUpdates.length; i++) {
-//               layerUpdates[i] = weightUpdate.copy();
-//            }
-//            WThread wt = new WThread(itr.next(),
-//                                     startingTheta.copy(),
-//                                     costFunction,
-//                                     Arrays.asList(layerUpdates),
-//                                     iteration
-//            );
-//            futures.add(executor.submit(wt));
-//         }
-//
-//         futures.forEach(f -> {
-//            try {
-//               Tuple3<Double, Double, List<Layer>> t3 = f.get();
-//               for (int i = 0; i < t3.v3.size(); i++) {
-//                  startingTheta.layers.get(i).update(
-//                     new NDArray[]{t3.v3.get(i).getWeights()},
-//                     new NDArray[]{t3.v3.get(i).getBias()}
-//                                                    );
-//               }
-//            } catch (Exception e) {
-//               e.printStackTrace();
-//            }
-//         });
-
+         data.shuffle(random);
          List<Layer> layers = startingTheta.layers;
          val timer = Stopwatch.createStarted();
-         for (Iterator<NDArray> itr = data.iterator(batchSize); itr.hasNext(); ) {
-            NDArray X = itr.next();
-            CostGradientTuple cgt = costFunction.evaluate(X, startingTheta);
-            List<NDArray> ai = Arrays.asList(cgt.getActivations());
-            NDArray dz = cgt.getGradient().getWeightGradient();
-            loss += cgt.getCost();
-            for (int i = layers.size() - 1; i >= 0; i--) {
-               NDArray input = i == 0 ? X : ai.get(i - 1);
-               Tuple2<NDArray, Double> t = layers.get(i).backward(layerUpdates[i], input, ai.get(i), dz, iteration,
-                                                                  i > 0);
-               dz = t.v1;
-               if (i == layers.size() - 1) {
-                  loss += t.v2 / X.numCols();
+         try (BatchIterator.PrefetchIterator itr = data.prefetchIterator(batchSize)) {
+            while (itr.hasNext()) {
+               long time = metrics.now();
+               NDArray X = itr.next();
+               time = metrics.record(Phase.BATCH, time);
+               CostGradientTuple cgt = costFunction.evaluate(X, startingTheta);
+               time = metrics.record(Phase.FORWARD, time);
+               List<NDArray> ai = Arrays.asList(cgt.getActivations());
+               NDArray dz = cgt.getGradient().getWeightGradient();
+               loss += cgt.getCost();
+               for (int i = layers.size() - 1; i >= 0; i--) {
+                  NDArray input = i == 0 ? X : ai.get(i - 1);
+                  Tuple2<NDArray, Double> t = layers.get(i).backward(layerUpdates[i], input, ai.get(i), dz, iteration,
+                                                                     i > 0);
+                  dz = t.v1;
+                  if (i == layers.size() - 1) {
+                     loss += t.v2 / X.numCols();
+                  }
                }
+               metrics.record(Phase.BACKWARD, time);
+               metrics.addExamples(X.numCols());
             }
          }
          timer.stop();
-         if (report(reportInterval, iteration, terminationCriteria, loss, timer.toString())) {
+         if (listener != null) {
+            metrics.end(loss);
+            listener.onIteration(metrics);
+         }
+         if (report(reportInterval, iteration, terminationCriteria, loss, timer.toString(), startingTheta,
+                    snapshot -> catchUp(snapshot, layerUpdates))) {
             break;
          }
       }
 
    }
 
+   private void optimizeParallel(FeedForwardNetwork network,
+                                 BatchIterator data,
+                                 CostFunction<FeedForwardNetwork> costFunction,
+                                 TerminationCriteria terminationCriteria,
+                                 WeightUpdate[] layerUpdates,
+                                 int reportInterval
+                                ) {
+      final List<Layer> layers = network.layers;
+      final int shardSize = (int) Math.ceil((double) batchSize / threads);
+      //Each shard position of a batch has its own batch buffer and gradient accumulators, which are reused
+      final Shard[] workers = new Shard[(batchSize + shardSize - 1) / shardSize];
+      for (int i = 0; i < workers.length; i++) {
+         workers[i] = new Shard(layers, data.newBuffer());
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      TrainingMetrics metrics = new TrainingMetrics(listener != null);
+      try {
+         for (int iteration = 0; iteration < terminationCriteria.maxIterations(); iteration++) {
+            metrics.start(iteration);
+            loss = 0d;
+            data.shuffle(random);
+            val timer = Stopwatch.createStarted();
+            for (int start = 0; start < data.size(); start += batchSize) {
+               final int end = Math.min(start + batchSize, data.size());
+               final int numExamples = end - start;
+
+               //Compute the gradients for each shard of the batch into worker local buffers
+               List<Future<Shard>> futures = new ArrayList<>();
+               for (int shardStart = start; shardStart < end; shardStart += shardSize) {
+                  final int from = shardStart;
+                  final int to = Math.min(shardStart + shardSize, end);
+                  final Shard shard = workers[futures.size()];
+                  futures.add(executor.submit(() -> {
+                     long allocated = metrics.threadAllocatedBytes();
+                     long time = metrics.now();
+                     NDArray X = data.range(from, to, shard.buffer);
+                     metrics.record(Phase.BATCH, time);
+                     computeShard(network, X, costFunction, shard, metrics);
+                     metrics.recordAllocated(allocated);
+                     return shard;
+                  }));
+               }
+               Shard[] shards = new Shard[futures.size()];
+               for (int i = 0; i < shards.length; i++) {
+                  shards[i] = get(futures.get(i));
+               }
+
+               //Tree all-reduce of the shard gradients (fixed pairing order keeps the sum deterministic)
+               long time = metrics.now();
+               for (int stride = 1; stride < shards.length; stride *= 2) {
+                  List<Future<Shard>> reductions = new ArrayList<>();
+                  for (int i = 0; i + stride < shards.length; i += 2 * stride) {
+                     final Shard left = shards[i];
+                     final Shard right = shards[i + stride];
+                     reductions.add(executor.submit(() -> left.merge(right)));
+                  }
+                  for (Future<Shard> reduction : reductions) {
+                     get(reduction);
+                  }
+               }
+
+               //Single weight update per layer using the averaged gradient
+               Shard total = shards[0];
+               loss += total.loss / numExamples;
+               for (int i = layers.size() - 1; i >= 0; i--) {
+                  if (total.weightGradients[i] == null) {
+                     continue;
+                  }
+                  double regularization = layers.get(i).update(layerUpdates[i],
+                                                               total.weightGradients[i].divi(numExamples),
+                                                               total.biasGradients[i].divi(numExamples),
+                                                               iteration);
+                  if (i == layers.size() - 1) {
+                     loss += regularization / numExamples;
+                  }
+               }
+               metrics.record(Phase.UPDATE, time);
+               metrics.addExamples(numExamples);
+            }
+            timer.stop();
+            if (listener != null) {
+               metrics.end(loss);
+               listener.onIteration(metrics);
+            }
+            if (report(reportInterval, iteration, terminationCriteria, loss, timer.toString(), network,
+                       snapshot -> catchUp(snapshot, layerUpdates))) {
+               break;
+            }
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   private static void computeShard(FeedForwardNetwork network,
+                                    NDArray X,
+                                    CostFunction<FeedForwardNetwork> costFunction,
+                                    Shard shard,
+                                    TrainingMetrics metrics
+                                   ) {
+      List<Layer> layers = network.layers;
+      long time = metrics.now();
+      CostGradientTuple cgt = costFunction.evaluate(X, network);
+      time = metrics.record(Phase.FORWARD, time);
+      NDArray[] ai = cgt.getActivations();
+      NDArray dz = cgt.getGradient().getWeightGradient();
+      shard.reset();
+      shard.loss = cgt.getCost() * X.numCols();
+      for (int i = layers.size() - 1; i >= 0; i--) {
+         NDArray input = i == 0 ? X : ai[i - 1];
+         dz = layers.get(i).accumulate(input, ai[i], dz, shard.weightGradients[i], shard.biasGradients[i], i > 0);
+      }
+      metrics.record(Phase.BACKWARD, time);
+   }
+
+   private static void catchUp(FeedForwardNetwork snapshot, WeightUpdate[] layerUpdates) {
+      for (int i = 0; i < layerUpdates.length; i++) {
+         if (snapshot.layers.get(i) instanceof LinearModelParameters) {
+            layerUpdates[i].catchUp(Cast.as(snapshot.layers.get(i)));
+         }
+      }
+   }
+
+   private static <T> T get(Future<T> future) {
+      try {
+         return future.get();
+      } catch (InterruptedException | ExecutionException e) {
+         throw Throwables.propagate(e);
+      }
+   }
+
    @Override
    public void reset() {
       loss = 0;
    }
 
-   public static class WThread implements Callable<Tuple3<Double, Double, List<Layer>>> {
-      final List<WeightUpdate> weightUpdates;
-      final int iteration;
-      public double loss;
-      public double correct;
-      public List<Layer> layers = new ArrayList<>();
-      public FeedForwardNetwork network;
-      public NDArray datum;
-      CostFunction<FeedForwardNetwork> costFunction;
-
-      public WThread(NDArray data,
-                     FeedForwardNetwork network,
-                     CostFunction<FeedForwardNetwork> costFunction,
-                     List<WeightUpdate> weightUpdates,
-                     int iteration
-                    ) {
-         for (Layer layer : network.layers) {
-            layers.add(layer.copy());
+   private static class Shard {
+      final BatchIterator.Buffer buffer;
+      final NDArray[] weightGradients;
+      final NDArray[] biasGradients;
+      double loss;
+
+      Shard(List<Layer> layers, BatchIterator.Buffer buffer) {
+         this.buffer = buffer;
+         this.weightGradients = new NDArray[layers.size()];
+         this.biasGradients = new NDArray[layers.size()];
+         for (int i = 0; i < layers.size(); i++) {
+            NDArray weights = layers.get(i).getWeights();
+            if (!weights.isEmpty()) {
+               weightGradients[i] = weights.getFactory().zeros(weights.numRows(), weights.numCols());
+               biasGradients[i] = weights.getFactory().zeros(layers.get(i).getOutputSize());
+            }
+         }
+      }
+
+      void reset() {
+         loss = 0;
+         for (int i = 0; i < weightGradients.length; i++) {
+            if (weightGradients[i] != null) {
+               weightGradients[i].fill(0d);
+               biasGradients[i].fill(0d);
+            }
          }
-         this.network = network;
-         this.datum = data;
-         this.costFunction = costFunction;
-         this.weightUpdates = weightUpdates;
-         this.iteration = iteration;
       }
 
-      @Override
-      public Tuple3<Double, Double, List<Layer>> call() {
-         double size = 0;
-         NDArray X = datum;
-         NDArray Y = datum.getLabelAsNDArray();
-         double bSize = X.numCols();
-         size += bSize;
-         CostGradientTuple cgt = costFunction.evaluate(X, network);
-         loss += cgt.getCost();
-         List<NDArray> ai = Arrays.asList(cgt.getActivations());
-         correct += correct(cgt.getActivations()[cgt.getActivations().length - 1], Y);
-         NDArray dz = cgt.getGradient().getWeightGradient();
-         for (int i = layers.size() - 1; i >= 0; i--) {
-            NDArray input = i == 0 ? X : ai.get(i - 1);
-            Tuple2<NDArray, Double> t = layers.get(i).backward(weightUpdates.get(i),
-                                                               input,
-                                                               ai.get(i),
-                                                               dz,
-                                                               iteration,
-                                                               i > 0);
-            dz = t.v1;
-            if (i == layers.size() - 1) {
-               loss += t.v2;
+      Shard merge(Shard other) {
+         loss += other.loss;
+         for (int i = 0; i < weightGradients.length; i++) {
+            if (weightGradients[i] != null) {
+               weightGradients[i].addi(other.weightGradients[i]);
+               biasGradients[i].addi(other.biasGradients[i]);
             }
          }
-         loss = size > 0 ? loss / size : loss;
-         return $(loss, correct, layers);
+         return this;
       }
    }
+
 }// END OF Backprop
@@ -40,6 +40,17 @@ public class Dropout extends Layer {
                                  NDArrayFactory.DEFAULT().empty());
    }
 
+   @Override
+   public NDArray accumulate(NDArray input,
+                             NDArray output,
+                             NDArray delta,
+                             NDArray weightGradient,
+                             NDArray biasGradient,
+                             boolean calculateDelta
+                            ) {
+      return delta;
+   }
+
    @Override
    public Tuple2<NDArray, Double> backward(WeightUpdate updater, NDArray input, NDArray output, NDArray delta, int iteration, boolean calcuateDelta) {
       return $(delta, 0d);
@@ -52,8 +63,8 @@ public class Dropout extends Layer {
 
    @Override
    NDArray forward(NDArray input) {
-      val mask = NDArrayFactory.DEFAULT().create(input.numRows(), input.numCols(), NDArrayInitializer.rand())
-                               .test(x -> x < rate);
+      val mask = input.getFactory().create(input.numRows(), input.numCols(), NDArrayInitializer.rand())
+                      .test(x -> x < rate);
       return input.mul(mask).divi(rate);
    }
 
@@ -5,6 +5,7 @@ import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.ml.optimization.CostFunction;
 import com.davidbracewell.apollo.ml.optimization.CostGradientTuple;
 import com.davidbracewell.apollo.ml.optimization.GradientParameter;
+import com.davidbracewell.apollo.ml.optimization.loss.FusedLoss;
 import com.davidbracewell.apollo.ml.optimization.loss.LossFunction;
 
 /**
@@ -22,17 +23,43 @@ public class FeedForwardCostFunction implements CostFunction<FeedForwardNetwork>
       NDArray[] ai = new NDArray[network.layers.size()];
       NDArray cai = input;
       NDArray Y = input.getLabelAsNDArray();
-      for (int i = 0; i < network.layers.size(); i++) {
+      int last = network.layers.size() - 1;
+      for (int i = 0; i < last; i++) {
          cai = network.layers.get(i).forward(cai);
          ai[i] = cai;
       }
-      if( cai.numRows() == 1){ //If Binary, only take the first row of the Y
+      //The output layer treats the delta as the gradient w.r.t. its pre-activation output, so its activation can be
+      //fused with the loss
+      Layer output = network.layers.get(last);
+      FusedLoss fused = output instanceof OutputLayer
+                        ? FusedLoss.of(((OutputLayer) output).getActivation(), lossFunction)
+                        : null;
+      cai = fused != null
+            ? ((OutputLayer) output).preActivation(cai)
+            : output.forward(cai);
+      ai[last] = cai;
+      if (cai.numRows() == 1) { //If Binary, only take the first row of the Y
          Y = Y.getVector(1, Axis.ROW);
       }
+      if (fused != null) {
+         if (fused.supports(cai, Y)) {
+            NDArray dz = cai.getFactory().zeros(cai.numRows(), cai.numCols());
+            double loss = fused.evaluate(cai, Y, dz) / input.numCols();
+            return CostGradientTuple.of(loss, GradientParameter.of(dz, dz), ai);
+         }
+         cai = ((OutputLayer) output).getActivation().apply(cai);
+         ai[last] = cai;
+      }
       double loss = lossFunction.loss(cai, Y) / input.numCols();
       NDArray dz = lossFunction.derivative(cai, Y);
       return CostGradientTuple.of(loss,
                                   GradientParameter.of(dz, dz),
                                   ai);
    }
+
+   @Override
+   public boolean isMeanCost() {
+      return true;
+   }
+
 }// END OF FeedForwardCostFunction
@@ -1,11 +1,14 @@
 package com.davidbracewell.apollo.ml.classification.nn;
 
+import com.davidbracewell.apollo.linear.Axis;
 import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.linear.NDArrayFactory;
 import com.davidbracewell.apollo.ml.Instance;
 import com.davidbracewell.apollo.ml.classification.Classification;
 import com.davidbracewell.apollo.ml.classification.Classifier;
 import com.davidbracewell.apollo.ml.classification.ClassifierLearner;
+import com.davidbracewell.apollo.ml.classification.TopKClassification;
+import com.davidbracewell.apollo.ml.classification.TopKIndex;
 import com.davidbracewell.apollo.ml.encoder.EncoderPair;
 import com.davidbracewell.apollo.ml.optimization.activation.Activation;
 import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
@@ -13,6 +16,7 @@ import com.davidbracewell.conversion.Cast;
 import lombok.NonNull;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author David B. Bracewell
@@ -22,6 +26,7 @@ public class FeedForwardNetwork extends Classifier {
     * The Layers.
     */
    ArrayList<Layer> layers;
+   private transient volatile TopKIndex topKIndex;
 
    /**
     * Instantiates a new Classifier.
@@ -53,6 +58,53 @@ public class FeedForwardNetwork extends Classifier {
       return createResult(vector.toArray());
    }
 
+   @Override
+   protected List<Classification> classifyVectors(List<NDArray> vectors) {
+      NDArrayFactory factory = NDArrayFactory.DEFAULT();
+      for (Layer layer : layers) {
+         if (layer instanceof WeightLayer) {
+            factory = layer.getWeights().getFactory();
+            break;
+         }
+      }
+      //output is numLabels x numVectors
+      NDArray output = factory.hstack(vectors);
+      for (Layer layer : layers) {
+         output = layer.forward(output);
+      }
+      List<Classification> results = new ArrayList<>(vectors.size());
+      if (output.numRows() == 1) {
+         Activation activation = Cast.<WeightLayer>as(layers.get(layers.size() - 1)).activation;
+         double shift = activation.isProbabilistic() ? 1d : 0d;
+         for (int c = 0; c < output.numCols(); c++) {
+            double score = output.get(0, c);
+            results.add(createResult(new double[]{shift - score, score}));
+         }
+         return results;
+      }
+      for (int c = 0; c < output.numCols(); c++) {
+         results.add(createResult(output.getVector(c, Axis.COlUMN).toArray()));
+      }
+      return results;
+   }
+
+   @Override
+   public TopKClassification topK(NDArray vector, int k) {
+      Layer output = layers.get(layers.size() - 1);
+      if (!(output instanceof WeightLayer) || output.getOutputSize() <= 2) {
+         return super.topK(vector, k);
+      }
+      for (int i = 0; i < layers.size() - 1; i++) {
+         vector = layers.get(i).forward(vector);
+      }
+      TopKIndex index = topKIndex;
+      if (index == null) {
+         index = new TopKIndex(Cast.<WeightLayer>as(output));
+         topKIndex = index;
+      }
+      return index.search(vector, k, getLabelEncoder());
+   }
+
    public FeedForwardNetwork copy() {
       FeedForwardNetwork ffn = new FeedForwardNetwork(getPreprocessors(), getEncoderPair());
       ffn.layers = new ArrayList<>();
@@ -1,29 +1,22 @@
 package com.davidbracewell.apollo.ml.classification.nn;
 
-import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
 import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.TrainingListener;
 import com.davidbracewell.apollo.ml.classification.Classifier;
 import com.davidbracewell.apollo.ml.classification.ClassifierLearner;
 import com.davidbracewell.apollo.ml.data.Dataset;
 import com.davidbracewell.apollo.ml.optimization.*;
 import com.davidbracewell.apollo.ml.optimization.loss.CrossEntropyLoss;
 import com.davidbracewell.apollo.ml.optimization.loss.LossFunction;
-import com.davidbracewell.collection.list.Lists;
-import com.davidbracewell.guava.common.base.Stopwatch;
 import com.davidbracewell.logging.Loggable;
-import com.davidbracewell.tuple.Tuple2;
-import com.davidbracewell.tuple.Tuple3;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.Singular;
-import org.jblas.FloatMatrix;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
-
-import static com.davidbracewell.tuple.Tuples.$;
 
 /**
  * @author David B. Bracewell
@@ -58,18 +51,28 @@ public class FeedForwardNetworkLearner extends ClassifierLearner implements Logg
    @Setter
    @Builder.Default
    private WeightUpdate weightUpdate = SGDUpdater.builder().build();
-
-   static float correct(FloatMatrix predicted, FloatMatrix gold) {
-      int[] pMax = predicted.columnArgmaxs();
-      int[] gMax = gold.columnArgmaxs();
-      float correct = 0;
-      for (int i = 0; i < pMax.length; i++) {
-         if (pMax[i] == gMax[i]) {
-            correct++;
-         }
-      }
-      return correct;
-   }
+   @Getter
+   @Setter
+   @Builder.Default
+   private int threads = 1;
+   @Getter
+   @Setter
+   @Builder.Default
+   private NDArrayFactory factory = NDArrayFactory.DEFAULT();
+   @Getter
+   @Setter
+   private Dataset<Instance> validationSet;
+   @Getter
+   @Setter
+   @Builder.Default
+   private int validationInterval = 1;
+   @Getter
+   @Setter
+   @Builder.Default
+   private int patience = 5;
+   @Getter
+   @Setter
+   private TrainingListener trainingListener;
 
    private void buildNetwork(FeedForwardNetwork network, int numFeatures, int numLabels) {
       int inputSize = numFeatures;
@@ -79,11 +82,19 @@ public class FeedForwardNetworkLearner extends ClassifierLearner implements Logg
          if (layer.getOutputSize() <= 0) {
             layer.outputSize(inputSize);
          }
-         network.layers.add(layer.inputSize(inputSize).build());
+         Layer built = layer.inputSize(inputSize).build();
+         built.convert(factory);
+         network.layers.add(built);
          inputSize = layer.getOutputSize();
       }
    }
 
+   private static FeedForwardNetwork snapshot(FeedForwardNetwork network) {
+      FeedForwardNetwork copy = network.copy();
+      copy.layers.removeIf(Layer::trainOnly);
+      return copy;
+   }
+
    @Override
    protected void resetLearnerParameters() {
 
@@ -98,224 +109,33 @@ public class FeedForwardNetworkLearner extends ClassifierLearner implements Logg
                                                                    .maxIterations(maxIterations)
                                                                    .tolerance(tolerance)
                                                                    .historySize(3);
-      final int effectiveBatchSize = batchSize <= 0 ? 1 : batchSize;
+      FeedForwardCostFunction costFunction = new FeedForwardCostFunction(lossFunction);
+      if (validationSet != null) {
+         terminationCriteria.earlyStopping(new EarlyStopping<>(encodeHeldOut(validationSet),
+                                                               network.numberOfLabels(),
+                                                               network.numberOfFeatures(),
+                                                               costFunction,
+                                                               FeedForwardNetworkLearner::snapshot,
+                                                               (target, best) -> target.layers = best.layers)
+                                              .interval(validationInterval)
+                                              .patience(patience));
+      }
       Backprop bp = new Backprop();
-      bp.setBatchSize(batchSize);
+      bp.setBatchSize(batchSize <= 0 ? 1 : batchSize);
+      bp.setThreads(threads);
+      bp.setFactory(factory);
+      bp.setListener(trainingListener);
       bp.optimize(network,
                   dataset.vectorStream(false),
-                  new FeedForwardCostFunction(lossFunction),
+                  costFunction,
                   terminationCriteria,
                   weightUpdate,
                   reportInterval);
-      if (Math.random() > 0) {
-         return network;
-      }
-
-      BatchIterator data = new BatchIterator(dataset);
-      List<List<WeightUpdate>> threadedWeightUpdates = new ArrayList<>();
-      for (int j = 0; j < 4; j++) {
-         threadedWeightUpdates.add(new ArrayList<>());
-      }
-//      List<WeightUpdate> weightUpdates = new ArrayList<>();
-      for (int i = 0; i < network.layers.size(); i++) {
-         for (int j = 0; j < 4; j++) {
-            threadedWeightUpdates.get(j).add(weightUpdate.copy());
-         }
-//         weightUpdates.add(weightUpdate.copy());
-      }
-      final ExecutorService executor = Executors.newFixedThreadPool(4);
-
-      for (int iteration = 0; iteration < terminationCriteria.maxIterations(); iteration++) {
-         Stopwatch timer = Stopwatch.createStarted();
-         double loss = 0d;
-         double correct = 0;
-         data.shuffle();
-         List<Future<Tuple3<Double, Double, List<Layer>>>> results = new ArrayList<>();
-         List<NDArray> batches = Lists.asArrayList(data.iterator(effectiveBatchSize));
-         int thread = 0;
-         int partitionSize = batches.size() / 4;
-         int start = 0;
-         for (int b = 0; b < 3; b++) {
-            results.add(executor.submit(new WThread(batches.subList(start, start + partitionSize),
-                                                    network,
-                                                    lossFunction,
-                                                    threadedWeightUpdates.get(b),
-                                                    iteration)));
-            start += partitionSize;
-         }
-         results.add(executor.submit(new WThread(batches.subList(start, batches.size()),
-                                                 network,
-                                                 lossFunction,
-                                                 threadedWeightUpdates.get(3),
-                                                 iteration)));
-//         for (List<NDArray> tuple2s : com.davidbracewell.guava.common.collect.Lists.partition(batches,
-//                                                                                              (int) Math.ceil(
-//                                                                                                 batches.size() / 4))) {
-//            results.add(executor.submit(
-//               new WThread(tuple2s, network, lossFunction, threadedWeightUpdates.get(thread), iteration)));
-//            thread++;
-//         }
-//         for (Iterator<Tuple2<NDArray, NDArray>> itr = data.iterator(effectiveBatchSize); itr.hasNext(); ) {
-//            numBatch++;
-//            results.add(executor.submit(new WorkerThread(itr.next(), network, lossFunction, weightUpdates, iteration)));
-////            Tuple2<NDArray, NDArray> tuple = itr.next();
-////            NDArray X = tuple.v1;
-////            NDArray Y = tuple.v2;
-////            double bSize = X.numCols();
-////            List<NDArray> ai = new ArrayList<>();
-////            NDArray cai = X;
-////            for (Layer layer : network.layers) {
-////               cai = layer.forward(cai);
-////               ai.add(cai);
-////            }
-////            loss += lossFunction.loss(cai, Y) / bSize;
-////            correct += correct(cai.toFloatMatrix(), Y.toFloatMatrix());
-////            NDArray dz = lossFunction.derivative(cai, Y);
-////            for (int i = network.layers.size() - 1; i >= 0; i--) {
-////               NDArray input = i == 0 ? X : ai.get(i - 1);
-////               Tuple2<NDArray, Double> gradCost = network.layers.get(i).backward(weightUpdates.get(i), input, ai.get(i),
-////                                                                                dz, iteration, i > 0);
-////               dz = gradCost.v1;
-////               loss += gradCost.v2;
-////            }
-////            numProcessed += bSize;
-//         }
-
-         NDArray[][] wUpdates = new NDArray[network.layers.size()][results.size()];
-         NDArray[][] bUpdates = new NDArray[network.layers.size()][results.size()];
-         thread = 0;
-         for (Future<Tuple3<Double, Double, List<Layer>>> future : results) {
-            try {
-               Tuple3<Double, Double, List<Layer>> r = future.get();
-               loss += r.v1;
-               correct += r.v2;
-               List<Layer> layers = r.v3;
-               for (int i = 0; i < layers.size(); i++) {
-                  wUpdates[i][thread] = layers.get(i).getWeights();
-                  bUpdates[i][thread] = layers.get(i).getBias();
-               }
-               thread++;
-            } catch (InterruptedException | ExecutionException e) {
-               e.printStackTrace();
-            }
-         }
-         loss /= results.size();
-         for (int i = 0; i < layers.size(); i++) {
-            network.layers.get(i).update(wUpdates[i], bUpdates[i]);
-         }
-
-//         NDArray[] wGrad = new NDArray[network.layers.size()];
-//         NDArray[] bGrad = new NDArray[network.layers.size()];
-//         for (Future<Tuple3<Double, Double, BackpropResult[]>> future : results) {
-//            try {
-//               Tuple3<Double, Double, BackpropResult[]> costAcc = future.get();
-//               loss += costAcc.v1;
-//               correct += costAcc.v2;
-//               BackpropResult[] bp = costAcc.v3;
-//               for (int i = 0; i < bp.length; i++) {
-//                  if (wGrad[i] == null && !bp[i].getWeightGradient().isEmpty()) {
-//                     wGrad[i] = bp[i].getWeightGradient();
-//                  } else if (!bp[i].getWeightGradient().isEmpty()) {
-//                     wGrad[i].addi(bp[i].getWeightGradient());
-//                  }
-//                  if (bGrad[i] == null && !bp[i].getBiasGradient().isEmpty()) {
-//                     bGrad[i] = bp[i].getBiasGradient();
-//                  } else if (!bp[i].getBiasGradient().isEmpty()) {
-//                     bGrad[i].addi(bp[i].getBiasGradient());
-//                  }
-//               }
-//            } catch (Exception e) {
-//               e.printStackTrace();
-//            }
-//         }
-//
-//         for (int i = 0; i < wGrad.length; i++) {
-//            if (wGrad[i] != null) {
-//               wGrad[i].divi(data.size());
-//            }
-//            if (bGrad[i] != null) {
-//               bGrad[i].divi(data.size());
-//            }
-//         }
-//
-//         for (int i = 0; i < network.layers.size(); i++) {
-//            loss += network.layers.get(i).update(
-//               weightUpdates.get(i),
-//               wGrad[i],
-//               bGrad[i],
-//               iteration);
-//         }
-
-         if (reportInterval > 0 &&
-                (iteration == 0 || (iteration + 1) == terminationCriteria.maxIterations() || (iteration + 1) % reportInterval == 0)) {
-            logInfo("iteration={0}, totalLoss={1}, accuracy={2}, time={3}",
-                    (iteration + 1),
-                    (loss),
-                    (correct / data.size()),
-                    timer);
-         }
-         if (terminationCriteria.check(loss)) {
-            break;
-         }
-
-      }
-      executor.shutdown();
       network.layers.removeIf(Layer::trainOnly);
       network.layers.trimToSize();
       return network;
    }
 
-   public static class WThread implements Callable<Tuple3<Double, Double, List<Layer>>> {
-      final List<WeightUpdate> weightUpdates;
-      final int iteration;
-      public double loss;
-      public double correct;
-      public List<Layer> layers = new ArrayList<>();
-      public List<NDArray> data = new ArrayList<>();
-      public LossFunction lossFunction;
-
-      public WThread(List<NDArray> data, FeedForwardNetwork network, LossFunction lossFunction, List<WeightUpdate> weightUpdates, int iteration) {
-         for (Layer layer : network.layers) {
-            layers.add(layer.copy());
-         }
-         this.data = data;
-         this.lossFunction = lossFunction;
-         this.weightUpdates = weightUpdates;
-         this.iteration = iteration;
-      }
-
-      @Override
-      public Tuple3<Double, Double, List<Layer>> call() {
-         double size = 0;
-         for (NDArray datum : data) {
-            NDArray X = datum;
-            NDArray Y = datum.getLabelAsNDArray();
-            double bSize = X.numCols();
-            size += bSize;
-            List<NDArray> ai = new ArrayList<>();
-            NDArray cai = X;
-            for (Layer layer : layers) {
-               cai = layer.forward(cai);
-               ai.add(cai);
-            }
-            loss += lossFunction.loss(cai, Y);
-            correct += correct(cai.toFloatMatrix(), Y.toFloatMatrix());
-            NDArray dz = lossFunction.derivative(cai, Y);
-            for (int i = layers.size() - 1; i >= 0; i--) {
-               NDArray input = i == 0 ? X : ai.get(i - 1);
-               Tuple2<NDArray, Double> t = layers.get(i).backward(weightUpdates.get(i), input, ai.get(i), dz, iteration,
-                                                                  i > 0);
-               dz = t.v1;
-               if (i == layers.size() - 1) {
-                  loss += t.v2;
-               }
-            }
-         }
-         loss = size > 0 ? loss / size : loss;
-         return $(loss, correct, layers);
-      }
-   }
-
    public static class NetworkBuilder {
 
       public NetworkBuilder optimizer(String optimizer) {
@@ -326,6 +146,9 @@ public class FeedForwardNetworkLearner extends ClassifierLearner implements Logg
             case "adam":
                this.weightUpdate(AdamUpdater.builder().build());
                break;
+            case "sparse_sgd":
+               this.weightUpdate(SparseSGDUpdater.builder().build());
+               break;
             default:
                throw new IllegalArgumentException("Unknown optimizer " + optimizer);
          }
@@ -2,6 +2,7 @@ package com.davidbracewell.apollo.ml.classification.nn;
 
 import com.davidbracewell.Copyable;
 import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
 import com.davidbracewell.apollo.ml.optimization.WeightUpdate;
 import com.davidbracewell.conversion.Cast;
 import com.davidbracewell.tuple.Tuple2;
@@ -36,6 +37,43 @@ public abstract class Layer implements Serializable, Copyable<Layer> {
 
    public abstract BackpropResult backward(NDArray input, NDArray output, NDArray delta, boolean calculateDelta);
 
+   /**
+    * Backpropagates the delta through the layer, adding the layer's weight and bias gradients to the given
+    * accumulators instead of allocating new gradient arrays. Layers without parameters ignore the accumulators.
+    *
+    * @param input          the input of the layer
+    * @param output         the output of the layer
+    * @param delta          the delta of the layer's output
+    * @param weightGradient the weight gradient accumulator
+    * @param biasGradient   the bias gradient accumulator
+    * @param calculateDelta true if the delta of the layer's input is needed
+    * @return the delta of the layer's input
+    */
+   public NDArray accumulate(NDArray input,
+                             NDArray output,
+                             NDArray delta,
+                             NDArray weightGradient,
+                             NDArray biasGradient,
+                             boolean calculateDelta
+                            ) {
+      BackpropResult result = backward(input, output, delta, calculateDelta);
+      if (!result.getWeightGradient().isEmpty()) {
+         weightGradient.addi(result.getWeightGradient());
+         biasGradient.addi(result.getBiasGradient());
+      }
+      return result.getDelta();
+   }
+
+   /**
+    * Converts the layer's parameters to NDArrays created by the given factory, e.g. {@link
+    * NDArrayFactory#DENSE_FLOAT} to train in single precision. Layers without parameters do nothing.
+    *
+    * @param factory the factory to convert the parameters to
+    */
+   public void convert(NDArrayFactory factory) {
+
+   }
+
    /**
     * Forward vector.
     *
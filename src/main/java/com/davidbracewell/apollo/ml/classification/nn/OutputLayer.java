@@ -49,6 +49,17 @@ public class OutputLayer extends WeightLayer {
       return BackpropResult.from(dzOut, dw, db);
    }
 
+   @Override
+   public NDArray accumulate(NDArray input,
+                             NDArray output,
+                             NDArray delta,
+                             NDArray weightGradient,
+                             NDArray biasGradient,
+                             boolean calculateDelta
+                            ) {
+      return accumulateGradient(input, delta, weightGradient, biasGradient, calculateDelta);
+   }
+
    @Override
    public NDArray backward(NDArray input, NDArray output, NDArray delta, double learningRate, int layerIndex, int iteration) {
       NDArray dzOut = layerIndex > 0
@@ -58,7 +69,7 @@ public class OutputLayer extends WeightLayer {
                     .divi(input.numCols());
       val db = delta.sum(Axis.ROW)
                     .divi(input.numCols());
-      v.muli(0.9).subi(dw.muli(learningRate));
+      momentum().muli(0.9).subi(dw.muli(learningRate));
       weights.addi(v);
       bias.subi(db.muli(learningRate));
       l1Update(learningRate, iteration);
@@ -26,6 +26,10 @@ public abstract class WeightLayer extends Layer implements LinearModelParameters
    protected final double l2;
    protected NDArray weights;
    protected NDArray bias;
+   /**
+    * The momentum of the weights, allocated on first use so that copies (e.g. early stopping snapshots) and
+    * deserialized layers do not carry one.
+    */
    protected transient NDArray v;
 
    public WeightLayer(int inputSize, int outputSize, Activation activation, NDArrayInitializer NDArrayInitializer, double l1, double l2) {
@@ -33,7 +37,6 @@ public abstract class WeightLayer extends Layer implements LinearModelParameters
       this.activation = activation;
       this.weights = NDArrayFactory.DEFAULT().create(outputSize, inputSize, NDArrayInitializer);
       this.bias = NDArrayFactory.DEFAULT().zeros(outputSize);
-      this.v = NDArrayFactory.DEFAULT().zeros(outputSize, inputSize);
       this.l1 = l1;
       this.l2 = l2;
    }
@@ -45,12 +48,11 @@ public abstract class WeightLayer extends Layer implements LinearModelParameters
       this.weights = layer.weights.copy();
       this.l1 = layer.l1;
       this.l2 = layer.l2;
-      this.v = NDArrayFactory.DEFAULT().zeros(layer.getOutputSize(), layer.getInputSize());
    }
 
    @Override
    public BackpropResult backward(NDArray input, NDArray output, NDArray delta, boolean calculateDelta) {
-      delta.muli(activation.valueGradient(output));
+      activation.backward(output, delta);
       NDArray dzOut = calculateDelta
                       ? weights.T().mmul(delta)
                       : null;
@@ -61,13 +63,47 @@ public abstract class WeightLayer extends Layer implements LinearModelParameters
 
    @Override
    public Tuple2<NDArray, Double> backward(WeightUpdate updater, NDArray input, NDArray output, NDArray delta, int iteration, boolean calcuateDelta) {
-      return updater.update(this, input, output, delta.muli(activation.valueGradient(output)), iteration,
-                            calcuateDelta);
+      return updater.update(this, input, output, activation.backward(output, delta), iteration, calcuateDelta);
+   }
+
+   @Override
+   public NDArray accumulate(NDArray input,
+                             NDArray output,
+                             NDArray delta,
+                             NDArray weightGradient,
+                             NDArray biasGradient,
+                             boolean calculateDelta
+                            ) {
+      activation.backward(output, delta);
+      return accumulateGradient(input, delta, weightGradient, biasGradient, calculateDelta);
+   }
+
+   /**
+    * Adds the gradients for the given delta of the layer's pre-activation output to the given accumulators.
+    *
+    * @param input          the input of the layer
+    * @param delta          the delta of the layer's pre-activation output
+    * @param weightGradient the weight gradient accumulator
+    * @param biasGradient   the bias gradient accumulator
+    * @param calculateDelta true if the delta of the layer's input is needed
+    * @return the delta of the layer's input
+    */
+   protected NDArray accumulateGradient(NDArray input,
+                                        NDArray delta,
+                                        NDArray weightGradient,
+                                        NDArray biasGradient,
+                                        boolean calculateDelta
+                                       ) {
+      weightGradient.addiMmulT(delta, input);
+      biasGradient.addi(delta.sum(Axis.ROW));
+      return calculateDelta
+             ? weights.T().mmul(delta)
+             : null;
    }
 
    @Override
    public NDArray backward(NDArray input, NDArray output, NDArray delta, double learningRate, int layerIndex, int iteration) {
-      delta.muli(activation.valueGradient(output));
+      activation.backward(output, delta);
       NDArray dzOut = layerIndex > 0
                       ? weights.T().mmul(delta)
                       : null;
@@ -75,16 +111,37 @@ public abstract class WeightLayer extends Layer implements LinearModelParameters
                     .divi(input.numCols());
       val db = delta.sum(Axis.ROW)
                     .divi(input.numCols());
-      v.muli(0.9).subi(dw.muli(learningRate));
+      momentum().muli(0.9).subi(dw.muli(learningRate));
       weights.addi(v);
       bias.subi(db.muli(learningRate));
       l1Update(learningRate, iteration);
       return dzOut;
    }
 
+   /**
+    * Gets the momentum of the weights, allocating it on first use.
+    *
+    * @return the momentum
+    */
+   protected NDArray momentum() {
+      if (v == null) {
+         v = weights.getFactory().zeros(getOutputSize(), getInputSize());
+      }
+      return v;
+   }
+
+   @Override
+   public void convert(@NonNull NDArrayFactory factory) {
+      if (weights.getFactory() != factory) {
+         this.weights = factory.copy(weights);
+         this.bias = factory.copy(bias);
+         this.v = null;
+      }
+   }
+
    @Override
    public NDArray forward(NDArray input) {
-      return activation.apply(weights.mmul(input).addi(bias, Axis.COlUMN));
+      return activation.apply(preActivation(input));
    }
 
    @Override
@@ -97,6 +154,16 @@ public abstract class WeightLayer extends Layer implements LinearModelParameters
       return weights;
    }
 
+   /**
+    * Calculates the output of the layer before the activation is applied.
+    *
+    * @param input the input
+    * @return the pre-activation output
+    */
+   NDArray preActivation(NDArray input) {
+      return weights.mmul(input).addi(bias, Axis.COlUMN);
+   }
+
    protected void l1Update(double learningRate, int iteration) {
       if (l1 > 0) {
          //L1 Regularization
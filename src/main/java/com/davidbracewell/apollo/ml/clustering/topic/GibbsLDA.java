@@ -2,6 +2,8 @@ package com.davidbracewell.apollo.ml.clustering.topic;
 
 import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.linear.NDArrayFactory;
+import com.davidbracewell.apollo.ml.TrainingListener;
+import com.davidbracewell.apollo.ml.TrainingMetrics;
 import com.davidbracewell.apollo.ml.clustering.Cluster;
 import com.davidbracewell.apollo.ml.clustering.Clusterer;
 import com.davidbracewell.apollo.stat.distribution.ConditionalMultinomial;
@@ -53,6 +55,9 @@ public class GibbsLDA extends Clusterer<LDAModel> {
    @Getter
    @Setter(onParam = @_({@NonNull}))
    private RandomGenerator randomGenerator = new Well19937c();
+   @Getter
+   @Setter
+   private TrainingListener trainingListener;
 
 
    private ConditionalMultinomial nw;
@@ -118,8 +123,12 @@ public class GibbsLDA extends Clusterer<LDAModel> {
       }
 
       long changed = 0;
+      TrainingMetrics metrics = new TrainingMetrics(trainingListener != null);
       for (int iteration = 0; iteration < maxIterations; iteration++) {
+         metrics.start(iteration);
+         long time = metrics.now();
          changed = 0;
+         long tokens = 0;
          for (int m = 0; m < M; m++) {
             for (int n = 0; n < documents[m].length; n++) {
                int topic = sample(m, n);
@@ -128,11 +137,20 @@ public class GibbsLDA extends Clusterer<LDAModel> {
                }
                z[m][n] = topic;
             }
+            tokens += documents[m].length;
          }
+         time = metrics.record(TrainingMetrics.Phase.FORWARD, time);
 
          if (iteration > burnin && sampleLag > 0 && ((iteration - burnin) % sampleLag == 0)) {
             updateParams();
          }
+         metrics.record(TrainingMetrics.Phase.UPDATE, time);
+
+         if (trainingListener != null) {
+            metrics.addExamples(tokens);
+            metrics.end(changed);
+            trainingListener.onIteration(metrics);
+         }
 
          if (verbose && (iteration < 10 || iteration % 50 == 0)) {
             log.info("Iteration {0}: {1} total words changed topics.", iteration, changed);
@@ -436,6 +436,20 @@ public abstract class Dataset<T extends Example> implements Iterable<T>, Copyabl
       return this;
    }
 
+   /**
+    * Creates a new dataset made up of the examples at the given indices of this dataset (in iteration order), e.g. a
+    * bootstrap sample where an index repeated <code>n</code> times gives its example a weight of <code>n</code>. Unlike
+    * {@link #sample(boolean, int)}, implementations may share the example objects with this dataset rather than copying
+    * them. The new dataset has new encoders and a copy of this dataset's preprocessors.
+    *
+    * @param indices the indices of the examples to select
+    * @return the dataset
+    */
+   public Dataset<T> select(@NonNull int[] indices) {
+      List<T> examples = stream().collect();
+      return create(StreamingContext.local().stream(Arrays.stream(indices).mapToObj(examples::get)));
+   }
+
    /**
     * Samples the dataset creating a new dataset of the given sample size.
     *
@@ -1,8 +1,8 @@
 package com.davidbracewell.apollo.ml.data;
 
-import com.davidbracewell.Interner;
 import com.davidbracewell.apollo.ml.encoder.Encoder;
 import com.davidbracewell.apollo.ml.Example;
+import com.davidbracewell.apollo.ml.SymbolTable;
 import com.davidbracewell.apollo.ml.encoder.LabelEncoder;
 import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
 import com.davidbracewell.collection.Collect;
@@ -15,14 +15,14 @@ import lombok.NonNull;
 import java.util.*;
 
 /**
- * <p>A Dataset that stores all examples in memory. Feature names are interned to conserve memory. In addition, methods
- * for adding examples are public.</p>
+ * <p>A Dataset that stores all examples in memory. Feature names are interned to conserve memory, which means the
+ * dataset stores interned copies of the examples added to it rather than the examples themselves, so later changes to
+ * an added example are not seen by the dataset. In addition, methods for adding examples are public.</p>
  *
  * @param <T> the example type parameter
  * @author David B. Bracewell
  */
 public class InMemoryDataset<T extends Example> extends Dataset<T> {
-   private static final Interner<String> interner = new Interner<>();
    private static final long serialVersionUID = 1L;
    private final List<T> instances = new ArrayList<>();
 
@@ -38,14 +38,15 @@ public class InMemoryDataset<T extends Example> extends Dataset<T> {
    }
 
    /**
-    * Adds an example to the dataset
+    * Adds a copy of the example to the dataset whose feature names are interned using the global {@link SymbolTable}.
+    * The given example itself is not stored, so changes made to it after it was added are not seen by the dataset.
     *
     * @param example the example
     */
    public void add(T example) {
       if (example != null) {
          getLabelEncoder().encode(example.getLabelSpace());
-         instances.add(example);
+         instances.add(Cast.as(example.intern(SymbolTable.getInterner())));
       }
    }
 
@@ -58,7 +59,7 @@ public class InMemoryDataset<T extends Example> extends Dataset<T> {
    protected void addAll(@NonNull MStream<T> stream) {
       for (T instance : Collect.asIterable(stream.iterator())) {
          getLabelEncoder().encode(instance.getLabelSpace());
-         instances.add(Cast.as(instance.intern(interner)));
+         instances.add(Cast.as(instance.intern(SymbolTable.getInterner())));
       }
    }
 
@@ -99,6 +100,20 @@ public class InMemoryDataset<T extends Example> extends Dataset<T> {
       return this;
    }
 
+   @Override
+   public Dataset<T> select(@NonNull int[] indices) {
+      InMemoryDataset<T> dataset = new InMemoryDataset<>(getFeatureEncoder().createNew(),
+                                                         getLabelEncoder().createNew(),
+                                                         new PreprocessorList<>(getPreprocessors()));
+      //Examples are already interned, so they are shared rather than copied
+      for (int index : indices) {
+         T example = instances.get(index);
+         dataset.getLabelEncoder().encode(example.getLabelSpace());
+         dataset.instances.add(example);
+      }
+      return dataset;
+   }
+
    @Override
    public int size() {
       return instances.size();
@@ -0,0 +1,411 @@
+package com.davidbracewell.apollo.ml.data.source;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.SymbolTable;
+import com.davidbracewell.apollo.ml.encoder.EncoderPair;
+import com.davidbracewell.apollo.ml.encoder.HashingEncoder;
+import com.davidbracewell.collection.Streams;
+import com.davidbracewell.conversion.Cast;
+import com.davidbracewell.guava.common.base.Throwables;
+import com.davidbracewell.guava.common.collect.Iterators;
+import com.davidbracewell.io.QuietIO;
+import com.davidbracewell.io.resource.Resource;
+import com.davidbracewell.stream.MStream;
+import com.davidbracewell.stream.SparkStreamingContext;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.pojo.Field;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * <p>Reads instances stored in the Apache Arrow IPC streaming format, as written by {@link ArrowWriter} or by external
+ * feature pipelines (e.g. <code>pyarrow.ipc.new_stream</code>). The data is a wide table with one numeric column per
+ * feature, where a null marks a feature that is absent from a row, an optional label column and an optional weight
+ * column (named <code>label</code> and <code>weight</code> by default). The type of the label column gives the type
+ * of the labels: strings, lists of strings (multi-label), 32-bit integers, 64-bit integers or floating point numbers.
+ * Rows without a weight column have a weight of <code>1.0</code>.</p>
+ *
+ * <p>Data is read a record batch at a time, with each batch decoded column by column into the parallel arrays backing
+ * {@link Instance}s or into feature vectors (see {@link #vectorStream(EncoderPair)}). An optional projection restricts
+ * the feature columns that are used; the values of columns outside of the projection are never converted. With a local
+ * streaming context the files are read lazily by the consuming thread, while with a distributed streaming context
+ * each file (of a directory) is read on a worker, which requires the resource to be readable from the workers.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class ArrowDataSource extends DataSource<Instance> {
+   /**
+    * The default name of the label column
+    */
+   public static final String DEFAULT_LABEL_COLUMN = "label";
+   /**
+    * The default name of the weight column
+    */
+   public static final String DEFAULT_WEIGHT_COLUMN = "weight";
+   private static final long serialVersionUID = 1L;
+   @Getter
+   private final Set<String> projection;
+   @Getter
+   @Setter
+   private String labelColumn = DEFAULT_LABEL_COLUMN;
+   @Getter
+   @Setter
+   private String weightColumn = DEFAULT_WEIGHT_COLUMN;
+
+   /**
+    * Instantiates a new Arrow data source reading all feature columns.
+    *
+    * @param resource the resource containing the data
+    */
+   public ArrowDataSource(@NonNull Resource resource) {
+      super(resource);
+      this.projection = null;
+   }
+
+   /**
+    * Instantiates a new Arrow data source reading only the given feature columns.
+    *
+    * @param resource       the resource containing the data
+    * @param featureColumns the names of the feature columns to read
+    */
+   public ArrowDataSource(@NonNull Resource resource, @NonNull Collection<String> featureColumns) {
+      super(resource);
+      this.projection = new HashSet<>(featureColumns);
+   }
+
+   private static double featureValue(FieldVector vector, int row) {
+      if (vector instanceof Float8Vector) {
+         return Cast.<Float8Vector>as(vector).get(row);
+      } else if (vector instanceof Float4Vector) {
+         return Cast.<Float4Vector>as(vector).get(row);
+      } else if (vector instanceof IntVector) {
+         return Cast.<IntVector>as(vector).get(row);
+      } else if (vector instanceof BigIntVector) {
+         return Cast.<BigIntVector>as(vector).get(row);
+      } else if (vector instanceof SmallIntVector) {
+         return Cast.<SmallIntVector>as(vector).get(row);
+      } else if (vector instanceof TinyIntVector) {
+         return Cast.<TinyIntVector>as(vector).get(row);
+      }
+      return Cast.<BitVector>as(vector).get(row);
+   }
+
+   private static boolean isFeatureVector(FieldVector vector) {
+      return vector instanceof Float8Vector
+                || vector instanceof Float4Vector
+                || vector instanceof IntVector
+                || vector instanceof BigIntVector
+                || vector instanceof SmallIntVector
+                || vector instanceof TinyIntVector
+                || vector instanceof BitVector;
+   }
+
+   /**
+    * Provides an iterator over the record batches in the data source, with each batch decoded into a list of
+    * instances.
+    *
+    * @return the iterator of instance batches
+    * @throws IOException Something went wrong reading the data source
+    */
+   public Iterator<List<Instance>> batchIterator() throws IOException {
+      return Iterators.transform(new RecordBatchIterator(resources()), RecordBatch::toInstances);
+   }
+
+   private Stream<RecordBatch> batches(Resource resource) {
+      try {
+         RecordBatchIterator iterator = new RecordBatchIterator(Collections.singletonList(resource));
+         return Streams.asStream(iterator).onClose(() -> QuietIO.closeQuietly(iterator));
+      } catch (IOException e) {
+         throw Throwables.propagate(e);
+      }
+   }
+
+   private boolean isDistributed() {
+      return getStreamingContext() instanceof SparkStreamingContext;
+   }
+
+   private List<Resource> resources() {
+      if (getResource().isDirectory()) {
+         List<Resource> children = new ArrayList<>(getResource().getChildren(true));
+         children.removeIf(Resource::isDirectory);
+         return children;
+      }
+      return Collections.singletonList(getResource());
+   }
+
+   @Override
+   public MStream<Instance> stream() throws IOException {
+      if (isDistributed()) {
+         return getStreamingContext().stream(resources())
+                                     .flatMap(r -> batches(r).flatMap(batch -> batch.toInstances().stream()));
+      }
+      RecordBatchIterator iterator = new RecordBatchIterator(resources());
+      MStream<Instance> stream = getStreamingContext().stream(
+         Iterators.concat(Iterators.transform(iterator, batch -> batch.toInstances().iterator())));
+      stream.onClose(() -> QuietIO.closeQuietly(iterator));
+      return stream;
+   }
+
+   /**
+    * Provides a stream of feature vectors built directly from the columnar data. Each feature column is encoded once
+    * per record batch rather than once per instance. With a distributed streaming context the vectors are encoded on
+    * the workers, so the encoders should be fit and frozen beforehand.
+    *
+    * @param encoderPair the encoder pair used to encode features and labels
+    * @return the stream of vectors
+    * @throws IOException Something went wrong reading the data source
+    */
+   public MStream<NDArray> vectorStream(@NonNull EncoderPair encoderPair) throws IOException {
+      if (isDistributed()) {
+         return getStreamingContext().stream(resources())
+                                     .flatMap(r -> batches(r).flatMap(batch -> batch.toVectors(encoderPair).stream()));
+      }
+      RecordBatchIterator iterator = new RecordBatchIterator(resources());
+      MStream<NDArray> stream = getStreamingContext().stream(
+         Iterators.concat(Iterators.transform(iterator, batch -> batch.toVectors(encoderPair).iterator())));
+      stream.onClose(() -> QuietIO.closeQuietly(iterator));
+      return stream;
+   }
+
+   private static class RecordBatch {
+      final double[] weights;
+      final Object[] labels;
+      final List<String> columns = new ArrayList<>();
+      final List<int[]> rows = new ArrayList<>();
+      final List<double[]> values = new ArrayList<>();
+
+      RecordBatch(int numRows) {
+         this.weights = new double[numRows];
+         this.labels = new Object[numRows];
+      }
+
+      List<Instance> toInstances() {
+         int numRows = weights.length;
+         int[] counts = new int[numRows];
+         for (int[] r : rows) {
+            for (int row : r) {
+               counts[row]++;
+            }
+         }
+         String[][] names = new String[numRows][];
+         double[][] vals = new double[numRows][];
+         for (int i = 0; i < numRows; i++) {
+            names[i] = new String[counts[i]];
+            vals[i] = new double[counts[i]];
+         }
+         Arrays.fill(counts, 0);
+         for (int c = 0; c < columns.size(); c++) {
+            String name = columns.get(c);
+            int[] r = rows.get(c);
+            double[] v = values.get(c);
+            for (int j = 0; j < r.length; j++) {
+               int row = r[j];
+               names[row][counts[row]] = name;
+               vals[row][counts[row]] = v[j];
+               counts[row]++;
+            }
+         }
+         List<Instance> instances = new ArrayList<>(numRows);
+         for (int i = 0; i < numRows; i++) {
+            instances.add(Instance.create(names[i], vals[i], labels[i], weights[i]));
+         }
+         return instances;
+      }
+
+      List<NDArray> toVectors(EncoderPair encoderPair) {
+         if (encoderPair.getFeatureEncoder() instanceof HashingEncoder) {
+            //Hashing needs all of the features of a row at once, so go through the row-major instances
+            List<Instance> instances = toInstances();
+            List<NDArray> vectors = new ArrayList<>(instances.size());
+            for (Instance instance : instances) {
+               vectors.add(instance.toVector(encoderPair));
+            }
+            return vectors;
+         }
+         int numRows = weights.length;
+         int[] ids = new int[columns.size()];
+         for (int c = 0; c < columns.size(); c++) {
+            ids[c] = (int) encoderPair.encodeFeature(columns.get(c));
+         }
+         List<NDArray> vectors = new ArrayList<>(numRows);
+         for (int i = 0; i < numRows; i++) {
+            vectors.add(NDArrayFactory.SPARSE_DOUBLE.zeros(encoderPair.numberOfFeatures()));
+         }
+         for (int c = 0; c < columns.size(); c++) {
+            if (ids[c] == -1) {
+               continue;
+            }
+            int[] r = rows.get(c);
+            double[] v = values.get(c);
+            for (int j = 0; j < r.length; j++) {
+               vectors.get(r[j]).set(ids[c], v[j]);
+            }
+         }
+         for (int i = 0; i < numRows; i++) {
+            NDArray vector = vectors.get(i);
+            if (labels[i] instanceof Iterable) {
+               NDArray lblVector = NDArrayFactory.SPARSE_DOUBLE.zeros(encoderPair.getLabelEncoder().size());
+               for (Object lbl : Cast.<Iterable<Object>>as(labels[i])) {
+                  lblVector.set((int) encoderPair.encodeLabel(lbl), 1.0);
+               }
+               vector.setLabel(lblVector);
+            } else {
+               vector.setLabel(encoderPair.encodeLabel(labels[i]));
+            }
+            vector.setWeight(weights[i]);
+         }
+         return vectors;
+      }
+   }
+
+   private class RecordBatchIterator implements Iterator<RecordBatch>, Closeable {
+      private final Iterator<Resource> resources;
+      private BufferAllocator allocator;
+      private ArrowStreamReader reader;
+      private VectorSchemaRoot root;
+      private FieldVector label;
+      private FieldVector weight;
+      private List<FieldVector> features;
+      private RecordBatch next;
+
+      private RecordBatchIterator(List<Resource> resources) throws IOException {
+         this.resources = resources.iterator();
+         advance();
+      }
+
+      private void advance() throws IOException {
+         next = null;
+         while (next == null) {
+            if (reader == null) {
+               if (!resources.hasNext()) {
+                  return;
+               }
+               open(resources.next());
+            }
+            if (!reader.loadNextBatch()) {
+               close();
+               continue;
+            }
+            next = readRecordBatch();
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         if (reader != null) {
+            try {
+               reader.close();
+            } finally {
+               allocator.close();
+               reader = null;
+               allocator = null;
+            }
+         }
+      }
+
+      @Override
+      public boolean hasNext() {
+         return next != null;
+      }
+
+      @Override
+      public RecordBatch next() {
+         if (next == null) {
+            throw new NoSuchElementException();
+         }
+         RecordBatch batch = next;
+         try {
+            advance();
+         } catch (IOException e) {
+            throw Throwables.propagate(e);
+         }
+         return batch;
+      }
+
+      private void open(Resource resource) throws IOException {
+         allocator = new RootAllocator(Long.MAX_VALUE);
+         reader = new ArrowStreamReader(new BufferedInputStream(resource.inputStream()), allocator);
+         root = reader.getVectorSchemaRoot();
+         label = null;
+         weight = null;
+         features = new ArrayList<>();
+         for (Field field : root.getSchema().getFields()) {
+            FieldVector vector = root.getVector(field.getName());
+            if (field.getName().equals(labelColumn)) {
+               label = vector;
+            } else if (field.getName().equals(weightColumn)) {
+               weight = vector;
+            } else if (projection == null || projection.contains(field.getName())) {
+               if (!isFeatureVector(vector)) {
+                  throw new IOException("Feature column '" + field.getName() + "' is not numeric");
+               }
+               features.add(vector);
+            }
+         }
+      }
+
+      private Object readLabel(int row) {
+         if (label == null || label.isNull(row)) {
+            return null;
+         } else if (label instanceof VarCharVector) {
+            return SymbolTable.intern(label.getObject(row).toString());
+         } else if (label instanceof ListVector) {
+            Set<String> labels = new HashSet<>();
+            for (Object o : Cast.<ListVector>as(label).getObject(row)) {
+               labels.add(SymbolTable.intern(o.toString()));
+            }
+            return labels;
+         } else if (label instanceof IntVector || label instanceof BigIntVector) {
+            return label.getObject(row);
+         }
+         Object value = label.getObject(row);
+         if (value instanceof Number) {
+            return Cast.<Number>as(value).doubleValue();
+         }
+         return SymbolTable.intern(value.toString());
+      }
+
+      private RecordBatch readRecordBatch() {
+         int numRows = root.getRowCount();
+         RecordBatch batch = new RecordBatch(numRows);
+         for (int i = 0; i < numRows; i++) {
+            batch.weights[i] = weight == null || weight.isNull(i) ? 1.0 : featureValue(weight, i);
+            batch.labels[i] = readLabel(i);
+         }
+         for (FieldVector vector : features) {
+            int nnz = numRows - vector.getNullCount();
+            if (nnz == 0) {
+               continue;
+            }
+            int[] rows = new int[nnz];
+            double[] values = new double[nnz];
+            int j = 0;
+            for (int i = 0; i < numRows; i++) {
+               if (!vector.isNull(i)) {
+                  rows[j] = i;
+                  values[j] = featureValue(vector, i);
+                  j++;
+               }
+            }
+            batch.columns.add(SymbolTable.intern(vector.getField().getName()));
+            batch.rows.add(rows);
+            batch.values.add(values);
+         }
+         return batch;
+      }
+   }
+
+}//END OF ArrowDataSource
@@ -0,0 +1,296 @@
+package com.davidbracewell.apollo.ml.data.source;
+
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.conversion.Cast;
+import com.davidbracewell.guava.common.base.Preconditions;
+import com.davidbracewell.io.resource.Resource;
+import lombok.NonNull;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * <p>Writes instances in the Apache Arrow IPC streaming format read by {@link ArrowDataSource}. The schema has a
+ * <code>weight</code> column, a <code>label</code> column and one nullable double column per feature, in the order of
+ * the feature names given to the writer, where features missing from an instance are null. The label column's type is
+ * taken from the first labeled instance: strings, lists of strings (multi-label), 32-bit integers, 64-bit integers or
+ * doubles. Instances are buffered into record batches of <code>batchSize</code> instances.</p>
+ *
+ * <p>As every record batch holds a (mostly null) column for every feature, the format suits feature tables with
+ * thousands of columns, not vocabularies with millions of sparse features.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class ArrowWriter implements AutoCloseable {
+   /**
+    * The default number of instances in a record batch
+    */
+   public static final int DEFAULT_BATCH_SIZE = 4096;
+   private static final ArrowType DOUBLE_TYPE = new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+   private final OutputStream out;
+   private final int batchSize;
+   private final List<Instance> buffer;
+   private final List<String> featureNames;
+   private final Map<String, Integer> featureIndex = new HashMap<>();
+   private BufferAllocator allocator;
+   private VectorSchemaRoot root;
+   private ArrowStreamWriter writer;
+   private Float8Vector weight;
+   private FieldVector label;
+   private LabelType labelType;
+   private Float8Vector[] features;
+
+   /**
+    * Instantiates a new Arrow writer using the default batch size.
+    *
+    * @param resource     the resource to write to
+    * @param featureNames the names of the feature columns
+    * @throws IOException Something went wrong opening the resource
+    */
+   public ArrowWriter(@NonNull Resource resource, @NonNull Collection<String> featureNames) throws IOException {
+      this(resource, featureNames, DEFAULT_BATCH_SIZE);
+   }
+
+   /**
+    * Instantiates a new Arrow writer.
+    *
+    * @param resource     the resource to write to
+    * @param featureNames the names of the feature columns
+    * @param batchSize    the number of instances per record batch
+    * @throws IOException Something went wrong opening the resource
+    */
+   public ArrowWriter(@NonNull Resource resource,
+                      @NonNull Collection<String> featureNames,
+                      int batchSize) throws IOException {
+      Preconditions.checkArgument(batchSize > 0, "Batch size must be > 0");
+      this.batchSize = batchSize;
+      this.buffer = new ArrayList<>(batchSize);
+      this.featureNames = new ArrayList<>(new LinkedHashSet<>(featureNames));
+      for (int i = 0; i < this.featureNames.size(); i++) {
+         String name = this.featureNames.get(i);
+         Preconditions.checkArgument(!name.equals(ArrowDataSource.DEFAULT_LABEL_COLUMN)
+                                        && !name.equals(ArrowDataSource.DEFAULT_WEIGHT_COLUMN),
+                                     "'%s' is a reserved column name", name);
+         featureIndex.put(name, i);
+      }
+      this.out = new BufferedOutputStream(resource.outputStream());
+   }
+
+   /**
+    * Writes the instances in the given dataset to the given resource in the Arrow IPC streaming format, with one
+    * column per feature in the dataset.
+    *
+    * @param dataset  the dataset to write
+    * @param resource the resource to write to
+    * @throws IOException Something went wrong writing the dataset
+    */
+   public static void write(@NonNull Dataset<Instance> dataset, @NonNull Resource resource) throws IOException {
+      Set<String> featureNames = new TreeSet<>(dataset.stream()
+                                                      .flatMap(Instance::getFeatureSpace)
+                                                      .distinct()
+                                                      .collect());
+      try (ArrowWriter writer = new ArrowWriter(resource, featureNames)) {
+         for (Instance instance : dataset) {
+            writer.write(instance);
+         }
+      }
+   }
+
+   private static Field doubleField(String name) {
+      return new Field(name, FieldType.nullable(DOUBLE_TYPE), Collections.emptyList());
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         flush();
+         if (writer == null) {
+            start(LabelType.STRING);
+         }
+         writer.end();
+      } finally {
+         try {
+            if (writer != null) {
+               writer.close();
+               root.close();
+               allocator.close();
+            }
+         } finally {
+            out.close();
+         }
+      }
+   }
+
+   private void flush() throws IOException {
+      if (buffer.isEmpty()) {
+         return;
+      }
+      if (writer == null) {
+         LabelType type = LabelType.STRING;
+         for (Instance instance : buffer) {
+            if (instance.getLabel() != null) {
+               type = LabelType.of(instance.getLabel());
+               break;
+            }
+         }
+         start(type);
+      }
+      for (FieldVector vector : root.getFieldVectors()) {
+         vector.setInitialCapacity(buffer.size());
+         vector.allocateNew();
+      }
+      for (int row = 0; row < buffer.size(); row++) {
+         Instance instance = buffer.get(row);
+         weight.setSafe(row, instance.getWeight());
+         if (instance.getLabel() != null) {
+            writeLabel(row, instance.getLabel());
+         }
+         for (int i = 0; i < instance.numberOfFeatures(); i++) {
+            features[featureIndex.get(instance.getFeatureName(i))].setSafe(row, instance.getFeatureValue(i));
+         }
+      }
+      //The row count of the root does not set the value counts of its vectors, which is what the writer serializes
+      for (FieldVector vector : root.getFieldVectors()) {
+         vector.setValueCount(buffer.size());
+      }
+      root.setRowCount(buffer.size());
+      writer.writeBatch();
+      buffer.clear();
+   }
+
+   private void start(LabelType type) throws IOException {
+      List<Field> fields = new ArrayList<>();
+      fields.add(doubleField(ArrowDataSource.DEFAULT_WEIGHT_COLUMN));
+      fields.add(type.field(ArrowDataSource.DEFAULT_LABEL_COLUMN));
+      for (String name : featureNames) {
+         fields.add(doubleField(name));
+      }
+      allocator = new RootAllocator(Long.MAX_VALUE);
+      root = VectorSchemaRoot.create(new Schema(fields), allocator);
+      weight = Cast.as(root.getVector(ArrowDataSource.DEFAULT_WEIGHT_COLUMN));
+      label = root.getVector(ArrowDataSource.DEFAULT_LABEL_COLUMN);
+      labelType = type;
+      features = new Float8Vector[featureNames.size()];
+      for (int i = 0; i < features.length; i++) {
+         features[i] = Cast.as(root.getVector(featureNames.get(i)));
+      }
+      writer = new ArrowStreamWriter(root, new DictionaryProvider.MapDictionaryProvider(), out);
+      writer.start();
+   }
+
+   /**
+    * Writes an instance.
+    *
+    * @param instance the instance
+    * @throws IOException              Something went wrong writing the instance
+    * @throws IllegalArgumentException if the instance has a feature that is not a column of the writer or a label
+    *                                  whose type differs from the label column's type
+    */
+   public void write(@NonNull Instance instance) throws IOException {
+      for (int i = 0; i < instance.numberOfFeatures(); i++) {
+         Preconditions.checkArgument(featureIndex.containsKey(instance.getFeatureName(i)),
+                                     "'%s' is not a feature column", instance.getFeatureName(i));
+      }
+      Preconditions.checkArgument(labelType == null
+                                     || instance.getLabel() == null
+                                     || LabelType.of(instance.getLabel()) == labelType,
+                                  "Label '%s' is not of type %s", instance.getLabel(), labelType);
+      buffer.add(instance);
+      if (buffer.size() >= batchSize) {
+         flush();
+      }
+   }
+
+   private void writeLabel(int row, Object value) {
+      Preconditions.checkArgument(LabelType.of(value) == labelType, "Label '%s' is not of type %s", value, labelType);
+      switch (labelType) {
+         case STRINGS:
+            ListVector list = Cast.as(label);
+            VarCharVector data = Cast.as(list.getDataVector());
+            int offset = list.startNewValue(row);
+            int size = 0;
+            for (Object o : Cast.<Collection<?>>as(value)) {
+               data.setSafe(offset + size, o.toString().getBytes(StandardCharsets.UTF_8));
+               size++;
+            }
+            list.endValue(row, size);
+            break;
+         case INTEGER:
+            Cast.<IntVector>as(label).setSafe(row, Cast.<Integer>as(value));
+            break;
+         case LONG:
+            Cast.<BigIntVector>as(label).setSafe(row, Cast.<Long>as(value));
+            break;
+         case DOUBLE:
+            Cast.<Float8Vector>as(label).setSafe(row, Cast.<Number>as(value).doubleValue());
+            break;
+         default:
+            Cast.<VarCharVector>as(label).setSafe(row, value.toString().getBytes(StandardCharsets.UTF_8));
+      }
+   }
+
+   private enum LabelType {
+      STRING {
+         @Override
+         Field field(String name) {
+            return new Field(name, FieldType.nullable(new ArrowType.Utf8()), Collections.emptyList());
+         }
+      },
+      STRINGS {
+         @Override
+         Field field(String name) {
+            return new Field(name, FieldType.nullable(new ArrowType.List()), Collections.singletonList(
+               new Field("item", FieldType.nullable(new ArrowType.Utf8()), Collections.emptyList())));
+         }
+      },
+      INTEGER {
+         @Override
+         Field field(String name) {
+            return new Field(name, FieldType.nullable(new ArrowType.Int(32, true)), Collections.emptyList());
+         }
+      },
+      LONG {
+         @Override
+         Field field(String name) {
+            return new Field(name, FieldType.nullable(new ArrowType.Int(64, true)), Collections.emptyList());
+         }
+      },
+      DOUBLE {
+         @Override
+         Field field(String name) {
+            return doubleField(name);
+         }
+      };
+
+      static LabelType of(Object label) {
+         if (label instanceof Collection) {
+            return STRINGS;
+         } else if (label instanceof Integer) {
+            return INTEGER;
+         } else if (label instanceof Long) {
+            return LONG;
+         } else if (label instanceof Number) {
+            return DOUBLE;
+         }
+         return STRING;
+      }
+
+      abstract Field field(String name);
+   }
+
+}//END OF ArrowWriter
@@ -0,0 +1,215 @@
+package com.davidbracewell.apollo.ml.encoder;
+
+import com.davidbracewell.apollo.ml.Example;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.DatasetType;
+import com.davidbracewell.conversion.Cast;
+import com.davidbracewell.stream.MStream;
+import com.davidbracewell.stream.accumulator.MAccumulator;
+import lombok.NonNull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A thread safe encoder that maps objects to integer ids allowing encoding (and vectorization) to happen in
+ * parallel while the vocabulary is still growing. Ids are assigned atomically through a <code>ConcurrentHashMap</code>
+ * and the reverse mapping is kept in an append-only chunked array, so that lookups and decoding never block and no
+ * thread ever waits on another thread's id. An id returned by {@link #encode(Object)} or {@link #get(Object)} can
+ * always be decoded. While other threads are adding objects, {@link #size()} may however count ids whose object is
+ * still being written, for which {@link #decode(double)} returns <code>null</code> (as do the matching entries of
+ * {@link #values()}). Once the encoder is no longer growing, e.g. after it is frozen, every id decodes.</p>
+ *
+ * <p>As the size grows while encoding, vectors built concurrently with a growing encoder (e.g. by
+ * {@link com.davidbracewell.apollo.ml.Instance#toVector(EncoderPair)}) can differ in length. Code that batches vectors
+ * together, which expects a single number of features, should freeze the encoder (or finish fitting it) first.</p>
+ *
+ * <p>When fit on a dataset that is not distributed, the features are added directly from a parallel stream instead of
+ * first being collected into a set.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class ConcurrentIndexEncoder implements Encoder, Serializable {
+   private static final long serialVersionUID = 1L;
+   private static final int CHUNK_BITS = 12;
+   private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+   private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+   private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+   private final AtomicInteger nextId = new AtomicInteger();
+   private final ReentrantLock chunkLock = new ReentrantLock();
+   private final AtomicBoolean frozen = new AtomicBoolean(false);
+   private volatile AtomicReferenceArray<AtomicReferenceArray<String>> chunks = new AtomicReferenceArray<>(16);
+
+   private int add(String item) {
+      Integer id = ids.get(item);
+      if (id != null) {
+         return id;
+      }
+      //The reverse slot is written before the mapping is visible, so any id handed out decodes
+      return ids.computeIfAbsent(item, key -> {
+         int newId = nextId.getAndIncrement();
+         chunk(newId >>> CHUNK_BITS).set(newId & CHUNK_MASK, key);
+         return newId;
+      });
+   }
+
+   private AtomicReferenceArray<String> chunk(int chunkIndex) {
+      AtomicReferenceArray<AtomicReferenceArray<String>> outer = chunks;
+      if (chunkIndex < outer.length()) {
+         AtomicReferenceArray<String> chunk = outer.get(chunkIndex);
+         if (chunk != null) {
+            return chunk;
+         }
+      }
+      //Only held to allocate a chunk, never while waiting on another id
+      chunkLock.lock();
+      try {
+         outer = chunks;
+         if (chunkIndex >= outer.length()) {
+            AtomicReferenceArray<AtomicReferenceArray<String>> grown = new AtomicReferenceArray<>(
+               Math.max(outer.length() * 2, chunkIndex + 1));
+            for (int i = 0; i < outer.length(); i++) {
+               grown.set(i, outer.get(i));
+            }
+            chunks = outer = grown;
+         }
+         if (outer.get(chunkIndex) == null) {
+            outer.set(chunkIndex, new AtomicReferenceArray<>(CHUNK_SIZE));
+         }
+         return outer.get(chunkIndex);
+      } finally {
+         chunkLock.unlock();
+      }
+   }
+
+   @Override
+   public Encoder createNew() {
+      return new ConcurrentIndexEncoder();
+   }
+
+   @Override
+   public Object decode(double value) {
+      int id = (int) value;
+      if (id < 0 || id >= nextId.get()) {
+         return null;
+      }
+      AtomicReferenceArray<AtomicReferenceArray<String>> outer = chunks;
+      int chunkIndex = id >>> CHUNK_BITS;
+      if (chunkIndex >= outer.length() || outer.get(chunkIndex) == null) {
+         return null;
+      }
+      return outer.get(chunkIndex).get(id & CHUNK_MASK);
+   }
+
+   @Override
+   public double encode(Object object) {
+      if (object == null) {
+         return -1;
+      }
+      if (object instanceof Collection) {
+         Collection<?> collection = Cast.as(object);
+         double idx = -1;
+         for (Object o : collection) {
+            idx = frozen.get() ? get(o) : add(o.toString());
+         }
+         return idx;
+      }
+      return frozen.get() ? get(object) : add(object.toString());
+   }
+
+   @Override
+   public void fit(@NonNull MStream<String> stream) {
+      if (!isFrozen()) {
+         MAccumulator<String, Set<String>> accumulator = stream.getContext().setAccumulator();
+         stream.parallel()
+               .filter(Objects::nonNull)
+               .forEach(accumulator::add);
+         accumulator.value().forEach(this::add);
+      }
+   }
+
+   @Override
+   public void fit(@NonNull Dataset<? extends Example> dataset) {
+      if (isFrozen()) {
+         return;
+      }
+      if (dataset.getType() == DatasetType.Distributed) {
+         fit(dataset.stream().flatMap(ex -> ex.getFeatureSpace().map(Object::toString)));
+      } else {
+         dataset.stream()
+                .parallel()
+                .flatMap(ex -> ex.getFeatureSpace().map(Object::toString))
+                .filter(Objects::nonNull)
+                .forEach(this::add);
+      }
+   }
+
+   @Override
+   public void freeze() {
+      frozen.set(true);
+   }
+
+   @Override
+   public double get(Object object) {
+      if (object == null) {
+         return -1;
+      } else if (object instanceof Collection) {
+         Collection<?> collection = Cast.as(object);
+         double idx = -1;
+         for (Object o : collection) {
+            idx = get(o);
+         }
+         return idx;
+      }
+      Integer id = ids.get(object.toString());
+      return id == null ? -1 : id;
+   }
+
+   @Override
+   public synchronized double grow(Object object, int maxSize) {
+      if (object == null) {
+         return -1;
+      }
+      String str = object.toString();
+      Integer id = ids.get(str);
+      if (id == null) {
+         return size() < maxSize ? add(str) : -1;
+      }
+      return id;
+   }
+
+   @Override
+   public boolean isFrozen() {
+      return frozen.get();
+   }
+
+   @Override
+   public int size() {
+      return nextId.get();
+   }
+
+   @Override
+   public void unFreeze() {
+      frozen.set(false);
+   }
+
+   @Override
+   public List<Object> values() {
+      int size = size();
+      List<Object> values = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+         values.add(decode(i));
+      }
+      return values;
+   }
+
+}// END OF ConcurrentIndexEncoder
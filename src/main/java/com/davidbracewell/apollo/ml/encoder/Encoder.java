@@ -76,6 +76,21 @@ public interface Encoder {
     */
    double get(Object object);
 
+   /**
+    * Gets the encoded value of the given object, adding the object even when the encoder is frozen if it is unknown and
+    * the encoder holds fewer than <code>maxSize</code> objects. This lets a trained model grow its features in a
+    * controlled way. Encoders that cannot grow, e.g. hashing encoders, return the same value as {@link #get(Object)}.
+    * Growing is only safe to call concurrently with lookups on encoders that are themselves thread safe, e.g. the
+    * {@link ConcurrentIndexEncoder}.
+    *
+    * @param object  the object
+    * @param maxSize the maximum number of objects the encoder may hold
+    * @return the encoded value or -1 if the object is unknown and could not be added
+    */
+   default double grow(Object object, int maxSize) {
+      return get(object);
+   }
+
    /**
     * Encodes a single object returning its encoded value as an index (int value)
     *
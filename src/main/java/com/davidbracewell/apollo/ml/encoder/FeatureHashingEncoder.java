@@ -0,0 +1,156 @@
+package com.davidbracewell.apollo.ml.encoder;
+
+import com.davidbracewell.apollo.hash.MurmurHash3;
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.guava.common.base.Preconditions;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A hashing encoder using MurmurHash3 to map features into a fixed number of buckets. An additional sign hash can
+ * be used so that colliding features cancel out in expectation rather than accumulating, and each feature can be
+ * hashed into <code>numberOfHashes</code> buckets (with values scaled by <code>1 / sqrt(numberOfHashes)</code>) to
+ * reduce the impact of any single collision. Values of colliding features are summed.</p>
+ *
+ * <p>The sign hash and the k-way hashing only apply when building vectors with <code>encodeInto</code> (as
+ * {@link com.davidbracewell.apollo.ml.Instance#toVector(EncoderPair)} does). {@link #encode(Object)} and
+ * {@link #get(Object)} always give the primary bucket of a feature, i.e. the bucket of its first hash, so that code
+ * working with one id per feature (e.g. sequence labelers and topic models) works in every configuration. When using
+ * one unsigned hash the primary bucket is exactly where <code>encodeInto</code> puts the feature's value.</p>
+ *
+ * <p>The encoder keeps counts of the number of features hashed into vectors and the number of those that landed in a
+ * bucket already used by the same vector, which gives the observed collision rate. Collisions are counted exactly,
+ * whatever the values, when a whole vector is encoded with {@link #encodeInto(String[], double[], int, NDArray)};
+ * encoding a single feature only sees collisions between its own hashes.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class FeatureHashingEncoder extends HashingEncoder {
+   private static final long serialVersionUID = 1L;
+   private static final int SIGN_SEED = 0x5bd1e995;
+   @Getter
+   private final int numberOfHashes;
+   @Getter
+   private final boolean signed;
+   private final double scale;
+   private final LongAdder hashedFeatures = new LongAdder();
+   private final LongAdder collisions = new LongAdder();
+
+   /**
+    * Instantiates a new signed feature hashing encoder using a single hash.
+    *
+    * @param numberOfFeatures the number of features (buckets)
+    */
+   public FeatureHashingEncoder(int numberOfFeatures) {
+      this(numberOfFeatures, 1, true);
+   }
+
+   /**
+    * Instantiates a new Feature hashing encoder.
+    *
+    * @param numberOfFeatures the number of features (buckets)
+    * @param numberOfHashes   the number of buckets each feature is hashed into
+    * @param signed           True if a sign hash should be applied to feature values
+    */
+   public FeatureHashingEncoder(int numberOfFeatures, int numberOfHashes, boolean signed) {
+      super(numberOfFeatures);
+      Preconditions.checkArgument(numberOfHashes > 0, "Must use at least one hash.");
+      this.numberOfHashes = numberOfHashes;
+      this.signed = signed;
+      this.scale = 1.0 / Math.sqrt(numberOfHashes);
+   }
+
+   private int bucket(int hash) {
+      return (hash & 0x7fffffff) % size();
+   }
+
+   @Override
+   public Encoder createNew() {
+      return new FeatureHashingEncoder(size(), numberOfHashes, signed);
+   }
+
+   /**
+    * Gets the primary bucket of the given feature, i.e. the bucket of its first hash. No sign is applied and the
+    * feature's other buckets (when using more than one hash) are ignored.
+    *
+    * @param object the feature
+    * @return the primary bucket
+    */
+   @Override
+   public double encode(@NonNull Object object) {
+      return bucket(MurmurHash3.hash32(object.toString(), 0));
+   }
+
+   @Override
+   public void encodeInto(@NonNull String feature, double value, @NonNull NDArray vector) {
+      encodeInto(new String[]{feature}, new double[]{value}, 1, vector);
+   }
+
+   @Override
+   public void encodeInto(@NonNull String[] features, @NonNull double[] values, int length, @NonNull NDArray vector) {
+      final int[] buckets = new int[length * numberOfHashes];
+      int n = 0;
+      for (int f = 0; f < length; f++) {
+         double v = values[f] * scale;
+         for (int i = 0; i < numberOfHashes; i++) {
+            int index = bucket(MurmurHash3.hash32(features[f], i));
+            double signedValue = v;
+            if (signed && (MurmurHash3.hash32(features[f], SIGN_SEED + i) & 1) == 1) {
+               signedValue = -v;
+            }
+            vector.increment(index, signedValue);
+            buckets[n++] = index;
+         }
+      }
+      //Every bucket used more than once is a collision, even if the summed values cancel out
+      Arrays.sort(buckets);
+      int distinct = n == 0 ? 0 : 1;
+      for (int i = 1; i < n; i++) {
+         if (buckets[i] != buckets[i - 1]) {
+            distinct++;
+         }
+      }
+      hashedFeatures.add(n);
+      collisions.add(n - distinct);
+   }
+
+   /**
+    * Gets the number of times a feature was hashed into a bucket already in use by the same vector.
+    *
+    * @return the number of collisions
+    */
+   public long getCollisions() {
+      return collisions.sum();
+   }
+
+   /**
+    * Gets the fraction of hashed features that collided with another feature in the same vector.
+    *
+    * @return the collision rate
+    */
+   public double getCollisionRate() {
+      long total = hashedFeatures.sum();
+      return total == 0 ? 0 : (double) collisions.sum() / total;
+   }
+
+   /**
+    * Gets the number of feature values hashed into vectors.
+    *
+    * @return the number of hashed features
+    */
+   public long getHashedFeatures() {
+      return hashedFeatures.sum();
+   }
+
+   /**
+    * Resets the collision statistics.
+    */
+   public void resetStatistics() {
+      hashedFeatures.reset();
+      collisions.reset();
+   }
+
+}// END OF FeatureHashingEncoder
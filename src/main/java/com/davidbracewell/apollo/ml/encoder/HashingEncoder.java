@@ -1,5 +1,6 @@
 package com.davidbracewell.apollo.ml.encoder;
 
+import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.ml.Example;
 import com.davidbracewell.apollo.ml.data.Dataset;
 import com.davidbracewell.guava.common.base.Preconditions;
@@ -52,6 +53,33 @@ public class HashingEncoder implements Encoder, Serializable {
       return (object.hashCode() & 0x7fffffff) % numberOfFeatures;
    }
 
+   /**
+    * Encodes the given feature and value into the given vector. This encoder only records the presence of a feature,
+    * i.e. its index is set to <code>1.0</code> whatever the value, while subclasses may use the value.
+    *
+    * @param feature the feature name
+    * @param value   the feature value
+    * @param vector  the vector to add the feature to
+    */
+   public void encodeInto(@NonNull String feature, double value, @NonNull NDArray vector) {
+      vector.set((int) encode(feature), 1.0);
+   }
+
+   /**
+    * Encodes the first <code>length</code> features and values into the given vector, which is expected to hold no
+    * other features.
+    *
+    * @param features the feature names
+    * @param values   the feature values
+    * @param length   the number of features to encode
+    * @param vector   the vector to add the features to
+    */
+   public void encodeInto(@NonNull String[] features, @NonNull double[] values, int length, @NonNull NDArray vector) {
+      for (int i = 0; i < length; i++) {
+         encodeInto(features[i], values[i], vector);
+      }
+   }
+
    @Override
    public void fit(Dataset<? extends Example> dataset) {
 
@@ -106,6 +106,19 @@ public class IndexEncoder implements Encoder, Serializable {
       return index.getId(object.toString());
    }
 
+   @Override
+   public double grow(Object object, int maxSize) {
+      if (object == null) {
+         return -1;
+      }
+      String str = object.toString();
+      int id = index.getId(str);
+      if (id < 0 && index.size() < maxSize) {
+         id = index.add(str);
+      }
+      return id;
+   }
+
    @Override
    public boolean isFrozen() {
       return frozen.get();
@@ -0,0 +1,160 @@
+package com.davidbracewell.apollo.ml.encoder;
+
+import com.davidbracewell.apollo.ml.Example;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.stat.sketch.CountMinSketch;
+import com.davidbracewell.apollo.stat.sketch.SpaceSaving;
+import com.davidbracewell.collection.Collect;
+import com.davidbracewell.guava.common.base.Preconditions;
+import com.davidbracewell.stream.MStream;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p>An {@link IndexEncoder} whose vocabulary is fit in a single streaming pass using bounded memory. When a maximum
+ * vocabulary size is given, the most frequent features are found using a {@link SpaceSaving} summary tracking
+ * <code>capacityFactor * maxVocabulary</code> items. Otherwise, features are admitted to the vocabulary once their
+ * count as estimated by a {@link CountMinSketch} reaches the minimum count. In both cases the full vocabulary of the
+ * data is never materialized. The encoder is frozen after fitting, so that features outside of the selected
+ * vocabulary are not added when encoding.</p>
+ *
+ * <p>The sketch over-estimates counts by up to <code>epsilon</code> times the total number of items, so for large
+ * streams it admits features whose true count is below the minimum. When fit on a {@link Dataset}, which can be
+ * streamed more than once, the features admitted by the sketch are only candidates whose exact counts are computed in
+ * a second pass, and only the candidates reaching the minimum count are kept. When fit on a stream, which can only be
+ * read once, the sketch's estimates are used as is.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class StreamingIndexEncoder extends IndexEncoder {
+   private static final long serialVersionUID = 1L;
+   @Getter
+   private final int maxVocabulary;
+   @Getter
+   private final long minCount;
+   @Getter
+   private final int capacityFactor;
+   @Getter
+   private final double epsilon;
+
+   /**
+    * Instantiates a new Streaming index encoder keeping the <code>maxVocabulary</code> most frequent features.
+    *
+    * @param maxVocabulary the maximum number of features in the vocabulary
+    */
+   public StreamingIndexEncoder(int maxVocabulary) {
+      this(maxVocabulary, 1);
+   }
+
+   /**
+    * Instantiates a new Streaming index encoder.
+    *
+    * @param maxVocabulary the maximum number of features in the vocabulary (values &lt;= 0 mean no maximum)
+    * @param minCount      the minimum (estimated) count a feature must have to be in the vocabulary
+    */
+   public StreamingIndexEncoder(int maxVocabulary, long minCount) {
+      this(maxVocabulary, minCount, 4, 1e-5);
+   }
+
+   /**
+    * Instantiates a new Streaming index encoder.
+    *
+    * @param maxVocabulary  the maximum number of features in the vocabulary (values &lt;= 0 mean no maximum)
+    * @param minCount       the minimum (estimated) count a feature must have to be in the vocabulary
+    * @param capacityFactor the number of candidates tracked per vocabulary slot when finding the top features
+    * @param epsilon        the relative error of the count-min sketch used when there is no maximum vocabulary size
+    */
+   public StreamingIndexEncoder(int maxVocabulary, long minCount, int capacityFactor, double epsilon) {
+      Preconditions.checkArgument(maxVocabulary > 0 || minCount > 1,
+                                  "Either a maximum vocabulary or a minimum count > 1 is required");
+      Preconditions.checkArgument(capacityFactor >= 1, "Capacity factor must be >= 1");
+      this.maxVocabulary = maxVocabulary;
+      this.minCount = minCount;
+      this.capacityFactor = capacityFactor;
+      this.epsilon = epsilon;
+   }
+
+   @Override
+   public Encoder createNew() {
+      return new StreamingIndexEncoder(maxVocabulary, minCount, capacityFactor, epsilon);
+   }
+
+   @Override
+   public void fit(@NonNull MStream<String> stream) {
+      if (isFrozen()) {
+         return;
+      }
+      Iterable<String> items = Collect.asIterable(stream.filter(Objects::nonNull).iterator());
+      if (maxVocabulary > 0) {
+         fitTopItems(items);
+      } else {
+         CountMinSketch sketch = CountMinSketch.create(epsilon, 0.01);
+         for (String item : items) {
+            if (index.getId(item) < 0 && sketch.add(item) >= minCount) {
+               index.add(item);
+            }
+         }
+      }
+      freeze();
+   }
+
+   @Override
+   public void fit(@NonNull Dataset<? extends Example> dataset) {
+      if (isFrozen()) {
+         return;
+      }
+      if (maxVocabulary > 0) {
+         fitTopItems(features(dataset));
+         freeze();
+         return;
+      }
+
+      //First pass: the sketch never under-estimates, so every feature reaching the minimum count becomes a candidate
+      CountMinSketch sketch = CountMinSketch.create(epsilon, 0.01);
+      Map<String, long[]> candidates = new LinkedHashMap<>();
+      for (String item : features(dataset)) {
+         if (!candidates.containsKey(item) && sketch.add(item) >= minCount) {
+            candidates.put(item, new long[1]);
+         }
+      }
+
+      //Second pass: count the candidates exactly
+      for (String item : features(dataset)) {
+         long[] count = candidates.get(item);
+         if (count != null) {
+            count[0]++;
+         }
+      }
+      candidates.forEach((item, count) -> {
+         if (count[0] >= minCount) {
+            index.add(item);
+         }
+      });
+      freeze();
+   }
+
+   private static Iterable<String> features(Dataset<? extends Example> dataset) {
+      return Collect.asIterable(dataset.stream()
+                                       .flatMap(ex -> ex.getFeatureSpace().map(Object::toString))
+                                       .filter(Objects::nonNull)
+                                       .iterator());
+   }
+
+   private void fitTopItems(Iterable<String> items) {
+      SpaceSaving<String> heavyHitters = new SpaceSaving<>(maxVocabulary * capacityFactor);
+      items.forEach(heavyHitters::add);
+      int added = 0;
+      for (SpaceSaving.Entry<String> entry : heavyHitters.topItems()) {
+         if (added >= maxVocabulary || entry.getCount() < minCount) {
+            break;
+         }
+         index.add(entry.getItem());
+         added++;
+      }
+   }
+
+}// END OF StreamingIndexEncoder
@@ -4,76 +4,180 @@ import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.linear.NDArrayFactory;
 import com.davidbracewell.apollo.ml.Instance;
 import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.guava.common.base.Throwables;
 import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
 import lombok.val;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
+ * <p>Creates mini-batches over a set of example vectors. Labels are stored as integer class ids and expanded into
+ * one-hot label matrices only when a batch is packed. {@link #prefetchIterator(int)} packs batches on a background
+ * thread into two preallocated, reused buffers (double buffering), so that the consumer does not wait on batch assembly
+ * or allocation. Reused buffers remember which examples they hold, so that repacking a buffer only clears the entries
+ * written for its previous examples instead of zeroing the whole <code>numFeatures x batchSize</code> matrix.</p>
+ *
  * @author David B. Bracewell
  */
 public class BatchIterator implements Serializable {
+   private static final long serialVersionUID = 1L;
    private final List<NDArray> X = new ArrayList<>();
-   private final List<NDArray> Y = new ArrayList<>();
+   private final int[] labels;
    private final int[] indices;
    @Getter
    private final int numLabels;
    @Getter
    private final int numFeatures;
+   @Getter
+   @Setter
+   private NDArrayFactory factory = NDArrayFactory.DEFAULT();
 
    public BatchIterator(List<NDArray> data, int numLabels, int numFeatures) {
       this.numLabels = numLabels;
       this.numFeatures = numFeatures;
-      indices = new int[data.size()];
+      this.indices = new int[data.size()];
+      this.labels = new int[data.size()];
       for (int i1 = 0; i1 < data.size(); i1++) {
          NDArray vv = data.get(i1);
          indices[i1] = i1;
-         val y = NDArrayFactory.DEFAULT().zeros(numLabels, 1);
-         y.set((int) vv.getLabelAsDouble(), 0, 1.0);
-         Y.add(y);
+         labels[i1] = (int) vv.getLabelAsDouble();
          X.add(vv);
       }
    }
 
 
    public BatchIterator(Dataset<Instance> dataset) {
-      List<NDArray> data = dataset.asVectors().collect();
-      numLabels = dataset.getLabelEncoder().size();
-      numFeatures = dataset.getFeatureEncoder().size();
-      indices = new int[data.size()];
-      for (int i1 = 0; i1 < data.size(); i1++) {
-         NDArray vv = data.get(i1);
-         indices[i1] = i1;
-         val y = NDArrayFactory.DEFAULT().zeros(numLabels, 1);
-         y.set((int) vv.getLabelAsDouble(), 0, 1.0);
-         Y.add(y);
-         X.add(vv);
-      }
+      this(dataset.asVectors().collect(),
+           dataset.getLabelEncoder().size(),
+           dataset.getFeatureEncoder().size());
    }
 
-   private NDArray create(int rows, List<NDArray> cols, int[] indicies, int start, int end) {
-      int numCols = end - start;
+   /**
+    * Creates the batch with the given index, i.e. the examples in positions <code>[batchIndex * batchSize,
+    * (batchIndex + 1) * batchSize)</code> of the current (shuffled) order. Batches can be created concurrently as long
+    * as the iterator is not shuffled at the same time.
+    *
+    * @param batchIndex the index of the batch
+    * @param batchSize  the size of the batch
+    * @return the batch
+    */
+   public NDArray batch(int batchIndex, int batchSize) {
+      val start = batchIndex * batchSize;
+      if (start < 0 || start >= indices.length) {
+         throw new NoSuchElementException();
+      }
+      return range(start, Math.min(start + batchSize, indices.length));
+   }
 
-      if (numCols == 1) {
-         return cols.get(indicies[start]);
+   /**
+    * Creates the batch with the given index packing it into the given buffer. The buffer's matrix is allocated on first
+    * use and reused for every later batch of the same size; batches of a different size (e.g. the final partial batch)
+    * are packed into a new matrix. The returned batch is only valid until the buffer is used again, and a buffer must
+    * not be used by more than one thread at a time.
+    *
+    * @param batchIndex the index of the batch
+    * @param batchSize  the size of the batch
+    * @param buffer     the buffer to reuse
+    * @return the batch
+    */
+   public NDArray batch(int batchIndex, int batchSize, @NonNull Buffer buffer) {
+      val start = batchIndex * batchSize;
+      if (start < 0 || start >= indices.length) {
+         throw new NoSuchElementException();
       }
+      return range(start, Math.min(start + batchSize, indices.length), buffer);
+   }
+
+   /**
+    * Calculates the number of batches of the given size needed to cover the data
+    *
+    * @param batchSize the batch size
+    * @return the number of batches
+    */
+   public int numberOfBatches(int batchSize) {
+      return (indices.length + batchSize - 1) / batchSize;
+   }
+
+   private Buffer newBuffer(int numCols) {
+      Buffer buffer = new Buffer();
+      buffer.allocate(numCols);
+      return buffer;
+   }
 
-      NDArray[] concat = new NDArray[numCols];
-int mi = 0;
+   private NDArray pack(Buffer buffer, int start, int end) {
+      final NDArray x = buffer.batch;
+      final NDArray y = x.getLabelAsNDArray();
+      //Only clear the entries written for the examples previously packed into the buffer
+      for (int column = 0; column < buffer.examples.length; column++) {
+         final int previous = buffer.examples[column];
+         if (previous >= 0) {
+            final int c = column;
+            X.get(previous).forEachSparse(e -> x.set(e.getI(), c, 0d));
+            y.set(labels[previous], column, 0d);
+            buffer.examples[column] = -1;
+         }
+      }
       for (int c = start; c < end; c++) {
-         concat[mi] = cols.get(indicies[c]);
-         mi++;
+         final int column = c - start;
+         final int index = indices[c];
+         X.get(index).forEachSparse(e -> x.set(e.getI(), column, e.getValue()));
+         y.set(labels[index], column, 1.0);
+         buffer.examples[column] = index;
+      }
+      return x;
+   }
+
+   /**
+    * Creates an iterator over batches of the given size whose batches are packed on a background thread into reusable
+    * buffers. A batch returned by the iterator is only valid until the next call to <code>next()</code>, so it must
+    * not be retained. The iterator must be closed (e.g. using try-with-resources) when it is not fully consumed, which
+    * stops the background thread, and the data should not be shuffled while it is in use.
+    *
+    * @param batchSize the batch size
+    * @return the iterator
+    */
+   public PrefetchIterator prefetchIterator(final int batchSize) {
+      return new PrefetchIterator(batchSize);
+   }
+
+   /**
+    * Creates a batch from the examples in positions <code>[start, end)</code> of the current (shuffled) order.
+    *
+    * @param start the starting position (inclusive)
+    * @param end   the ending position (exclusive)
+    * @return the batch
+    */
+   public NDArray range(int start, int end) {
+      if (start < 0 || end > indices.length || start >= end) {
+         throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + ")");
       }
-      return NDArrayFactory.DEFAULT().hstack(concat);
+      return pack(newBuffer(end - start), start, end);
+   }
 
-//      NDArray matrix = NDArrayFactory.defaultFactory().zeros(rows, numCols);
-//      int mi = 0;
-//      for (int c = start; c < end; c++) {
-//         matrix.setVector(mi, cols.get(indicies[c]), Axis.COlUMN);
-//         mi++;
-//      }
-//      return matrix;
+   /**
+    * Creates a batch from the examples in positions <code>[start, end)</code> of the current (shuffled) order packing
+    * it into the given buffer. The buffer is reused in the same way as by {@link #batch(int, int, Buffer)}.
+    *
+    * @param start  the starting position (inclusive)
+    * @param end    the ending position (exclusive)
+    * @param buffer the buffer to reuse
+    * @return the batch
+    */
+   public NDArray range(int start, int end, @NonNull Buffer buffer) {
+      if (start < 0 || end > indices.length || start >= end) {
+         throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + ")");
+      }
+      if (buffer.batch == null) {
+         buffer.allocate(end - start);
+      } else if (buffer.batch.numCols() != end - start) {
+         return range(start, end);
+      }
+      return pack(buffer, start, end);
    }
 
    public Iterator<NDArray> iterator(final int batchSize) {
@@ -91,19 +195,25 @@ int mi = 0;
                throw new NoSuchElementException();
             }
             val end = Math.min(index + batchSize, indices.length);
-            val x_batch = create(numFeatures, X, indices, index, end);
-            val y_batch = create(numLabels, Y, indices, index, end);
-            x_batch.setLabel(y_batch);
+            val batch = range(index, end);
             index = end;
-            return x_batch;
+            return batch;
          }
       };
    }
 
    public void shuffle() {
-      Random rnd = new Random();
-      for (int i = 0; i < indices.length; i++) {
-         int idx = rnd.nextInt(indices.length);
+      shuffle(new Random());
+   }
+
+   /**
+    * Shuffles the order of the examples using the given random number generator.
+    *
+    * @param random the random number generator
+    */
+   public void shuffle(@NonNull Random random) {
+      for (int i = indices.length - 1; i > 0; i--) {
+         int idx = random.nextInt(i + 1);
          int temp = indices[i];
          indices[i] = indices[idx];
          indices[idx] = temp;
@@ -152,5 +262,123 @@ int mi = 0;
       };
    }
 
+   /**
+    * <p>A reusable buffer for packing batches (see {@link #batch(int, int, Buffer)}), which keeps track of the examples
+    * it currently holds so that only their entries need to be cleared when it is reused.</p>
+    */
+   public class Buffer {
+      private NDArray batch;
+      private int[] examples;
+
+      private void allocate(int numCols) {
+         batch = factory.zeros(numFeatures, numCols);
+         batch.setLabel(factory.zeros(numLabels, numCols));
+         examples = new int[numCols];
+         Arrays.fill(examples, -1);
+      }
+   }
+
+   /**
+    * Creates a new empty buffer for use with {@link #batch(int, int, Buffer)}.
+    *
+    * @return the buffer
+    */
+   public Buffer newBuffer() {
+      return new Buffer();
+   }
+
+   /**
+    * <p>Iterator over batches packed on a background thread. Closing the iterator stops the background thread, which
+    * would otherwise stay blocked waiting for a free buffer when the iterator is not fully consumed.</p>
+    */
+   public class PrefetchIterator implements Iterator<NDArray>, AutoCloseable {
+      private final BlockingQueue<Buffer> free = new ArrayBlockingQueue<>(2);
+      private final BlockingQueue<Object> filled = new ArrayBlockingQueue<>(3);
+      private final int numberOfBatches;
+      private final int bufferSize;
+      private final Thread producer;
+      private int consumed = 0;
+      private Buffer current = null;
+      private volatile boolean closed = false;
+
+      private PrefetchIterator(int batchSize) {
+         this.numberOfBatches = numberOfBatches(batchSize);
+         this.bufferSize = batchSize;
+         int remainder = indices.length % batchSize;
+         free.add(newBuffer(batchSize));
+         free.add(newBuffer(batchSize));
+         this.producer = new Thread(() -> {
+            Buffer remainderBuffer = null;
+            try {
+               for (int start = 0; start < indices.length && !closed; start += batchSize) {
+                  int end = Math.min(start + batchSize, indices.length);
+                  Buffer buffer = free.take();
+                  if (end - start != batchSize) {
+                     //The final partial batch is packed into its own buffer
+                     free.add(buffer);
+                     if (remainderBuffer == null) {
+                        remainderBuffer = newBuffer(remainder);
+                     }
+                     buffer = remainderBuffer;
+                  }
+                  pack(buffer, start, end);
+                  filled.put(buffer);
+               }
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+               filled.offer(t);
+            }
+         }, "BatchIterator-prefetch");
+         producer.setDaemon(true);
+         producer.start();
+      }
+
+      @Override
+      public void close() {
+         if (!closed) {
+            closed = true;
+            producer.interrupt();
+            free.clear();
+            filled.clear();
+            current = null;
+         }
+      }
+
+      @Override
+      public boolean hasNext() {
+         return !closed && consumed < numberOfBatches;
+      }
+
+      @Override
+      public NDArray next() {
+         if (!hasNext()) {
+            throw new NoSuchElementException();
+         }
+         recycle();
+         Object next;
+         try {
+            next = filled.take();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw Throwables.propagate(e);
+         }
+         if (next instanceof Throwable) {
+            close();
+            throw Throwables.propagate((Throwable) next);
+         }
+         consumed++;
+         current = (Buffer) next;
+         return current.batch;
+      }
+
+      private void recycle() {
+         if (current != null && current.batch.numCols() == bufferSize) {
+            free.offer(current);
+         }
+         current = null;
+      }
+   }
 
 }// END OF BatchIterator
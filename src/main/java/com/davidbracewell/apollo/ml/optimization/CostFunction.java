@@ -9,4 +9,14 @@ public interface CostFunction<THETA> {
 
    CostGradientTuple evaluate(NDArray input, THETA theta);
 
+   /**
+    * Is the cost returned by {@link #evaluate(NDArray, Object)} the mean over the examples (columns) of the input
+    * rather than their sum?
+    *
+    * @return True if the cost is averaged over the examples
+    */
+   default boolean isMeanCost() {
+      return false;
+   }
+
 }//END OF CostFunction
\ No newline at end of file
@@ -0,0 +1,255 @@
+package com.davidbracewell.apollo.ml.optimization;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.optimization.activation.Activation;
+import com.davidbracewell.guava.common.base.Preconditions;
+import com.davidbracewell.guava.common.base.Throwables;
+import com.davidbracewell.logging.Loggable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <p>Validation driven early stopping. Every <code>interval</code> iterations a snapshot of the parameters is taken
+ * and its loss over a held-out set of vectors is calculated on a background thread using the given cost function.
+ * Training is stopped once <code>patience</code> evaluations in a row fail to improve on the best validation loss by
+ * more than <code>minDelta</code>, and the parameters with the best validation loss are restored when training
+ * finishes. The validation loss is the mean loss per held-out example, independent of the batch size. If the previous
+ * evaluation is still running when the next one is due, the next one is skipped rather than blocking training.</p>
+ *
+ * <p>Early stopping is enabled by setting it on the {@link TerminationCriteria} passed to an {@link Optimizer}.</p>
+ *
+ * @param <THETA> the type of parameters being optimized
+ * @author David B. Bracewell
+ */
+@Accessors(fluent = true)
+public class EarlyStopping<THETA> implements Loggable {
+   private final BatchIterator validation;
+   private final CostFunction<THETA> costFunction;
+   private final Function<THETA, THETA> snapshot;
+   private final BiConsumer<THETA, THETA> restore;
+   @Getter
+   @Setter
+   private int interval = 1;
+   @Getter
+   @Setter
+   private int patience = 5;
+   @Getter
+   @Setter
+   private double minDelta = 0;
+   @Getter
+   @Setter
+   private int batchSize = 256;
+   @Getter
+   private double bestLoss = Double.POSITIVE_INFINITY;
+   private THETA best;
+   private THETA pendingSnapshot;
+   private Future<Double> pending;
+   private ExecutorService executor;
+   private int evaluationsWithoutImprovement = 0;
+   private boolean stop = false;
+
+   /**
+    * Instantiates a new Early stopping.
+    *
+    * @param validation   the held-out vectors
+    * @param numLabels    the number of labels
+    * @param numFeatures  the number of features
+    * @param costFunction the cost function used to calculate the validation loss
+    * @param snapshot     function creating an independent copy of the parameters
+    * @param restore      consumer copying the parameters of a snapshot (second argument) into the trained parameters
+    *                     (first argument)
+    */
+   public EarlyStopping(@NonNull List<NDArray> validation,
+                        int numLabels,
+                        int numFeatures,
+                        @NonNull CostFunction<THETA> costFunction,
+                        @NonNull Function<THETA, THETA> snapshot,
+                        @NonNull BiConsumer<THETA, THETA> restore
+                       ) {
+      Preconditions.checkArgument(validation.size() > 0, "Validation set must not be empty");
+      this.validation = new BatchIterator(validation, numLabels, numFeatures);
+      this.costFunction = costFunction;
+      this.snapshot = snapshot;
+      this.restore = restore;
+   }
+
+   /**
+    * Creates early stopping for linear models, with snapshots holding copies of the weights and bias.
+    *
+    * @param validation   the held-out vectors
+    * @param numLabels    the number of labels
+    * @param numFeatures  the number of features
+    * @param costFunction the cost function used to calculate the validation loss
+    * @return the early stopping
+    */
+   public static EarlyStopping<LinearModelParameters> forLinearModel(@NonNull List<NDArray> validation,
+                                                                     int numLabels,
+                                                                     int numFeatures,
+                                                                     CostFunction<LinearModelParameters> costFunction
+                                                                    ) {
+      return new EarlyStopping<>(validation, numLabels, numFeatures, costFunction,
+                                 LinearSnapshot::new,
+                                 (theta, best) -> {
+                                    theta.getWeights().zero().addi(best.getWeights());
+                                    theta.getBias().zero().addi(best.getBias());
+                                 });
+   }
+
+   /**
+    * Checks if training should stop, collecting the result of a finished evaluation and starting a new evaluation of
+    * the given parameters when one is due.
+    *
+    * @param iteration the current iteration
+    * @param theta     the current parameters
+    * @return True if training should stop
+    */
+   public boolean check(int iteration, @NonNull THETA theta) {
+      return check(iteration, theta, copy -> {
+      });
+   }
+
+   /**
+    * Checks if training should stop, collecting the result of a finished evaluation and starting a new evaluation of
+    * the given parameters when one is due. The snapshot of the parameters is passed to <code>catchUp</code> before it
+    * is evaluated, so that updates the optimizer has deferred (see {@link WeightUpdate#catchUp(LinearModelParameters)})
+    * are part of the snapshot that is evaluated and possibly restored.
+    *
+    * @param iteration the current iteration
+    * @param theta     the current parameters
+    * @param catchUp   consumer applying the optimizer's pending updates to a snapshot of the parameters
+    * @return True if training should stop
+    */
+   public boolean check(int iteration, @NonNull THETA theta, @NonNull Consumer<THETA> catchUp) {
+      collect(false);
+      if (!stop && pending == null && (iteration + 1) % Math.max(1, interval) == 0) {
+         final THETA copy = snapshot.apply(theta);
+         catchUp.accept(copy);
+         if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+               Thread thread = new Thread(r, "EarlyStopping-validation");
+               thread.setDaemon(true);
+               return thread;
+            });
+         }
+         pendingSnapshot = copy;
+         pending = executor.submit(() -> loss(copy));
+      }
+      return stop;
+   }
+
+   private void collect(boolean wait) {
+      if (pending == null || (!wait && !pending.isDone())) {
+         return;
+      }
+      double loss;
+      try {
+         loss = pending.get();
+      } catch (InterruptedException | ExecutionException e) {
+         throw Throwables.propagate(e);
+      }
+      update(loss, pendingSnapshot);
+      pending = null;
+      pendingSnapshot = null;
+   }
+
+   /**
+    * Finishes training, evaluating the final parameters and restoring the parameters with the best validation loss
+    * into the given parameters.
+    *
+    * @param theta the trained parameters
+    */
+   public void finish(@NonNull THETA theta) {
+      collect(true);
+      if (executor != null) {
+         executor.shutdown();
+         executor = null;
+      }
+      if (update(loss(theta), null)) {
+         best = null;
+      }
+      if (best != null) {
+         logInfo("Restoring parameters with best validation loss={0}", bestLoss);
+         restore.accept(theta, best);
+         best = null;
+      }
+   }
+
+   private double loss(THETA theta) {
+      double loss = 0;
+      for (Iterator<NDArray> itr = validation.iterator(batchSize); itr.hasNext(); ) {
+         NDArray batch = itr.next();
+         double cost = costFunction.evaluate(batch, theta).getCost();
+         loss += costFunction.isMeanCost() ? cost * batch.numCols() : cost;
+      }
+      return loss / validation.size();
+   }
+
+   private boolean update(double loss, THETA parameters) {
+      if (loss < bestLoss - minDelta) {
+         bestLoss = loss;
+         best = parameters;
+         evaluationsWithoutImprovement = 0;
+         return true;
+      }
+      evaluationsWithoutImprovement++;
+      if (evaluationsWithoutImprovement >= patience) {
+         stop = true;
+      }
+      return false;
+   }
+
+   private static class LinearSnapshot implements LinearModelParameters {
+      private final LinearModelParameters theta;
+      private final NDArray weights;
+      private final NDArray bias;
+
+      private LinearSnapshot(LinearModelParameters theta) {
+         this.theta = theta;
+         this.weights = theta.getWeights().copy();
+         this.bias = theta.getBias().copy();
+      }
+
+      @Override
+      public Activation getActivation() {
+         return theta.getActivation();
+      }
+
+      @Override
+      public NDArray getBias() {
+         return bias;
+      }
+
+      @Override
+      public NDArray getWeights() {
+         return weights;
+      }
+
+      @Override
+      public boolean isBinary() {
+         return theta.isBinary();
+      }
+
+      @Override
+      public int numberOfFeatures() {
+         return theta.numberOfFeatures();
+      }
+
+      @Override
+      public int numberOfLabels() {
+         return theta.numberOfLabels();
+      }
+   }
+
+}// END OF EarlyStopping
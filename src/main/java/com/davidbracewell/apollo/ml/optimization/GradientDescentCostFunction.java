@@ -6,6 +6,7 @@ package com.davidbracewell.apollo.ml.optimization;
 
 import com.davidbracewell.apollo.linear.Axis;
 import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.optimization.loss.FusedLoss;
 import com.davidbracewell.apollo.ml.optimization.loss.LossFunction;
 import lombok.Value;
 
@@ -28,11 +29,24 @@ public class GradientDescentCostFunction implements CostFunction<LinearModelPara
 
    @Override
    public CostGradientTuple evaluate(NDArray vector, LinearModelParameters theta) {
-      NDArray predicted = theta.activate(vector);
       NDArray y = vector.getLabelAsNDArray(theta.getNumberOfWeightVectors());
       if (theta.isBinary() && y.numRows() > 1) {
          y = y.getVector(trueLabel, Axis.ROW);
       }
+      FusedLoss fused = FusedLoss.of(theta.getActivation(), lossFunction);
+      if (fused != null) {
+         NDArray z = theta.getWeights().mmul(vector).addi(theta.getBias(), Axis.COlUMN);
+         if (fused.supports(z, y)) {
+            NDArray gradient = z.getFactory().zeros(z.numRows(), z.numCols());
+            double loss = fused.evaluate(z, y, gradient);
+            return CostGradientTuple.of(loss, GradientParameter.calculate(vector, gradient), new NDArray[]{z});
+         }
+         return unfused(vector, theta.getActivation().apply(z), y);
+      }
+      return unfused(vector, theta.activate(vector), y);
+   }
+
+   private CostGradientTuple unfused(NDArray vector, NDArray predicted, NDArray y) {
       NDArray derivative = lossFunction.derivative(predicted, y);
       return CostGradientTuple.of(lossFunction.loss(predicted, y),
                                   GradientParameter.calculate(vector, derivative),
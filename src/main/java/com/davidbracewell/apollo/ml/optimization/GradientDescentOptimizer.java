@@ -1,17 +1,44 @@
 package com.davidbracewell.apollo.ml.optimization;
 
+import com.davidbracewell.apollo.linear.Axis;
 import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
+import com.davidbracewell.apollo.ml.TrainingListener;
+import com.davidbracewell.apollo.ml.TrainingMetrics;
+import com.davidbracewell.apollo.ml.TrainingMetrics.Phase;
+import com.davidbracewell.apollo.ml.optimization.activation.Activation;
 import com.davidbracewell.function.SerializableSupplier;
+import com.davidbracewell.guava.common.base.Preconditions;
 import com.davidbracewell.guava.common.base.Stopwatch;
+import com.davidbracewell.guava.common.base.Throwables;
+import com.davidbracewell.guava.common.util.concurrent.AtomicDouble;
 import com.davidbracewell.stream.MStream;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.val;
 
-import java.util.Iterator;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * <p>Mini-batch gradient descent optimizer for linear models. When <code>threads</code> is greater than one,
+ * optimization is performed Hogwild! style, i.e. each worker thread pulls batches from the shuffled data and applies
+ * its gradients to the shared weights without locking. Each worker accumulates the gradients of up to
+ * <code>staleness</code> batches, as a sparse gradient over the weight columns of their features, before applying them.
+ * Hogwild! relies on updates only touching the weight columns of the batch's features, so it requires a
+ * {@link SparseSGDUpdater}. Its workers run without momentum (a warning is logged when the updater has momentum), as
+ * a velocity per worker would cost a full copy of the weights for each thread and would not be shared between them.
+ * When <code>parameterServer</code> is set, the shared weights are instead held by a {@link ParameterServer}: each
+ * worker trains a local copy, pulls the shards that changed, pushes the deltas of the weight columns its batch
+ * touched, and may run at most <code>staleness</code> batches ahead of the slowest worker. As only the columns of the
+ * batch's features are pushed, the parameter server mode requires a {@link SparseSGDUpdater}, which changes no other
+ * columns; dense updaters (e.g. momentum or weight decay applied to every column) are rejected.</p>
+ *
  * @author David B. Bracewell
  */
 @Builder
@@ -22,6 +49,56 @@ public class GradientDescentOptimizer implements Optimizer<LinearModelParameters
    @Setter
    @Builder.Default
    int batchSize = 32;
+   @Getter
+   @Setter
+   @Builder.Default
+   int threads = 1;
+   @Getter
+   @Setter
+   @Builder.Default
+   int staleness = 1;
+   @Getter
+   @Setter
+   @Builder.Default
+   boolean parameterServer = false;
+   @Getter
+   @Setter
+   @Builder.Default
+   int numberOfShards = 16;
+   @Getter
+   @Setter
+   TrainingListener listener;
+
+   private static GradientParameter accumulate(GradientParameter accumulated,
+                                               GradientParameter gradient,
+                                               int numberOfFeatures
+                                              ) {
+      NDArray biasGradient = gradient.getBiasGradient().sum(Axis.ROW);
+      if (accumulated != null) {
+         biasGradient = accumulated.getBiasGradient().addi(biasGradient);
+      }
+      if (!gradient.hasInput()) {
+         return GradientParameter.of(accumulated == null
+                                     ? gradient.getWeightGradient()
+                                     : accumulated.getWeightGradient().addi(gradient.getWeightGradient()),
+                                     biasGradient);
+      }
+      //Accumulate only the weight columns of the batch's non-zero inputs into a sparse gradient, as the dense
+      //error * input^T would make the sparse updater touch every column. This also copies the gradient out of the
+      //input, which is a reused batch buffer.
+      final NDArray error = gradient.getError();
+      final NDArray weightGradient = accumulated == null
+                                     ? NDArrayFactory.SPARSE_DOUBLE.zeros(error.numRows(), numberOfFeatures)
+                                     : accumulated.getWeightGradient();
+      gradient.getInput().forEachSparse(entry -> {
+         if (entry.getValue() != 0) {
+            for (int r = 0; r < error.numRows(); r++) {
+               weightGradient.increment(r, entry.getI(), error.get(r, entry.getJ()) * entry.getValue());
+            }
+         }
+      });
+      return GradientParameter.of(weightGradient, biasGradient);
+   }
 
    @Override
    public double getFinalCost() {
@@ -39,21 +116,288 @@ public class GradientDescentOptimizer implements Optimizer<LinearModelParameters
       BatchIterator iterator = new BatchIterator(stream.get().collect(),
                                                  startingTheta.numberOfLabels(),
                                                  startingTheta.numberOfFeatures());
+      if (threads > 1 && parameterServer) {
+         optimizeParameterServer(startingTheta,
+                                 iterator,
+                                 costFunction,
+                                 terminationCriteria,
+                                 weightUpdater,
+                                 reportInterval);
+      } else if (threads > 1) {
+         optimizeParallel(startingTheta, iterator, costFunction, terminationCriteria, weightUpdater, reportInterval);
+      } else {
+         optimizeSequential(startingTheta, iterator, costFunction, terminationCriteria, weightUpdater, reportInterval);
+      }
+      finish(terminationCriteria, startingTheta);
+   }
+
+   private void optimizeSequential(LinearModelParameters startingTheta,
+                                   BatchIterator iterator,
+                                   CostFunction<LinearModelParameters> costFunction,
+                                   TerminationCriteria terminationCriteria,
+                                   WeightUpdate weightUpdater,
+                                   int reportInterval
+                                  ) {
+      TrainingMetrics metrics = new TrainingMetrics(listener != null);
       for (int iteration = 0; iteration < terminationCriteria.maxIterations(); iteration++) {
+         metrics.start(iteration);
          cost = 0;
          iterator.shuffle();
          val timer = Stopwatch.createStarted();
-         for (Iterator<NDArray> batch = iterator.iterator(batchSize); batch.hasNext(); ) {
-            NDArray input = batch.next();
-            CostGradientTuple cgt = costFunction.evaluate(input, startingTheta);
-            cost += cgt.getCost() + weightUpdater.update(startingTheta, cgt.getGradient(), iteration);
+         try (BatchIterator.PrefetchIterator batch = iterator.prefetchIterator(batchSize)) {
+            while (batch.hasNext()) {
+               long time = metrics.now();
+               NDArray input = batch.next();
+               time = metrics.record(Phase.BATCH, time);
+               CostGradientTuple cgt = costFunction.evaluate(input, startingTheta);
+               time = metrics.record(Phase.FORWARD, time);
+               cost += cgt.getCost() + weightUpdater.update(startingTheta, cgt.getGradient(), iteration);
+               metrics.record(Phase.UPDATE, time);
+               metrics.addExamples(input.numCols());
+            }
          }
          cost /= iterator.size();
          timer.stop();
-         if (report(reportInterval, iteration, terminationCriteria, cost, timer.toString())) {
+         if (listener != null) {
+            metrics.end(cost);
+            listener.onIteration(metrics);
+         }
+         if (report(reportInterval, iteration, terminationCriteria, cost, timer.toString(), startingTheta,
+                    weightUpdater::catchUp)) {
             break;
          }
       }
+      weightUpdater.finish(startingTheta);
+   }
+
+   private void optimizeParallel(LinearModelParameters theta,
+                                 BatchIterator iterator,
+                                 CostFunction<LinearModelParameters> costFunction,
+                                 TerminationCriteria terminationCriteria,
+                                 WeightUpdate weightUpdater,
+                                 int reportInterval
+                                ) {
+      Preconditions.checkArgument(weightUpdater instanceof SparseSGDUpdater,
+                                  "Hogwild! optimization requires a SparseSGDUpdater, but found "
+                                     + weightUpdater.getClass().getSimpleName());
+      if (((SparseSGDUpdater) weightUpdater).getMomentum() > 0) {
+         logWarn("Hogwild! workers run without momentum, ignoring momentum={0}",
+                 ((SparseSGDUpdater) weightUpdater).getMomentum());
+      }
+      List<WeightUpdate> updaters = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+         updaters.add(((SparseSGDUpdater) weightUpdater).toBuilder().momentum(0).build());
+      }
+      //Each worker packs its batches into its own reused buffer
+      BatchIterator.Buffer[] buffers = new BatchIterator.Buffer[threads];
+      for (int i = 0; i < threads; i++) {
+         buffers[i] = iterator.newBuffer();
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      TrainingMetrics metrics = new TrainingMetrics(listener != null);
+      try {
+         for (int iteration = 0; iteration < terminationCriteria.maxIterations(); iteration++) {
+            metrics.start(iteration);
+            iterator.shuffle();
+            val timer = Stopwatch.createStarted();
+            final int currentIteration = iteration;
+            final int numberOfBatches = iterator.numberOfBatches(batchSize);
+            final AtomicInteger nextBatch = new AtomicInteger();
+            final AtomicDouble epochCost = new AtomicDouble(0);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < threads; w++) {
+               final int worker = w;
+               futures.add(executor.submit(() -> {
+                  WeightUpdate updater = updaters.get(worker);
+                  long allocated = metrics.threadAllocatedBytes();
+                  GradientParameter accumulated = null;
+                  int pending = 0;
+                  double localCost = 0;
+                  for (int b = nextBatch.getAndIncrement(); b < numberOfBatches; b = nextBatch.getAndIncrement()) {
+                     long time = metrics.now();
+                     NDArray batch = iterator.batch(b, batchSize, buffers[worker]);
+                     time = metrics.record(Phase.BATCH, time);
+                     CostGradientTuple cgt = costFunction.evaluate(batch, theta);
+                     time = metrics.record(Phase.FORWARD, time);
+                     localCost += cgt.getCost();
+                     if (staleness <= 1) {
+                        //Apply the gradient directly, allowing the updater to work from the batch's non-zero inputs
+                        localCost += updater.update(theta, cgt.getGradient(), currentIteration);
+                        metrics.record(Phase.UPDATE, time);
+                        metrics.addExamples(batch.numCols());
+                        continue;
+                     }
+                     accumulated = accumulate(accumulated, cgt.getGradient(), theta.numberOfFeatures());
+                     pending++;
+                     if (pending >= staleness) {
+                        localCost += updater.update(theta, accumulated, currentIteration);
+                        accumulated = null;
+                        pending = 0;
+                        metrics.record(Phase.UPDATE, time);
+                     }
+                     metrics.addExamples(batch.numCols());
+                  }
+                  if (accumulated != null) {
+                     long time = metrics.now();
+                     localCost += updater.update(theta, accumulated, currentIteration);
+                     metrics.record(Phase.UPDATE, time);
+                  }
+                  metrics.recordAllocated(allocated);
+                  epochCost.addAndGet(localCost);
+               }));
+            }
+            for (Future<?> future : futures) {
+               try {
+                  future.get();
+               } catch (InterruptedException | ExecutionException e) {
+                  throw Throwables.propagate(e);
+               }
+            }
+            cost = epochCost.get() / iterator.size();
+            timer.stop();
+            if (listener != null) {
+               metrics.end(cost);
+               listener.onIteration(metrics);
+            }
+            if (report(reportInterval, iteration, terminationCriteria, cost, timer.toString(), theta,
+                       snapshot -> updaters.forEach(updater -> updater.catchUp(snapshot)))) {
+               break;
+            }
+         }
+      } finally {
+         executor.shutdown();
+      }
+      updaters.forEach(updater -> updater.finish(theta));
+   }
+
+   private void optimizeParameterServer(LinearModelParameters theta,
+                                        BatchIterator iterator,
+                                        CostFunction<LinearModelParameters> costFunction,
+                                        TerminationCriteria terminationCriteria,
+                                        WeightUpdate weightUpdater,
+                                        int reportInterval
+                                       ) {
+      Preconditions.checkArgument(weightUpdater instanceof SparseSGDUpdater,
+                                  "The parameter server mode requires a SparseSGDUpdater, but found "
+                                     + weightUpdater.getClass().getSimpleName());
+      ParameterServer server = new ParameterServer(theta, numberOfShards, threads, staleness);
+      List<WeightUpdate> updaters = new ArrayList<>();
+      List<WorkerParameters> locals = new ArrayList<>();
+      List<long[]> pulledVersions = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+         updaters.add(weightUpdater.copy());
+         locals.add(new WorkerParameters(theta));
+         long[] versions = new long[server.getNumberOfShards()];
+         Arrays.fill(versions, -1);
+         pulledVersions.add(versions);
+      }
+      BatchIterator.Buffer[] buffers = new BatchIterator.Buffer[threads];
+      for (int i = 0; i < threads; i++) {
+         buffers[i] = iterator.newBuffer();
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      TrainingMetrics metrics = new TrainingMetrics(listener != null);
+      try {
+         for (int iteration = 0; iteration < terminationCriteria.maxIterations(); iteration++) {
+            metrics.start(iteration);
+            iterator.shuffle();
+            server.resetClocks();
+            val timer = Stopwatch.createStarted();
+            final int currentIteration = iteration;
+            final int numberOfBatches = iterator.numberOfBatches(batchSize);
+            final AtomicInteger nextBatch = new AtomicInteger();
+            final AtomicDouble epochCost = new AtomicDouble(0);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < threads; w++) {
+               final int worker = w;
+               futures.add(executor.submit(() -> {
+                  WorkerParameters local = locals.get(worker);
+                  WeightUpdate updater = updaters.get(worker);
+                  long allocated = metrics.threadAllocatedBytes();
+                  double localCost = 0;
+                  try {
+                     for (int b = nextBatch.getAndIncrement(); b < numberOfBatches; b = nextBatch.getAndIncrement()) {
+                        long time = metrics.now();
+                        server.pull(local, pulledVersions.get(worker));
+                        time = metrics.record(Phase.UPDATE, time);
+                        NDArray batch = iterator.batch(b, batchSize, buffers[worker]);
+                        //The sparse updater only changes the columns of the batch's features (plus the bias), and the
+                        //shards these deltas are pushed to get a new version, so they are pulled again next batch
+                        Map<Integer, double[]> deltas = new HashMap<>();
+                        batch.forEachSparse(e -> deltas.computeIfAbsent(e.getI(), local::column));
+                        double[] bias = local.getBias().toArray();
+                        time = metrics.record(Phase.BATCH, time);
+                        CostGradientTuple cgt = costFunction.evaluate(batch, local);
+                        time = metrics.record(Phase.FORWARD, time);
+                        localCost += cgt.getCost() + updater.update(local, cgt.getGradient(), currentIteration);
+                        deltas.forEach((column, before) -> {
+                           for (int r = 0; r < before.length; r++) {
+                              before[r] = local.weights.get(r, column) - before[r];
+                           }
+                        });
+                        for (int r = 0; r < bias.length; r++) {
+                           bias[r] = local.bias.get(r) - bias[r];
+                        }
+                        server.push(deltas, bias);
+                        metrics.record(Phase.UPDATE, time);
+                        metrics.addExamples(batch.numCols());
+                        server.clock(worker);
+                     }
+                  } catch (InterruptedException e) {
+                     Thread.currentThread().interrupt();
+                     throw Throwables.propagate(e);
+                  } finally {
+                     server.finish(worker);
+                     metrics.recordAllocated(allocated);
+                  }
+                  epochCost.addAndGet(localCost);
+               }));
+            }
+            for (Future<?> future : futures) {
+               try {
+                  future.get();
+               } catch (InterruptedException | ExecutionException e) {
+                  throw Throwables.propagate(e);
+               }
+            }
+            cost = epochCost.get() / iterator.size();
+            timer.stop();
+            if (listener != null) {
+               metrics.end(cost);
+               listener.onIteration(metrics);
+            }
+            if (report(reportInterval, iteration, terminationCriteria, cost, timer.toString(), theta,
+                       snapshot -> updaters.forEach(updater -> updater.catchUp(snapshot)))) {
+               break;
+            }
+         }
+      } finally {
+         executor.shutdown();
+      }
+      for (int i = 0; i < threads; i++) {
+         //Apply any pending lazy updates and send them to the server
+         WorkerParameters local = locals.get(i);
+         server.pull(local, pulledVersions.get(i));
+         NDArray before = local.weights.copy();
+         double[] bias = local.bias.toArray();
+         updaters.get(i).finish(local);
+         Map<Integer, double[]> deltas = new HashMap<>();
+         for (int c = 0; c < before.numCols(); c++) {
+            double[] delta = local.column(c);
+            boolean changed = false;
+            for (int r = 0; r < delta.length; r++) {
+               delta[r] -= before.get(r, c);
+               changed |= delta[r] != 0;
+            }
+            if (changed) {
+               deltas.put(c, delta);
+            }
+         }
+         for (int r = 0; r < bias.length; r++) {
+            bias[r] = local.bias.get(r) - bias[r];
+         }
+         server.push(deltas, bias);
+      }
    }
 
    @Override
@@ -61,4 +405,54 @@ public class GradientDescentOptimizer implements Optimizer<LinearModelParameters
       cost = Double.POSITIVE_INFINITY;
    }
 
+   private static class WorkerParameters implements LinearModelParameters {
+      private final LinearModelParameters theta;
+      private final NDArray weights;
+      private final NDArray bias;
+
+      private WorkerParameters(LinearModelParameters theta) {
+         this.theta = theta;
+         this.weights = theta.getWeights().copy();
+         this.bias = theta.getBias().copy();
+      }
+
+      private double[] column(int column) {
+         double[] values = new double[weights.numRows()];
+         for (int r = 0; r < values.length; r++) {
+            values[r] = weights.get(r, column);
+         }
+         return values;
+      }
+
+      @Override
+      public Activation getActivation() {
+         return theta.getActivation();
+      }
+
+      @Override
+      public NDArray getBias() {
+         return bias;
+      }
+
+      @Override
+      public NDArray getWeights() {
+         return weights;
+      }
+
+      @Override
+      public boolean isBinary() {
+         return theta.isBinary();
+      }
+
+      @Override
+      public int numberOfFeatures() {
+         return theta.numberOfFeatures();
+      }
+
+      @Override
+      public int numberOfLabels() {
+         return theta.numberOfLabels();
+      }
+   }
+
 }// END OF SGD
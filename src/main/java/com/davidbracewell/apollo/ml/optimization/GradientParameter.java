@@ -1,27 +1,71 @@
 package com.davidbracewell.apollo.ml.optimization;
 
 import com.davidbracewell.apollo.linear.NDArray;
-import lombok.Value;
+import lombok.Getter;
 
 /**
+ * <p>The gradient of a layer's weights and bias. Gradients created using {@link #calculate(NDArray, NDArray)} keep the
+ * input and error of the batch and only compute the (dense) weight gradient <code>error * input^T</code> the first
+ * time {@link #getWeightGradient()} is called. This allows updaters for sparse inputs to compute the gradient of only
+ * the weight columns of the input's non-zero features (see {@link #getInput()} and {@link #getError()}). As the input
+ * may be a reused batch buffer, gradients should not be retained past the batch they were calculated for without first
+ * calling {@link #getWeightGradient()}.</p>
+ *
  * @author David B. Bracewell
  */
-@Value(staticConstructor = "of")
 public class GradientParameter {
-   NDArray weightGradient;
-   NDArray biasGradient;
+   @Getter
+   private final NDArray biasGradient;
+   @Getter
+   private final NDArray input;
+   @Getter
+   private final NDArray error;
+   private NDArray weightGradient;
+
+   private GradientParameter(NDArray weightGradient, NDArray biasGradient, NDArray input, NDArray error) {
+      this.weightGradient = weightGradient;
+      this.biasGradient = biasGradient;
+      this.input = input;
+      this.error = error;
+   }
 
    public static GradientParameter calculate(NDArray input, NDArray error) {
       //input is numFeatures x numExamples
       //error is numLabels x numExamples
       //output should be numLabels x numFeatures
-      return GradientParameter.of(error.mmul(input.T()), error);
+      return new GradientParameter(null, error, input, error);
+   }
+
+   public static GradientParameter of(NDArray weightGradient, NDArray biasGradient) {
+      return new GradientParameter(weightGradient, biasGradient, null, null);
    }
 
    public GradientParameter add(GradientParameter other) {
-      NDArray w = weightGradient.add(other.weightGradient);
+      NDArray w = getWeightGradient().add(other.getWeightGradient());
       NDArray b = biasGradient.add(other.biasGradient);
       return of(w, b);
    }
 
+   /**
+    * Gets the gradient of the weights, calculating it from the input and error if needed.
+    *
+    * @return the weight gradient
+    */
+   public NDArray getWeightGradient() {
+      if (weightGradient == null) {
+         weightGradient = error.mmul(input.T());
+      }
+      return weightGradient;
+   }
+
+   /**
+    * Checks if the gradient was calculated from an input and error which are available through {@link #getInput()} and
+    * {@link #getError()}.
+    *
+    * @return True if the input and error are available, False otherwise
+    */
+   public boolean hasInput() {
+      return input != null;
+   }
+
 }// END OF GradientParameter
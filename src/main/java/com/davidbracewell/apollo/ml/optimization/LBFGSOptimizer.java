@@ -0,0 +1,423 @@
+package com.davidbracewell.apollo.ml.optimization;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.TrainingListener;
+import com.davidbracewell.apollo.ml.TrainingMetrics;
+import com.davidbracewell.apollo.ml.TrainingMetrics.Phase;
+import com.davidbracewell.function.SerializableSupplier;
+import com.davidbracewell.guava.common.base.Preconditions;
+import com.davidbracewell.guava.common.base.Stopwatch;
+import com.davidbracewell.guava.common.base.Throwables;
+import com.davidbracewell.stream.MStream;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.val;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Full-batch quasi-Newton optimizer for linear models using limited memory BFGS (L-BFGS). When <code>l1</code> is
+ * greater than zero the Orthant-Wise Limited-memory Quasi-Newton (OWL-QN) variant is used to minimize the L1
+ * regularized objective. Each iteration evaluates the cost and gradient over the entire dataset, which is split into
+ * mini-batches that are evaluated in parallel across <code>threads</code> workers using the given {@link
+ * CostFunction}. The objective is the average loss per example plus the regularization terms. The bias is not
+ * regularized.</p>
+ *
+ * <p>Step sizes are chosen by a backtracking line search, and so the {@link WeightUpdate} passed to {@link
+ * #optimize(LinearModelParameters, SerializableSupplier, CostFunction, TerminationCriteria, WeightUpdate, int)} is
+ * only used for its regularization: its L1 and L2 strengths are used when this optimizer's own are zero, and an
+ * <code>IllegalArgumentException</code> is thrown when both are set to different values.</p>
+ *
+ * <p>Batches are packed densely, so when <code>batchSize</code> is zero (the default) it is derived from the number of
+ * features, keeping each batch at around one million values and at most 1000 examples.</p>
+ *
+ * @author David B. Bracewell
+ */
+@Builder(toBuilder = true)
+public class LBFGSOptimizer implements Optimizer<LinearModelParameters> {
+   private static final double ARMIJO = 1e-4;
+   private static final int MAX_BATCH_VALUES = 1 << 20;
+   private static final int MAX_BATCH_SIZE = 1000;
+   @Builder.Default
+   double cost = Double.POSITIVE_INFINITY;
+   @Getter
+   @Setter
+   @Builder.Default
+   int historySize = 10;
+   @Getter
+   @Setter
+   @Builder.Default
+   int batchSize = 0;
+   @Getter
+   @Setter
+   @Builder.Default
+   int threads = Runtime.getRuntime().availableProcessors();
+   @Getter
+   @Setter
+   @Builder.Default
+   double l1 = 0;
+   @Getter
+   @Setter
+   @Builder.Default
+   double l2 = 0;
+   @Getter
+   @Setter
+   @Builder.Default
+   int maxLineSearchIterations = 20;
+   @Getter
+   @Setter
+   TrainingListener listener;
+
+   private static double dot(double[] a, double[] b) {
+      double sum = 0;
+      for (int i = 0; i < a.length; i++) {
+         sum += a[i] * b[i];
+      }
+      return sum;
+   }
+
+   private static double[] flatten(LinearModelParameters theta) {
+      NDArray weights = theta.getWeights();
+      int rows = weights.numRows();
+      int columns = weights.numCols();
+      double[] x = new double[rows * columns + rows];
+      for (int r = 0; r < rows; r++) {
+         for (int c = 0; c < columns; c++) {
+            x[r * columns + c] = weights.get(r, c);
+         }
+         x[rows * columns + r] = theta.getBias().get(r);
+      }
+      return x;
+   }
+
+   private static void unflatten(LinearModelParameters theta, double[] x) {
+      NDArray weights = theta.getWeights();
+      int rows = weights.numRows();
+      int columns = weights.numCols();
+      for (int r = 0; r < rows; r++) {
+         for (int c = 0; c < columns; c++) {
+            weights.set(r, c, x[r * columns + c]);
+         }
+         theta.getBias().set(r, x[rows * columns + r]);
+      }
+   }
+
+   private double[] direction(double[] gradient,
+                              LinkedList<double[]> sHistory,
+                              LinkedList<double[]> yHistory,
+                              LinkedList<Double> rhoHistory
+                             ) {
+      //Two-loop recursion computing -H * gradient
+      double[] q = gradient.clone();
+      int m = sHistory.size();
+      double[] alpha = new double[m];
+      for (int k = m - 1; k >= 0; k--) {
+         double[] s = sHistory.get(k);
+         double[] y = yHistory.get(k);
+         alpha[k] = rhoHistory.get(k) * dot(s, q);
+         for (int i = 0; i < q.length; i++) {
+            q[i] -= alpha[k] * y[i];
+         }
+      }
+      if (m > 0) {
+         double[] y = yHistory.getLast();
+         double gamma = dot(sHistory.getLast(), y) / dot(y, y);
+         for (int i = 0; i < q.length; i++) {
+            q[i] *= gamma;
+         }
+      }
+      for (int k = 0; k < m; k++) {
+         double[] s = sHistory.get(k);
+         double[] y = yHistory.get(k);
+         double beta = rhoHistory.get(k) * dot(y, q);
+         for (int i = 0; i < q.length; i++) {
+            q[i] += s[i] * (alpha[k] - beta);
+         }
+      }
+      for (int i = 0; i < q.length; i++) {
+         q[i] = -q[i];
+      }
+      return q;
+   }
+
+   private double evaluate(LinearModelParameters theta,
+                           double[] x,
+                           double[] gradient,
+                           BatchIterator data,
+                           CostFunction<LinearModelParameters> costFunction,
+                           ExecutorService executor,
+                           TrainingMetrics metrics,
+                           int batchSize,
+                           double l2
+                          ) {
+      unflatten(theta, x);
+      final int numberOfBatches = data.numberOfBatches(batchSize);
+      final int workers = executor == null ? 1 : Math.max(1, Math.min(threads, numberOfBatches));
+      List<double[]> partials = new ArrayList<>();
+      if (workers == 1) {
+         partials.add(evaluatePartition(theta, data, costFunction, 0, 1, numberOfBatches, batchSize, metrics));
+      } else {
+         List<Future<double[]>> futures = new ArrayList<>();
+         for (int w = 0; w < workers; w++) {
+            final int worker = w;
+            futures.add(executor.submit(() -> {
+               long allocated = metrics.threadAllocatedBytes();
+               double[] partial = evaluatePartition(theta,
+                                                    data,
+                                                    costFunction,
+                                                    worker,
+                                                    workers,
+                                                    numberOfBatches,
+                                                    batchSize,
+                                                    metrics);
+               metrics.recordAllocated(allocated);
+               return partial;
+            }));
+         }
+         for (Future<double[]> future : futures) {
+            try {
+               partials.add(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+               throw Throwables.propagate(e);
+            }
+         }
+      }
+      Arrays.fill(gradient, 0);
+      double loss = 0;
+      for (double[] partial : partials) {
+         for (int i = 0; i < gradient.length; i++) {
+            gradient[i] += partial[i];
+         }
+         loss += partial[gradient.length];
+      }
+      final double scale = 1d / data.size();
+      final int numWeights = theta.getWeights().length();
+      loss *= scale;
+      for (int i = 0; i < gradient.length; i++) {
+         gradient[i] *= scale;
+         if (i < numWeights && l2 > 0) {
+            gradient[i] += l2 * x[i];
+            loss += l2 * x[i] * x[i] / 2d;
+         }
+      }
+      return loss;
+   }
+
+   private double[] evaluatePartition(LinearModelParameters theta,
+                                      BatchIterator data,
+                                      CostFunction<LinearModelParameters> costFunction,
+                                      int worker,
+                                      int workers,
+                                      int numberOfBatches,
+                                      int batchSize,
+                                      TrainingMetrics metrics
+                                     ) {
+      final int rows = theta.getWeights().numRows();
+      final int columns = theta.getWeights().numCols();
+      final int numWeights = rows * columns;
+      //The final slot holds the summed loss
+      final double[] partial = new double[numWeights + rows + 1];
+      for (int b = worker; b < numberOfBatches; b += workers) {
+         long time = metrics.now();
+         NDArray batch = data.batch(b, batchSize);
+         time = metrics.record(Phase.BATCH, time);
+         CostGradientTuple cgt = costFunction.evaluate(batch, theta);
+         metrics.record(Phase.FORWARD, time);
+         metrics.addExamples(batch.numCols());
+         partial[numWeights + rows] += cgt.getCost();
+         cgt.getGradient()
+            .getWeightGradient()
+            .forEachSparse(e -> partial[e.getI() * columns + e.getJ()] += e.getValue());
+         cgt.getGradient()
+            .getBiasGradient()
+            .forEachSparse(e -> partial[numWeights + e.getI()] += e.getValue());
+      }
+      return partial;
+   }
+
+   @Override
+   public double getFinalCost() {
+      return cost;
+   }
+
+   private static double l1Norm(double[] x, int numWeights, double l1) {
+      double norm = 0;
+      for (int i = 0; i < numWeights; i++) {
+         norm += FastMath.abs(x[i]);
+      }
+      return l1 * norm;
+   }
+
+   @Override
+   public void optimize(LinearModelParameters startingTheta,
+                        SerializableSupplier<MStream<NDArray>> stream,
+                        CostFunction<LinearModelParameters> costFunction,
+                        TerminationCriteria terminationCriteria,
+                        WeightUpdate weightUpdate,
+                        int reportInterval
+                       ) {
+      final double l1 = regularization("L1", this.l1, weightUpdate == null ? 0 : weightUpdate.getL1());
+      final double l2 = regularization("L2", this.l2, weightUpdate == null ? 0 : weightUpdate.getL2());
+      final int batchSize = this.batchSize > 0
+                            ? this.batchSize
+                            : Math.max(1, Math.min(MAX_BATCH_SIZE,
+                                                   MAX_BATCH_VALUES / Math.max(1, startingTheta.numberOfFeatures())));
+      BatchIterator data = new BatchIterator(stream.get().collect(),
+                                             startingTheta.numberOfLabels(),
+                                             startingTheta.numberOfFeatures());
+      ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+      try {
+         final int numWeights = startingTheta.getWeights().length();
+         double[] x = flatten(startingTheta);
+         double[] g = new double[x.length];
+         TrainingMetrics metrics = new TrainingMetrics(listener != null);
+         metrics.start(0);
+         cost = evaluate(startingTheta, x, g, data, costFunction, executor, metrics, batchSize, l2)
+                   + l1Norm(x, numWeights, l1);
+         LinkedList<double[]> sHistory = new LinkedList<>();
+         LinkedList<double[]> yHistory = new LinkedList<>();
+         LinkedList<Double> rhoHistory = new LinkedList<>();
+         for (int iteration = 0; iteration < terminationCriteria.maxIterations(); iteration++) {
+            val timer = Stopwatch.createStarted();
+            if (iteration > 0) {
+               metrics.start(iteration);
+            }
+            long time = metrics.now();
+            double[] pg = pseudoGradient(x, g, numWeights, l1);
+            double[] d = direction(pg, sHistory, yHistory, rhoHistory);
+            if (l1 > 0) {
+               //Constrain the direction to the orthant of the steepest descent direction
+               for (int i = 0; i < d.length; i++) {
+                  if (d[i] * pg[i] >= 0) {
+                     d[i] = 0;
+                  }
+               }
+            }
+            if (dot(d, pg) >= 0) {
+               //Not a descent direction, so restart from steepest descent
+               sHistory.clear();
+               yHistory.clear();
+               rhoHistory.clear();
+               for (int i = 0; i < d.length; i++) {
+                  d[i] = -pg[i];
+               }
+            }
+            double directionalDerivative = dot(d, pg);
+            if (directionalDerivative == 0) {
+               break;
+            }
+
+            double step = sHistory.isEmpty() ? 1d / FastMath.sqrt(dot(pg, pg)) : 1d;
+            double[] xNew = new double[x.length];
+            double[] gNew = new double[x.length];
+            double costNew = 0;
+            boolean accepted = false;
+            for (int ls = 0; ls < maxLineSearchIterations && !accepted; ls++) {
+               for (int i = 0; i < x.length; i++) {
+                  xNew[i] = x[i] + step * d[i];
+                  if (l1 > 0 && i < numWeights) {
+                     //Project onto the orthant of the current point
+                     double orthant = x[i] != 0 ? FastMath.signum(x[i]) : -FastMath.signum(pg[i]);
+                     if (FastMath.signum(xNew[i]) != orthant) {
+                        xNew[i] = 0;
+                     }
+                  }
+               }
+               time = metrics.record(Phase.UPDATE, time);
+               costNew = evaluate(startingTheta, xNew, gNew, data, costFunction, executor, metrics, batchSize, l2)
+                            + l1Norm(xNew, numWeights, l1);
+               time = metrics.now();
+               double decrease = 0;
+               for (int i = 0; i < x.length; i++) {
+                  decrease += pg[i] * (xNew[i] - x[i]);
+               }
+               accepted = costNew <= cost + ARMIJO * decrease;
+               step /= 2d;
+            }
+            if (!accepted) {
+               logInfo("iteration={0}, line search failed to decrease the loss, stopping", (iteration + 1));
+               break;
+            }
+
+            double[] s = new double[x.length];
+            double[] y = new double[x.length];
+            for (int i = 0; i < x.length; i++) {
+               s[i] = xNew[i] - x[i];
+               y[i] = gNew[i] - g[i];
+            }
+            double sy = dot(s, y);
+            if (sy > 1e-10) {
+               sHistory.addLast(s);
+               yHistory.addLast(y);
+               rhoHistory.addLast(1d / sy);
+               if (sHistory.size() > historySize) {
+                  sHistory.removeFirst();
+                  yHistory.removeFirst();
+                  rhoHistory.removeFirst();
+               }
+            }
+            x = xNew;
+            g = gNew;
+            cost = costNew;
+            metrics.record(Phase.UPDATE, time);
+            timer.stop();
+            if (listener != null) {
+               metrics.end(cost);
+               listener.onIteration(metrics);
+            }
+            if (report(reportInterval, iteration, terminationCriteria, cost, timer.toString(), startingTheta)) {
+               break;
+            }
+         }
+         unflatten(startingTheta, x);
+         finish(terminationCriteria, startingTheta);
+      } finally {
+         if (executor != null) {
+            executor.shutdown();
+         }
+      }
+   }
+
+   private static double[] pseudoGradient(double[] x, double[] g, int numWeights, double l1) {
+      if (l1 <= 0) {
+         return g;
+      }
+      double[] pg = g.clone();
+      for (int i = 0; i < numWeights; i++) {
+         if (x[i] > 0) {
+            pg[i] = g[i] + l1;
+         } else if (x[i] < 0) {
+            pg[i] = g[i] - l1;
+         } else if (g[i] + l1 < 0) {
+            pg[i] = g[i] + l1;
+         } else if (g[i] - l1 > 0) {
+            pg[i] = g[i] - l1;
+         } else {
+            pg[i] = 0;
+         }
+      }
+      return pg;
+   }
+
+   private static double regularization(String name, double optimizerValue, double updaterValue) {
+      Preconditions.checkArgument(optimizerValue <= 0 || updaterValue <= 0 || optimizerValue == updaterValue,
+                                  "Conflicting " + name + " regularization: the optimizer uses " + optimizerValue
+                                     + ", but the weight updater uses " + updaterValue);
+      return optimizerValue > 0 ? optimizerValue : Math.max(0, updaterValue);
+   }
+
+   @Override
+   public void reset() {
+      cost = Double.POSITIVE_INFINITY;
+   }
+
+}// END OF LBFGSOptimizer
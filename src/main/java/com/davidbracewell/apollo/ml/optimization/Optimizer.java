@@ -1,10 +1,13 @@
 package com.davidbracewell.apollo.ml.optimization;
 
 import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.conversion.Cast;
 import com.davidbracewell.function.SerializableSupplier;
 import com.davidbracewell.logging.Loggable;
 import com.davidbracewell.stream.MStream;
 
+import java.util.function.Consumer;
+
 /**
  * @author David B. Bracewell
  */
@@ -37,6 +40,74 @@ public interface Optimizer<THETA> extends Loggable {
       return converged;
    }
 
+   /**
+    * Reports the progress of an iteration and checks the termination criteria, including its early stopping (if
+    * any) using the current parameters.
+    *
+    * @param interval            the report interval
+    * @param iteration           the iteration
+    * @param terminationCriteria the termination criteria
+    * @param cost                the training cost
+    * @param time                the time taken for the iteration
+    * @param theta               the current parameters
+    * @return True if training should stop
+    */
+   default boolean report(int interval,
+                          int iteration,
+                          TerminationCriteria terminationCriteria,
+                          double cost,
+                          String time,
+                          THETA theta
+                         ) {
+      return report(interval, iteration, terminationCriteria, cost, time, theta, snapshot -> {
+      });
+   }
+
+   /**
+    * Reports the progress of an iteration and checks the termination criteria, including its early stopping (if
+    * any) using the current parameters, whose snapshot is brought up to date with the optimizer's pending lazy updates
+    * using the given consumer.
+    *
+    * @param interval            the report interval
+    * @param iteration           the iteration
+    * @param terminationCriteria the termination criteria
+    * @param cost                the training cost
+    * @param time                the time taken for the iteration
+    * @param theta               the current parameters
+    * @param catchUp             consumer applying pending updates to a snapshot of the parameters
+    * @return True if training should stop
+    */
+   default boolean report(int interval,
+                          int iteration,
+                          TerminationCriteria terminationCriteria,
+                          double cost,
+                          String time,
+                          THETA theta,
+                          Consumer<THETA> catchUp
+                         ) {
+      boolean converged = report(interval, iteration, terminationCriteria, cost, time);
+      EarlyStopping<THETA> earlyStopping = Cast.as(terminationCriteria.earlyStopping());
+      if (earlyStopping != null && earlyStopping.check(iteration, theta, catchUp)) {
+         logInfo("iteration={0}, validation loss stopped improving (best={1})", (iteration + 1),
+                 earlyStopping.bestLoss());
+         return true;
+      }
+      return converged;
+   }
+
+   /**
+    * Finishes optimization, restoring the best parameters when early stopping is used.
+    *
+    * @param terminationCriteria the termination criteria
+    * @param theta               the trained parameters
+    */
+   default void finish(TerminationCriteria terminationCriteria, THETA theta) {
+      EarlyStopping<THETA> earlyStopping = Cast.as(terminationCriteria.earlyStopping());
+      if (earlyStopping != null) {
+         earlyStopping.finish(theta);
+      }
+   }
+
    void reset();
 
 }// END OF Optimizer
\ No newline at end of file
@@ -0,0 +1,166 @@
+package com.davidbracewell.apollo.ml.optimization;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.guava.common.base.Preconditions;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * <p>In-process parameter server holding the master copy of a linear model's parameters. The weight columns
+ * (features) are split into contiguous shards, each guarded by its own lock and carrying a version number, so that
+ * workers pull only the shards that changed since their last pull and push sparse column deltas concurrently. Workers
+ * advance a logical clock after each push, and a worker is blocked whenever it gets more than <code>staleness</code>
+ * clock ticks ahead of the slowest active worker (stale synchronous parallel).</p>
+ *
+ * @author David B. Bracewell
+ */
+public class ParameterServer {
+   private final LinearModelParameters theta;
+   @Getter
+   private final int shardSize;
+   @Getter
+   private final int numberOfShards;
+   @Getter
+   private final int staleness;
+   private final Object[] locks;
+   private final long[] versions;
+   private final Object biasLock = new Object();
+   private final int[] clocks;
+
+   /**
+    * Instantiates a new Parameter server.
+    *
+    * @param theta           the master parameters
+    * @param numberOfShards  the number of shards to split the weight columns into
+    * @param numberOfWorkers the number of workers that will pull from and push to the server
+    * @param staleness       the maximum number of clock ticks a worker may be ahead of the slowest worker
+    */
+   public ParameterServer(@NonNull LinearModelParameters theta,
+                          int numberOfShards,
+                          int numberOfWorkers,
+                          int staleness
+                         ) {
+      Preconditions.checkArgument(numberOfShards > 0, "Number of shards must be > 0");
+      Preconditions.checkArgument(numberOfWorkers > 0, "Number of workers must be > 0");
+      Preconditions.checkArgument(staleness >= 0, "Staleness must be >= 0");
+      this.theta = theta;
+      int numColumns = theta.getWeights().numCols();
+      this.shardSize = Math.max(1, (numColumns + numberOfShards - 1) / numberOfShards);
+      this.numberOfShards = (numColumns + shardSize - 1) / shardSize;
+      this.staleness = staleness;
+      this.locks = new Object[this.numberOfShards];
+      for (int i = 0; i < locks.length; i++) {
+         locks[i] = new Object();
+      }
+      this.versions = new long[this.numberOfShards];
+      this.clocks = new int[numberOfWorkers];
+   }
+
+   /**
+    * Advances the clock of the given worker, blocking while the worker is more than <code>staleness</code> ticks ahead
+    * of the slowest active worker.
+    *
+    * @param worker the worker id
+    * @throws InterruptedException the worker was interrupted while waiting
+    */
+   public synchronized void clock(int worker) throws InterruptedException {
+      clocks[worker]++;
+      notifyAll();
+      while (clocks[worker] - minClock() > staleness) {
+         wait();
+      }
+   }
+
+   /**
+    * Marks the given worker as finished so that it no longer holds back the other workers.
+    *
+    * @param worker the worker id
+    */
+   public synchronized void finish(int worker) {
+      clocks[worker] = Integer.MAX_VALUE;
+      notifyAll();
+   }
+
+   private int minClock() {
+      int min = Integer.MAX_VALUE;
+      for (int clock : clocks) {
+         min = Math.min(min, clock);
+      }
+      return min;
+   }
+
+   /**
+    * Copies the shards that have changed since the last pull into the given local parameters.
+    *
+    * @param local          the worker's local parameters
+    * @param pulledVersions the versions of the shards last pulled by the worker, which are updated in place
+    */
+   public void pull(@NonNull LinearModelParameters local, @NonNull long[] pulledVersions) {
+      NDArray source = theta.getWeights();
+      NDArray target = local.getWeights();
+      int rows = source.numRows();
+      for (int shard = 0; shard < numberOfShards; shard++) {
+         synchronized (locks[shard]) {
+            if (versions[shard] == pulledVersions[shard]) {
+               continue;
+            }
+            int end = Math.min(source.numCols(), (shard + 1) * shardSize);
+            for (int c = shard * shardSize; c < end; c++) {
+               for (int r = 0; r < rows; r++) {
+                  target.set(r, c, source.get(r, c));
+               }
+            }
+            pulledVersions[shard] = versions[shard];
+         }
+      }
+      synchronized (biasLock) {
+         NDArray bias = theta.getBias();
+         for (int r = 0; r < bias.length(); r++) {
+            local.getBias().set(r, bias.get(r));
+         }
+      }
+   }
+
+   /**
+    * Adds the given sparse column deltas and bias delta to the master parameters.
+    *
+    * @param columnDeltas map of weight column to the delta for each row of the column
+    * @param biasDelta    the delta for the bias
+    */
+   public void push(@NonNull Map<Integer, double[]> columnDeltas, @NonNull double[] biasDelta) {
+      NDArray weights = theta.getWeights();
+      Integer[] columns = columnDeltas.keySet().toArray(new Integer[columnDeltas.size()]);
+      Arrays.sort(columns);
+      int i = 0;
+      while (i < columns.length) {
+         int shard = columns[i] / shardSize;
+         synchronized (locks[shard]) {
+            for (; i < columns.length && columns[i] / shardSize == shard; i++) {
+               double[] delta = columnDeltas.get(columns[i]);
+               for (int r = 0; r < delta.length; r++) {
+                  weights.increment(r, columns[i], delta[r]);
+               }
+            }
+            versions[shard]++;
+         }
+      }
+      synchronized (biasLock) {
+         NDArray bias = theta.getBias();
+         for (int r = 0; r < biasDelta.length; r++) {
+            bias.set(r, bias.get(r) + biasDelta[r]);
+         }
+      }
+   }
+
+   /**
+    * Resets the clocks of all workers, e.g. at the start of a new epoch.
+    */
+   public synchronized void resetClocks() {
+      Arrays.fill(clocks, 0);
+      notifyAll();
+   }
+
+}// END OF ParameterServer
@@ -6,6 +6,7 @@ import com.davidbracewell.guava.common.util.concurrent.AtomicDouble;
 import com.davidbracewell.tuple.Tuple2;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import lombok.Getter;
 import lombok.val;
 import org.apache.commons.math3.util.FastMath;
 
@@ -26,8 +27,10 @@ public class SGDUpdater implements WeightUpdate, Serializable {
    private double decayRate = 0.01;
    @Builder.Default
    private double momentum = 0.90;
+   @Getter
    @Builder.Default
    private double l1 = 0.0;
+   @Getter
    @Builder.Default
    private double l2 = 0.0;
    private transient NDArray v;
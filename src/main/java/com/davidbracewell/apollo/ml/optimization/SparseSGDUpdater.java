@@ -0,0 +1,223 @@
+package com.davidbracewell.apollo.ml.optimization;
+
+import com.davidbracewell.apollo.linear.Axis;
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.collection.Collect;
+import com.davidbracewell.tuple.Tuple2;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.davidbracewell.tuple.Tuples.$;
+
+/**
+ * <p>Stochastic gradient descent updater for high-dimensional sparse inputs that only touches the weight columns of
+ * features present in the current batch. Momentum, L2 weight decay and L1 shrinkage for columns not present in a batch
+ * are applied lazily the next time the column is touched (or when {@link #finish(LinearModelParameters)} is called),
+ * using a per-feature timestamp of the last step at which the column was updated. Skipped steps are caught up using the
+ * learning rate of the step that touches the column again (or the last learning rate when finishing) rather than the
+ * rates in effect during the skipped steps. As the learning rate only decays between iterations, this only differs
+ * from eager updates for columns left untouched across an iteration boundary, where it slightly underestimates the
+ * decay and shrinkage.</p>
+ *
+ * <p>L2 regularization is applied as weight decay, i.e. the gradient of a weight <code>w</code> becomes <code>g + l2 *
+ * w</code>. Note that this differs from {@link SGDUpdater}, which scales the gradient by <code>l2</code>, so the same
+ * <code>l2</code> value does not give the same regularization for both updaters.</p>
+ *
+ * <p>{@link #catchUp(LinearModelParameters)} applies the pending updates to a copy of the parameters, e.g. an early
+ * stopping snapshot, without changing the updater's state.</p>
+ *
+ * <p>Gradients created using {@link GradientParameter#calculate(NDArray, NDArray)} are applied from the input and
+ * error of the batch, so that only the gradients of the columns of the input's non-zero features are computed.</p>
+ *
+ * @author David B. Bracewell
+ */
+@Builder(toBuilder = true)
+@AllArgsConstructor
+public class SparseSGDUpdater implements WeightUpdate, Serializable {
+   private static final long serialVersionUID = 1L;
+   @Builder.Default
+   private double learningRate = 0.01;
+   @Builder.Default
+   private double decayRate = 0.01;
+   @Getter
+   @Builder.Default
+   private double momentum = 0.90;
+   @Getter
+   @Builder.Default
+   private double l1 = 0.0;
+   @Getter
+   @Builder.Default
+   private double l2 = 0.0;
+   private transient double[] velocity;
+   private transient int[] lastStep;
+   private transient int step;
+   private transient double lastLearningRate;
+
+   private double applyColumn(NDArray weights, int column, double[] gradient, double lr) {
+      int rows = weights.numRows();
+      double cost = 0;
+      for (int r = 0; r < rows; r++) {
+         double w = weights.get(r, column);
+         double g = gradient[r] + l2 * w;
+         if (momentum > 0) {
+            int index = column * rows + r;
+            velocity[index] = momentum * velocity[index] - lr * g;
+            w += velocity[index];
+         } else {
+            w -= lr * g;
+         }
+         if (l1 > 0) {
+            w = shrink(w, lr * l1);
+         }
+         weights.set(r, column, w);
+         cost += l1 * FastMath.abs(w) + l2 * w * w / 2d;
+      }
+      return cost;
+   }
+
+   private double applyGradients(LinearModelParameters weights, Map<Integer, double[]> columns, int iteration) {
+      ensureState(weights.getWeights());
+      step++;
+      double lr = learningRate / (1.0 + decayRate * iteration);
+      lastLearningRate = lr;
+      double addedCost = 0;
+      for (Map.Entry<Integer, double[]> entry : columns.entrySet()) {
+         int column = entry.getKey();
+         catchUp(weights.getWeights(), column, step - lastStep[column] - 1, lr, true);
+         addedCost += applyColumn(weights.getWeights(), column, entry.getValue(), lr);
+         lastStep[column] = step;
+      }
+      return addedCost;
+   }
+
+   private void catchUp(NDArray weights, int column, int steps, double lr, boolean decayVelocity) {
+      if (steps <= 0) {
+         return;
+      }
+      int rows = weights.numRows();
+      double decay = l2 > 0 ? FastMath.pow(1d - lr * l2, steps) : 1d;
+      double momentumK = momentum > 0 ? FastMath.pow(momentum, steps) : 0d;
+      double coast = momentum > 0 ? momentum * (1d - momentumK) / (1d - momentum) : 0d;
+      for (int r = 0; r < rows; r++) {
+         double w = weights.get(r, column) * decay;
+         if (momentum > 0) {
+            int index = column * rows + r;
+            w += velocity[index] * coast;
+            if (decayVelocity) {
+               velocity[index] *= momentumK;
+            }
+         }
+         if (l1 > 0) {
+            w = shrink(w, steps * lr * l1);
+         }
+         weights.set(r, column, w);
+      }
+   }
+
+   @Override
+   public WeightUpdate copy() {
+      return toBuilder().build();
+   }
+
+   private void ensureState(NDArray weights) {
+      if (lastStep == null || lastStep.length != weights.numCols()) {
+         lastStep = new int[weights.numCols()];
+         velocity = momentum > 0 ? new double[weights.numRows() * weights.numCols()] : null;
+         step = 0;
+      }
+   }
+
+   @Override
+   public void finish(LinearModelParameters parameters) {
+      if (lastStep == null) {
+         return;
+      }
+      NDArray weights = parameters.getWeights();
+      for (int column = 0; column < lastStep.length; column++) {
+         catchUp(weights, column, step - lastStep[column], lastLearningRate, true);
+         lastStep[column] = step;
+      }
+   }
+
+   @Override
+   public void catchUp(LinearModelParameters snapshot) {
+      if (lastStep == null) {
+         return;
+      }
+      NDArray weights = snapshot.getWeights();
+      for (int column = 0; column < lastStep.length; column++) {
+         catchUp(weights, column, step - lastStep[column], lastLearningRate, false);
+      }
+   }
+
+   @Override
+   public void reset() {
+      velocity = null;
+      lastStep = null;
+      step = 0;
+   }
+
+   private double shrink(double w, double amount) {
+      double shrunk = FastMath.signum(w) * FastMath.max(0, FastMath.abs(w) - amount);
+      return FastMath.abs(shrunk) < 1e-9 ? 0d : shrunk;
+   }
+
+   @Override
+   public Tuple2<NDArray, Double> update(LinearModelParameters weights,
+                                         NDArray input,
+                                         NDArray output,
+                                         NDArray delta,
+                                         int iteration,
+                                         boolean calculateOutDelta
+                                        ) {
+      NDArray dzOut = calculateOutDelta
+                      ? weights.getWeights().T().mmul(delta)
+                      : null;
+      int rows = delta.numRows();
+      double scale = 1d / input.numCols();
+      Map<Integer, double[]> columns = new HashMap<>();
+      for (NDArray.Entry entry : Collect.asIterable(input.sparseIterator())) {
+         double[] gradient = columns.computeIfAbsent(entry.getI(), i -> new double[rows]);
+         for (int r = 0; r < rows; r++) {
+            gradient[r] += delta.get(r, entry.getJ()) * entry.getValue() * scale;
+         }
+      }
+      double addedCost = applyGradients(weights, columns, iteration);
+      double lr = learningRate / (1.0 + decayRate * iteration);
+      weights.getBias().subi(delta.sum(Axis.ROW).muli(scale * lr));
+      return $(dzOut, addedCost);
+   }
+
+   @Override
+   public double update(LinearModelParameters weights, GradientParameter gradient, int iteration) {
+      int rows = weights.getWeights().numRows();
+      Map<Integer, double[]> columns = new HashMap<>();
+      if (gradient.hasInput()) {
+         NDArray error = gradient.getError();
+         for (NDArray.Entry entry : Collect.asIterable(gradient.getInput().sparseIterator())) {
+            if (entry.getValue() == 0) {
+               continue;
+            }
+            double[] columnGradient = columns.computeIfAbsent(entry.getI(), i -> new double[rows]);
+            for (int r = 0; r < rows; r++) {
+               columnGradient[r] += error.get(r, entry.getJ()) * entry.getValue();
+            }
+         }
+      } else {
+         for (NDArray.Entry entry : Collect.asIterable(gradient.getWeightGradient().sparseIterator())) {
+            columns.computeIfAbsent(entry.getJ(), j -> new double[rows])[entry.getI()] = entry.getValue();
+         }
+      }
+      double addedCost = applyGradients(weights, columns, iteration);
+      double lr = learningRate / (1.0 + decayRate * iteration);
+      weights.getBias().subi(gradient.getBiasGradient().sum(Axis.ROW).muli(lr));
+      return addedCost;
+   }
+
+}// END OF SparseSGDUpdater
@@ -25,6 +25,9 @@ public final class TerminationCriteria implements Serializable {
    @Getter
    @Setter
    private double tolerance = 1e-6;
+   @Getter
+   @Setter
+   private transient EarlyStopping<?> earlyStopping = null;
 
    /**
     * Create termination criteria.
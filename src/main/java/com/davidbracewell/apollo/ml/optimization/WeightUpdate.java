@@ -9,6 +9,47 @@ import com.davidbracewell.tuple.Tuple2;
  */
 public interface WeightUpdate extends Copyable<WeightUpdate> {
 
+   /**
+    * Called once optimization has finished, allowing updaters that apply updates lazily to bring all of the given
+    * parameters up to date.
+    *
+    * @param parameters the parameters that were optimized
+    */
+   default void finish(LinearModelParameters parameters) {
+
+   }
+
+   /**
+    * Applies the updates this updater has deferred so far to the given copy of the parameters it is optimizing,
+    * without changing its own state or the optimized parameters, e.g. so that an early stopping snapshot taken during
+    * optimization includes pending lazy updates.
+    *
+    * @param snapshot a copy of the parameters being optimized
+    */
+   default void catchUp(LinearModelParameters snapshot) {
+
+   }
+
+   /**
+    * Gets the L1 regularization strength applied by this updater, which optimizers that regularize the objective
+    * themselves, e.g. the {@link LBFGSOptimizer}, apply instead.
+    *
+    * @return the L1 regularization strength (0 when the updater does not regularize)
+    */
+   default double getL1() {
+      return 0;
+   }
+
+   /**
+    * Gets the L2 regularization strength applied by this updater, which optimizers that regularize the objective
+    * themselves, e.g. the {@link LBFGSOptimizer}, apply instead.
+    *
+    * @return the L2 regularization strength (0 when the updater does not regularize)
+    */
+   default double getL2() {
+      return 0;
+   }
+
    void reset();
 
    Tuple2<NDArray, Double> update(LinearModelParameters weights,
@@ -35,6 +35,18 @@ public interface Activation extends Serializable {
    }
 
 
+   /**
+    * Multiplies, in place, the given delta by the gradient of the activation at the given activated values without
+    * allocating an intermediate gradient array.
+    *
+    * @param activated the activated values
+    * @param delta     the delta to multiply
+    * @return the delta
+    */
+   default NDArray backward(@NonNull NDArray activated, @NonNull NDArray delta) {
+      return delta.mapi(activated, (d, a) -> d * valueGradient(a));
+   }
+
    /**
     * Gradient vector.
     *
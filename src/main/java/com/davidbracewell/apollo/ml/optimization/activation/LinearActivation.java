@@ -20,6 +20,11 @@ public class LinearActivation implements Activation {
       return x;
    }
 
+   @Override
+   public NDArray backward(NDArray activated, NDArray delta) {
+      return delta;
+   }
+
    @Override
    public NDArray gradient(NDArray in) {
       return in.getFactory().ones(in.numRows(), in.numCols());
@@ -24,7 +24,13 @@ public class SoftmaxActivation implements Activation {
          val sum = x.sum();
          return x.divi(sum);
       }
-      val max = x.max(Axis.COlUMN);
+      //Column maxima are kept in x's factory, so that float activations are not converted to double per batch
+      val max = x.getFactory().zeros(Axis.ROW, x.numCols()).fill(Double.NEGATIVE_INFINITY);
+      x.forEach(entry -> {
+         if (max.get(entry.getJ()) < entry.getValue()) {
+            max.set(entry.getJ(), entry.getValue());
+         }
+      });
       x.mapi(max, Axis.ROW, (d1, m) -> FastMath.exp(d1 - m));
       val sum = x.sum(Axis.COlUMN);
       return x.divi(sum, Axis.ROW);
@@ -0,0 +1,148 @@
+package com.davidbracewell.apollo.ml.optimization.loss;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.optimization.activation.Activation;
+import com.davidbracewell.apollo.ml.optimization.activation.LinearActivation;
+import com.davidbracewell.apollo.ml.optimization.activation.SigmoidActivation;
+import com.davidbracewell.apollo.ml.optimization.activation.SoftmaxActivation;
+import lombok.NonNull;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * <p>Fused kernels for common pairs of output {@link Activation} and {@link LossFunction}. A kernel takes the
+ * pre-activation output of a batch (one example per column), applies the activation in place, and in the same pass
+ * calculates the total loss and writes the gradient of the loss with respect to the pre-activation output. This
+ * avoids the separate passes and intermediate arrays needed to apply the activation, calculate the loss and calculate
+ * the derivative individually.</p>
+ *
+ * @author David B. Bracewell
+ */
+public enum FusedLoss {
+   /**
+    * Softmax activation with cross-entropy loss, using log-sum-exp for a numerically stable loss.
+    */
+   SOFTMAX_CROSS_ENTROPY {
+      @Override
+      public boolean supports(@NonNull NDArray z, @NonNull NDArray y) {
+         //Softmax over a single row is not defined column-wise, so leave it to the unfused path
+         return z.numRows() > 1 && super.supports(z, y);
+      }
+
+      @Override
+      public double evaluate(@NonNull NDArray z, @NonNull NDArray y, @NonNull NDArray gradient) {
+         double loss = 0;
+         for (int c = 0; c < z.numCols(); c++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int r = 0; r < z.numRows(); r++) {
+               max = Math.max(max, z.get(r, c));
+            }
+            double sum = 0;
+            double ySum = 0;
+            for (int r = 0; r < z.numRows(); r++) {
+               double zv = z.get(r, c);
+               double yv = y.get(r, c);
+               //-sum(y * log(softmax(z))) = -sum(y * z) + sum(y) * logSumExp(z)
+               loss -= yv * zv;
+               ySum += yv;
+               double e = FastMath.exp(zv - max);
+               z.set(r, c, e);
+               sum += e;
+            }
+            loss += ySum * (max + FastMath.log(sum));
+            for (int r = 0; r < z.numRows(); r++) {
+               double p = z.get(r, c) / sum;
+               z.set(r, c, p);
+               gradient.set(r, c, p - y.get(r, c));
+            }
+         }
+         return loss;
+      }
+   },
+   /**
+    * Sigmoid activation with log loss, calculating the loss from the pre-activation output as a softplus.
+    */
+   SIGMOID_LOG_LOSS {
+      @Override
+      public double evaluate(@NonNull NDArray z, @NonNull NDArray y, @NonNull NDArray gradient) {
+         double loss = 0;
+         for (int i = 0; i < z.length(); i++) {
+            double zv = z.get(i);
+            double yv = y.get(i);
+            double p;
+            if (zv >= 0) {
+               p = 1.0 / (1.0 + FastMath.exp(-zv));
+            } else {
+               double e = FastMath.exp(zv);
+               p = e / (1.0 + e);
+            }
+            //-log(sigmoid(z)) = softplus(-z) and -log(1 - sigmoid(z)) = softplus(z)
+            loss += softplus(yv == 1 ? -zv : zv);
+            z.set(i, p);
+            gradient.set(i, p - yv);
+         }
+         return loss;
+      }
+   },
+   /**
+    * Linear activation with squared loss.
+    */
+   LINEAR_SQUARED {
+      @Override
+      public double evaluate(@NonNull NDArray z, @NonNull NDArray y, @NonNull NDArray gradient) {
+         double loss = 0;
+         for (int i = 0; i < z.length(); i++) {
+            double diff = z.get(i) - y.get(i);
+            loss += diff * diff;
+            gradient.set(i, 2.0 * diff);
+         }
+         return loss;
+      }
+   };
+
+   /**
+    * Finds the fused kernel for the given activation and loss function.
+    *
+    * @param activation   the output activation
+    * @param lossFunction the loss function
+    * @return the fused kernel or null if the pair has no fused kernel
+    */
+   public static FusedLoss of(Activation activation, LossFunction lossFunction) {
+      if (activation instanceof SoftmaxActivation && lossFunction instanceof CrossEntropyLoss) {
+         return SOFTMAX_CROSS_ENTROPY;
+      }
+      if (activation instanceof SigmoidActivation && lossFunction instanceof LogLoss) {
+         return SIGMOID_LOG_LOSS;
+      }
+      if (activation instanceof LinearActivation && lossFunction instanceof SquaredLoss) {
+         return LINEAR_SQUARED;
+      }
+      return null;
+   }
+
+   private static double softplus(double x) {
+      return Math.max(x, 0) + FastMath.log1p(FastMath.exp(-Math.abs(x)));
+   }
+
+   /**
+    * Applies the activation to the pre-activation output in place, writes the gradient of the loss with respect to the
+    * pre-activation output into the given gradient array and calculates the loss.
+    *
+    * @param z        the pre-activation output, which is replaced by the activated output
+    * @param y        the gold values
+    * @param gradient the array to write the gradient into (same shape as <code>z</code>)
+    * @return the total loss over all examples in the batch
+    */
+   public abstract double evaluate(NDArray z, NDArray y, NDArray gradient);
+
+   /**
+    * Checks if the kernel can be applied to the given output and gold values.
+    *
+    * @param z the pre-activation output
+    * @param y the gold values
+    * @return True if the kernel can be applied
+    */
+   public boolean supports(@NonNull NDArray z, @NonNull NDArray y) {
+      return z.numRows() == y.numRows() && z.numCols() == y.numCols();
+   }
+
+}// END OF FusedLoss
@@ -63,6 +63,17 @@ public abstract class RestrictedInstancePreprocessor implements InstancePreproce
       return acceptAll;
    }
 
+   /**
+    * Checks if the preprocessor is applied to the feature with the given name, i.e. the feature is not the bias
+    * feature and matches the restriction.
+    *
+    * @param featureName the feature name
+    * @return True if the preprocessor is applied to the feature, False otherwise
+    */
+   public boolean appliesTo(@NonNull String featureName) {
+      return !featureName.equals("SPECIAL::BIAS_FEATURE") && (applyToAll() || featureName.startsWith(getRestriction()));
+   }
+
    @Override
    public final void fit(Dataset<Instance> dataset) {
       if (requiresFit()) {
@@ -114,8 +125,7 @@ public abstract class RestrictedInstancePreprocessor implements InstancePreproce
    private Stream<Feature> shouldFilter(Instance example) {
       return example.getFeatures()
                     .stream()
-                    .filter(f -> !f.getFeatureName().equals("SPECIAL::BIAS_FEATURE") &&
-                                    (applyToAll() || f.getFeatureName().startsWith(getRestriction())));
+                    .filter(f -> appliesTo(f.getFeatureName()));
    }
 
    /**
@@ -126,9 +136,7 @@ public abstract class RestrictedInstancePreprocessor implements InstancePreproce
     */
    private Stream<Feature> shouldNotFilter(@NonNull Instance example) {
       return example.getFeatures().stream()
-                    .filter(
-                       f -> f.getFeatureName().equals("SPECIAL::BIAS_FEATURE")
-                               || (!applyToAll() && !f.getFeatureName().startsWith(getRestriction())));
+                    .filter(f -> !appliesTo(f.getFeatureName()));
    }
 
    @Override
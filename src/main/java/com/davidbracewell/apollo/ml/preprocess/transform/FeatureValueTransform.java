@@ -0,0 +1,24 @@
+package com.davidbracewell.apollo.ml.preprocess.transform;
+
+import com.davidbracewell.apollo.ml.Instance;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * <p>A transform that maps the value of each feature independently of the other features in the instance and without
+ * changing the feature name. Such transforms can be resolved per feature ahead of time, e.g. when compiling a model
+ * for inference.</p>
+ *
+ * @author David B. Bracewell
+ */
+public interface FeatureValueTransform extends TransformProcessor<Instance> {
+
+   /**
+    * Gets the function that is applied to the values of the given feature.
+    *
+    * @param featureName the feature name
+    * @return the value function or null if the values of the feature are left unchanged
+    */
+   DoubleUnaryOperator valueFunction(String featureName);
+
+}// END OF FeatureValueTransform
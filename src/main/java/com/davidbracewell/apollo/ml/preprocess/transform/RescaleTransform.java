@@ -16,12 +16,13 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
 import java.util.stream.Stream;
 
 /**
  * @author David B. Bracewell
  */
-public class RescaleTransform extends RestrictedInstancePreprocessor implements TransformProcessor<Instance> {
+public class RescaleTransform extends RestrictedInstancePreprocessor implements FeatureValueTransform {
    private static final String SINGLE_FEATURE = "*****SINGLE_FEATURE*****";
    private double newMin;
    private double newMax;
@@ -108,6 +109,10 @@ public class RescaleTransform extends RestrictedInstancePreprocessor implements
    protected Stream<Feature> restrictedProcessImpl(Stream<Feature> featureStream, Instance originalExample) {
       return featureStream.map(feature -> {
          if (perFeature) {
+            //Features that were not seen when fitting are left unchanged, as in valueFunction
+            if (!mins.containsKey(feature.getFeatureName())) {
+               return feature;
+            }
             return Feature.real(feature.getFeatureName(),
                                 Math2.rescale(feature.getValue(), mins.get(feature.getFeatureName()),
                                               maxs.get(feature.getFeatureName()), newMin,
@@ -118,6 +123,17 @@ public class RescaleTransform extends RestrictedInstancePreprocessor implements
       });
    }
 
+   @Override
+   public DoubleUnaryOperator valueFunction(@NonNull String featureName) {
+      final String key = perFeature ? featureName : SINGLE_FEATURE;
+      if (!appliesTo(featureName) || !mins.containsKey(key)) {
+         return null;
+      }
+      final double min = mins.get(key);
+      final double max = maxs.get(key);
+      return value -> Math2.rescale(value, min, max, newMin, newMax);
+   }
+
    @Override
    public void toJson(@NonNull JsonWriter writer) throws IOException {
       if (!applyToAll()) {
@@ -15,6 +15,7 @@ import lombok.NonNull;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
+import java.util.function.DoubleUnaryOperator;
 import java.util.stream.Stream;
 
 /**
@@ -22,7 +23,7 @@ import java.util.stream.Stream;
  *
  * @author David B. Bracewell
  */
-public class ZScoreTransform extends RestrictedInstancePreprocessor implements TransformProcessor<Instance>, Serializable {
+public class ZScoreTransform extends RestrictedInstancePreprocessor implements FeatureValueTransform, Serializable {
 
    private static final long serialVersionUID = 1L;
    private double mean = 0;
@@ -94,6 +95,16 @@ public class ZScoreTransform extends RestrictedInstancePreprocessor implements T
                                                        (feature.getValue() - mean) / standardDeviation));
    }
 
+   @Override
+   public DoubleUnaryOperator valueFunction(@NonNull String featureName) {
+      if (!appliesTo(featureName)) {
+         return null;
+      }
+      final double mean = this.mean;
+      final double standardDeviation = this.standardDeviation;
+      return value -> (value - mean) / standardDeviation;
+   }
+
    @Override
    public void toJson(@NonNull JsonWriter writer) throws IOException {
       if (!applyToAll()) {
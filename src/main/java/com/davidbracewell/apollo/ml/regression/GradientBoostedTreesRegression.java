@@ -0,0 +1,59 @@
+package com.davidbracewell.apollo.ml.regression;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.tree.RegressionTree;
+import com.davidbracewell.collection.counter.Counter;
+import com.davidbracewell.collection.counter.Counters;
+import lombok.NonNull;
+
+/**
+ * <p>Gradient boosted trees regression model whose estimate is the sum of a base score (the mean of the training
+ * targets) and the values predicted by the {@link RegressionTree} of each boosting round.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class GradientBoostedTreesRegression extends Regression {
+   private static final long serialVersionUID = 1L;
+   /**
+    * The base score
+    */
+   double baseScore;
+   /**
+    * The trees in boosting round order
+    */
+   RegressionTree[] trees;
+
+   public GradientBoostedTreesRegression(RegressionLearner learner) {
+      super(learner);
+   }
+
+   @Override
+   public double estimate(@NonNull NDArray vector) {
+      double estimate = baseScore;
+      for (RegressionTree tree : trees) {
+         estimate += tree.predict(vector);
+      }
+      return estimate;
+   }
+
+   /**
+    * Gets the feature importance, i.e. the total gain of the splits on each feature.
+    *
+    * @return the feature importance
+    */
+   @Override
+   public Counter<String> getFeatureWeights() {
+      double[] importance = new double[numberOfFeatures()];
+      for (RegressionTree tree : trees) {
+         tree.featureImportance(importance);
+      }
+      Counter<String> out = Counters.newCounter();
+      for (int f = 0; f < importance.length; f++) {
+         if (importance[f] > 0) {
+            out.set(decodeFeature(f).toString(), importance[f]);
+         }
+      }
+      return out;
+   }
+
+}// END OF GradientBoostedTreesRegression
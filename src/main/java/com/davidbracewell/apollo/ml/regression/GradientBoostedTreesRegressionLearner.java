@@ -0,0 +1,80 @@
+package com.davidbracewell.apollo.ml.regression;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.tree.HistogramMatrix;
+import com.davidbracewell.apollo.ml.tree.RegressionTree;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Learner for {@link GradientBoostedTreesRegression} minimizing the squared loss. The training data is binned once
+ * into a {@link HistogramMatrix}, after which each boosting round fits a {@link RegressionTree} to the residuals,
+ * searching the features of each node in parallel.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class GradientBoostedTreesRegressionLearner extends RegressionLearner {
+   private static final long serialVersionUID = 1L;
+   @Getter
+   @Setter
+   private int numberOfTrees = 100;
+   @Getter
+   @Setter
+   private double learningRate = 0.1;
+   @Getter
+   @Setter
+   private int maxDepth = 6;
+   @Getter
+   @Setter
+   private double minChildWeight = 1;
+   @Getter
+   @Setter
+   private double lambda = 1;
+   @Getter
+   @Setter
+   private int maxBins = 255;
+
+   @Override
+   public void resetLearnerParameters() {
+
+   }
+
+   @Override
+   protected Regression trainImpl(Dataset<Instance> dataset) {
+      GradientBoostedTreesRegression model = new GradientBoostedTreesRegression(this);
+      List<NDArray> vectors = dataset.asVectors().collect();
+      final int N = vectors.size();
+      double[] targets = new double[N];
+      for (int i = 0; i < N; i++) {
+         targets[i] = vectors.get(i).getLabelAsDouble();
+         model.baseScore += targets[i];
+      }
+      model.baseScore = N > 0 ? model.baseScore / N : 0;
+      HistogramMatrix matrix = new HistogramMatrix(vectors, model.numberOfFeatures(), maxBins);
+
+      double[] scores = new double[N];
+      Arrays.fill(scores, model.baseScore);
+      double[] gradients = new double[N];
+      double[] hessians = new double[N];
+      Arrays.fill(hessians, 1.0);
+      model.trees = new RegressionTree[numberOfTrees];
+      for (int round = 0; round < numberOfTrees; round++) {
+         for (int i = 0; i < N; i++) {
+            gradients[i] = scores[i] - targets[i];
+         }
+         RegressionTree tree = RegressionTree.fit(matrix, gradients, hessians, maxDepth, minChildWeight, lambda,
+                                                  learningRate);
+         model.trees[round] = tree;
+         for (int i = 0; i < N; i++) {
+            scores[i] += tree.predict(matrix, i);
+         }
+      }
+      return model;
+   }
+
+}// END OF GradientBoostedTreesRegressionLearner
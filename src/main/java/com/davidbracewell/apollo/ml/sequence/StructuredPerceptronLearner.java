@@ -25,6 +25,8 @@ import com.davidbracewell.apollo.linear.NDArray;
 import com.davidbracewell.apollo.linear.NDArrayFactory;
 import com.davidbracewell.apollo.ml.Feature;
 import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.TrainingListener;
+import com.davidbracewell.apollo.ml.TrainingMetrics;
 import com.davidbracewell.apollo.ml.data.Dataset;
 import com.davidbracewell.collection.Collect;
 import com.davidbracewell.guava.common.base.Stopwatch;
@@ -45,6 +47,7 @@ public class StructuredPerceptronLearner extends SequenceLabelerLearner {
    private int maxIterations = 10;
    private double tolerance = 0.00001;
    private NDArray[] cWeights;
+   private TrainingListener trainingListener;
 
    /**
     * Gets max iterations.
@@ -82,6 +85,24 @@ public class StructuredPerceptronLearner extends SequenceLabelerLearner {
       this.tolerance = tolerance;
    }
 
+   /**
+    * Gets the listener notified with the metrics of each training iteration.
+    *
+    * @return the training listener or null if none
+    */
+   public TrainingListener getTrainingListener() {
+      return trainingListener;
+   }
+
+   /**
+    * Sets the listener notified with the metrics of each training iteration.
+    *
+    * @param trainingListener the training listener
+    */
+   public void setTrainingListener(TrainingListener trainingListener) {
+      this.trainingListener = trainingListener;
+   }
+
    @Override
    public void resetLearnerParameters() {
       cWeights = null;
@@ -108,15 +129,19 @@ public class StructuredPerceptronLearner extends SequenceLabelerLearner {
 
       List<Sequence> sequenceList = Lists.newLinkedList(Collect.asIterable(dataset.iterator()));
       int c = 1;
+      TrainingMetrics metrics = new TrainingMetrics(trainingListener != null);
       for (int itr = 0; itr < maxIterations; itr++) {
          Stopwatch sw = Stopwatch.createStarted();
+         metrics.start(itr);
 
          double count = 0;
          double correct = 0;
 
          for (Sequence sequence : sequenceList) {
 
+            long time = metrics.now();
             Labeling lblResult = model.label(sequence);
+            time = metrics.record(TrainingMetrics.Phase.FORWARD, time);
 
             double diff = 0;
             for (Context<Instance> iterator = sequence.iterator(); iterator.hasNext(); ) {
@@ -158,10 +183,16 @@ public class StructuredPerceptronLearner extends SequenceLabelerLearner {
 
                c++;
             }
+            metrics.record(TrainingMetrics.Phase.UPDATE, time);
 
          }
 
          sw.stop();
+         if (trainingListener != null) {
+            metrics.addExamples((long) count);
+            metrics.end((count - correct) / count);
+            trainingListener.onIteration(metrics);
+         }
          log.info("iteration={0} accuracy={1} ({2}/{3}) [completed in {4}]", itr + 1, formatter.format(correct / count),
                   correct, count, sw);
 
@@ -0,0 +1,241 @@
+package com.davidbracewell.apollo.ml.tree;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.guava.common.base.Preconditions;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Sparse representation of a set of vectors in which the values of each feature are discretized into at most
+ * <code>maxBins</code> quantile bins. Bin <code>b</code> of a feature holds the values greater than the threshold of
+ * bin <code>b - 1</code> and less than or equal to the threshold of bin <code>b</code>, so that a split after bin
+ * <code>b</code> is equivalent to testing <code>value &gt; threshold(feature, b)</code>. Split finding then only needs
+ * per-bin statistics instead of sorting the examples for every feature. Features are binned in parallel.</p>
+ *
+ * <p>Only the non-zero values are stored, both by feature (the rows and bins of each feature's non-zero values) and by
+ * row (the features and bins of each row's non-zero values). The rows whose value is zero all fall in the feature's
+ * zero bin, so per-bin statistics are accumulated over the non-zero values and the zero bin receives the remainder of
+ * the totals.</p>
+ *
+ * @author David B. Bracewell
+ */
+public final class HistogramMatrix {
+   @Getter
+   private final int numberOfRows;
+   @Getter
+   private final int numberOfFeatures;
+   private final double[][] thresholds;
+   private final int[] zeroBins;
+   private final int[][] columnRows;
+   private final short[][] columnBins;
+   private final int[] rowOffsets;
+   private final int[] rowFeatures;
+   private final short[] rowBins;
+
+   /**
+    * Instantiates a new Histogram matrix.
+    *
+    * @param vectors          the vectors (rows)
+    * @param numberOfFeatures the number of features
+    * @param maxBins          the maximum number of bins per feature
+    */
+   public HistogramMatrix(@NonNull List<NDArray> vectors, int numberOfFeatures, int maxBins) {
+      Preconditions.checkArgument(maxBins > 1 && maxBins <= Short.MAX_VALUE,
+                                  "Max bins must be in (1, " + Short.MAX_VALUE + "]");
+      this.numberOfRows = vectors.size();
+      this.numberOfFeatures = numberOfFeatures;
+      this.thresholds = new double[numberOfFeatures][];
+      this.zeroBins = new int[numberOfFeatures];
+      this.columnRows = new int[numberOfFeatures][];
+      this.columnBins = new short[numberOfFeatures][];
+      this.rowOffsets = new int[numberOfRows + 1];
+
+      //Gather the sparse columns, first counting the non-zero values of each feature
+      final int[] nonZero = new int[numberOfFeatures];
+      for (int row = 0; row < numberOfRows; row++) {
+         final int r = row;
+         vectors.get(row).forEachSparse(entry -> {
+            if (entry.getValue() != 0) {
+               nonZero[entry.getIndex()]++;
+               rowOffsets[r + 1]++;
+            }
+         });
+      }
+      for (int row = 0; row < numberOfRows; row++) {
+         rowOffsets[row + 1] += rowOffsets[row];
+      }
+      final double[][] values = new double[numberOfFeatures][];
+      for (int feature = 0; feature < numberOfFeatures; feature++) {
+         columnRows[feature] = new int[nonZero[feature]];
+         values[feature] = new double[nonZero[feature]];
+      }
+      Arrays.fill(nonZero, 0);
+      for (int row = 0; row < numberOfRows; row++) {
+         final int r = row;
+         vectors.get(row).forEachSparse(entry -> {
+            if (entry.getValue() != 0) {
+               int feature = entry.getIndex();
+               columnRows[feature][nonZero[feature]] = r;
+               values[feature][nonZero[feature]] = entry.getValue();
+               nonZero[feature]++;
+            }
+         });
+      }
+
+      IntStream.range(0, numberOfFeatures).parallel().forEach(feature -> {
+         double[] sorted = values[feature].clone();
+         Arrays.sort(sorted);
+         thresholds[feature] = quantiles(sorted, numberOfRows - sorted.length, maxBins);
+         zeroBins[feature] = binOf(thresholds[feature], 0);
+         short[] bins = new short[sorted.length];
+         for (int i = 0; i < bins.length; i++) {
+            bins[i] = (short) binOf(thresholds[feature], values[feature][i]);
+         }
+         columnBins[feature] = bins;
+         values[feature] = null;
+      });
+
+      //Rows are filled in feature order, so the features of each row are sorted
+      this.rowFeatures = new int[rowOffsets[numberOfRows]];
+      this.rowBins = new short[rowFeatures.length];
+      final int[] position = Arrays.copyOf(rowOffsets, numberOfRows);
+      for (int feature = 0; feature < numberOfFeatures; feature++) {
+         for (int i = 0; i < columnRows[feature].length; i++) {
+            int index = position[columnRows[feature][i]]++;
+            rowFeatures[index] = feature;
+            rowBins[index] = columnBins[feature][i];
+         }
+      }
+   }
+
+   private static int binOf(double[] thresholds, double value) {
+      int index = Arrays.binarySearch(thresholds, value);
+      return index >= 0 ? index : Math.min(-index - 1, thresholds.length - 1);
+   }
+
+   private static double[] quantiles(double[] sorted, int numberOfZeros, int maxBins) {
+      //The values are the sorted non-zero values with the zeros inserted before the first positive value
+      final int length = sorted.length + numberOfZeros;
+      int firstPositive = 0;
+      while (firstPositive < sorted.length && sorted[firstPositive] < 0) {
+         firstPositive++;
+      }
+      double[] distinct = new double[Math.min(length, maxBins)];
+      int size = 0;
+      for (int b = 1; b <= maxBins && length > 0; b++) {
+         int index = Math.min(length - 1, (int) Math.ceil((double) b * length / maxBins) - 1);
+         double value;
+         if (index < firstPositive) {
+            value = sorted[index];
+         } else if (index < firstPositive + numberOfZeros) {
+            value = 0;
+         } else {
+            value = sorted[index - numberOfZeros];
+         }
+         if (size == 0 || value > distinct[size - 1]) {
+            distinct[size++] = value;
+         }
+      }
+      if (size == 0) {
+         return new double[]{0};
+      }
+      return Arrays.copyOf(distinct, size);
+   }
+
+   /**
+    * Gets the bin of the given feature for the given row.
+    *
+    * @param feature the feature index
+    * @param row     the row index
+    * @return the bin
+    */
+   public int bin(int feature, int row) {
+      int index = Arrays.binarySearch(rowFeatures, rowOffsets[row], rowOffsets[row + 1], feature);
+      return index >= 0 ? rowBins[index] : zeroBins[feature];
+   }
+
+   /**
+    * Gets the rows, in ascending order, whose value for the given feature is non-zero.
+    *
+    * @param feature the feature index
+    * @return the rows (do not modify)
+    */
+   public int[] nonZeroRows(int feature) {
+      return columnRows[feature];
+   }
+
+   /**
+    * Gets the bins of the non-zero values of the given feature, parallel to {@link #nonZeroRows(int)}.
+    *
+    * @param feature the feature index
+    * @return the bins (do not modify)
+    */
+   public short[] nonZeroBins(int feature) {
+      return columnBins[feature];
+   }
+
+   /**
+    * Gets the offset of the given row's non-zero values in {@link #rowFeatures()} and {@link #rowBins()}. The values of
+    * row <code>r</code> are at the offsets <code>[rowOffset(r), rowOffset(r + 1))</code>.
+    *
+    * @param row the row index (up to and including the number of rows)
+    * @return the offset
+    */
+   public int rowOffset(int row) {
+      return rowOffsets[row];
+   }
+
+   /**
+    * Gets the features of the non-zero values of all rows, sorted within each row.
+    *
+    * @return the features (do not modify)
+    */
+   public int[] rowFeatures() {
+      return rowFeatures;
+   }
+
+   /**
+    * Gets the bins of the non-zero values of all rows, parallel to {@link #rowFeatures()}.
+    *
+    * @return the bins (do not modify)
+    */
+   public short[] rowBins() {
+      return rowBins;
+   }
+
+   /**
+    * Gets the bin holding the zero value of the given feature.
+    *
+    * @param feature the feature index
+    * @return the zero bin
+    */
+   public int zeroBin(int feature) {
+      return zeroBins[feature];
+   }
+
+   /**
+    * Gets the number of bins of the given feature.
+    *
+    * @param feature the feature index
+    * @return the number of bins
+    */
+   public int numberOfBins(int feature) {
+      return thresholds[feature].length;
+   }
+
+   /**
+    * Gets the (inclusive) upper bound of the values in the given bin of the given feature.
+    *
+    * @param feature the feature index
+    * @param bin     the bin
+    * @return the threshold
+    */
+   public double threshold(int feature, int bin) {
+      return thresholds[feature][bin];
+   }
+
+}// END OF HistogramMatrix
@@ -0,0 +1,325 @@
+package com.davidbracewell.apollo.ml.tree;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import lombok.NonNull;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Binary regression tree fit to the first (gradient) and second (hessian) order statistics of a loss, as used by
+ * gradient boosting. Split finding works on the per-bin gradient and hessian sums of a {@link HistogramMatrix}, with
+ * the features of a node searched in parallel. Histograms are only accumulated for the root and for the smaller child
+ * of each split, the histograms of the larger child are those of its parent minus those of its sibling. Leaf values
+ * are the regularized Newton step <code>-G / (H + lambda)</code> scaled by the learning rate. Nodes are stored in flat
+ * arrays, with a negative feature marking a leaf.</p>
+ *
+ * @author David B. Bracewell
+ */
+public final class RegressionTree implements Serializable {
+   private static final long serialVersionUID = 1L;
+   private int[] feature = new int[16];
+   private double[] threshold = new double[16];
+   private int[] bin = new int[16];
+   private int[] left = new int[16];
+   private int[] right = new int[16];
+   private double[] value = new double[16];
+   private double[] gain = new double[16];
+   private int size = 0;
+
+   private RegressionTree() {
+
+   }
+
+   /**
+    * Fits a regression tree to the given gradients and hessians.
+    *
+    * @param matrix         the binned training data
+    * @param gradients      the gradient of the loss for each row
+    * @param hessians       the hessian of the loss for each row
+    * @param maxDepth       the maximum depth of the tree
+    * @param minChildWeight the minimum sum of hessians in a child node
+    * @param lambda         the L2 regularization on the leaf values
+    * @param learningRate   the learning rate (shrinkage) applied to the leaf values
+    * @return the regression tree
+    */
+   public static RegressionTree fit(@NonNull HistogramMatrix matrix,
+                                    @NonNull double[] gradients,
+                                    @NonNull double[] hessians,
+                                    int maxDepth,
+                                    double minChildWeight,
+                                    double lambda,
+                                    double learningRate
+                                   ) {
+      RegressionTree tree = new RegressionTree();
+      int[] rows = IntStream.range(0, matrix.getNumberOfRows()).toArray();
+      Histograms histograms = Histograms.accumulate(matrix, gradients, hessians, rows);
+      tree.grow(matrix, gradients, hessians, rows, histograms, 0, maxDepth, minChildWeight, lambda, learningRate);
+      tree.trim();
+      return tree;
+   }
+
+   private int addNode() {
+      if (size == feature.length) {
+         int capacity = size * 2;
+         feature = Arrays.copyOf(feature, capacity);
+         threshold = Arrays.copyOf(threshold, capacity);
+         bin = Arrays.copyOf(bin, capacity);
+         left = Arrays.copyOf(left, capacity);
+         right = Arrays.copyOf(right, capacity);
+         value = Arrays.copyOf(value, capacity);
+         gain = Arrays.copyOf(gain, capacity);
+      }
+      feature[size] = -1;
+      return size++;
+   }
+
+   /**
+    * Adds the total gain of the splits on each feature to the given array.
+    *
+    * @param importance the array indexed by feature to add the gains to
+    */
+   public void featureImportance(@NonNull double[] importance) {
+      for (int node = 0; node < size; node++) {
+         if (feature[node] >= 0) {
+            importance[feature[node]] += gain[node];
+         }
+      }
+   }
+
+   private int grow(HistogramMatrix matrix,
+                    double[] gradients,
+                    double[] hessians,
+                    int[] rows,
+                    Histograms histograms,
+                    int depth,
+                    int maxDepth,
+                    double minChildWeight,
+                    double lambda,
+                    double learningRate
+                   ) {
+      int node = addNode();
+      final double G = histograms.G;
+      final double H = histograms.H;
+      value[node] = -G / (H + lambda) * learningRate;
+      if (depth >= maxDepth || rows.length < 2 || H < 2 * minChildWeight) {
+         return node;
+      }
+
+      final double parentScore = G * G / (H + lambda);
+      double[] best = IntStream.range(0, matrix.getNumberOfFeatures())
+                               .parallel()
+                               .mapToObj(f -> bestSplit(f, histograms, parentScore, minChildWeight, lambda))
+                               .reduce(null, (a, b) -> a == null || (b != null && b[2] > a[2]) ? b : a);
+      if (best == null || best[2] <= 0) {
+         return node;
+      }
+
+      int splitFeature = (int) best[0];
+      int splitBin = (int) best[1];
+      boolean[] upper = new boolean[rows.length];
+      int numberOfLower = 0;
+      for (int i = 0; i < rows.length; i++) {
+         upper[i] = matrix.bin(splitFeature, rows[i]) > splitBin;
+         if (!upper[i]) {
+            numberOfLower++;
+         }
+      }
+      int[] lowerRows = new int[numberOfLower];
+      int[] upperRows = new int[rows.length - numberOfLower];
+      int l = 0;
+      int u = 0;
+      for (int i = 0; i < rows.length; i++) {
+         if (upper[i]) {
+            upperRows[u++] = rows[i];
+         } else {
+            lowerRows[l++] = rows[i];
+         }
+      }
+
+      //Accumulate the smaller child and reuse the parent's histograms for the larger child by subtraction
+      Histograms lowerHistograms;
+      Histograms upperHistograms;
+      if (depth + 1 >= maxDepth) {
+         //The children are leaves, which only need their totals
+         lowerHistograms = Histograms.totals(gradients, hessians, lowerRows);
+         upperHistograms = Histograms.totals(gradients, hessians, upperRows);
+      } else if (lowerRows.length <= upperRows.length) {
+         lowerHistograms = Histograms.accumulate(matrix, gradients, hessians, lowerRows);
+         upperHistograms = histograms.subtract(lowerHistograms);
+      } else {
+         upperHistograms = Histograms.accumulate(matrix, gradients, hessians, upperRows);
+         lowerHistograms = histograms.subtract(upperHistograms);
+      }
+
+      feature[node] = splitFeature;
+      bin[node] = splitBin;
+      threshold[node] = matrix.threshold(splitFeature, splitBin);
+      gain[node] = best[2];
+      int lowerNode = grow(matrix, gradients, hessians, lowerRows, lowerHistograms, depth + 1, maxDepth,
+                           minChildWeight, lambda, learningRate);
+      int upperNode = grow(matrix, gradients, hessians, upperRows, upperHistograms, depth + 1, maxDepth,
+                           minChildWeight, lambda, learningRate);
+      left[node] = lowerNode;
+      right[node] = upperNode;
+      return node;
+   }
+
+   private static double[] bestSplit(int feature,
+                                     Histograms histograms,
+                                     double parentScore,
+                                     double minChildWeight,
+                                     double lambda
+                                    ) {
+      double[] gHistogram = histograms.gradients[feature];
+      double[] hHistogram = histograms.hessians[feature];
+      int numberOfBins = gHistogram.length;
+      if (numberOfBins < 2) {
+         return null;
+      }
+      double[] best = null;
+      double GL = 0;
+      double HL = 0;
+      for (int b = 0; b < numberOfBins - 1; b++) {
+         GL += gHistogram[b];
+         HL += hHistogram[b];
+         double GR = histograms.G - GL;
+         double HR = histograms.H - HL;
+         if (HL < minChildWeight || HR < minChildWeight) {
+            continue;
+         }
+         double gain = GL * GL / (HL + lambda) + GR * GR / (HR + lambda) - parentScore;
+         if (best == null || gain > best[2]) {
+            best = new double[]{feature, b, gain};
+         }
+      }
+      return best;
+   }
+
+   /**
+    * Predicts the value for the given row of binned data.
+    *
+    * @param matrix the binned data
+    * @param row    the row
+    * @return the predicted value
+    */
+   public double predict(@NonNull HistogramMatrix matrix, int row) {
+      int node = 0;
+      while (feature[node] >= 0) {
+         node = matrix.bin(feature[node], row) > bin[node] ? right[node] : left[node];
+      }
+      return value[node];
+   }
+
+   /**
+    * Predicts the value for the given vector.
+    *
+    * @param vector the vector
+    * @return the predicted value
+    */
+   public double predict(@NonNull NDArray vector) {
+      int node = 0;
+      while (feature[node] >= 0) {
+         node = vector.get(feature[node]) > threshold[node] ? right[node] : left[node];
+      }
+      return value[node];
+   }
+
+   /**
+    * Gets the number of nodes in the tree.
+    *
+    * @return the number of nodes
+    */
+   public int size() {
+      return size;
+   }
+
+   private void trim() {
+      feature = Arrays.copyOf(feature, size);
+      threshold = Arrays.copyOf(threshold, size);
+      bin = Arrays.copyOf(bin, size);
+      left = Arrays.copyOf(left, size);
+      right = Arrays.copyOf(right, size);
+      value = Arrays.copyOf(value, size);
+      gain = Arrays.copyOf(gain, size);
+   }
+
+   /**
+    * Per feature and bin gradient and hessian sums over the rows of a node.
+    */
+   private static class Histograms {
+      final double[][] gradients;
+      final double[][] hessians;
+      final double G;
+      final double H;
+
+      private Histograms(double[][] gradients, double[][] hessians, double G, double H) {
+         this.gradients = gradients;
+         this.hessians = hessians;
+         this.G = G;
+         this.H = H;
+      }
+
+      static Histograms totals(double[] gradients, double[] hessians, int[] rows) {
+         double G = 0;
+         double H = 0;
+         for (int row : rows) {
+            G += gradients[row];
+            H += hessians[row];
+         }
+         return new Histograms(null, null, G, H);
+      }
+
+      static Histograms accumulate(HistogramMatrix matrix, double[] gradients, double[] hessians, int[] rows) {
+         final int numberOfFeatures = matrix.getNumberOfFeatures();
+         double[][] gHistograms = new double[numberOfFeatures][];
+         double[][] hHistograms = new double[numberOfFeatures][];
+         for (int f = 0; f < numberOfFeatures; f++) {
+            gHistograms[f] = new double[matrix.numberOfBins(f)];
+            hHistograms[f] = new double[matrix.numberOfBins(f)];
+         }
+         final int[] rowFeatures = matrix.rowFeatures();
+         final short[] rowBins = matrix.rowBins();
+         double[] gNonZero = new double[numberOfFeatures];
+         double[] hNonZero = new double[numberOfFeatures];
+         double G = 0;
+         double H = 0;
+         for (int row : rows) {
+            G += gradients[row];
+            H += hessians[row];
+            for (int i = matrix.rowOffset(row); i < matrix.rowOffset(row + 1); i++) {
+               int f = rowFeatures[i];
+               gHistograms[f][rowBins[i]] += gradients[row];
+               hHistograms[f][rowBins[i]] += hessians[row];
+               gNonZero[f] += gradients[row];
+               hNonZero[f] += hessians[row];
+            }
+         }
+         //The rows without a value for a feature fall in its zero bin
+         for (int f = 0; f < numberOfFeatures; f++) {
+            gHistograms[f][matrix.zeroBin(f)] += G - gNonZero[f];
+            hHistograms[f][matrix.zeroBin(f)] += H - hNonZero[f];
+         }
+         return new Histograms(gHistograms, hHistograms, G, H);
+      }
+
+      /**
+       * Subtracts the given (child) histograms from these histograms in place.
+       *
+       * @param child the child's histograms
+       * @return these histograms holding the difference
+       */
+      Histograms subtract(Histograms child) {
+         for (int f = 0; f < gradients.length; f++) {
+            for (int b = 0; b < gradients[f].length; b++) {
+               gradients[f][b] -= child.gradients[f][b];
+               hessians[f][b] -= child.hessians[f][b];
+            }
+         }
+         return new Histograms(gradients, hessians, G - child.G, H - child.H);
+      }
+
+   }// END OF Histograms
+
+}// END OF RegressionTree
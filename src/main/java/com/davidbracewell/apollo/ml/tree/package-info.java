@@ -0,0 +1,4 @@
+/**
+ * Binned data representations and tree models shared by tree based learners.
+ */
+package com.davidbracewell.apollo.ml.tree;
@@ -0,0 +1,126 @@
+package com.davidbracewell.apollo.stat.sketch;
+
+import com.davidbracewell.guava.common.base.Preconditions;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.Serializable;
+
+/**
+ * <p>A Count-Min sketch giving approximate (over-estimated) frequency counts for a stream of items in a fixed amount
+ * of memory. Counts are updated conservatively, i.e. only the cells equal to the current minimum are incremented, which
+ * reduces the over-estimation error.</p>
+ *
+ * @author David B. Bracewell
+ */
+public class CountMinSketch implements Serializable {
+   private static final long serialVersionUID = 1L;
+   private final long[][] table;
+   private final int[] seeds;
+   @Getter
+   private final int width;
+   @Getter
+   private final int depth;
+   @Getter
+   private long totalCount = 0;
+
+   /**
+    * Instantiates a new Count-Min sketch.
+    *
+    * @param width the number of counters per row
+    * @param depth the number of rows (hash functions)
+    */
+   public CountMinSketch(int width, int depth) {
+      Preconditions.checkArgument(width > 0, "Width must be > 0");
+      Preconditions.checkArgument(depth > 0, "Depth must be > 0");
+      this.width = width;
+      this.depth = depth;
+      this.table = new long[depth][width];
+      this.seeds = new int[depth];
+      for (int i = 0; i < depth; i++) {
+         seeds[i] = 0x9E3779B9 * (i + 1);
+      }
+   }
+
+   /**
+    * Creates a sketch whose estimates are within <code>epsilon * totalCount</code> of the true count with probability
+    * <code>1 - delta</code>.
+    *
+    * @param epsilon the relative error
+    * @param delta   the probability of exceeding the error
+    * @return the count-min sketch
+    */
+   public static CountMinSketch create(double epsilon, double delta) {
+      Preconditions.checkArgument(epsilon > 0 && epsilon < 1, "Epsilon must be in (0, 1)");
+      Preconditions.checkArgument(delta > 0 && delta < 1, "Delta must be in (0, 1)");
+      return new CountMinSketch((int) Math.ceil(Math.E / epsilon), (int) Math.ceil(Math.log(1.0 / delta)));
+   }
+
+   private static int mix(int h) {
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      h *= 0xc2b2ae35;
+      h ^= h >>> 16;
+      return h;
+   }
+
+   /**
+    * Adds one occurrence of the given item to the sketch
+    *
+    * @param item the item
+    * @return the estimated count of the item after the update
+    */
+   public long add(@NonNull Object item) {
+      return add(item, 1);
+   }
+
+   /**
+    * Adds the given number of occurrences of the item to the sketch
+    *
+    * @param item  the item
+    * @param count the number of occurrences
+    * @return the estimated count of the item after the update
+    */
+   public long add(@NonNull Object item, long count) {
+      Preconditions.checkArgument(count >= 0, "Count must be non-negative");
+      int[] cells = cells(item);
+      long min = Long.MAX_VALUE;
+      for (int i = 0; i < depth; i++) {
+         min = Math.min(min, table[i][cells[i]]);
+      }
+      long target = min + count;
+      for (int i = 0; i < depth; i++) {
+         if (table[i][cells[i]] < target) {
+            table[i][cells[i]] = target;
+         }
+      }
+      totalCount += count;
+      return target;
+   }
+
+   private int[] cells(Object item) {
+      int hash = item.hashCode();
+      int[] cells = new int[depth];
+      for (int i = 0; i < depth; i++) {
+         cells[i] = (mix(hash ^ seeds[i]) & 0x7fffffff) % width;
+      }
+      return cells;
+   }
+
+   /**
+    * Estimates the number of times the given item has been added.
+    *
+    * @param item the item
+    * @return the estimated count (never less than the true count)
+    */
+   public long estimate(@NonNull Object item) {
+      int[] cells = cells(item);
+      long min = Long.MAX_VALUE;
+      for (int i = 0; i < depth; i++) {
+         min = Math.min(min, table[i][cells[i]]);
+      }
+      return min;
+   }
+
+}//END OF CountMinSketch
@@ -0,0 +1,118 @@
+package com.davidbracewell.apollo.stat.sketch;
+
+import com.davidbracewell.guava.common.base.Preconditions;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * <p>Implementation of the Space-Saving algorithm for finding the heavy hitters (most frequent items) of a stream
+ * while tracking at most <code>capacity</code> items. When a new item arrives and the summary is full, the item with
+ * the smallest count is replaced and the new item inherits its count as an error bound. Every item whose true frequency
+ * exceeds <code>totalCount / capacity</code> is guaranteed to be in the summary.</p>
+ *
+ * @param <T> the item type
+ * @author David B. Bracewell
+ */
+public class SpaceSaving<T extends Comparable<T>> implements Serializable {
+   private static final long serialVersionUID = 1L;
+   private final Map<T, Entry<T>> entries;
+   private final TreeSet<Entry<T>> ordered = new TreeSet<>();
+   @Getter
+   private final int capacity;
+   @Getter
+   private long totalCount = 0;
+
+   /**
+    * Instantiates a new Space-Saving summary.
+    *
+    * @param capacity the maximum number of items to track
+    */
+   public SpaceSaving(int capacity) {
+      Preconditions.checkArgument(capacity > 0, "Capacity must be > 0");
+      this.capacity = capacity;
+      this.entries = new HashMap<>(capacity);
+   }
+
+   /**
+    * Adds one occurrence of the given item.
+    *
+    * @param item the item
+    */
+   public void add(@NonNull T item) {
+      totalCount++;
+      Entry<T> entry = entries.get(item);
+      if (entry == null) {
+         if (entries.size() < capacity) {
+            entry = new Entry<>(item, 0, 0);
+         } else {
+            Entry<T> min = ordered.pollFirst();
+            entries.remove(min.item);
+            entry = new Entry<>(item, min.count, min.count);
+         }
+         entries.put(item, entry);
+      } else {
+         ordered.remove(entry);
+      }
+      entry.count++;
+      ordered.add(entry);
+   }
+
+   /**
+    * Gets the tracked items ordered by descending estimated count.
+    *
+    * @return the list of entries
+    */
+   public List<Entry<T>> topItems() {
+      List<Entry<T>> list = new ArrayList<>(ordered.size());
+      ordered.descendingIterator().forEachRemaining(list::add);
+      return list;
+   }
+
+   /**
+    * An item tracked by the summary along with its estimated count and the maximum over-estimation of that count.
+    *
+    * @param <T> the item type
+    */
+   public static final class Entry<T extends Comparable<T>> implements Comparable<Entry<T>>, Serializable {
+      private static final long serialVersionUID = 1L;
+      @Getter
+      private final T item;
+      @Getter
+      private final long error;
+      @Getter
+      private long count;
+
+      private Entry(T item, long count, long error) {
+         this.item = item;
+         this.count = count;
+         this.error = error;
+      }
+
+      @Override
+      public int compareTo(Entry<T> o) {
+         int cmp = Long.compare(count, o.count);
+         if (cmp == 0) {
+            cmp = item.compareTo(o.item);
+         }
+         return cmp;
+      }
+
+      /**
+       * Gets the guaranteed lower bound on the item's count.
+       *
+       * @return the lower bound count
+       */
+      public long getMinCount() {
+         return count - error;
+      }
+
+      @Override
+      public String toString() {
+         return "(" + item + ", " + count + ", error=" + error + ")";
+      }
+   }
+
+}//END OF SpaceSaving
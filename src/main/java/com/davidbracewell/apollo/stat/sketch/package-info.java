@@ -0,0 +1,4 @@
+/**
+ * Bounded memory sketches for approximate counting over streams.
+ */
+package com.davidbracewell.apollo.stat.sketch;
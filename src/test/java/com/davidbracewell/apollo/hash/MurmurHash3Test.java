@@ -0,0 +1,33 @@
+package com.davidbracewell.apollo.hash;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author David B. Bracewell
+ */
+public class MurmurHash3Test {
+
+   @Test
+   public void empty() {
+      assertEquals(0, MurmurHash3.hash32("", 0));
+      assertEquals(0x514E28B7, MurmurHash3.hash32("", 1));
+   }
+
+   @Test
+   public void utf16() {
+      //Reference MurmurHash3_x86_32 of the UTF-16LE encoding of each string
+      assertEquals(1867108634, MurmurHash3.hash32("a", 0));
+      assertEquals(2024861961, MurmurHash3.hash32("a", 42));
+      assertEquals(374890698, MurmurHash3.hash32("ab", 0));
+      assertEquals(627382360, MurmurHash3.hash32("ab", 42));
+      assertEquals(-675079799, MurmurHash3.hash32("hello", 0));
+      assertEquals(-704922255, MurmurHash3.hash32("hello", 42));
+      assertEquals(580032430, MurmurHash3.hash32("Feature=1", 0));
+      assertEquals(356652005, MurmurHash3.hash32("Feature=1", 42));
+      assertEquals(-1181403715, MurmurHash3.hash32("été", 0));
+      assertEquals(1806793481, MurmurHash3.hash32("été", 42));
+   }
+
+}//END OF MurmurHash3Test
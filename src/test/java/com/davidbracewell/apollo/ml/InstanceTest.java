@@ -0,0 +1,83 @@
+package com.davidbracewell.apollo.ml;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class InstanceTest {
+
+   private Instance instance() {
+      return Instance.create(Arrays.asList(Feature.real("a", 1.0), Feature.real("b", 2.0)), "label");
+   }
+
+   @Test
+   public void equalsAndHashCode() {
+      Instance instance = instance();
+      assertEquals(instance, instance());
+      assertEquals(instance.hashCode(), instance().hashCode());
+      assertEquals(instance, instance.copy());
+
+      Instance otherLabel = instance();
+      otherLabel.setLabel("other");
+      assertNotEquals(instance, otherLabel);
+
+      Instance otherWeight = instance();
+      otherWeight.setWeight(2.0);
+      assertNotEquals(instance, otherWeight);
+
+      Instance otherValue = instance();
+      otherValue.getFeatures().set(1, Feature.real("b", 3.0));
+      assertNotEquals(instance, otherValue);
+
+      //Feature order matters
+      assertNotEquals(instance,
+                      Instance.create(Arrays.asList(Feature.real("b", 2.0), Feature.real("a", 1.0)), "label"));
+   }
+
+   @Test
+   public void featureListView() {
+      Instance instance = instance();
+      List<Feature> features = instance.getFeatures();
+      assertEquals(2, features.size());
+      assertEquals("a", features.get(0).getFeatureName());
+      assertEquals(2.0, features.get(1).getValue(), 0);
+
+      features.add(Feature.real("c", 3.0));
+      assertEquals(3, instance.numberOfFeatures());
+      assertEquals("c", instance.getFeatureName(2));
+
+      features.add(0, Feature.real("z", 4.0));
+      assertEquals("z", instance.getFeatureName(0));
+      assertEquals("a", instance.getFeatureName(1));
+
+      assertEquals("a", features.remove(1).getFeatureName());
+      assertEquals(3, instance.numberOfFeatures());
+      assertEquals("b", instance.getFeatureName(1));
+
+      features.set(1, Feature.real("b", 5.0));
+      assertEquals(5.0, instance.getFeatureValue(1), 0);
+
+      assertTrue(features.removeIf(f -> f.getFeatureName().equals("z")));
+      assertEquals(Arrays.asList("b", "c"), Arrays.asList(instance.getFeatureName(0), instance.getFeatureName(1)));
+      assertFalse(features.isEmpty());
+   }
+
+   @Test
+   public void toStringIncludesFields() {
+      String string = instance().toString();
+      assertTrue(string.startsWith("Instance("));
+      assertTrue(string.contains("label=label"));
+      assertTrue(string.contains("weight=1.0"));
+      assertTrue(string.contains(Feature.real("a", 1.0).toString()));
+   }
+
+}//END OF InstanceTest
@@ -0,0 +1,45 @@
+package com.davidbracewell.apollo.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class TrainingMetricsTest {
+
+   @Test
+   public void disabledRecordsNothing() {
+      TrainingMetrics metrics = new TrainingMetrics(false);
+      metrics.start(3);
+      long time = metrics.now();
+      assertEquals(0, time);
+      assertEquals(0, metrics.record(TrainingMetrics.Phase.FORWARD, time));
+      metrics.addExamples(10);
+      metrics.end(1.0);
+      assertEquals(0, metrics.getExamples());
+      assertEquals(0, metrics.getPhaseNanos(TrainingMetrics.Phase.FORWARD));
+      assertEquals(0, metrics.getIteration());
+      assertEquals(-1, metrics.threadAllocatedBytes());
+   }
+
+   @Test
+   public void workerAllocationsSurviveThreadExit() throws Exception {
+      TrainingMetrics metrics = new TrainingMetrics(true);
+      assumeTrue(metrics.threadAllocatedBytes() >= 0);
+      metrics.start(0);
+      Thread worker = new Thread(() -> {
+         long allocated = metrics.threadAllocatedBytes();
+         long[] garbage = new long[1 << 20];
+         garbage[garbage.length - 1] = 1;
+         metrics.recordAllocated(allocated);
+      });
+      worker.start();
+      worker.join();
+      metrics.end(0);
+      assertTrue(metrics.getAllocatedBytes() >= 8L << 20);
+   }
+
+}//END OF TrainingMetricsTest
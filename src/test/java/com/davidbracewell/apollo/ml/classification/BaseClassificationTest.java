@@ -8,6 +8,8 @@ import com.davidbracewell.apollo.ml.preprocess.transform.RescaleTransform;
 import com.davidbracewell.io.Resources;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 /**
@@ -46,5 +48,33 @@ public abstract class BaseClassificationTest {
       assertTrue(evaluation.accuracy() >= (expectedAccuracy - delta));
    }
 
+   @Test
+   public void batchClassify() {
+      Dataset<Instance> dataset = getDataset();
+      Classifier clf = learner.train(dataset);
+      List<Instance> instances = dataset.stream().collect();
+      List<Classification> batch = clf.classify(instances, true);
+      assertEquals(instances.size(), batch.size());
+      for (int i = 0; i < instances.size(); i++) {
+         assertArrayEquals(clf.classify(instances.get(i)).distribution(), batch.get(i).distribution(), 1e-6);
+      }
+   }
+
+   @Test
+   public void topK() {
+      Dataset<Instance> dataset = getDataset();
+      Classifier clf = learner.train(dataset);
+      for (Instance instance : dataset.stream().collect()) {
+         Classification full = clf.classify(instance);
+         TopKClassification topK = clf.topK(instance, 2);
+         assertEquals(Math.min(2, full.distribution().length), topK.size());
+         assertEquals(full.getResult(), topK.getResult());
+         assertTrue(topK.getScore(0) >= topK.getScore(topK.size() - 1));
+         if (topK.isProbability()) {
+            assertEquals(full.getConfidence(), topK.getConfidence(), 1e-9);
+         }
+      }
+   }
+
 
 }//END OF BaseClassificationTest
@@ -0,0 +1,43 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.source.DenseCSVDataSource;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
+import com.davidbracewell.apollo.ml.preprocess.transform.RescaleTransform;
+import com.davidbracewell.io.Resources;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author David B. Bracewell
+ */
+public class CompiledLinearModelTest {
+
+   private Dataset<Instance> getDataset() {
+      DenseCSVDataSource dataSource = new DenseCSVDataSource(
+         Resources.fromClasspath("com/davidbracewell/apollo/ml/iris.csv"),
+         true);
+      dataSource.setLabelName("class");
+      return Dataset.classification().source(dataSource)
+                    .preprocess(PreprocessorList.create(new RescaleTransform(0, 1, true)));
+   }
+
+   @Test
+   public void matchesModel() {
+      LinearModel model = (LinearModel) ClassifierLearner.classification()
+                                                         .learnerClass(SoftmaxLearner.class)
+                                                         .parameter("verbose", false)
+                                                         .build()
+                                                         .train(getDataset());
+      CompiledLinearModel compiled = model.compile();
+      for (Instance instance : getDataset().stream().collect()) {
+         Classification classification = model.classify(instance);
+         assertArrayEquals(classification.distribution(), compiled.score(instance), 1e-5);
+         assertEquals(classification.getResult(), compiled.predictLabel(instance));
+      }
+   }
+
+}//END OF CompiledLinearModelTest
@@ -0,0 +1,51 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.source.DenseCSVDataSource;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
+import com.davidbracewell.apollo.ml.preprocess.transform.RescaleTransform;
+import com.davidbracewell.io.Resources;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author David B. Bracewell
+ */
+public class CrossValidationTest {
+
+   private Dataset<Instance> getDataset() {
+      DenseCSVDataSource dataSource = new DenseCSVDataSource(
+         Resources.fromClasspath("com/davidbracewell/apollo/ml/iris.csv"),
+         true);
+      dataSource.setLabelName("class");
+      return Dataset.classification().source(dataSource)
+                    .preprocess(PreprocessorList.create(new RescaleTransform(0, 1, true)));
+   }
+
+   @Test
+   public void parallelMatchesSequential() {
+      Dataset<Instance> dataset = getDataset();
+      ClassifierEvaluation sequential = ClassifierEvaluation.crossValidation(dataset, NaiveBayesLearner::new, 5);
+      ClassifierEvaluation parallel = ClassifierEvaluation.crossValidation(dataset, NaiveBayesLearner::new, 5, 4);
+      assertEquals(sequential.accuracy(), parallel.accuracy(), 1e-12);
+      assertEquals(sequential.microF1(), parallel.microF1(), 1e-12);
+      assertEquals(sequential.macroF1(), parallel.macroF1(), 1e-12);
+   }
+
+   @Test
+   public void sharedLearnerSequential() {
+      ClassifierLearner learner = new NaiveBayesLearner();
+      ClassifierEvaluation shared = ClassifierEvaluation.crossValidation(getDataset(), () -> learner, 5);
+      ClassifierEvaluation fresh = ClassifierEvaluation.crossValidation(getDataset(), NaiveBayesLearner::new, 5);
+      assertEquals(fresh.accuracy(), shared.accuracy(), 1e-12);
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void sharedLearnerRejectedWhenParallel() {
+      ClassifierLearner learner = new NaiveBayesLearner();
+      ClassifierEvaluation.crossValidation(getDataset(), () -> learner, 5, 2);
+   }
+
+}//END OF CrossValidationTest
@@ -0,0 +1,15 @@
+package com.davidbracewell.apollo.ml.classification;
+
+/**
+ * @author David B. Bracewell
+ */
+public class DecisionStumpTest extends BaseClassificationTest {
+   public DecisionStumpTest() {
+      //A single split can only separate one of the three iris classes
+      super(ClassifierLearner.classification()
+                             .learnerClass(DecisionStumpLearner.class)
+                             .build(),
+            0.66,
+            0.05);
+   }
+}//END OF DecisionStumpTest
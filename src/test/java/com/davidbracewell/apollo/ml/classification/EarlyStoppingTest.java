@@ -0,0 +1,75 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.Feature;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.classification.nn.FeedForwardNetworkLearner;
+import com.davidbracewell.apollo.ml.classification.nn.OutputLayer;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.source.DenseCSVDataSource;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
+import com.davidbracewell.apollo.ml.preprocess.transform.RescaleTransform;
+import com.davidbracewell.io.Resources;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class EarlyStoppingTest {
+
+   private Dataset<Instance> getDataset() {
+      DenseCSVDataSource dataSource = new DenseCSVDataSource(
+         Resources.fromClasspath("com/davidbracewell/apollo/ml/iris.csv"),
+         true);
+      dataSource.setLabelName("class");
+      return Dataset.classification().source(dataSource)
+                    .preprocess(PreprocessorList.create(new RescaleTransform(0, 1, true)));
+   }
+
+   private Dataset<Instance> getValidationSet() {
+      List<Instance> instances = new ArrayList<>();
+      for (Instance instance : getDataset().stream().collect()) {
+         List<Feature> features = new ArrayList<>(instance.getFeatures());
+         features.add(Feature.real("VALIDATION_ONLY_FEATURE", 1.0));
+         instances.add(Instance.create(features, instance.getLabel()));
+      }
+      Instance base = instances.get(0);
+      instances.add(Instance.create(base.getFeatures(), "VALIDATION_ONLY_LABEL"));
+      return Dataset.classification().source(instances);
+   }
+
+   private void assertNoLeak(ClassifierLearner learner) {
+      Dataset<Instance> dataset = getDataset();
+      Classifier clf = learner.train(dataset);
+      assertEquals(3, clf.numberOfLabels());
+      assertEquals(-1, clf.getFeatureEncoder().get("VALIDATION_ONLY_FEATURE"), 0);
+      assertEquals(-1, clf.getLabelEncoder().get("VALIDATION_ONLY_LABEL"), 0);
+      ClassifierEvaluation evaluation = ClassifierEvaluation.evaluateModel(clf, getDataset());
+      assertTrue(evaluation.accuracy() >= 0.8);
+   }
+
+   @Test
+   public void softmax() {
+      SoftmaxLearner learner = new SoftmaxLearner();
+      learner.setVerbose(false);
+      learner.setValidationSet(getValidationSet());
+      assertNoLeak(learner);
+   }
+
+   @Test
+   public void feedForward() {
+      FeedForwardNetworkLearner learner = FeedForwardNetworkLearner.builder()
+                                                                   .layer(OutputLayer.softmax())
+                                                                   .reportInterval(0)
+                                                                   .maxIterations(50)
+                                                                   .build();
+      learner.setValidationSet(getValidationSet());
+      assertNoLeak(learner);
+   }
+
+}//END OF EarlyStoppingTest
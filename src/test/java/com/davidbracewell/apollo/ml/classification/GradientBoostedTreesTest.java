@@ -0,0 +1,15 @@
+package com.davidbracewell.apollo.ml.classification;
+
+/**
+ * @author David B. Bracewell
+ */
+public class GradientBoostedTreesTest extends BaseClassificationTest {
+   public GradientBoostedTreesTest() {
+      super(ClassifierLearner.classification()
+                             .learnerClass(GradientBoostedTreesLearner.class)
+                             .parameter("numberOfTrees", 20)
+                             .build(),
+            0.94,
+            0.05);
+   }
+}//END OF GradientBoostedTreesTest
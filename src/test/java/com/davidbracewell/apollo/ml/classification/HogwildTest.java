@@ -0,0 +1,47 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.optimization.SGDUpdater;
+import com.davidbracewell.apollo.ml.optimization.SparseSGDUpdater;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class HogwildTest extends BaseClassificationTest {
+
+   public HogwildTest() {
+      super(ClassifierLearner.classification()
+                             .learnerClass(SoftmaxLearner.class)
+                             .parameter("verbose", false)
+                             .parameter("threads", 2)
+                             .parameter("weightUpdater", SparseSGDUpdater.builder().build())
+                             .build(),
+            0.90,
+            0.10);
+   }
+
+   @Test
+   public void defaultUpdaterIsSparse() {
+      Classifier clf = ClassifierLearner.classification()
+                                        .learnerClass(SoftmaxLearner.class)
+                                        .parameter("verbose", false)
+                                        .parameter("threads", 2)
+                                        .build()
+                                        .train(getDataset());
+      assertTrue(ClassifierEvaluation.evaluateModel(clf, getDataset()).accuracy() >= 0.8);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void denseUpdaterRejected() {
+      ClassifierLearner.classification()
+                       .learnerClass(SoftmaxLearner.class)
+                       .parameter("verbose", false)
+                       .parameter("threads", 2)
+                       .parameter("weightUpdater", SGDUpdater.builder().build())
+                       .build()
+                       .train(getDataset());
+   }
+
+}//END OF HogwildTest
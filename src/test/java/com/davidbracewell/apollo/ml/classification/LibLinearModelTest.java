@@ -0,0 +1,47 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.source.DenseCSVDataSource;
+import com.davidbracewell.apollo.ml.encoder.Encoder;
+import com.davidbracewell.apollo.ml.encoder.FeatureHashingEncoder;
+import com.davidbracewell.apollo.ml.encoder.IndexEncoder;
+import com.davidbracewell.io.Resources;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @author David B. Bracewell
+ */
+public class LibLinearModelTest {
+
+   private Dataset<Instance> getDataset(Encoder featureEncoder) {
+      DenseCSVDataSource dataSource = new DenseCSVDataSource(
+         Resources.fromClasspath("com/davidbracewell/apollo/ml/iris.csv"),
+         true);
+      dataSource.setLabelName("class");
+      return Dataset.classification().featureEncoder(featureEncoder).source(dataSource);
+   }
+
+   private void assertInstanceMatchesVector(Encoder featureEncoder) {
+      Dataset<Instance> dataset = getDataset(featureEncoder);
+      Classifier clf = new LibLinearLearner().train(dataset);
+      for (Instance instance : dataset.stream().collect()) {
+         assertArrayEquals(clf.classify(instance.toVector(clf.getEncoderPair())).distribution(),
+                           clf.classify(instance).distribution(),
+                           1e-9);
+      }
+   }
+
+   @Test
+   public void indexEncoder() {
+      assertInstanceMatchesVector(new IndexEncoder());
+   }
+
+   @Test
+   public void featureHashingEncoder() {
+      assertInstanceMatchesVector(new FeatureHashingEncoder(64, 2, true));
+   }
+
+}//END OF LibLinearModelTest
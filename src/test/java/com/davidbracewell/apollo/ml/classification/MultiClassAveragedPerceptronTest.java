@@ -0,0 +1,15 @@
+package com.davidbracewell.apollo.ml.classification;
+
+/**
+ * @author David B. Bracewell
+ */
+public class MultiClassAveragedPerceptronTest extends BaseClassificationTest {
+   public MultiClassAveragedPerceptronTest() {
+      super(ClassifierLearner.classification()
+                             .learnerClass(MultiClassAveragedPerceptronLearner.class)
+                             .parameter("threads", 2)
+                             .build(),
+            0.9,
+            0.1);
+   }
+}//END OF MultiClassAveragedPerceptronTest
@@ -0,0 +1,94 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.Feature;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author David B. Bracewell
+ */
+public class NaiveBayesTest {
+   private static final String[] FEATURES = {"x", "y", "z"};
+
+   private static Instance instance(String label, String... features) {
+      return Instance.create(Arrays.stream(features).map(Feature::TRUE).collect(Collectors.toList()), label);
+   }
+
+   private List<Instance> instances() {
+      return Arrays.asList(instance("A", "x"),
+                           instance("A", "x", "y"),
+                           instance("A", "x"),
+                           instance("B", "y"),
+                           instance("B", "y", "z"));
+   }
+
+   /**
+    * The Bernoulli likelihood computed directly: the prior times, for every feature, the smoothed probability of the
+    * feature being present or absent.
+    */
+   private double expected(List<Instance> instances, String label, List<String> present) {
+      List<Instance> withLabel = new ArrayList<>();
+      for (Instance instance : instances) {
+         if (instance.getLabel().equals(label)) {
+            withLabel.add(instance);
+         }
+      }
+      double likelihood = (double) withLabel.size() / instances.size();
+      for (String feature : FEATURES) {
+         long count = withLabel.stream().filter(i -> i.getFeatureSpace().anyMatch(feature::equals)).count();
+         double p = (count + 1d) / (withLabel.size() + 2d);
+         likelihood *= present.contains(feature) ? p : 1 - p;
+      }
+      return likelihood;
+   }
+
+   @Test
+   public void bernoulli() {
+      List<Instance> instances = instances();
+      NaiveBayes model = (NaiveBayes) new NaiveBayesLearner(NaiveBayes.ModelType.Bernoulli)
+                                         .train(Dataset.classification().source(instances));
+      assertEquals(3, model.numberOfFeatures());
+
+      List<Instance> tests = Arrays.asList(instance(null, "x", "z"), instance(null), instance(null, "x", "y", "z"));
+      List<Classification> batch = model.classify(tests, true);
+      for (int t = 0; t < tests.size(); t++) {
+         Instance test = tests.get(t);
+         List<String> present = test.getFeatureSpace().collect(Collectors.toList());
+         double[] distribution = model.classify(test).distribution();
+         for (String label : new String[]{"A", "B"}) {
+            int index = (int) model.getLabelEncoder().get(label);
+            assertEquals(expected(instances, label, present), distribution[index], 1e-9);
+         }
+         assertArrayEquals(distribution, batch.get(t).distribution(), 1e-9);
+      }
+   }
+
+   @Test
+   public void largeVocabularyBatch() {
+      List<Instance> instances = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+         instances.add(instance(i % 2 == 0 ? "A" : "B", "f" + i, "f" + ((i + 1) % 2000)));
+      }
+      NaiveBayes model = (NaiveBayes) new NaiveBayesLearner(NaiveBayes.ModelType.Multinomial)
+                                         .train(Dataset.classification().source(instances));
+      //A batch too large to score as a dense matrix is scored a vector at a time
+      List<Instance> tests = instances.subList(0, 200);
+      assertFalse(model.isDenseBatch(Collections.nCopies(tests.size(), null)));
+      List<Classification> batch = model.classify(tests);
+      for (int t = 0; t < tests.size(); t++) {
+         assertArrayEquals(model.classify(tests.get(t)).distribution(), batch.get(t).distribution(), 1e-9);
+      }
+   }
+
+}//END OF NaiveBayesTest
@@ -0,0 +1,143 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.Feature;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.source.DenseCSVDataSource;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
+import com.davidbracewell.apollo.ml.preprocess.transform.RescaleTransform;
+import com.davidbracewell.io.Resources;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class OnlineClassifierTest {
+
+   private Dataset<Instance> getDataset() {
+      return getDataset(true);
+   }
+
+   private Dataset<Instance> getDataset(boolean rescale) {
+      DenseCSVDataSource dataSource = new DenseCSVDataSource(
+         Resources.fromClasspath("com/davidbracewell/apollo/ml/iris.csv"),
+         true);
+      dataSource.setLabelName("class");
+      Dataset<Instance> dataset = Dataset.classification().source(dataSource);
+      return rescale ? dataset.preprocess(PreprocessorList.create(new RescaleTransform(0, 1, true))) : dataset;
+   }
+
+   @Test
+   public void naiveBayesEmptyUpdate() {
+      List<Instance> instances = getDataset().stream().collect();
+      NaiveBayes model = (NaiveBayes) new NaiveBayesLearner().train(getDataset());
+      List<Classification> before = model.classify(instances);
+      model.partialFit(Collections.emptyList());
+      List<Classification> after = model.classify(instances);
+      for (int i = 0; i < instances.size(); i++) {
+         assertArrayEquals(before.get(i).distribution(), after.get(i).distribution(), 1e-9);
+      }
+   }
+
+   @Test
+   public void naiveBayesUpdateMovesTowardGold() {
+      List<Instance> instances = getDataset().stream().collect();
+      NaiveBayes model = (NaiveBayes) new NaiveBayesLearner().train(getDataset());
+      Instance instance = instances.get(0);
+      //Use the label the model considers least likely as the gold label
+      Classification before = model.classify(instance);
+      String gold = before.getLabel(0);
+      for (String label : before.getLabels()) {
+         if (before.getConfidence(label) < before.getConfidence(gold)) {
+            gold = label;
+         }
+      }
+      model.update(Instance.create(instance.getFeatures(), gold));
+      assertTrue(model.classify(instance).getConfidence(gold) > before.getConfidence(gold));
+   }
+
+   @Test
+   public void naiveBayesUpdateMatchesPartialFit() {
+      List<Instance> instances = getDataset().stream().collect();
+      for (NaiveBayes.ModelType modelType : NaiveBayes.ModelType.values()) {
+         NaiveBayes updated = (NaiveBayes) new NaiveBayesLearner(modelType).train(getDataset());
+         NaiveBayes refit = (NaiveBayes) new NaiveBayesLearner(modelType).train(getDataset());
+         //Classify first so that the Bernoulli tables are built and must be kept up to date by the update
+         updated.classify(instances);
+         for (int i = 0; i < 10; i++) {
+            Instance instance = instances.get(i * 7);
+            updated.update(instance);
+            refit.partialFit(Collections.singletonList(instance));
+         }
+         for (Instance instance : instances) {
+            assertArrayEquals(refit.classify(instance).distribution(),
+                              updated.classify(instance).distribution(),
+                              1e-9);
+         }
+      }
+   }
+
+   @Test
+   public void featureGrowth() {
+      //Preprocessors are not refit during updates, so use unprocessed data as the new feature would not be rescaled
+      Instance base = getDataset(false).stream().collect().get(0);
+      List<Feature> features = new ArrayList<>(base.getFeatures());
+      features.add(Feature.real("NEW_FEATURE", 1.0));
+      Instance instance = Instance.create(features, base.getLabel());
+
+      for (Classifier classifier : new Classifier[]{new NaiveBayesLearner().train(getDataset(false)),
+         ClassifierLearner.classification()
+                          .learnerClass(SoftmaxLearner.class)
+                          .parameter("verbose", false)
+                          .build()
+                          .train(getDataset(false))}) {
+         OnlineClassifier online = (OnlineClassifier) classifier;
+         int numberOfFeatures = classifier.numberOfFeatures();
+         online.update(instance);
+         assertEquals(numberOfFeatures, classifier.numberOfFeatures());
+         online.setMaxNumberOfFeatures(numberOfFeatures + 1);
+         online.update(instance);
+         assertEquals(numberOfFeatures + 1, classifier.numberOfFeatures());
+         assertEquals(classifier.numberOfLabels(), classifier.classify(instance).distribution().length);
+      }
+   }
+
+   @Test
+   public void incrementalFeatureGrowth() {
+      Instance base = getDataset(false).stream().collect().get(0);
+      for (Classifier classifier : new Classifier[]{new NaiveBayesLearner().train(getDataset(false)),
+         ClassifierLearner.classification()
+                          .learnerClass(SoftmaxLearner.class)
+                          .parameter("verbose", false)
+                          .build()
+                          .train(getDataset(false))}) {
+         OnlineClassifier online = (OnlineClassifier) classifier;
+         int numberOfFeatures = classifier.numberOfFeatures();
+         online.setMaxNumberOfFeatures(numberOfFeatures + 100);
+         //Add one new feature per update so that the tables grow beyond the logical number of features
+         List<Feature> features = new ArrayList<>(base.getFeatures());
+         for (int i = 0; i < 50; i++) {
+            features.add(Feature.real("NEW_FEATURE_" + i, 1.0));
+            online.update(Instance.create(features, base.getLabel()));
+         }
+         assertEquals(numberOfFeatures + 50, classifier.numberOfFeatures());
+         Instance instance = Instance.create(features, base.getLabel());
+         double[] distribution = classifier.classify(instance).distribution();
+         assertEquals(classifier.numberOfLabels(), distribution.length);
+         if (classifier instanceof LinearModel) {
+            //Trimming the weights to the logical number of features must not change the scores
+            assertEquals(numberOfFeatures + 50, ((LinearModel) classifier).getWeights().numCols());
+            assertArrayEquals(distribution, classifier.classify(instance).distribution(), 1e-9);
+         }
+      }
+   }
+
+}//END OF OnlineClassifierTest
@@ -0,0 +1,36 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.ml.optimization.SGDUpdater;
+import com.davidbracewell.apollo.ml.optimization.SparseSGDUpdater;
+import org.junit.Test;
+
+/**
+ * @author David B. Bracewell
+ */
+public class ParameterServerTest extends BaseClassificationTest {
+
+   public ParameterServerTest() {
+      super(ClassifierLearner.classification()
+                             .learnerClass(SoftmaxLearner.class)
+                             .parameter("verbose", false)
+                             .parameter("threads", 2)
+                             .parameter("parameterServer", true)
+                             .parameter("weightUpdater", SparseSGDUpdater.builder().build())
+                             .build(),
+            0.90,
+            0.10);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void denseUpdaterRejected() {
+      ClassifierLearner.classification()
+                       .learnerClass(SoftmaxLearner.class)
+                       .parameter("verbose", false)
+                       .parameter("threads", 2)
+                       .parameter("parameterServer", true)
+                       .parameter("weightUpdater", SGDUpdater.builder().build())
+                       .build()
+                       .train(getDataset());
+   }
+
+}//END OF ParameterServerTest
@@ -0,0 +1,107 @@
+package com.davidbracewell.apollo.ml.classification;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
+import com.davidbracewell.apollo.ml.encoder.IndexEncoder;
+import com.davidbracewell.apollo.ml.optimization.LinearModelParameters;
+import com.davidbracewell.apollo.ml.optimization.activation.Activation;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author David B. Bracewell
+ */
+public class TopKIndexTest {
+   private static final int LABELS = 400;
+   private static final int FEATURES = 100;
+
+   @Test
+   public void matchesFullScoring() {
+      Random random = new Random(1234);
+      //Each label has one strong feature and small weights elsewhere, so most blocks can be pruned
+      NDArray weights = NDArrayFactory.DEFAULT().zeros(LABELS, FEATURES);
+      NDArray bias = NDArrayFactory.DEFAULT().zeros(LABELS);
+      for (int l = 0; l < LABELS; l++) {
+         for (int f = 0; f < FEATURES; f++) {
+            weights.set(l, f, random.nextGaussian() * 0.1);
+         }
+         weights.set(l, l % FEATURES, 5 + random.nextDouble());
+         bias.set(l, random.nextGaussian() * 0.1);
+      }
+      IndexEncoder labelEncoder = new IndexEncoder();
+      for (int l = 0; l < LABELS; l++) {
+         labelEncoder.encode("L" + l);
+      }
+      TopKIndex index = new TopKIndex(new Parameters(weights, bias));
+
+      for (int trial = 0; trial < 50; trial++) {
+         NDArray input = NDArrayFactory.SPARSE_DOUBLE.zeros(FEATURES);
+         for (int i = 0; i < 5; i++) {
+            //Include negative values so that the lower bounds of the blocks are used
+            input.set(random.nextInt(FEATURES), random.nextDouble() * 2 - 0.5);
+         }
+         double[] full = new double[LABELS];
+         for (int l = 0; l < LABELS; l++) {
+            full[l] = bias.get(l);
+            for (int f = 0; f < FEATURES; f++) {
+               full[l] += weights.get(l, f) * input.get(f);
+            }
+         }
+         Integer[] expected = IntStream.range(0, LABELS).boxed().toArray(Integer[]::new);
+         Arrays.sort(expected, Comparator.comparingDouble((Integer l) -> full[l]).reversed());
+
+         for (int k : new int[]{1, 5, 20}) {
+            TopKClassification topK = index.search(input, k, labelEncoder);
+            assertEquals(k, topK.size());
+            assertFalse(topK.isProbability());
+            for (int rank = 0; rank < k; rank++) {
+               assertEquals(expected[rank].intValue(), topK.getLabelIndex(rank));
+               assertEquals(full[expected[rank]], topK.getScore(rank), 1e-9);
+            }
+         }
+      }
+   }
+
+   private static class Parameters implements LinearModelParameters {
+      private final NDArray weights;
+      private final NDArray bias;
+
+      private Parameters(NDArray weights, NDArray bias) {
+         this.weights = weights;
+         this.bias = bias;
+      }
+
+      @Override
+      public Activation getActivation() {
+         return Activation.SOFTMAX;
+      }
+
+      @Override
+      public NDArray getBias() {
+         return bias;
+      }
+
+      @Override
+      public NDArray getWeights() {
+         return weights;
+      }
+
+      @Override
+      public int numberOfFeatures() {
+         return FEATURES;
+      }
+
+      @Override
+      public int numberOfLabels() {
+         return LABELS;
+      }
+   }
+
+}//END OF TopKIndexTest
@@ -0,0 +1,65 @@
+package com.davidbracewell.apollo.ml.classification.nn;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.source.DenseCSVDataSource;
+import com.davidbracewell.apollo.ml.optimization.SGDUpdater;
+import com.davidbracewell.apollo.ml.optimization.TerminationCriteria;
+import com.davidbracewell.apollo.ml.optimization.loss.CrossEntropyLoss;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
+import com.davidbracewell.apollo.ml.preprocess.transform.RescaleTransform;
+import com.davidbracewell.conversion.Cast;
+import com.davidbracewell.io.Resources;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author David B. Bracewell
+ */
+public class BackpropTest {
+
+   private Dataset<Instance> getDataset() {
+      DenseCSVDataSource dataSource = new DenseCSVDataSource(
+         Resources.fromClasspath("com/davidbracewell/apollo/ml/iris.csv"),
+         true);
+      dataSource.setLabelName("class");
+      return Dataset.classification().source(dataSource)
+                    .preprocess(PreprocessorList.create(new RescaleTransform(0, 1, true)));
+   }
+
+   private NDArray train(FeedForwardNetwork network, Dataset<Instance> dataset, int threads) {
+      Backprop backprop = new Backprop();
+      backprop.setBatchSize(16);
+      backprop.setThreads(threads);
+      backprop.setRandom(new Random(1234));
+      backprop.optimize(network,
+                        dataset.vectorStream(false),
+                        new FeedForwardCostFunction(new CrossEntropyLoss()),
+                        TerminationCriteria.create().maxIterations(10).tolerance(0).historySize(3),
+                        SGDUpdater.builder().build(),
+                        0);
+      return Cast.<WeightLayer>as(network.getLayer(0)).getWeights();
+   }
+
+   @Test
+   public void parallelMatchesSequential() {
+      Dataset<Instance> dataset = getDataset();
+      FeedForwardNetwork initial = (FeedForwardNetwork) FeedForwardNetworkLearner.builder()
+                                                                                 .layer(OutputLayer.softmax())
+                                                                                 .reportInterval(0)
+                                                                                 .maxIterations(1)
+                                                                                 .build()
+                                                                                 .train(dataset);
+      //Both start from the same weights and see the same shuffled batches, so only the summation order differs
+      NDArray sequential = train(initial.copy(), dataset, 1);
+      NDArray parallel = train(initial.copy(), dataset, 3);
+      assertEquals(sequential.length(), parallel.length());
+      assertArrayEquals(sequential.toArray(), parallel.toArray(), 1e-6);
+   }
+
+}//END OF BackpropTest
@@ -0,0 +1,42 @@
+package com.davidbracewell.apollo.ml.data;
+
+import com.davidbracewell.apollo.ml.Feature;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.SymbolTable;
+import com.davidbracewell.apollo.ml.encoder.IndexEncoder;
+import com.davidbracewell.apollo.ml.encoder.LabelIndexEncoder;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author David B. Bracewell
+ */
+public class InMemoryDatasetTest {
+
+   @Test
+   public void addStoresInternedCopy() {
+      InMemoryDataset<Instance> dataset = new InMemoryDataset<>(new IndexEncoder(),
+                                                                new LabelIndexEncoder(),
+                                                                PreprocessorList.empty());
+      Instance instance = Instance.create(Arrays.asList(Feature.real(new String("feature"), 1.0)), "label");
+      dataset.add(instance);
+
+      List<Instance> stored = dataset.stream().collect();
+      assertEquals(1, stored.size());
+      assertNotSame(instance, stored.get(0));
+      assertEquals(instance, stored.get(0));
+      assertSame(SymbolTable.intern("feature"), stored.get(0).getFeatureName(0));
+
+      //Changes to the added instance are not seen by the dataset
+      instance.getFeatures().add(Feature.real("other", 1.0));
+      assertEquals(1, dataset.stream().collect().get(0).numberOfFeatures());
+   }
+
+}//END OF InMemoryDatasetTest
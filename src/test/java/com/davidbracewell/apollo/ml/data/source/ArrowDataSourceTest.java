@@ -0,0 +1,121 @@
+package com.davidbracewell.apollo.ml.data.source;
+
+import com.davidbracewell.apollo.ml.Feature;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.io.Resources;
+import com.davidbracewell.io.resource.Resource;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author David B. Bracewell
+ */
+public class ArrowDataSourceTest {
+
+   private List<Instance> instances() {
+      List<Instance> instances = new ArrayList<>();
+      instances.add(Instance.create(Arrays.asList(Feature.real("a", 1.5), Feature.TRUE("b")), "text"));
+      instances.add(Instance.create(Arrays.asList(Feature.real("c", -2), Feature.real("a", 3)), "other"));
+      instances.add(Instance.create(Arrays.asList(Feature.TRUE("b")), "text"));
+      instances.add(Instance.create(Arrays.asList(Feature.real("d", 0.25)), "other"));
+      instances.add(Instance.create(Arrays.asList(Feature.TRUE("a"), Feature.TRUE("d")), "text"));
+      Instance unlabeled = Instance.create(Arrays.asList(Feature.real("c", 4)));
+      unlabeled.setWeight(0.5);
+      instances.add(unlabeled);
+      return instances;
+   }
+
+   private Resource write(List<Instance> instances) throws Exception {
+      Resource resource = Resources.temporaryFile();
+      //A batch size of 2 spreads the instances over several record batches
+      try (ArrowWriter writer = new ArrowWriter(resource, Arrays.asList("a", "b", "c", "d"), 2)) {
+         for (Instance instance : instances) {
+            writer.write(instance);
+         }
+      }
+      return resource;
+   }
+
+   private List<Instance> read(ArrowDataSource source) throws Exception {
+      return source.stream().collect();
+   }
+
+   private void assertRoundTrip(List<Instance> expected) throws Exception {
+      List<Instance> actual = read(new ArrowDataSource(write(expected)));
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+         //Features are stored column-major, so only the set of features is preserved, not their order
+         assertEquals(new HashSet<>(expected.get(i).getFeatures()), new HashSet<>(actual.get(i).getFeatures()));
+         assertEquals(expected.get(i).getLabel(), actual.get(i).getLabel());
+         assertEquals(expected.get(i).getWeight(), actual.get(i).getWeight(), 0);
+      }
+   }
+
+   @Test
+   public void roundTrip() throws Exception {
+      assertRoundTrip(instances());
+   }
+
+   @Test
+   public void labelTypes() throws Exception {
+      List<Feature> features = Arrays.asList(Feature.real("a", 1));
+      assertRoundTrip(Arrays.asList(Instance.create(features, 7), Instance.create(features, 9)));
+      assertRoundTrip(Arrays.asList(Instance.create(features, 7L), Instance.create(features, 9L)));
+      assertRoundTrip(Arrays.asList(Instance.create(features, 2.5), Instance.create(features, -1.0)));
+      assertRoundTrip(Arrays.asList(Instance.create(features, new HashSet<>(Arrays.asList("x", "y"))),
+                                    Instance.create(features, new HashSet<>(Arrays.asList("z"))),
+                                    Instance.create(features, new HashSet<>(Arrays.asList("x", "z")))));
+   }
+
+   @Test
+   public void projection() throws Exception {
+      List<Instance> actual = read(new ArrowDataSource(write(instances()), Arrays.asList("a", "d")));
+      assertEquals(6, actual.size());
+      assertEquals(new HashSet<>(Arrays.asList(Feature.real("a", 1.5))),
+                   new HashSet<>(actual.get(0).getFeatures()));
+      assertEquals(new HashSet<>(Arrays.asList(Feature.real("a", 3))), new HashSet<>(actual.get(1).getFeatures()));
+      assertTrue(actual.get(2).getFeatures().isEmpty());
+      assertTrue(actual.get(5).getFeatures().isEmpty());
+      assertEquals(0.5, actual.get(5).getWeight(), 0);
+   }
+
+   @Test
+   public void batches() throws Exception {
+      List<Integer> sizes = new ArrayList<>();
+      new ArrowDataSource(write(instances())).batchIterator().forEachRemaining(batch -> sizes.add(batch.size()));
+      assertEquals(Arrays.asList(2, 2, 2), sizes);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void unknownFeature() throws Exception {
+      try (ArrowWriter writer = new ArrowWriter(Resources.temporaryFile(), Arrays.asList("a"))) {
+         writer.write(Instance.create(Arrays.asList(Feature.TRUE("b")), "label"));
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void mixedLabelTypes() throws Exception {
+      try (ArrowWriter writer = new ArrowWriter(Resources.temporaryFile(), Arrays.asList("a"), 1)) {
+         writer.write(Instance.create(Arrays.asList(Feature.TRUE("a")), "label"));
+         writer.write(Instance.create(Arrays.asList(Feature.TRUE("a")), 1.0));
+      }
+   }
+
+   @Test
+   public void createCopiesArrays() {
+      String[] names = {"a", "b"};
+      double[] values = {1, 2};
+      Instance instance = Instance.create(names, values, "label", 1.0);
+      names[0] = "z";
+      values[0] = 10;
+      assertEquals("a", instance.getFeatureName(0));
+      assertEquals(1, instance.getFeatureValue(0), 0);
+   }
+
+}//END OF ArrowDataSourceTest
@@ -0,0 +1,104 @@
+package com.davidbracewell.apollo.ml.encoder;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.Feature;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.classification.Classifier;
+import com.davidbracewell.apollo.ml.classification.ClassifierEvaluation;
+import com.davidbracewell.apollo.ml.classification.SoftmaxLearner;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.source.DenseCSVDataSource;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
+import com.davidbracewell.apollo.ml.preprocess.transform.RescaleTransform;
+import com.davidbracewell.io.Resources;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author David B. Bracewell
+ */
+public class ConcurrentIndexEncoderTest {
+
+   @Test
+   public void concurrentGrowth() throws Exception {
+      final ConcurrentIndexEncoder encoder = new ConcurrentIndexEncoder();
+      final EncoderPair pair = new EncoderPair(new LabelIndexEncoder(), encoder);
+      final int numberOfThreads = 4;
+      final int numberOfFeatures = 20_000;
+      final AtomicBoolean done = new AtomicBoolean(false);
+      ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads + 1);
+      try {
+         //Reader decoding the newest ids, whose objects may still be being written
+         Future<?> reader = executor.submit(() -> {
+            while (!done.get()) {
+               int size = encoder.size();
+               for (int i = Math.max(0, size - 100); i < size; i++) {
+                  Object value = encoder.decode(i);
+                  assertTrue(value == null || value.toString().startsWith("F"));
+               }
+            }
+            //Once growth has stopped every id decodes
+            assertFalse(encoder.values().contains(null));
+         });
+         List<Future<?>> writers = new ArrayList<>();
+         for (int t = 0; t < numberOfThreads; t++) {
+            final int offset = t;
+            writers.add(executor.submit(() -> {
+               for (int i = 0; i < numberOfFeatures; i++) {
+                  //Threads overlap on half of their features and vectorize while the vocabulary grows
+                  String name = "F" + ((i + offset * numberOfFeatures / 2) % (numberOfFeatures * 2));
+                  Instance instance = Instance.create(Arrays.asList(Feature.TRUE(name)), "label");
+                  NDArray vector = instance.toVector(pair);
+                  int id = (int) encoder.get(name);
+                  assertTrue(id >= 0 && id < vector.length());
+                  assertEquals(1.0, vector.get(id), 0);
+                  assertEquals(name, encoder.decode(id));
+               }
+            }));
+         }
+         for (Future<?> writer : writers) {
+            writer.get();
+         }
+         done.set(true);
+         reader.get();
+      } finally {
+         executor.shutdownNow();
+      }
+
+      Set<Object> values = new HashSet<>(encoder.values());
+      assertEquals(encoder.size(), values.size());
+      for (int i = 0; i < encoder.size(); i++) {
+         assertEquals(i, encoder.get(encoder.decode(i)), 0);
+      }
+   }
+
+   @Test
+   public void trainWithDataset() {
+      DenseCSVDataSource dataSource = new DenseCSVDataSource(
+         Resources.fromClasspath("com/davidbracewell/apollo/ml/iris.csv"),
+         true);
+      dataSource.setLabelName("class");
+      Dataset<Instance> dataset = Dataset.classification()
+                                         .featureEncoder(new ConcurrentIndexEncoder())
+                                         .source(dataSource)
+                                         .preprocess(PreprocessorList.create(new RescaleTransform(0, 1, true)));
+      SoftmaxLearner learner = new SoftmaxLearner();
+      learner.setVerbose(false);
+      Classifier classifier = learner.train(dataset);
+      assertTrue(classifier.getFeatureEncoder() instanceof ConcurrentIndexEncoder);
+      assertEquals(4, classifier.getFeatureEncoder().size());
+      assertTrue(ClassifierEvaluation.evaluateModel(classifier, dataset).accuracy() >= 0.8);
+   }
+
+}//END OF ConcurrentIndexEncoderTest
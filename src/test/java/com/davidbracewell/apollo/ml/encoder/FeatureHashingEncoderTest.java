@@ -0,0 +1,84 @@
+package com.davidbracewell.apollo.ml.encoder;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
+import com.davidbracewell.apollo.ml.Feature;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.collection.Collect;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class FeatureHashingEncoderTest {
+
+   @Test
+   public void singleBucket() {
+      FeatureHashingEncoder encoder = new FeatureHashingEncoder(100, 1, false);
+      NDArray vector = NDArrayFactory.SPARSE_DOUBLE.zeros(100);
+      encoder.encodeInto("feature", 2.5, vector);
+      assertEquals(2.5, vector.get((int) encoder.encode("feature")), 0);
+      assertEquals(2.5, vector.sum(), 0);
+   }
+
+   @Test
+   public void signedPrimaryBucket() {
+      FeatureHashingEncoder encoder = new FeatureHashingEncoder(100);
+      NDArray vector = NDArrayFactory.SPARSE_DOUBLE.zeros(100);
+      encoder.encodeInto("feature", 2.5, vector);
+      assertEquals(2.5, Math.abs(vector.get((int) encoder.encode("feature"))), 0);
+      assertEquals(encoder.encode("feature"), encoder.get("feature"), 0);
+   }
+
+   @Test
+   public void kWayPrimaryBucket() {
+      FeatureHashingEncoder encoder = new FeatureHashingEncoder(1 << 20, 4, true);
+      NDArray vector = NDArrayFactory.SPARSE_DOUBLE.zeros(1 << 20);
+      encoder.encodeInto("feature", 1.0, vector);
+      int bucket = (int) encoder.encode("feature");
+      assertTrue(bucket >= 0 && bucket < encoder.size());
+      assertEquals(0.5, Math.abs(vector.get(bucket)), 1e-12);
+   }
+
+   @Test
+   public void kWay() {
+      FeatureHashingEncoder encoder = new FeatureHashingEncoder(1 << 20, 4, true);
+      NDArray vector = NDArrayFactory.SPARSE_DOUBLE.zeros(1 << 20);
+      encoder.encodeInto("feature", 1.0, vector);
+      double norm = 0;
+      for (NDArray.Entry entry : Collect.asIterable(vector.sparseIterator())) {
+         assertEquals(0.5, Math.abs(entry.getValue()), 1e-12);
+         norm += entry.getValue() * entry.getValue();
+      }
+      assertEquals(1.0, norm, 1e-12);
+   }
+
+   @Test
+   public void collisionsCountedWhenValuesCancel() {
+      FeatureHashingEncoder encoder = new FeatureHashingEncoder(1, 1, false);
+      NDArray vector = NDArrayFactory.SPARSE_DOUBLE.zeros(1);
+      encoder.encodeInto(new String[]{"a", "b", "c"}, new double[]{1, -1, 1}, 3, vector);
+      assertEquals(3, encoder.getHashedFeatures());
+      assertEquals(2, encoder.getCollisions());
+   }
+
+   @Test
+   public void toVector() {
+      FeatureHashingEncoder encoder = new FeatureHashingEncoder(1000, 2, true);
+      EncoderPair pair = new EncoderPair(new LabelIndexEncoder(), encoder);
+      Instance instance = Instance.create(Arrays.asList(Feature.real("a", 1), Feature.real("b", 3)), "label");
+      NDArray expected = NDArrayFactory.SPARSE_DOUBLE.zeros(1000);
+      encoder.encodeInto("a", 1, expected);
+      encoder.encodeInto("b", 3, expected);
+      NDArray vector = instance.toVector(pair);
+      for (int i = 0; i < 1000; i++) {
+         assertEquals(expected.get(i), vector.get(i), 1e-12);
+      }
+   }
+
+}//END OF FeatureHashingEncoderTest
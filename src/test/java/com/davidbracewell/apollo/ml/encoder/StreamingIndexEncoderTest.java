@@ -0,0 +1,77 @@
+package com.davidbracewell.apollo.ml.encoder;
+
+import com.davidbracewell.apollo.ml.Feature;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.stream.StreamingContext;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class StreamingIndexEncoderTest {
+
+   /**
+    * Feature <code>f{i}</code> occurs <code>i</code> times.
+    */
+   private List<String> items() {
+      List<String> items = new ArrayList<>();
+      for (int i = 1; i < 50; i++) {
+         for (int j = 0; j < i; j++) {
+            items.add("f" + i);
+         }
+      }
+      Collections.shuffle(items, new Random(1234));
+      return items;
+   }
+
+   private Dataset<Instance> dataset() {
+      List<Instance> instances = new ArrayList<>();
+      for (String item : items()) {
+         instances.add(Instance.create(Collections.singletonList(Feature.TRUE(item)), "label"));
+      }
+      return Dataset.classification().source(instances);
+   }
+
+   @Test
+   public void maxVocabulary() {
+      StreamingIndexEncoder encoder = new StreamingIndexEncoder(5);
+      encoder.fit(StreamingContext.local().stream(items()));
+      assertTrue(encoder.isFrozen());
+      assertEquals(5, encoder.size());
+      for (int i = 45; i < 50; i++) {
+         assertTrue(encoder.get("f" + i) >= 0);
+      }
+   }
+
+   @Test
+   public void minCountVerifiedOnDataset() {
+      //A tiny sketch over-estimates most counts, so the second pass must remove its false candidates
+      StreamingIndexEncoder encoder = new StreamingIndexEncoder(0, 25, 4, 0.5);
+      encoder.fit(dataset());
+      assertEquals(25, encoder.size());
+      for (int i = 1; i < 50; i++) {
+         assertEquals(i >= 25, encoder.get("f" + i) >= 0);
+      }
+   }
+
+   @Test
+   public void minCountOnStream() {
+      //A single pass cannot verify the estimates, which never under-estimate, so no frequent feature is missed
+      StreamingIndexEncoder encoder = new StreamingIndexEncoder(0, 25, 4, 0.5);
+      encoder.fit(StreamingContext.local().stream(items()));
+      assertTrue(encoder.size() >= 25);
+      for (int i = 25; i < 50; i++) {
+         assertTrue(encoder.get("f" + i) >= 0);
+      }
+   }
+
+}//END OF StreamingIndexEncoderTest
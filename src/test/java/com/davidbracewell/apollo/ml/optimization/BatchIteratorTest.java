@@ -0,0 +1,109 @@
+package com.davidbracewell.apollo.ml.optimization;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author David B. Bracewell
+ */
+public class BatchIteratorTest {
+   private static final int NUM_FEATURES = 50;
+   private static final int NUM_LABELS = 3;
+
+   private BatchIterator iterator() {
+      List<NDArray> data = new ArrayList<>();
+      for (int i = 0; i < 25; i++) {
+         NDArray vector = NDArrayFactory.SPARSE_DOUBLE.zeros(NUM_FEATURES);
+         vector.set(i % NUM_FEATURES, 1.0);
+         vector.set((i * 7) % NUM_FEATURES, 2.0);
+         vector.setLabel(i % NUM_LABELS);
+         data.add(vector);
+      }
+      return new BatchIterator(data, NUM_LABELS, NUM_FEATURES);
+   }
+
+   private void assertSameBatch(NDArray expected, NDArray actual) {
+      assertEquals(expected.numCols(), actual.numCols());
+      for (int c = 0; c < expected.numCols(); c++) {
+         for (int r = 0; r < NUM_FEATURES; r++) {
+            assertEquals(expected.get(r, c), actual.get(r, c), 0);
+         }
+         for (int r = 0; r < NUM_LABELS; r++) {
+            assertEquals(expected.getLabelAsNDArray().get(r, c), actual.getLabelAsNDArray().get(r, c), 0);
+         }
+      }
+   }
+
+   @Test
+   public void reusedBufferIsCleared() {
+      BatchIterator iterator = iterator();
+      BatchIterator.Buffer buffer = iterator.newBuffer();
+      for (int epoch = 0; epoch < 3; epoch++) {
+         iterator.shuffle();
+         for (int b = 0; b < iterator.numberOfBatches(4); b++) {
+            NDArray expected = iterator.range(b * 4, Math.min(b * 4 + 4, iterator.size()));
+            assertSameBatch(expected, iterator.batch(b, 4, buffer));
+         }
+      }
+   }
+
+   @Test
+   public void bufferedRangeMatchesRange() {
+      BatchIterator iterator = iterator();
+      BatchIterator.Buffer buffer = iterator.newBuffer();
+      for (int epoch = 0; epoch < 3; epoch++) {
+         iterator.shuffle();
+         //Ranges that are not aligned to a batch size, as used for the shards of a batch
+         for (int start = 1; start < iterator.size(); start += 3) {
+            int end = Math.min(start + 3, iterator.size());
+            assertSameBatch(iterator.range(start, end), iterator.range(start, end, buffer));
+         }
+      }
+   }
+
+   @Test
+   public void prefetchMatchesRange() {
+      BatchIterator iterator = iterator();
+      for (int epoch = 0; epoch < 3; epoch++) {
+         iterator.shuffle();
+         int start = 0;
+         try (BatchIterator.PrefetchIterator batches = iterator.prefetchIterator(4)) {
+            while (batches.hasNext()) {
+               NDArray batch = batches.next();
+               assertSameBatch(iterator.range(start, start + batch.numCols()), batch);
+               start += batch.numCols();
+            }
+         }
+         assertEquals(iterator.size(), start);
+      }
+   }
+
+   @Test
+   public void closeStopsProducer() throws Exception {
+      BatchIterator iterator = iterator();
+      BatchIterator.PrefetchIterator batches = iterator.prefetchIterator(2);
+      batches.next();
+      batches.close();
+      assertFalse(batches.hasNext());
+      //The producer is blocked waiting on a free buffer and should exit once interrupted
+      long deadline = System.currentTimeMillis() + 5000;
+      while (System.currentTimeMillis() < deadline && hasProducer()) {
+         Thread.sleep(10);
+      }
+      assertFalse(hasProducer());
+   }
+
+   private boolean hasProducer() {
+      return Thread.getAllStackTraces()
+                   .keySet()
+                   .stream()
+                   .anyMatch(t -> t.getName().equals("BatchIterator-prefetch") && t.isAlive());
+   }
+
+}//END OF BatchIteratorTest
@@ -0,0 +1,92 @@
+package com.davidbracewell.apollo.ml.optimization;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.classification.ClassifierEvaluation;
+import com.davidbracewell.apollo.ml.classification.LinearModel;
+import com.davidbracewell.apollo.ml.classification.SoftmaxLearner;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import com.davidbracewell.apollo.ml.data.source.DenseCSVDataSource;
+import com.davidbracewell.apollo.ml.preprocess.PreprocessorList;
+import com.davidbracewell.apollo.ml.preprocess.transform.RescaleTransform;
+import com.davidbracewell.io.Resources;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class LBFGSOptimizerTest {
+
+   private Dataset<Instance> getDataset() {
+      DenseCSVDataSource dataSource = new DenseCSVDataSource(
+         Resources.fromClasspath("com/davidbracewell/apollo/ml/iris.csv"),
+         true);
+      dataSource.setLabelName("class");
+      return Dataset.classification().source(dataSource)
+                    .preprocess(PreprocessorList.create(new RescaleTransform(0, 1, true)));
+   }
+
+   private SoftmaxLearner learner(LBFGSOptimizer optimizer, WeightUpdate weightUpdate) {
+      SoftmaxLearner learner = new SoftmaxLearner();
+      learner.setVerbose(false);
+      learner.setMaxIterations(100);
+      learner.setQuasiNewtonOptimizer(optimizer);
+      learner.setWeightUpdater(weightUpdate);
+      return learner;
+   }
+
+   private int zeros(LinearModel model) {
+      NDArray weights = model.getWeights();
+      int zeros = 0;
+      for (int i = 0; i < weights.length(); i++) {
+         if (weights.get(i) == 0) {
+            zeros++;
+         }
+      }
+      return zeros;
+   }
+
+   @Test
+   public void converges() {
+      List<Double> losses = new ArrayList<>();
+      LBFGSOptimizer optimizer = LBFGSOptimizer.builder().build();
+      SoftmaxLearner learner = learner(optimizer, SGDUpdater.builder().build());
+      learner.setTrainingListener(metrics -> losses.add(metrics.getLoss()));
+      LinearModel model = (LinearModel) learner.train(getDataset());
+
+      //Training must not attach the listener to the configured optimizer
+      assertNull(optimizer.getListener());
+      assertTrue(losses.size() > 1);
+      for (int i = 1; i < losses.size(); i++) {
+         assertTrue(losses.get(i) <= losses.get(i - 1));
+      }
+      assertTrue(ClassifierEvaluation.evaluateModel(model, getDataset()).accuracy() >= 0.9);
+   }
+
+   @Test
+   public void weightUpdaterRegularization() {
+      LinearModel unregularized = (LinearModel) learner(LBFGSOptimizer.builder().build(),
+                                                        SGDUpdater.builder().build()).train(getDataset());
+      //The L1 of the weight updater is applied through OWL-QN, which zeros some of the weights
+      LinearModel fromUpdater = (LinearModel) learner(LBFGSOptimizer.builder().build(),
+                                                      SGDUpdater.builder().l1(0.01).build()).train(getDataset());
+      LinearModel fromOptimizer = (LinearModel) learner(LBFGSOptimizer.builder().l1(0.01).build(),
+                                                        SGDUpdater.builder().build()).train(getDataset());
+      assertEquals(0, zeros(unregularized));
+      assertTrue(zeros(fromUpdater) > 0);
+      assertTrue(zeros(fromOptimizer) > 0);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void conflictingRegularization() {
+      learner(LBFGSOptimizer.builder().l2(0.1).build(), SGDUpdater.builder().l2(0.01).build()).train(getDataset());
+   }
+
+}//END OF LBFGSOptimizerTest
@@ -0,0 +1,164 @@
+package com.davidbracewell.apollo.ml.optimization;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
+import com.davidbracewell.apollo.ml.optimization.activation.Activation;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author David B. Bracewell
+ */
+public class SparseSGDUpdaterTest {
+   private static final int LABELS = 3;
+   private static final int FEATURES = 10;
+
+   private static Parameters parameters() {
+      NDArray weights = NDArrayFactory.DEFAULT().zeros(LABELS, FEATURES);
+      for (int r = 0; r < LABELS; r++) {
+         for (int c = 0; c < FEATURES; c++) {
+            weights.set(r, c, (r + 1) * 0.1 - c * 0.05);
+         }
+      }
+      return new Parameters(weights, NDArrayFactory.DEFAULT().zeros(LABELS));
+   }
+
+   private static NDArray input(int step) {
+      NDArray input = NDArrayFactory.SPARSE_DOUBLE.zeros(FEATURES, 4);
+      for (int c = 0; c < 4; c++) {
+         input.set((step + c) % FEATURES, c, 1.0);
+         input.set((step * 3 + c) % 5, c, 0.5 + c);
+      }
+      return input;
+   }
+
+   private static NDArray error(int step) {
+      NDArray error = NDArrayFactory.DEFAULT().zeros(LABELS, 4);
+      for (int r = 0; r < LABELS; r++) {
+         for (int c = 0; c < 4; c++) {
+            error.set(r, c, Math.sin(step + r * 4 + c));
+         }
+      }
+      return error;
+   }
+
+   private static void assertSame(NDArray expected, NDArray actual) {
+      assertEquals(expected.length(), actual.length());
+      for (int i = 0; i < expected.length(); i++) {
+         assertEquals(expected.get(i), actual.get(i), 1e-9);
+      }
+   }
+
+   @Test
+   public void inputGradientMatchesDenseGradient() {
+      WeightUpdate sparse = SparseSGDUpdater.builder().learningRate(0.1).decayRate(0).momentum(0.9).build();
+      WeightUpdate dense = sparse.copy();
+      Parameters fromInput = parameters();
+      Parameters fromDense = parameters();
+      for (int step = 0; step < 5; step++) {
+         NDArray input = input(step);
+         NDArray error = error(step);
+         sparse.update(fromInput, GradientParameter.calculate(input, error), 0);
+         dense.update(fromDense, GradientParameter.of(error.mmul(input.T()), error), 0);
+      }
+      sparse.finish(fromInput);
+      dense.finish(fromDense);
+      assertSame(fromDense.weights, fromInput.weights);
+      assertSame(fromDense.bias, fromInput.bias);
+   }
+
+   @Test
+   public void l2IsWeightDecay() {
+      WeightUpdate updater = SparseSGDUpdater.builder().learningRate(0.1).decayRate(0).momentum(0).l2(0.1).build();
+      Parameters parameters = parameters();
+      double before = parameters.weights.get(0, 0);
+      NDArray input = NDArrayFactory.SPARSE_DOUBLE.zeros(FEATURES, 1);
+      input.set(0, 0, 1.0);
+      //A zero error leaves only the l2 term: w - lr * l2 * w
+      updater.update(parameters, GradientParameter.calculate(input, NDArrayFactory.DEFAULT().zeros(LABELS, 1)), 0);
+      assertEquals(before * (1 - 0.1 * 0.1), parameters.weights.get(0, 0), 1e-12);
+   }
+
+   @Test
+   public void skippedStepsAreCaughtUp() {
+      WeightUpdate updater = SparseSGDUpdater.builder().learningRate(0.1).decayRate(0).momentum(0).l2(0.1).build();
+      Parameters parameters = parameters();
+      double before = parameters.weights.get(1, 5);
+      NDArray input = NDArrayFactory.SPARSE_DOUBLE.zeros(FEATURES, 1);
+      input.set(0, 0, 1.0);
+      for (int step = 0; step < 3; step++) {
+         updater.update(parameters, GradientParameter.calculate(input, NDArrayFactory.DEFAULT().zeros(LABELS, 1)), 0);
+      }
+      //Column 5 is never in a batch, so it is only decayed lazily
+      assertEquals(before, parameters.weights.get(1, 5), 0);
+      updater.finish(parameters);
+      assertEquals(before * Math.pow(1 - 0.1 * 0.1, 3), parameters.weights.get(1, 5), 1e-12);
+   }
+
+   @Test
+   public void snapshotCatchUpIsNonDestructive() {
+      WeightUpdate updater = SparseSGDUpdater.builder().learningRate(0.1).decayRate(0).momentum(0.9).l2(0.1).build();
+      WeightUpdate finished = updater.copy();
+      WeightUpdate plain = updater.copy();
+      Parameters parameters = parameters();
+      Parameters finishedParameters = parameters();
+      Parameters plainParameters = parameters();
+      for (int step = 0; step < 4; step++) {
+         updater.update(parameters, GradientParameter.calculate(input(step), error(step)), 0);
+         finished.update(finishedParameters, GradientParameter.calculate(input(step), error(step)), 0);
+         plain.update(plainParameters, GradientParameter.calculate(input(step), error(step)), 0);
+      }
+      NDArray lazy = parameters.weights.copy();
+      Parameters snapshot = new Parameters(parameters.weights.copy(), parameters.bias.copy());
+      updater.catchUp(snapshot);
+      //The snapshot matches finishing training at this point, while the optimized parameters are untouched
+      finished.finish(finishedParameters);
+      assertSame(finishedParameters.weights, snapshot.weights);
+      assertSame(lazy, parameters.weights);
+      //Catching up a snapshot does not change how training continues
+      for (int step = 4; step < 8; step++) {
+         updater.update(parameters, GradientParameter.calculate(input(step), error(step)), 0);
+         plain.update(plainParameters, GradientParameter.calculate(input(step), error(step)), 0);
+      }
+      updater.finish(parameters);
+      plain.finish(plainParameters);
+      assertSame(plainParameters.weights, parameters.weights);
+   }
+
+   private static class Parameters implements LinearModelParameters {
+      private final NDArray weights;
+      private final NDArray bias;
+
+      private Parameters(NDArray weights, NDArray bias) {
+         this.weights = weights;
+         this.bias = bias;
+      }
+
+      @Override
+      public Activation getActivation() {
+         return Activation.SOFTMAX;
+      }
+
+      @Override
+      public NDArray getBias() {
+         return bias;
+      }
+
+      @Override
+      public NDArray getWeights() {
+         return weights;
+      }
+
+      @Override
+      public int numberOfFeatures() {
+         return FEATURES;
+      }
+
+      @Override
+      public int numberOfLabels() {
+         return LABELS;
+      }
+   }
+
+}//END OF SparseSGDUpdaterTest
@@ -0,0 +1,62 @@
+package com.davidbracewell.apollo.ml.regression;
+
+import com.davidbracewell.apollo.ml.Feature;
+import com.davidbracewell.apollo.ml.Instance;
+import com.davidbracewell.apollo.ml.data.Dataset;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class GradientBoostedTreesRegressionTest {
+
+   private static double target(Instance instance) {
+      return ((Number) instance.getLabel()).doubleValue();
+   }
+
+   private List<Instance> getInstances() {
+      Random random = new Random(1234);
+      List<Instance> instances = new ArrayList<>();
+      for (int i = 0; i < 400; i++) {
+         List<Feature> features = new ArrayList<>();
+         double x = random.nextDouble();
+         double target = 2 * x + (x > 0.5 ? 3 : 0);
+         features.add(Feature.real("x", x));
+         //A sparse feature that is only present for some of the instances
+         if (random.nextBoolean()) {
+            double y = -random.nextDouble();
+            features.add(Feature.real("y", y));
+            target += y < -0.5 ? -4 : 0;
+         }
+         instances.add(Instance.create(features, target));
+      }
+      return instances;
+   }
+
+   @Test
+   public void fit() {
+      List<Instance> instances = getInstances();
+      double mean = instances.stream().mapToDouble(GradientBoostedTreesRegressionTest::target).average().orElse(0);
+      double variance = instances.stream()
+                                 .mapToDouble(i -> Math.pow(target(i) - mean, 2))
+                                 .average()
+                                 .orElse(0);
+
+      GradientBoostedTreesRegressionLearner learner = new GradientBoostedTreesRegressionLearner();
+      learner.setNumberOfTrees(50);
+      learner.setMaxDepth(3);
+      Regression model = learner.train(Dataset.regression().source(instances));
+      double error = instances.stream()
+                              .mapToDouble(i -> Math.pow(model.estimate(i) - target(i), 2))
+                              .average()
+                              .orElse(0);
+      assertTrue("mse=" + error + ", variance=" + variance, error < 0.05 * variance);
+   }
+
+}//END OF GradientBoostedTreesRegressionTest
@@ -0,0 +1,59 @@
+package com.davidbracewell.apollo.ml.tree;
+
+import com.davidbracewell.apollo.linear.NDArray;
+import com.davidbracewell.apollo.linear.NDArrayFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class HistogramMatrixTest {
+
+   @Test
+   public void sparseBins() {
+      Random random = new Random(1234);
+      final int numberOfFeatures = 20;
+      List<NDArray> vectors = new ArrayList<>();
+      for (int r = 0; r < 500; r++) {
+         NDArray vector = NDArrayFactory.SPARSE_DOUBLE.zeros(numberOfFeatures);
+         for (int f = 0; f < numberOfFeatures; f++) {
+            //Features are increasingly sparse and take negative as well as positive values
+            if (random.nextInt(numberOfFeatures) >= f) {
+               vector.set(f, random.nextGaussian());
+            }
+         }
+         vectors.add(vector);
+      }
+
+      HistogramMatrix matrix = new HistogramMatrix(vectors, numberOfFeatures, 16);
+      assertEquals(500, matrix.getNumberOfRows());
+      for (int f = 0; f < numberOfFeatures; f++) {
+         assertTrue(matrix.numberOfBins(f) <= 16);
+         int[] rows = matrix.nonZeroRows(f);
+         short[] bins = matrix.nonZeroBins(f);
+         for (int i = 1; i < rows.length; i++) {
+            assertTrue(rows[i - 1] < rows[i]);
+         }
+         for (int i = 0; i < rows.length; i++) {
+            assertEquals(bins[i], matrix.bin(f, rows[i]));
+         }
+         for (int r = 0; r < vectors.size(); r++) {
+            double value = vectors.get(r).get(f);
+            int bin = matrix.bin(f, r);
+            assertTrue(value <= matrix.threshold(f, bin));
+            assertTrue(bin == 0 || value > matrix.threshold(f, bin - 1));
+            if (value == 0) {
+               assertEquals(matrix.zeroBin(f), bin);
+            }
+         }
+      }
+   }
+
+}//END OF HistogramMatrixTest
@@ -0,0 +1,50 @@
+package com.davidbracewell.apollo.stat.sketch;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class CountMinSketchTest {
+
+   @Test
+   public void errorBound() {
+      final double epsilon = 0.001;
+      CountMinSketch sketch = CountMinSketch.create(epsilon, 0.01);
+      Map<String, Long> counts = new HashMap<>();
+      Random random = new Random(1234);
+      for (int i = 0; i < 100_000; i++) {
+         //Zipf-like stream with a few heavy items and a long tail
+         String item = "item" + (int) Math.floor(Math.pow(random.nextDouble(), 3) * 10_000);
+         counts.merge(item, 1L, Long::sum);
+         sketch.add(item);
+      }
+      assertEquals(100_000, sketch.getTotalCount());
+      int violations = 0;
+      for (Map.Entry<String, Long> entry : counts.entrySet()) {
+         long estimate = sketch.estimate(entry.getKey());
+         assertTrue(estimate >= entry.getValue());
+         if (estimate - entry.getValue() > epsilon * sketch.getTotalCount()) {
+            violations++;
+         }
+      }
+      assertTrue(violations <= 0.01 * counts.size());
+   }
+
+   @Test
+   public void addReturnsEstimate() {
+      CountMinSketch sketch = new CountMinSketch(100, 4);
+      assertEquals(3, sketch.add("a", 3));
+      assertEquals(4, sketch.add("a"));
+      assertEquals(4, sketch.estimate("a"));
+      assertEquals(0, sketch.estimate("b"));
+   }
+
+}//END OF CountMinSketchTest
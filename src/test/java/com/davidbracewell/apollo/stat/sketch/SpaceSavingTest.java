@@ -0,0 +1,44 @@
+package com.davidbracewell.apollo.stat.sketch;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author David B. Bracewell
+ */
+public class SpaceSavingTest {
+
+   @Test
+   public void heavyHitters() {
+      SpaceSaving<String> summary = new SpaceSaving<>(50);
+      Map<String, Long> counts = new HashMap<>();
+      Random random = new Random(1234);
+      for (int i = 0; i < 50_000; i++) {
+         String item = "item" + (int) Math.floor(Math.pow(random.nextDouble(), 4) * 5_000);
+         counts.merge(item, 1L, Long::sum);
+         summary.add(item);
+      }
+      List<SpaceSaving.Entry<String>> top = summary.topItems();
+      assertTrue(top.size() <= 50);
+      for (SpaceSaving.Entry<String> entry : top) {
+         long count = counts.get(entry.getItem());
+         assertTrue(entry.getMinCount() <= count);
+         assertTrue(entry.getCount() >= count);
+      }
+      //Every item more frequent than totalCount / capacity must be tracked
+      for (Map.Entry<String, Long> entry : counts.entrySet()) {
+         if (entry.getValue() > summary.getTotalCount() / summary.getCapacity()) {
+            assertTrue(top.stream().anyMatch(e -> e.getItem().equals(entry.getKey())));
+         }
+      }
+      assertEquals("item0", top.get(0).getItem());
+   }
+
+}//END OF SpaceSavingTest